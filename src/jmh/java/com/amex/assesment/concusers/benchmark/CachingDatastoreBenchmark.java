@@ -0,0 +1,101 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.CachingUserDatastore;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.service.InMemoryUserService;
+import com.amex.assesment.concusers.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InMemoryUserService#getUserById} over a slow datastore, a
+ * {@link LatencyUserDatastore} blocking {@code storeMicros} per call, with and
+ * without a {@link CachingUserDatastore} in front of it. Reads are skewed: 90%
+ * of them go to the hottest 10% of the users, and a {@code missRate} fraction
+ * asks for unknown ids. The cache is smaller than the table, so the hit rate
+ * depends on the eviction policy keeping the hot users; it is printed at the
+ * end of the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+public class CachingDatastoreBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    @Param({"100000"})
+    public int tableSize;
+
+    @Param({"20000"})
+    public long cacheSize;
+
+    @Param({"100"})
+    public long storeMicros;
+
+    @Param({"0.1"})
+    public double missRate;
+
+    private UserService userService;
+    private CachingUserDatastore cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LatencyUserDatastore store = new LatencyUserDatastore(storeMicros, storeMicros, 0);
+        UserDatastore datastore = store;
+        if (cached) {
+            cache = new CachingUserDatastore(store, cacheSize);
+            datastore = cache;
+        }
+        // Populated through the store directly, so the benchmark starts cold
+        // without paying the store latency for each of the users
+        store.populate(tableSize);
+        userService = new InMemoryUserService(datastore);
+    }
+
+    @TearDown(Level.Trial)
+    public void reportHitRate() {
+        if (cache != null) {
+            System.out.printf("%nCache hit rate: %.3f, evictions: %d%n",
+                    cache.stats().hitRate(), cache.stats().evictionCount());
+        }
+    }
+
+    @Benchmark
+    public Object getUserById() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        if (random.nextDouble() < missRate) {
+            id = tableSize + 1 + random.nextInt(tableSize);
+        } else if (random.nextInt(10) < 9) {
+            id = 1 + random.nextInt(tableSize / 10);
+        } else {
+            id = 1 + random.nextInt(tableSize);
+        }
+        try {
+            return userService.getUserById(id);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+}
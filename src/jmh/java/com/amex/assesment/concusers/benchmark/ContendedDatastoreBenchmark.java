@@ -0,0 +1,11 @@
+package com.amex.assesment.concusers.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link DatastoreBenchmark} with eight threads hitting the same store, to
+ * show how the hot paths behave under contention.
+ */
+@Threads(8)
+public class ContendedDatastoreBenchmark extends DatastoreBenchmark {
+}
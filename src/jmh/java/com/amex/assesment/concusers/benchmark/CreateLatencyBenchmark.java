@@ -0,0 +1,55 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of creating a user as the table grows. With the email
+ * index the duplicate check is a hash lookup, so the percentiles should stay
+ * flat from 1k to 10M existing users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class CreateLatencyBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int tableSize;
+
+    private UserDatastore userDatastore;
+    private long nextEmail;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        userDatastore = new InMemoryUserDatastore();
+        for (int i = 0; i < tableSize; i++) {
+            userDatastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        nextEmail = tableSize;
+    }
+
+    @Benchmark
+    public Optional<User> createUser() {
+        long n = nextEmail++;
+        return userDatastore.saveIfEmailAbsent(new User(0, "User " + n, "user" + n + "@example.com"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hot paths of {@link InMemoryUserDatastore} against pre-populated tables of
+ * several sizes, on a single thread. {@link ContendedDatastoreBenchmark} runs
+ * the same benchmarks with several threads sharing the store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+public class DatastoreBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int tableSize;
+
+    private UserDatastore userDatastore;
+    private final AtomicLong nextEmail = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void populate() {
+        userDatastore = new InMemoryUserDatastore();
+        for (int i = 0; i < tableSize; i++) {
+            userDatastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        nextEmail.set(tableSize);
+    }
+
+    @Benchmark
+    public Optional<User> saveIfEmailAbsent() {
+        long n = nextEmail.getAndIncrement();
+        return userDatastore.saveIfEmailAbsent(new User(0, "User " + n, "user" + n + "@example.com"));
+    }
+
+    @Benchmark
+    public User save() {
+        long id = randomId();
+        return userDatastore.save(new User(id, "User " + id, "user" + (id - 1) + "@example.com"));
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return userDatastore.findById(randomId());
+    }
+
+    @Benchmark
+    public boolean existsByEmail() {
+        return userDatastore.existsByEmail("user" + (randomId() - 1) + "@example.com");
+    }
+
+    @Benchmark
+    public boolean existsByEmailAndIdNot() {
+        long id = randomId();
+        return userDatastore.existsByEmailAndIdNot("user" + (id - 1) + "@example.com", id);
+    }
+
+    @Benchmark
+    public List<User> findAll() {
+        return userDatastore.findAll();
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, tableSize + 1);
+    }
+}
@@ -0,0 +1,112 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.admission.AdmissionControl;
+import com.amex.assesment.concusers.datastore.BlockingUserDatastoreAdapter;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.execution.BlockingCallExecutor;
+import com.amex.assesment.concusers.execution.ExecutionMode;
+import com.amex.assesment.concusers.metrics.MetricsRegistry;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.replication.ReplicationControl;
+import com.amex.assesment.concusers.service.AsyncUserService;
+import com.amex.assesment.concusers.service.DefaultAsyncUserService;
+import com.amex.assesment.concusers.verticles.MainVerticle;
+import com.amex.assesment.concusers.verticles.handlers.ChangeFeedHandler;
+import com.amex.assesment.concusers.verticles.handlers.MetricsHandler;
+import com.amex.assesment.concusers.verticles.handlers.UserHandler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServerOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@code GET /users/:id} latency over HTTP for each
+ * {@link ExecutionMode}, with a datastore that takes {@code fastMicros} on most
+ * calls and {@code slowMillis} on a {@code slowFraction} of them. The server
+ * runs on a single event loop, so with {@link ExecutionMode#EVENT_LOOP} every
+ * slow call also delays the fast requests queued behind it; compare the p0.99
+ * percentiles of the sample-time results across modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(32)
+public class ExecutionModeBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"EVENT_LOOP", "WORKER", "VIRTUAL_THREAD"})
+    public ExecutionMode mode;
+
+    @Param({"0.01", "0.1"})
+    public double slowFraction;
+
+    @Param({"50"})
+    public long fastMicros;
+
+    @Param({"20"})
+    public long slowMillis;
+
+    private Vertx vertx;
+    private BlockingCallExecutor executor;
+    private HttpClient client;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        LatencyUserDatastore datastore = new LatencyUserDatastore(fastMicros, slowMillis * 1000, slowFraction);
+        for (int i = 0; i < USERS; i++) {
+            datastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+
+        executor = new BlockingCallExecutor(mode);
+        AsyncUserService userService =
+                new DefaultAsyncUserService(new BlockingUserDatastoreAdapter(datastore, executor));
+        UserHandler userHandler = new UserHandler(userService);
+
+        vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1));
+        MetricsRegistry metrics = new MetricsRegistry();
+        vertx.deployVerticle(new MainVerticle(userHandler, new ChangeFeedHandler(ChangeFeed.NONE, userService, 50),
+                new MetricsHandler(metrics), metrics,
+                new AdmissionControl(null, Set.of(), null, Map.of(), null), new ReplicationControl(),
+                new HttpServerOptions().setPort(8080), 0)).toCompletionStage().toCompletableFuture().get();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get();
+        executor.close();
+    }
+
+    @Benchmark
+    public int getUserById() throws Exception {
+        long id = ThreadLocalRandom.current().nextLong(1, USERS + 1);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:8080/users/" + id)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
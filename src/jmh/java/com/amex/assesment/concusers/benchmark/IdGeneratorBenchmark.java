@@ -0,0 +1,96 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.ids.AtomicIdGenerator;
+import com.amex.assesment.concusers.datastore.ids.BlockIdGenerator;
+import com.amex.assesment.concusers.datastore.ids.IdGenerator;
+import com.amex.assesment.concusers.datastore.ids.IdGeneratorType;
+import com.amex.assesment.concusers.datastore.ids.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each {@link IdGenerator} with 1 to 64 threads taking ids from
+ * the same generator, as event loops creating users at once would. The
+ * benchmarks only differ in their thread count; compare the total throughput
+ * of a generator as threads are added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+    @Param({"ATOMIC", "BLOCK", "SNOWFLAKE"})
+    public IdGeneratorType generator;
+
+    @Param({"1024"})
+    public int blockSize;
+
+    private IdGenerator ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ids = switch (generator) {
+            case ATOMIC -> new AtomicIdGenerator();
+            case BLOCK -> new BlockIdGenerator(blockSize);
+            case SNOWFLAKE -> new SnowflakeIdGenerator(0);
+        };
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long threads01() {
+        return ids.nextId();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public long threads02() {
+        return ids.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long threads04() {
+        return ids.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long threads08() {
+        return ids.nextId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long threads16() {
+        return ids.nextId();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long threads32() {
+        return ids.nextId();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long threads64() {
+        return ids.nextId();
+    }
+}
@@ -0,0 +1,125 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Stand-in for a durable or remote datastore: an {@link InMemoryUserDatastore}
+ * where every call blocks the calling thread, for {@code fastMicros} most of the
+ * time and for {@code slowMicros} on a {@code slowFraction} of the calls.
+ */
+class LatencyUserDatastore implements UserDatastore {
+
+    private final UserDatastore delegate = new InMemoryUserDatastore();
+    private final long fastNanos;
+    private final long slowNanos;
+    private final double slowFraction;
+
+    LatencyUserDatastore(long fastMicros, long slowMicros, double slowFraction) {
+        this.fastNanos = fastMicros * 1000;
+        this.slowNanos = slowMicros * 1000;
+        this.slowFraction = slowFraction;
+    }
+
+    /**
+     * Saves {@code count} users without any latency, to set up a table quickly.
+     */
+    void populate(int count) {
+        for (int i = 0; i < count; i++) {
+            delegate.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+    }
+
+    private void pause() {
+        long nanos = ThreadLocalRandom.current().nextDouble() < slowFraction ? slowNanos : fastNanos;
+        if (nanos > 0) {
+            // Sleeping rather than spinning, like a thread waiting on I/O
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        pause();
+        return delegate.save(user);
+    }
+
+    @Override
+    public Optional<User> saveIfEmailAbsent(User user) {
+        pause();
+        return delegate.saveIfEmailAbsent(user);
+    }
+
+    @Override
+    public List<Optional<User>> saveAllIfEmailAbsent(List<User> users) {
+        pause();
+        return delegate.saveAllIfEmailAbsent(users);
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        pause();
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<User> findAll() {
+        pause();
+        return delegate.findAll();
+    }
+
+    @Override
+    public UserPage findPage(long afterId, int limit) {
+        pause();
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        pause();
+        return delegate.streamAll();
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        pause();
+        return delegate.existsByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmailAndIdNot(String email, long userIdToExclude) {
+        pause();
+        return delegate.existsByEmailAndIdNot(email, userIdToExclude);
+    }
+
+    @Override
+    public void deleteById(long id) {
+        pause();
+        delegate.deleteById(id);
+    }
+
+    @Override
+    public List<Boolean> deleteAllById(List<Long> ids) {
+        pause();
+        return delegate.deleteAllById(ids);
+    }
+
+    @Override
+    public long version() {
+        pause();
+        return delegate.version();
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+}
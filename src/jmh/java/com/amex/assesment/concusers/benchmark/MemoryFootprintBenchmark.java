@@ -0,0 +1,82 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.CompactUserDatastore;
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.model.User;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained per user by each {@link UserDatastore} implementation, measured
+ * as the live heap after a full GC with the table populated minus the live heap
+ * before. Reported as the {@code bytesPerUser} and {@code retainedMegabytes}
+ * secondary results; the primary score is only the time to populate.
+ * <p>
+ * The 50M row needs a heap of about 16GB for {@code in-memory}; run it with
+ * {@code -jvmArgsAppend -Xmx<size>} on a large enough machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms16g", "-Xmx16g", "-XX:+UseParallelGC"})
+public class MemoryFootprintBenchmark {
+
+    @Param({"in-memory", "compact"})
+    public String type;
+
+    @Param({"1000000", "10000000", "50000000"})
+    public int users;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerUser;
+        public double retainedMegabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerUser = 0;
+            retainedMegabytes = 0;
+        }
+    }
+
+    @Benchmark
+    public void populate(Footprint footprint, Blackhole blackhole) {
+        long before = liveHeap();
+        UserDatastore userDatastore = "compact".equals(type) ? new CompactUserDatastore() : new InMemoryUserDatastore();
+        for (int i = 0; i < users; i++) {
+            userDatastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        long retained = liveHeap() - before;
+        footprint.bytesPerUser = (double) retained / users;
+        footprint.retainedMegabytes = retained / (1024.0 * 1024.0);
+        blackhole.consume(userDatastore);
+    }
+
+    private static long liveHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
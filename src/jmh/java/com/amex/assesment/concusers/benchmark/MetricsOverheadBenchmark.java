@@ -0,0 +1,101 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.BlockingUserDatastoreAdapter;
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.execution.BlockingCallExecutor;
+import com.amex.assesment.concusers.execution.ExecutionMode;
+import com.amex.assesment.concusers.metrics.MetricsRegistry;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.service.DefaultAsyncUserService;
+import com.amex.assesment.concusers.verticles.handlers.UserHandler;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.amex.assesment.concusers.benchmark.Stubs.stub;
+
+/**
+ * Cost of the route instrumentation: {@code GET /users/:id} handled by
+ * {@link UserHandler} directly and through the wrapper that counts the request
+ * and records its status and latency. The response stub runs the headers-end
+ * handler when the response is ended, as Vert.x does. The difference between
+ * the two should stay within 1-2% of the plain handler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MetricsOverheadBenchmark {
+
+    @Param({"1000"})
+    public int tableSize;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private Handler<RoutingContext> handler;
+    private RoutingContext context;
+    // Headers-end handler of the request in flight; the benchmark runs one thread
+    private Handler<Void> headersEnd;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryUserDatastore datastore = new InMemoryUserDatastore();
+        for (int i = 0; i < tableSize; i++) {
+            datastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+
+        UserHandler userHandler = new UserHandler(new DefaultAsyncUserService(new BlockingUserDatastoreAdapter(
+                datastore, new BlockingCallExecutor(ExecutionMode.EVENT_LOOP))));
+        handler = userHandler::getUserById;
+        if (instrumented) {
+            MetricsRegistry metrics = new MetricsRegistry(datastore, null, null);
+            handler = metrics.route(HttpMethod.GET, "/users/:id").instrument(handler);
+        }
+
+        HttpServerResponse response = stub(HttpServerResponse.class, Map.of(
+                "getStatusCode", args -> 200,
+                "end", args -> {
+                    if (headersEnd != null) {
+                        headersEnd.handle(null);
+                        headersEnd = null;
+                    }
+                    return null;
+                }));
+        HttpServerRequest request = stub(HttpServerRequest.class, Map.of());
+        context = stub(RoutingContext.class, Map.of(
+                "response", args -> response,
+                "request", args -> request,
+                "addHeadersEndHandler", args -> {
+                    headersEnd = (Handler<Void>) args[0];
+                    return 0;
+                },
+                "pathParam", args -> Long.toString(ThreadLocalRandom.current().nextLong(1, tableSize + 1))));
+    }
+
+    @Benchmark
+    public void getUserById() {
+        handler.handle(context);
+    }
+}
@@ -0,0 +1,109 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.BlockingUserDatastoreAdapter;
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.exception.UserNotFoundException;
+import com.amex.assesment.concusers.execution.BlockingCallExecutor;
+import com.amex.assesment.concusers.execution.ExecutionMode;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.service.AsyncUserService;
+import com.amex.assesment.concusers.service.DefaultAsyncUserService;
+import com.amex.assesment.concusers.service.InMemoryUserService;
+import com.amex.assesment.concusers.service.ServiceResult;
+import com.amex.assesment.concusers.service.UserService;
+import com.amex.assesment.concusers.verticles.handlers.UserHandler;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.amex.assesment.concusers.benchmark.Stubs.stub;
+
+/**
+ * Lookups by id where a fraction of the ids are unknown, comparing the
+ * exception-based {@link UserService}, which throws
+ * {@link UserNotFoundException} on a miss, with the {@link ServiceResult}-based
+ * {@link AsyncUserService}, and the full {@link UserHandler} path against a
+ * stubbed {@link RoutingContext}. Run with {@code -prof gc} to see the
+ * allocation per miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MissRateBenchmark {
+
+    @Param({"0.5"})
+    public double missRate;
+
+    @Param({"1000"})
+    public int tableSize;
+
+    private UserService userService;
+    private AsyncUserService asyncUserService;
+    private UserHandler userHandler;
+    private RoutingContext getContext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryUserDatastore datastore = new InMemoryUserDatastore();
+        for (int i = 0; i < tableSize; i++) {
+            datastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        userService = new InMemoryUserService(datastore);
+        asyncUserService = new DefaultAsyncUserService(new BlockingUserDatastoreAdapter(
+                datastore, new BlockingCallExecutor(ExecutionMode.EVENT_LOOP)));
+
+        userHandler = new UserHandler(asyncUserService);
+        HttpServerResponse response = stub(HttpServerResponse.class, Map.of());
+        HttpServerRequest request = stub(HttpServerRequest.class, Map.of());
+        getContext = stub(RoutingContext.class, Map.of(
+                "response", args -> response,
+                "request", args -> request,
+                "pathParam", args -> Long.toString(nextId())));
+    }
+
+    @Benchmark
+    public int exceptionLookup() {
+        try {
+            return userService.getUserById(nextId()).getName().length();
+        } catch (UserNotFoundException e) {
+            return e.getMessage().length();
+        }
+    }
+
+    @Benchmark
+    public ServiceResult<User> resultLookup() {
+        return asyncUserService.getUserById(nextId()).result();
+    }
+
+    @Benchmark
+    public void handlerGetUserById() {
+        userHandler.getUserById(getContext);
+    }
+
+    // Ids above the table size are never assigned, so they always miss
+    private long nextId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return random.nextDouble() < missRate
+                ? tableSize + 1 + random.nextInt(tableSize)
+                : 1 + random.nextInt(tableSize);
+    }
+}
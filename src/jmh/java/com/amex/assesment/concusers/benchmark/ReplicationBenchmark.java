@@ -0,0 +1,155 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.ConcUsersApplication;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.replication.ReplicationControl;
+import com.amex.assesment.concusers.replication.Replicator;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A primary and {@code replicas} replicas, each a full application context
+ * with its own Vert.x instance and port, as they would run in separate
+ * processes, though here they share the CPUs of one JVM.
+ * <ul>
+ * <li>{@code readThroughput}: {@code GET /users/:id} spread round-robin over
+ * the replicas, or sent to the primary when there are none. On a machine with
+ * enough cores, throughput should grow with the number of replicas until the
+ * client threads become the bottleneck.</li>
+ * <li>{@code replicationLag}: time from a {@code PUT /users/:id} on the primary
+ * until the first replica reports, in its {@code X-Replication-Token}, that it
+ * has applied that write. With no replica, this is the time of the write
+ * alone.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ReplicationBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int PRIMARY_PORT = 8180;
+
+    @Param({"0", "1", "2", "4"})
+    public int replicas;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private final List<Vertx> vertxs = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger updates = new AtomicInteger();
+    private List<Integer> readPorts;
+    private HttpClient client;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        ConfigurableApplicationContext primary = startNode(PRIMARY_PORT,
+                "--concusers.replication.role=" + (replicas == 0 ? "NONE" : "PRIMARY"));
+        UserDatastore users = primary.getBean(UserDatastore.class);
+        for (int i = 0; i < USERS; i++) {
+            users.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+
+        readPorts = new ArrayList<>();
+        for (int i = 1; i <= replicas; i++) {
+            ConfigurableApplicationContext replica = startNode(PRIMARY_PORT + i,
+                    "--concusers.replication.role=REPLICA",
+                    "--concusers.replication.primary-url=http://localhost:" + PRIMARY_PORT);
+            Replicator replicator = replica.getBean(Replicator.class);
+            while (replicator.appliedSequence() < 0) {
+                Thread.sleep(10);
+            }
+            readPorts.add(PRIMARY_PORT + i);
+        }
+        if (readPorts.isEmpty()) {
+            readPorts.add(PRIMARY_PORT);
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    private ConfigurableApplicationContext startNode(int port, String... args) throws Exception {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        arguments.add("--concusers.http.port=" + port);
+        arguments.add("--concusers.http.instances=1");
+        arguments.add("--logging.level.root=WARN");
+        ConfigurableApplicationContext context = SpringApplication.run(ConcUsersApplication.class,
+                arguments.toArray(String[]::new));
+        contexts.add(context);
+        vertxs.add(ConcUsersApplication.start(context).toCompletionStage().toCompletableFuture().get());
+        return context;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        // Replicas first, so that they do not reconnect to a stopped primary
+        for (int i = contexts.size() - 1; i >= 0; i--) {
+            vertxs.get(i).close().toCompletionStage().toCompletableFuture().get();
+            contexts.get(i).close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(16)
+    public int readThroughput() throws Exception {
+        int port = readPorts.get(Math.floorMod(next.getAndIncrement(), readPorts.size()));
+        long id = ThreadLocalRandom.current().nextLong(1, USERS + 1);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users/" + id)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(1)
+    public long replicationLag() throws Exception {
+        long id = ThreadLocalRandom.current().nextLong(1, USERS + 1);
+        String body = "{\"name\":\"Updated " + updates.incrementAndGet() + "\",\"email\":\"user" + (id - 1)
+                + "@example.com\"}";
+        HttpRequest write = HttpRequest.newBuilder(URI.create("http://localhost:" + PRIMARY_PORT + "/users/" + id))
+                .header("content-type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<Void> written = client.send(write, HttpResponse.BodyHandlers.discarding());
+        if (replicas == 0) {
+            return written.statusCode();
+        }
+        long token = Long.parseLong(written.headers().firstValue(ReplicationControl.TOKEN_HEADER).orElseThrow());
+        HttpRequest read = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + (PRIMARY_PORT + 1) + "/users/" + id)).build();
+        while (true) {
+            HttpResponse<Void> response = client.send(read, HttpResponse.BodyHandlers.discarding());
+            String applied = response.headers().firstValue(ReplicationControl.TOKEN_HEADER).orElse("-1");
+            if (Long.parseLong(applied) >= token) {
+                return token;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.codec.UserJsonDecoder;
+import com.amex.assesment.concusers.model.EmailUpdateRequest;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserConstraints;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of turning a write request body into a validated value, per call: the
+ * previous path, {@code JsonObject} then {@code mapTo} and a Bean Validation
+ * {@link Validator}, against {@link UserJsonDecoder} and
+ * {@link UserConstraints}. {@code invalidUser} measures a body breaking every
+ * constraint, where the validator also builds and interpolates a violation per
+ * failure. Run with {@code -prof gc} to get the bytes allocated per call
+ * ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestDecodeBenchmark {
+
+    private final Buffer userBody = Buffer.buffer("{\"name\":\"Jane Doe\",\"email\":\"jane.doe@example.com\"}");
+    private final Buffer invalidUserBody = Buffer.buffer("{\"name\":\" \",\"email\":\"jane.doe@\"}");
+    private final Buffer emailBody = Buffer.buffer("{\"email\":\"jane.doe@example.com\"}");
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Object userMapAndValidator() {
+        return checked(new JsonObject(userBody).mapTo(User.class));
+    }
+
+    @Benchmark
+    public Object userDecoder() {
+        User user = UserJsonDecoder.decodeUser(userBody);
+        String errors = UserConstraints.validate(user);
+        return errors != null ? errors : user;
+    }
+
+    @Benchmark
+    public Object invalidUserMapAndValidator() {
+        return checked(new JsonObject(invalidUserBody).mapTo(User.class));
+    }
+
+    @Benchmark
+    public Object invalidUserDecoder() {
+        User user = UserJsonDecoder.decodeUser(invalidUserBody);
+        String errors = UserConstraints.validate(user);
+        return errors != null ? errors : user;
+    }
+
+    @Benchmark
+    public Object emailUpdateMapAndValidator() {
+        return checked(new JsonObject(emailBody).mapTo(EmailUpdateRequest.class));
+    }
+
+    @Benchmark
+    public Object emailUpdateDecoder() {
+        EmailUpdateRequest request = UserJsonDecoder.decodeEmailUpdate(emailBody);
+        String errors = UserConstraints.validate(request);
+        return errors != null ? errors : request;
+    }
+
+    private <T> Object checked(T value) {
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (violations.isEmpty()) {
+            return value;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.joining(", "));
+    }
+}
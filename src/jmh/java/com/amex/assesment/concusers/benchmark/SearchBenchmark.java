@@ -0,0 +1,91 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link InMemoryUserDatastore#search} for one page of users by
+ * name prefix, by email domain and by both, against tables of random names
+ * spread over {@code domains} domains. Compare the p0.99 percentiles of the
+ * sample-time results to the 1 ms target; 10M users need a 16GB heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+@Threads(1)
+public class SearchBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000000", "10000000"})
+    public int tableSize;
+
+    @Param({"1000"})
+    public int domains;
+
+    private InMemoryUserDatastore userDatastore;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        userDatastore = new InMemoryUserDatastore();
+        Random random = new Random(42);
+        for (int i = 0; i < tableSize; i++) {
+            String name = randomName(random);
+            userDatastore.save(new User(0, name + " " + i, "user" + i + "@" + domain(i % domains)));
+        }
+    }
+
+    @Benchmark
+    public UserPage searchByNamePrefix() {
+        return userDatastore.search(randomName(ThreadLocalRandom.current()).substring(0, 3), null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public UserPage searchByDomain() {
+        return userDatastore.search(null, randomDomain(), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public UserPage searchByNamePrefixInDomain() {
+        return userDatastore.search(randomName(ThreadLocalRandom.current()).substring(0, 1), randomDomain(), null,
+                PAGE_SIZE);
+    }
+
+    private String randomDomain() {
+        return domain(ThreadLocalRandom.current().nextInt(domains));
+    }
+
+    private static String domain(int n) {
+        return "d" + n + ".example.com";
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[6];
+        name[0] = (char) ('A' + random.nextInt(26));
+        for (int i = 1; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+}
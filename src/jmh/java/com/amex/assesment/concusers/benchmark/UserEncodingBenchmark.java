@@ -0,0 +1,49 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.codec.UserJsonEncoder;
+import com.amex.assesment.concusers.model.User;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a {@link User} into response bytes: the previous
+ * pretty-printed Jackson path against {@link UserJsonEncoder}. Run with
+ * {@code -prof gc} to get the bytes allocated per request
+ * ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserEncodingBenchmark {
+
+    private final User user = new User(42, "Jane Doe", "jane.doe@example.com");
+
+    @Benchmark
+    public Buffer jacksonPretty() {
+        return Buffer.buffer(Json.encodePrettily(user));
+    }
+
+    @Benchmark
+    public Buffer jacksonCompact() {
+        return Json.encodeToBuffer(user);
+    }
+
+    @Benchmark
+    public Buffer userJsonEncoder() {
+        return UserJsonEncoder.encode(user);
+    }
+}
@@ -0,0 +1,118 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.BlockingUserDatastoreAdapter;
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.execution.BlockingCallExecutor;
+import com.amex.assesment.concusers.execution.ExecutionMode;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.service.DefaultAsyncUserService;
+import com.amex.assesment.concusers.verticles.handlers.UserHandler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RequestBody;
+import io.vertx.ext.web.RoutingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.amex.assesment.concusers.benchmark.Stubs.stub;
+
+/**
+ * {@link UserHandler} request handling against a mocked {@link RoutingContext},
+ * so that body mapping, validation, service calls and JSON encoding are
+ * measured without any network I/O. See {@link Stubs} for why the mocks are
+ * plain proxies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserHandlerBenchmark {
+
+    @Param({"1000"})
+    public int tableSize;
+
+    private UserHandler userHandler;
+    private RoutingContext getContext;
+    private RoutingContext createContext;
+    private RoutingContext listContext;
+    private RoutingContext pageContext;
+    private final AtomicLong nextEmail = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryUserDatastore datastore = new InMemoryUserDatastore();
+        for (int i = 0; i < tableSize; i++) {
+            datastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        nextEmail.set(tableSize);
+
+        userHandler = new UserHandler(new DefaultAsyncUserService(new BlockingUserDatastoreAdapter(
+                datastore, new BlockingCallExecutor(ExecutionMode.EVENT_LOOP))));
+
+        HttpServerResponse response = stub(HttpServerResponse.class, Map.of());
+        HttpServerRequest request = stub(HttpServerRequest.class, Map.of());
+
+        getContext = stub(RoutingContext.class, Map.of(
+                "response", args -> response,
+                "request", args -> request,
+                "pathParam", args -> Long.toString(ThreadLocalRandom.current().nextLong(1, tableSize + 1))));
+
+        RequestBody body = stub(RequestBody.class, Map.of(
+                "buffer", args -> {
+                    long n = nextEmail.getAndIncrement();
+                    return Buffer.buffer("{\"name\":\"User " + n + "\",\"email\":\"user" + n + "@example.com\"}");
+                }));
+        createContext = stub(RoutingContext.class, Map.of(
+                "response", args -> response,
+                "request", args -> request,
+                "body", args -> body));
+
+        listContext = stub(RoutingContext.class, Map.of(
+                "response", args -> response,
+                "request", args -> request));
+
+        HttpServerRequest pageRequest = stub(HttpServerRequest.class, Map.of(
+                "getParam", args -> "limit".equals(args[0]) ? "100" : null));
+        pageContext = stub(RoutingContext.class, Map.of(
+                "response", args -> response,
+                "request", args -> pageRequest));
+    }
+
+    @Benchmark
+    public void getUserById() {
+        userHandler.getUserById(getContext);
+    }
+
+    @Benchmark
+    public void createUser() {
+        userHandler.createUser(createContext);
+    }
+
+    @Benchmark
+    public void getAllUsers() {
+        userHandler.getAllUsers(listContext);
+    }
+
+    @Benchmark
+    public void getUsersPage() {
+        userHandler.getAllUsers(pageContext);
+    }
+}
@@ -0,0 +1,78 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.service.InMemoryUserService;
+import com.amex.assesment.concusers.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Create and update flows through {@link InMemoryUserService}, including the
+ * copy-on-update and the atomic email reservation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private UserService userService;
+    private final AtomicLong nextEmail = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void populate() {
+        userService = new InMemoryUserService(new InMemoryUserDatastore());
+        for (int i = 0; i < tableSize; i++) {
+            userService.createUser(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        nextEmail.set(tableSize);
+    }
+
+    @Benchmark
+    public User createUser() {
+        long n = nextEmail.getAndIncrement();
+        return userService.createUser(new User(0, "User " + n, "user" + n + "@example.com"));
+    }
+
+    @Benchmark
+    public User updateUser() {
+        long id = randomId();
+        // Re-saving the user's own email keeps the table free of conflicts
+        return userService.updateUser(id, new User(0, "Renamed " + id, "user" + (id - 1) + "@example.com"));
+    }
+
+    @Benchmark
+    public User updateUserEmail() {
+        long id = randomId();
+        return userService.updateUserEmail(id, "USER" + (id - 1) + "@example.com");
+    }
+
+    @Benchmark
+    public User getUserById() {
+        return userService.getUserById(randomId());
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, tableSize + 1);
+    }
+}
@@ -0,0 +1,181 @@
+package com.amex.assesment.concusers.benchmark;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.datastore.persistence.Durability;
+import com.amex.assesment.concusers.datastore.persistence.WriteAheadLog;
+import com.amex.assesment.concusers.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cost of persisting writes through the {@link WriteAheadLog}, and of
+ * recovering a datastore from it.
+ */
+public class WalBenchmark {
+
+    /**
+     * Create throughput for each durability mode, with 8 threads writing at
+     * once so that {@link Durability#SYNC} writes can share their fsync.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+    @Threads(8)
+    public static class Write {
+
+        @Param({"NONE", "BATCHED", "SYNC"})
+        public Durability durability;
+
+        private Path directory;
+        private WriteAheadLog log;
+        private UserDatastore userDatastore;
+        private final AtomicLong nextEmail = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            directory = Files.createTempDirectory("wal-bench");
+            log = new WriteAheadLog(directory, durability, 10);
+            userDatastore = new InMemoryUserDatastore(log);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            log.close();
+            deleteRecursively(directory);
+        }
+
+        @Benchmark
+        public Optional<User> saveIfEmailAbsent() {
+            long n = nextEmail.getAndIncrement();
+            return userDatastore.saveIfEmailAbsent(new User(0, "User " + n, "user" + n + "@example.com"));
+        }
+    }
+
+    /**
+     * Time to rebuild a datastore from a log of {@code records} creates, either
+     * replaying every record or loading a snapshot of them.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    @Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+    public static class Recovery {
+
+        @Param({"1000000", "10000000"})
+        public int records;
+
+        @Param({"false", "true"})
+        public boolean snapshot;
+
+        private Path directory;
+        private WriteAheadLog log;
+
+        @Setup(Level.Trial)
+        public void writeLog() throws IOException {
+            directory = Files.createTempDirectory("wal-bench");
+            try (WriteAheadLog writer = new WriteAheadLog(directory, Durability.NONE, 10)) {
+                InMemoryUserDatastore userDatastore = new InMemoryUserDatastore(writer);
+                for (int i = 0; i < records; i++) {
+                    userDatastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+                }
+                if (snapshot) {
+                    userDatastore.checkpoint();
+                }
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void closeLog() {
+            if (log != null) {
+                log.close();
+                log = null;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteLog() throws IOException {
+            deleteRecursively(directory);
+        }
+
+        @Benchmark
+        public UserDatastore recover() {
+            log = new WriteAheadLog(directory, Durability.NONE, 10);
+            return new InMemoryUserDatastore(log);
+        }
+    }
+
+    /**
+     * Time to write a snapshot of {@code records} users.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    @Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+    public static class Checkpoint {
+
+        @Param({"1000000", "10000000"})
+        public int records;
+
+        private Path directory;
+        private WriteAheadLog log;
+        private InMemoryUserDatastore userDatastore;
+
+        @Setup(Level.Trial)
+        public void populate() throws IOException {
+            directory = Files.createTempDirectory("wal-bench");
+            log = new WriteAheadLog(directory, Durability.NONE, 10);
+            userDatastore = new InMemoryUserDatastore(log);
+            for (int i = 0; i < records; i++) {
+                userDatastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            log.close();
+            deleteRecursively(directory);
+        }
+
+        @Benchmark
+        public boolean checkpoint() {
+            return userDatastore.checkpoint();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
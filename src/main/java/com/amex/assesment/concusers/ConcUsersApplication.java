@@ -1,20 +1,72 @@
 package com.amex.assesment.concusers;
 
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import com.amex.assesment.concusers.datastore.partition.PartitionedUserDatastore;
+import com.amex.assesment.concusers.replication.Replicator;
 import com.amex.assesment.concusers.verticles.MainVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
+@EnableConfigurationProperties(ConcUsersProperties.class)
 public class ConcUsersApplication {
 
+    private static final Logger log = LoggerFactory.getLogger(ConcUsersApplication.class);
+
     public static void main(String[] args) {
-        ConfigurableApplicationContext context = SpringApplication.run(ConcUsersApplication.class, args);
-        MainVerticle mainVerticle = context.getBean(MainVerticle.class);
+        start(SpringApplication.run(ConcUsersApplication.class, args))
+                .onFailure(cause -> log.error("Failed to deploy MainVerticle", cause));
+    }
+
+    /**
+     * Starts the HTTP server, and the shards and replicator when enabled, of
+     * an application context on a new Vert.x instance.
+     *
+     * @return The Vert.x instance, once the server listens.
+     */
+    public static Future<Vertx> start(ConfigurableApplicationContext context) {
+        ConcUsersProperties.Http http = context.getBean(ConcUsersProperties.class).getHttp();
+        int instances = http.resolveInstances();
 
-        Vertx vertx = Vertx.vertx();
-        vertx.deployVerticle(mainVerticle);
+        // Make sure every instance gets its own event loop
+        VertxOptions vertxOptions = new VertxOptions()
+                .setEventLoopPoolSize(Math.max(VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE, instances))
+                .setWorkerPoolSize(http.getWorkerPoolSize())
+                .setPreferNativeTransport(http.isNativeTransport());
+        Vertx vertx = Vertx.vertx(vertxOptions);
+        if (http.isNativeTransport() && !vertx.isNativeTransportEnabled()) {
+            Throwable cause = vertx.unavailableNativeTransportCause();
+            log.warn("Native transport unavailable, using NIO: {}",
+                    cause == null ? "not on the classpath, build with -Pepoll" : cause.toString());
+        }
+        if (http.isTcpFastOpen() && !vertx.isNativeTransportEnabled()) {
+            log.warn("TCP Fast Open needs the native transport and is ignored");
+        }
+        // Shards must be up before the first request is routed to them
+        PartitionedUserDatastore partitions = context.getBeanProvider(PartitionedUserDatastore.class).getIfAvailable();
+        Future<Void> shards = partitions == null ? Future.succeededFuture() : partitions.start(vertx);
+        // A replica serves requests while it loads its snapshot, forwarding
+        // them to the primary, so the server does not wait for it
+        Replicator replicator = context.getBeanProvider(Replicator.class).getIfAvailable();
+        if (replicator != null) {
+            replicator.start(vertx).onSuccess(v -> log.info("Replica caught up with the primary at sequence {}",
+                    replicator.appliedSequence()));
+        }
+        // MainVerticle is a prototype bean, so each instance gets its own verticle
+        // while sharing the singleton handler, service and datastore. Vert.x
+        // balances connections across the instances listening on the same port.
+        return shards.compose(v -> vertx.deployVerticle(() -> context.getBean(MainVerticle.class),
+                new DeploymentOptions().setInstances(instances)))
+                .onSuccess(id -> log.info("Deployed {} MainVerticle instance(s)", instances))
+                .map(id -> vertx);
     }
 
 }
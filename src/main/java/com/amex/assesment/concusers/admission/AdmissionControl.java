@@ -0,0 +1,140 @@
+package com.amex.assesment.concusers.admission;
+
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.ext.web.RoutingContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a request is handled, before its body is read: requests
+ * over the rate limit of their client are answered {@code 429 Too Many
+ * Requests} and requests arriving while the server is overloaded
+ * {@code 503 Service Unavailable}, both with a {@code Retry-After} header.
+ * <p>
+ * Clients are identified by the API key header when it holds one of the
+ * configured keys, otherwise by remote address. Every route shares the default limit unless it has one of
+ * its own. The limiters and the shedder are shared by every verticle instance.
+ */
+@Component
+public class AdmissionControl {
+
+    private static final String TOO_MANY_REQUESTS = "Too many requests";
+    private static final String OVERLOADED = "Server is overloaded";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String keyHeader;
+    private final Set<String> apiKeys;
+    private final RateLimiter defaultLimiter;
+    private final Map<String, RateLimiter> routeLimiters;
+    private final LoadShedder shedder;
+
+    @Autowired
+    public AdmissionControl(ConcUsersProperties properties) {
+        ConcUsersProperties.RateLimit rateLimit = properties.getAdmission().getRateLimit();
+        ConcUsersProperties.Shedding shedding = properties.getAdmission().getShedding();
+        this.keyHeader = rateLimit.getKeyHeader();
+        this.apiKeys = Set.copyOf(rateLimit.getApiKeys());
+        this.routeLimiters = new HashMap<>();
+        if (rateLimit.isEnabled()) {
+            this.defaultLimiter = new RateLimiter(rateLimit.getRequestsPerSecond(), rateLimit.getBurst(),
+                    rateLimit.getMaxClients());
+            for (ConcUsersProperties.RouteLimit route : rateLimit.getRoutes()) {
+                routeLimiters.put(key(HttpMethod.valueOf(route.getMethod()), route.getPath()),
+                        new RateLimiter(route.getRequestsPerSecond(), route.getBurst(), rateLimit.getMaxClients()));
+            }
+        } else {
+            this.defaultLimiter = null;
+        }
+        this.shedder = shedding.getMaxInFlight() > 0
+                ? new LoadShedder(shedding.getMaxInFlight(), shedding.getTargetLatencyMs())
+                : null;
+    }
+
+    /**
+     * Creates an admission control with the given default limiter, route
+     * limiters and shedder; the limiters and the shedder can be null. Clients
+     * are identified by {@code keyHeader} only when it holds one of
+     * {@code apiKeys}.
+     */
+    public AdmissionControl(String keyHeader, Set<String> apiKeys, RateLimiter defaultLimiter,
+            Map<String, RateLimiter> routeLimiters, LoadShedder shedder) {
+        this.keyHeader = keyHeader;
+        this.apiKeys = Set.copyOf(apiKeys);
+        this.defaultLimiter = defaultLimiter;
+        this.routeLimiters = new HashMap<>(routeLimiters);
+        this.shedder = shedder;
+    }
+
+    /**
+     * Returns the key of a route in the route limiters, e.g.
+     * {@code GET /users/:id}.
+     */
+    public static String key(HttpMethod method, String path) {
+        return method.name() + ' ' + path;
+    }
+
+    /**
+     * Returns the handler admitting requests to a route, which passes admitted
+     * requests on to the next handler. Long-lived streams should not be
+     * {@code shed}, as they would hold a place in flight for as long as they
+     * are open.
+     */
+    public Handler<RoutingContext> forRoute(HttpMethod method, String path, boolean shed) {
+        RateLimiter limiter = routeLimiters.getOrDefault(key(method, path), defaultLimiter);
+        LoadShedder routeShedder = shed ? shedder : null;
+        if (limiter == null && routeShedder == null) {
+            return RoutingContext::next;
+        }
+        return context -> {
+            long now = System.nanoTime();
+            if (limiter != null) {
+                long wait = limiter.tryAcquire(client(context.request()), now);
+                if (wait > 0) {
+                    reject(context, 429, (wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND, TOO_MANY_REQUESTS);
+                    return;
+                }
+            }
+            if (routeShedder != null) {
+                if (!routeShedder.tryAcquire()) {
+                    reject(context, 503, 1, OVERLOADED);
+                    return;
+                }
+                context.addEndHandler(v -> routeShedder.release(System.nanoTime() - now));
+            }
+            context.next();
+        };
+    }
+
+    private String client(HttpServerRequest request) {
+        return client(keyHeader == null ? null : request.getHeader(keyHeader), request.remoteAddress());
+    }
+
+    /**
+     * Returns the bucket key of a client sending {@code apiKey}, or null, from
+     * {@code address}. Keys that are not configured are ignored: the limiters
+     * only track a bounded number of clients, and a key made up per request
+     * would otherwise always get a full burst and evict the known clients.
+     */
+    String client(String apiKey, SocketAddress address) {
+        if (apiKey != null && apiKeys.contains(apiKey)) {
+            return "key:" + apiKey;
+        }
+        return address == null ? "" : address.hostAddress();
+    }
+
+    private static void reject(RoutingContext context, int status, long retryAfterSeconds, String message) {
+        context.response()
+                .setStatusCode(status)
+                .putHeader("Retry-After", Long.toString(retryAfterSeconds))
+                .end(message);
+    }
+}
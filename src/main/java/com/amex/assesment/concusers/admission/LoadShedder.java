@@ -0,0 +1,64 @@
+package com.amex.assesment.concusers.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rejects requests while the server already has too much work: when
+ * {@code maxInFlight} requests are being handled, or when the recent latency is
+ * above {@code targetLatencyMs} and a quarter of that many are. Rejecting
+ * before any work is done keeps the requests already admitted fast, instead of
+ * letting every request queue behind the event loop.
+ * <p>
+ * The recent latency is an exponentially weighted moving average updated
+ * without synchronization. Concurrent updates can lose a sample, which only
+ * makes the average slightly less smooth.
+ */
+public final class LoadShedder {
+
+    // Weight of a new sample in the moving average, as a shift: 1/8
+    private static final int AVERAGE_SHIFT = 3;
+
+    private final int maxInFlight;
+    private final int maxInFlightWhenSlow;
+    private final long targetLatencyNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long averageLatencyNanos;
+
+    public LoadShedder(int maxInFlight, long targetLatencyMs) {
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightWhenSlow = targetLatencyMs > 0 ? Math.max(1, maxInFlight / 4) : maxInFlight;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, targetLatencyMs));
+    }
+
+    /**
+     * Admits a request, which must then be passed to {@link #release(long)}
+     * once it is answered.
+     *
+     * @return false if the request must be rejected
+     */
+    public boolean tryAcquire() {
+        int limit = targetLatencyNanos > 0 && averageLatencyNanos > targetLatencyNanos
+                ? maxInFlightWhenSlow
+                : maxInFlight;
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases a request admitted by {@link #tryAcquire()} that took
+     * {@code latencyNanos} to answer.
+     */
+    public void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        long average = averageLatencyNanos;
+        averageLatencyNanos = average + ((latencyNanos - average) >> AVERAGE_SHIFT);
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
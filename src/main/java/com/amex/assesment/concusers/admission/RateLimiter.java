@@ -0,0 +1,60 @@
+package com.amex.assesment.concusers.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket per client, allowing {@code requestsPerSecond} on average and
+ * up to {@code burst} requests at once after being idle.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the time at which it
+ * will be full again (the generic cell rate algorithm, equivalent to a token
+ * bucket refilled continuously), so taking a token is one compare-and-set and
+ * clients never contend with each other. Buckets live in a Caffeine cache
+ * bounded to {@code maxClients}; a bucket idle long enough to be full again
+ * holds no information and expires.
+ */
+public final class RateLimiter {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final Cache<String, AtomicLong> buckets;
+
+    public RateLimiter(double requestsPerSecond, int burst, long maxClients) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("A rate limit needs a positive rate and a burst of at least 1");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond));
+        this.capacityNanos = intervalNanos * burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(capacityNanos))
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of {@code client} at time {@code now}, in
+     * {@link System#nanoTime()} units.
+     *
+     * @return zero if the request is allowed, otherwise the time in
+     *         nanoseconds until the client has a token again
+     */
+    public long tryAcquire(String client, long now) {
+        AtomicLong fullAt = buckets.get(client, key -> new AtomicLong(now));
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + intervalNanos;
+            long wait = next - now - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.amex.assesment.concusers.codec;
+
+import com.amex.assesment.concusers.model.EmailUpdateRequest;
+import com.amex.assesment.concusers.model.User;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming JSON decoder dedicated to the request bodies of the write routes.
+ * It reads the body bytes with a single Jackson {@link JsonParser},
+ * instead of building a {@code JsonObject} and then mapping it to a POJO
+ * through {@code ObjectMapper}, which reads every value twice and goes through
+ * reflection.
+ * <p>
+ * It accepts the same documents Jackson databind maps to {@link User} and
+ * {@link EmailUpdateRequest}: unknown fields are rejected, missing ones keep
+ * their default, scalars are coerced to the type of the field ({@code "5"} or
+ * {@code 5.0} for an id, {@code 12} for a name) and objects or arrays in place
+ * of a scalar are rejected. Decoded values are not validated, see
+ * {@link com.amex.assesment.concusers.model.UserConstraints}.
+ */
+public final class UserJsonDecoder {
+
+    static final String INVALID_JSON = "Invalid JSON format";
+    static final String INVALID_USER = "Request body is not a valid user";
+    static final String INVALID_EMAIL_UPDATE = "Request body is not a valid email update";
+    static final String NOT_AN_ARRAY = "Request body must be a JSON array";
+    static final String ITEM_NOT_AN_OBJECT = "Item must be a JSON object";
+    static final String ITEM_NOT_A_USER = "Item is not a valid user";
+
+    // Thread-safe once configured, and caches the symbol tables parsers share
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private UserJsonDecoder() {
+    }
+
+    /**
+     * Decodes a single user object.
+     *
+     * @throws DecodeException if the body is not JSON, or not a user object.
+     */
+    public static User decodeUser(Buffer body) {
+        try (JsonParser parser = parser(body)) {
+            User user = parser.nextToken() == JsonToken.START_OBJECT ? readUser(parser) : null;
+            if (user == null || parser.nextToken() != null) {
+                throw new DecodeException(INVALID_USER);
+            }
+            return user;
+        } catch (JsonParseException e) {
+            throw new DecodeException(INVALID_JSON);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes the body of {@code PUT /users/:id/email}, {@code {"email":...}}.
+     *
+     * @throws DecodeException if the body is not JSON, or not such an object.
+     */
+    public static EmailUpdateRequest decodeEmailUpdate(Buffer body) {
+        try (JsonParser parser = parser(body)) {
+            boolean valid = parser.nextToken() == JsonToken.START_OBJECT;
+            EmailUpdateRequest request = new EmailUpdateRequest();
+            JsonToken token = valid ? parser.nextToken() : null;
+            while (token == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("email") && value.isScalarValue()) {
+                    request.setEmail(value == JsonToken.VALUE_NULL ? null : parser.getText());
+                } else {
+                    parser.skipChildren();
+                    valid = false;
+                }
+                token = parser.nextToken();
+            }
+            if (!valid || parser.nextToken() != null) {
+                throw new DecodeException(INVALID_EMAIL_UPDATE);
+            }
+            return request;
+        } catch (JsonParseException e) {
+            throw new DecodeException(INVALID_JSON);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes a JSON array of user objects, the body of the batch routes. An
+     * item that is not a user does not fail the whole array: it is returned
+     * with the reason instead. Decoding stops after {@code maxItems + 1}
+     * items, so that a caller can reject an oversized array without reading
+     * all of it.
+     *
+     * @throws DecodeException if the body is not JSON, or not an array.
+     */
+    public static List<Item> decodeUsers(Buffer body, int maxItems) {
+        try (JsonParser parser = parser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new DecodeException(NOT_AN_ARRAY);
+            }
+            List<Item> items = new ArrayList<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && items.size() <= maxItems) {
+                if (token == null) {
+                    throw new DecodeException(NOT_AN_ARRAY);
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    items.add(new Item(null, ITEM_NOT_AN_OBJECT));
+                    continue;
+                }
+                User user = readUser(parser);
+                items.add(user != null ? new Item(user, null) : new Item(null, ITEM_NOT_A_USER));
+            }
+            if (items.size() <= maxItems && parser.nextToken() != null) {
+                throw new DecodeException(NOT_AN_ARRAY);
+            }
+            return items;
+        } catch (JsonParseException e) {
+            throw new DecodeException(NOT_AN_ARRAY);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage());
+        }
+    }
+
+    /**
+     * One item of a decoded array: either a user, or the reason the item is
+     * not one.
+     */
+    public record Item(User user, String error) {
+    }
+
+    /**
+     * Reads the fields of the object whose start the parser is on, up to its
+     * end. Returns null if a field is unknown or has a value that cannot be
+     * coerced to its type; the rest of the object is still read, so that the
+     * parser can go on with the next value.
+     */
+    private static User readUser(JsonParser parser) throws IOException {
+        long id = 0;
+        String name = null;
+        String email = null;
+        boolean valid = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!value.isScalarValue()) {
+                parser.skipChildren();
+                valid = false;
+                continue;
+            }
+            switch (field) {
+                case "id" -> {
+                    Long parsed = readLong(parser, value);
+                    if (parsed == null) {
+                        valid = false;
+                    } else {
+                        id = parsed;
+                    }
+                }
+                case "name" -> name = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "email" -> email = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                default -> valid = false;
+            }
+        }
+        return valid ? new User(id, name, email) : null;
+    }
+
+    /**
+     * Coerces a scalar to a long as Jackson does for a {@code long} property:
+     * null is 0, decimals are truncated and strings are parsed. Returns null
+     * for booleans and values out of range.
+     */
+    private static Long readLong(JsonParser parser, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NULL -> 0L;
+            case VALUE_NUMBER_INT ->
+                    parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER ? null : parser.getLongValue();
+            case VALUE_NUMBER_FLOAT -> {
+                double number = parser.getDoubleValue();
+                yield number >= Long.MIN_VALUE && number <= Long.MAX_VALUE ? (long) number : null;
+            }
+            case VALUE_STRING -> {
+                try {
+                    yield Long.parseLong(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    yield null;
+                }
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * Creates a parser over the bytes of the body. They are copied once out of
+     * the buffer, which for request-sized bodies costs far less than the
+     * parsing, and keeps clear of the Netty buffer Vert.x only exposes through
+     * a deprecated accessor. A missing body reads as empty.
+     */
+    private static JsonParser parser(Buffer body) throws IOException {
+        return FACTORY.createParser(body == null ? new byte[0] : body.getBytes());
+    }
+}
@@ -0,0 +1,219 @@
+package com.amex.assesment.concusers.codec;
+
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.List;
+
+/**
+ * Compact JSON encoder dedicated to {@link User}. It writes UTF-8 bytes straight
+ * into a Vert.x {@link Buffer} sized exactly for the output, so encoding a user
+ * allocates only that buffer, instead of going through a generic Jackson
+ * {@code ObjectMapper}, an intermediate {@code String} and a second UTF-8
+ * conversion.
+ * <p>
+ * The output matches what Jackson produces for the same object, without
+ * whitespace: {@code {"id":1,"name":"...","email":"..."}}.
+ */
+public final class UserJsonEncoder {
+
+    private static final byte[] ID_FIELD = ascii("{\"id\":");
+    private static final byte[] NAME_FIELD = ascii(",\"name\":");
+    private static final byte[] EMAIL_FIELD = ascii(",\"email\":");
+    private static final byte[] USERS_FIELD = ascii("{\"users\":[");
+    private static final byte[] NEXT_CURSOR_FIELD = ascii("],\"nextCursor\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private UserJsonEncoder() {
+    }
+
+    /**
+     * Encodes a single user into a new, exactly sized buffer.
+     */
+    public static Buffer encode(User user) {
+        Buffer buffer = Buffer.buffer(encodedLength(user));
+        appendTo(buffer, user);
+        return buffer;
+    }
+
+    /**
+     * Encodes a page of users as {@code {"users":[...],"nextCursor":...}} into a
+     * new, exactly sized buffer.
+     */
+    public static Buffer encode(UserPage page) {
+        List<User> users = page.getUsers();
+        String nextCursor = page.getNextCursor();
+        int length = USERS_FIELD.length + NEXT_CURSOR_FIELD.length + 1
+                + Math.max(0, users.size() - 1)
+                + (nextCursor == null ? NULL.length : stringLength(nextCursor));
+        for (User user : users) {
+            length += encodedLength(user);
+        }
+
+        Buffer buffer = Buffer.buffer(length);
+        buffer.appendBytes(USERS_FIELD);
+        for (int i = 0; i < users.size(); i++) {
+            if (i > 0) {
+                buffer.appendByte((byte) ',');
+            }
+            appendTo(buffer, users.get(i));
+        }
+        buffer.appendBytes(NEXT_CURSOR_FIELD);
+        appendString(buffer, nextCursor);
+        buffer.appendByte((byte) '}');
+        return buffer;
+    }
+
+    /**
+     * Appends the encoding of {@code user} to an existing buffer, e.g. one chunk
+     * of a streamed array.
+     */
+    public static void appendTo(Buffer buffer, User user) {
+        buffer.appendBytes(ID_FIELD);
+        appendLong(buffer, user.getId());
+        buffer.appendBytes(NAME_FIELD);
+        appendString(buffer, user.getName());
+        buffer.appendBytes(EMAIL_FIELD);
+        appendString(buffer, user.getEmail());
+        buffer.appendByte((byte) '}');
+    }
+
+    /**
+     * Returns the exact number of bytes {@link #appendTo} writes for
+     * {@code user}.
+     */
+    public static int encodedLength(User user) {
+        return ID_FIELD.length + longLength(user.getId())
+                + NAME_FIELD.length + stringLength(user.getName())
+                + EMAIL_FIELD.length + stringLength(user.getEmail())
+                + 1;
+    }
+
+    private static void appendLong(Buffer buffer, long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                buffer.appendBytes(ascii(Long.toString(value)));
+                return;
+            }
+            buffer.appendByte((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buffer.appendByte((byte) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+    private static int longLength(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20;
+        }
+        int length = value < 0 ? 2 : 1;
+        value = Math.abs(value);
+        while (value >= 10) {
+            value /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    private static void appendString(Buffer buffer, String value) {
+        if (value == null) {
+            buffer.appendBytes(NULL);
+            return;
+        }
+        buffer.appendByte((byte) '"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                appendAscii(buffer, c);
+            } else if (c < 0x800) {
+                buffer.appendByte((byte) (0xC0 | (c >> 6)));
+                buffer.appendByte((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.appendByte((byte) (0xF0 | (codePoint >> 18)));
+                buffer.appendByte((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.appendByte((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.appendByte((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates cannot be represented in UTF-8
+                buffer.appendByte((byte) '?');
+            } else {
+                buffer.appendByte((byte) (0xE0 | (c >> 12)));
+                buffer.appendByte((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.appendByte((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.appendByte((byte) '"');
+    }
+
+    private static void appendAscii(Buffer buffer, char c) {
+        switch (c) {
+            case '"' -> buffer.appendByte((byte) '\\').appendByte((byte) '"');
+            case '\\' -> buffer.appendByte((byte) '\\').appendByte((byte) '\\');
+            case '\n' -> buffer.appendByte((byte) '\\').appendByte((byte) 'n');
+            case '\r' -> buffer.appendByte((byte) '\\').appendByte((byte) 'r');
+            case '\t' -> buffer.appendByte((byte) '\\').appendByte((byte) 't');
+            case '\b' -> buffer.appendByte((byte) '\\').appendByte((byte) 'b');
+            case '\f' -> buffer.appendByte((byte) '\\').appendByte((byte) 'f');
+            default -> {
+                if (c < 0x20) {
+                    buffer.appendByte((byte) '\\').appendByte((byte) 'u')
+                            .appendByte((byte) '0').appendByte((byte) '0')
+                            .appendByte(HEX[c >> 4]).appendByte(HEX[c & 0xF]);
+                } else {
+                    buffer.appendByte((byte) c);
+                }
+            }
+        }
+    }
+
+    private static int stringLength(String value) {
+        if (value == null) {
+            return NULL.length;
+        }
+        int bytes = 2;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += asciiLength(c);
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes += 1;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static int asciiLength(char c) {
+        return switch (c) {
+            case '"', '\\', '\n', '\r', '\t', '\b', '\f' -> 2;
+            default -> c < 0x20 ? 6 : 1;
+        };
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+}
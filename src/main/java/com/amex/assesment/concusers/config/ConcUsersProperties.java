@@ -0,0 +1,808 @@
+package com.amex.assesment.concusers.config;
+
+import com.amex.assesment.concusers.datastore.ids.IdGeneratorType;
+import com.amex.assesment.concusers.datastore.persistence.Durability;
+import com.amex.assesment.concusers.execution.ExecutionMode;
+import com.amex.assesment.concusers.replication.ReplicationRole;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Application settings bound from the {@code concusers.*} properties.
+ */
+@ConfigurationProperties(prefix = "concusers")
+public class ConcUsersProperties {
+
+    private final Http http = new Http();
+    private final Datastore datastore = new Datastore();
+    private final Persistence persistence = new Persistence();
+    private final Changes changes = new Changes();
+    private final Admission admission = new Admission();
+    private final Partition partition = new Partition();
+    private final Replication replication = new Replication();
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public Datastore getDatastore() {
+        return datastore;
+    }
+
+    public Persistence getPersistence() {
+        return persistence;
+    }
+
+    public Changes getChanges() {
+        return changes;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public Partition getPartition() {
+        return partition;
+    }
+
+    public Replication getReplication() {
+        return replication;
+    }
+
+    public static class Http {
+
+        /**
+         * Port the HTTP server listens on.
+         */
+        private int port = 8080;
+
+        /**
+         * Number of {@code MainVerticle} instances to deploy. Each instance runs
+         * on its own event loop and they all share the same listening port.
+         * Zero or less means one instance per available processor.
+         */
+        private int instances = 0;
+
+        /**
+         * Where blocking data store calls run: inline on the event loop, on
+         * the worker pool or on virtual threads.
+         */
+        private ExecutionMode executionMode = ExecutionMode.EVENT_LOOP;
+
+        /**
+         * Size of the Vert.x worker pool, used by the {@code WORKER} execution
+         * mode.
+         */
+        private int workerPoolSize = 20;
+
+        /**
+         * Whether the server accepts HTTP/2 over plain TCP (h2c), by upgrade
+         * from HTTP/1.1 or with prior knowledge.
+         */
+        private boolean http2ClearText = true;
+
+        /**
+         * Whether responses are sent as soon as they are written (TCP_NODELAY)
+         * rather than held back to be coalesced with later writes.
+         */
+        private boolean tcpNoDelay = true;
+
+        /**
+         * Whether TCP Fast Open is enabled, letting returning clients send their
+         * first request with the SYN. Needs the native transport on Linux.
+         */
+        private boolean tcpFastOpen = false;
+
+        /**
+         * Time, in seconds, after which a connection without any traffic is
+         * closed; 0 keeps idle connections open. Change streams send a
+         * heartbeat every 15 seconds, so a lower value closes idle streams.
+         */
+        private int idleTimeoutSeconds = 0;
+
+        /**
+         * Whether Vert.x uses the native transport (epoll on Linux) when it is
+         * on the classpath, see the {@code epoll} Maven profile. Falls back to
+         * NIO otherwise.
+         */
+        private boolean nativeTransport = false;
+
+        private final Compression compression = new Compression();
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public int getInstances() {
+            return instances;
+        }
+
+        public void setInstances(int instances) {
+            this.instances = instances;
+        }
+
+        public ExecutionMode getExecutionMode() {
+            return executionMode;
+        }
+
+        public void setExecutionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+        }
+
+        public int getWorkerPoolSize() {
+            return workerPoolSize;
+        }
+
+        public void setWorkerPoolSize(int workerPoolSize) {
+            this.workerPoolSize = workerPoolSize;
+        }
+
+        public boolean isHttp2ClearText() {
+            return http2ClearText;
+        }
+
+        public void setHttp2ClearText(boolean http2ClearText) {
+            this.http2ClearText = http2ClearText;
+        }
+
+        public boolean isTcpNoDelay() {
+            return tcpNoDelay;
+        }
+
+        public void setTcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+        }
+
+        public boolean isTcpFastOpen() {
+            return tcpFastOpen;
+        }
+
+        public void setTcpFastOpen(boolean tcpFastOpen) {
+            this.tcpFastOpen = tcpFastOpen;
+        }
+
+        public int getIdleTimeoutSeconds() {
+            return idleTimeoutSeconds;
+        }
+
+        public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+            this.idleTimeoutSeconds = idleTimeoutSeconds;
+        }
+
+        public boolean isNativeTransport() {
+            return nativeTransport;
+        }
+
+        public void setNativeTransport(boolean nativeTransport) {
+            this.nativeTransport = nativeTransport;
+        }
+
+        public Compression getCompression() {
+            return compression;
+        }
+
+        /**
+         * Returns the configured number of instances, or the number of
+         * available processors if none is configured.
+         */
+        public int resolveInstances() {
+            return instances > 0 ? instances : Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    public static class Compression {
+
+        /**
+         * Whether responses are compressed for clients that accept it.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Compression level, from 1 (fastest) to 9 (smallest).
+         */
+        private int level = 6;
+
+        /**
+         * Responses of a known length below this many bytes are sent
+         * uncompressed, as compressing them saves little and costs CPU.
+         * Streamed responses are always compressed.
+         */
+        private int minSize = 1024;
+
+        /**
+         * Whether gzip is offered.
+         */
+        private boolean gzip = true;
+
+        /**
+         * Whether deflate is offered.
+         */
+        private boolean deflate = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public int getMinSize() {
+            return minSize;
+        }
+
+        public void setMinSize(int minSize) {
+            this.minSize = minSize;
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+
+        public void setGzip(boolean gzip) {
+            this.gzip = gzip;
+        }
+
+        public boolean isDeflate() {
+            return deflate;
+        }
+
+        public void setDeflate(boolean deflate) {
+            this.deflate = deflate;
+        }
+    }
+
+    public static class Datastore {
+
+        /**
+         * Which {@code UserDatastore} holds the users: {@code in-memory} for
+         * {@code InMemoryUserDatastore}, one object per user, or {@code compact}
+         * for {@code CompactUserDatastore}, packed records for large tables.
+         */
+        private String type = "in-memory";
+
+        private final Cache cache = new Cache();
+        private final Ids ids = new Ids();
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public Cache getCache() {
+            return cache;
+        }
+
+        public Ids getIds() {
+            return ids;
+        }
+    }
+
+    public static class Ids {
+
+        /**
+         * How ids of new users are generated.
+         */
+        private IdGeneratorType generator = IdGeneratorType.ATOMIC;
+
+        /**
+         * Number of ids leased to a thread at once by the {@code BLOCK}
+         * generator.
+         */
+        private int blockSize = 1024;
+
+        /**
+         * Id of this node, between 0 and 1023, for the {@code SNOWFLAKE}
+         * generator. Nodes sharing users must have different ids.
+         */
+        private int nodeId = 0;
+
+        public IdGeneratorType getGenerator() {
+            return generator;
+        }
+
+        public void setGenerator(IdGeneratorType generator) {
+            this.generator = generator;
+        }
+
+        public int getBlockSize() {
+            return blockSize;
+        }
+
+        public void setBlockSize(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        public int getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(int nodeId) {
+            this.nodeId = nodeId;
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * Whether reads by id go through a {@code CachingUserDatastore} in front
+         * of the datastore. Only worth it when the datastore is slower than a
+         * cache lookup.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Largest number of ids cached, found or missing, before entries are
+         * evicted.
+         */
+        private long maximumSize = 100_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    public static class Persistence {
+
+        /**
+         * Whether user mutations are written to a write-ahead log and replayed on
+         * startup. When disabled the datastore is purely in memory.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory holding the write-ahead log segments.
+         */
+        private String directory = "data/wal";
+
+        /**
+         * How durable a write is before the request completes.
+         */
+        private Durability durability = Durability.BATCHED;
+
+        /**
+         * Longest time, in milliseconds, between two syncs of the log while
+         * {@link Durability#BATCHED} writes are pending.
+         */
+        private long groupCommitIntervalMs = 10;
+
+        /**
+         * Time between two snapshots of the datastore, in milliseconds. A
+         * snapshot replaces the log written before it, bounding restart time.
+         */
+        private long snapshotIntervalMs = 60_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public Durability getDurability() {
+            return durability;
+        }
+
+        public void setDurability(Durability durability) {
+            this.durability = durability;
+        }
+
+        public long getGroupCommitIntervalMs() {
+            return groupCommitIntervalMs;
+        }
+
+        public void setGroupCommitIntervalMs(long groupCommitIntervalMs) {
+            this.groupCommitIntervalMs = groupCommitIntervalMs;
+        }
+
+        public long getSnapshotIntervalMs() {
+            return snapshotIntervalMs;
+        }
+
+        public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+            this.snapshotIntervalMs = snapshotIntervalMs;
+        }
+    }
+
+    public static class Changes {
+
+        /**
+         * Number of mutations kept by the change feed. A consumer further
+         * behind than this has lost events and is told to reload the users.
+         * Zero disables the feed.
+         */
+        private int capacity = 65_536;
+
+        /**
+         * Time, in milliseconds, between two checks for new events while a
+         * change stream is caught up.
+         */
+        private long pollIntervalMs = 50;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public long getPollIntervalMs() {
+            return pollIntervalMs;
+        }
+
+        public void setPollIntervalMs(long pollIntervalMs) {
+            this.pollIntervalMs = pollIntervalMs;
+        }
+    }
+
+    public static class Admission {
+
+        private final RateLimit rateLimit = new RateLimit();
+        private final Shedding shedding = new Shedding();
+
+        public RateLimit getRateLimit() {
+            return rateLimit;
+        }
+
+        public Shedding getShedding() {
+            return shedding;
+        }
+    }
+
+    public static class RateLimit {
+
+        /**
+         * Whether requests are rate limited per client.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Header carrying the API key identifying a client. Requests without it
+         * are limited by remote address.
+         */
+        private String keyHeader = "X-API-Key";
+
+        /**
+         * API keys of the known clients. A request carrying another key is
+         * limited by remote address, as if it had none, so that a client
+         * cannot get a fresh bucket by making up a key.
+         */
+        private List<String> apiKeys = new ArrayList<>();
+
+        /**
+         * Sustained requests per second allowed to a client on every route
+         * without a limit of its own.
+         */
+        private double requestsPerSecond = 100;
+
+        /**
+         * Requests a client can make at once after being idle, on every route
+         * without a limit of its own.
+         */
+        private int burst = 200;
+
+        /**
+         * Largest number of clients tracked per limit. The least recently seen
+         * clients beyond that start over with a full burst.
+         */
+        private long maxClients = 100_000;
+
+        /**
+         * Routes with a limit of their own, replacing the default one.
+         */
+        private List<RouteLimit> routes = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getKeyHeader() {
+            return keyHeader;
+        }
+
+        public void setKeyHeader(String keyHeader) {
+            this.keyHeader = keyHeader;
+        }
+
+        public List<String> getApiKeys() {
+            return apiKeys;
+        }
+
+        public void setApiKeys(List<String> apiKeys) {
+            this.apiKeys = apiKeys;
+        }
+
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public void setRequestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public long getMaxClients() {
+            return maxClients;
+        }
+
+        public void setMaxClients(long maxClients) {
+            this.maxClients = maxClients;
+        }
+
+        public List<RouteLimit> getRoutes() {
+            return routes;
+        }
+
+        public void setRoutes(List<RouteLimit> routes) {
+            this.routes = routes;
+        }
+    }
+
+    public static class RouteLimit {
+
+        /**
+         * HTTP method of the route, e.g. {@code GET}.
+         */
+        private String method;
+
+        /**
+         * Path of the route as registered, e.g. {@code /users/:id}.
+         */
+        private String path;
+
+        /**
+         * Sustained requests per second allowed to a client on this route.
+         */
+        private double requestsPerSecond;
+
+        /**
+         * Requests a client can make at once on this route after being idle.
+         */
+        private int burst = 1;
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public void setRequestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+
+    public static class Shedding {
+
+        /**
+         * Largest number of requests being handled at once, across all
+         * instances. Further requests are answered 503 right away. Zero or less
+         * disables shedding.
+         */
+        private int maxInFlight = 1024;
+
+        /**
+         * Recent request latency, in milliseconds, above which requests are shed
+         * as soon as a quarter of {@code max-in-flight} are being handled. Zero
+         * or less only sheds on {@code max-in-flight}.
+         */
+        private long targetLatencyMs = 1000;
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public long getTargetLatencyMs() {
+            return targetLatencyMs;
+        }
+
+        public void setTargetLatencyMs(long targetLatencyMs) {
+            this.targetLatencyMs = targetLatencyMs;
+        }
+    }
+
+    public static class Partition {
+
+        /**
+         * Whether users are spread over shards reached through the event bus,
+         * instead of being held by the datastore of this process.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of shards users are spread over.
+         */
+        private int shards = 4;
+
+        /**
+         * Points each shard gets on the hash ring. More points spread users
+         * more evenly, at the cost of a larger ring.
+         */
+        private int virtualNodes = 256;
+
+        /**
+         * Time, in milliseconds, to wait for a shard to answer before failing
+         * the request.
+         */
+        private long requestTimeoutMs = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+
+        public long getRequestTimeoutMs() {
+            return requestTimeoutMs;
+        }
+
+        public void setRequestTimeoutMs(long requestTimeoutMs) {
+            this.requestTimeoutMs = requestTimeoutMs;
+        }
+    }
+
+    public static class Replication {
+
+        /**
+         * Part this process plays in replication: none, the primary taking the
+         * writes, or a replica serving reads from a copy of the primary.
+         */
+        private ReplicationRole role = ReplicationRole.NONE;
+
+        /**
+         * Base URL of the primary, for replicas.
+         */
+        private String primaryUrl = "http://localhost:8080";
+
+        /**
+         * Users a replica asks for in each page of the snapshot it starts
+         * from.
+         */
+        private int snapshotPageSize = 1000;
+
+        /**
+         * Time, in milliseconds, a replica waits before reconnecting to the
+         * primary after losing it.
+         */
+        private long reconnectDelayMs = 1000;
+
+        /**
+         * Time, in milliseconds, a replica waits for the primary to answer a
+         * forwarded request.
+         */
+        private long forwardTimeoutMs = 5000;
+
+        public ReplicationRole getRole() {
+            return role;
+        }
+
+        public void setRole(ReplicationRole role) {
+            this.role = role;
+        }
+
+        public String getPrimaryUrl() {
+            return primaryUrl;
+        }
+
+        public void setPrimaryUrl(String primaryUrl) {
+            this.primaryUrl = primaryUrl;
+        }
+
+        public int getSnapshotPageSize() {
+            return snapshotPageSize;
+        }
+
+        public void setSnapshotPageSize(int snapshotPageSize) {
+            this.snapshotPageSize = snapshotPageSize;
+        }
+
+        public long getReconnectDelayMs() {
+            return reconnectDelayMs;
+        }
+
+        public void setReconnectDelayMs(long reconnectDelayMs) {
+            this.reconnectDelayMs = reconnectDelayMs;
+        }
+
+        public long getForwardTimeoutMs() {
+            return forwardTimeoutMs;
+        }
+
+        public void setForwardTimeoutMs(long forwardTimeoutMs) {
+            this.forwardTimeoutMs = forwardTimeoutMs;
+        }
+    }
+}
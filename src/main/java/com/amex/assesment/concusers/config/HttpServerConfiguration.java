@@ -0,0 +1,58 @@
+package com.amex.assesment.concusers.config;
+
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.vertx.core.http.HttpServerOptions;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the {@link HttpServerOptions} every {@code MainVerticle} instance
+ * listens with from {@code concusers.http}. Vert.x copies the options when it
+ * creates a server, so the instances can share them.
+ */
+@Configuration
+public class HttpServerConfiguration {
+
+    // zlib defaults: a 32 KB window and 8 levels of memory
+    private static final int WINDOW_BITS = 15;
+    private static final int MEM_LEVEL = 8;
+
+    @Bean
+    public HttpServerOptions httpServerOptions(ConcUsersProperties properties) {
+        ConcUsersProperties.Http http = properties.getHttp();
+        HttpServerOptions options = new HttpServerOptions()
+                .setPort(http.getPort())
+                .setHttp2ClearTextEnabled(http.isHttp2ClearText())
+                .setTcpNoDelay(http.isTcpNoDelay())
+                .setTcpFastOpen(http.isTcpFastOpen())
+                .setIdleTimeout(http.getIdleTimeoutSeconds())
+                .setIdleTimeoutUnit(TimeUnit.SECONDS);
+
+        ConcUsersProperties.Compression compression = http.getCompression();
+        if (compression.isEnabled()) {
+            int level = compression.getLevel();
+            if (level < 1 || level > 9) {
+                throw new IllegalStateException("concusers.http.compression.level must be between 1 and 9: " + level);
+            }
+            List<CompressionOptions> compressors = new ArrayList<>();
+            if (compression.isGzip()) {
+                compressors.add(StandardCompressionOptions.gzip(level, WINDOW_BITS, MEM_LEVEL));
+            }
+            if (compression.isDeflate()) {
+                compressors.add(StandardCompressionOptions.deflate(level, WINDOW_BITS, MEM_LEVEL));
+            }
+            if (compressors.isEmpty()) {
+                throw new IllegalStateException("Compression is enabled but neither gzip nor deflate is");
+            }
+            options.setCompressionSupported(true)
+                    .setCompressionLevel(level)
+                    .setCompressors(compressors);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,32 @@
+package com.amex.assesment.concusers.config;
+
+import com.amex.assesment.concusers.datastore.ids.AtomicIdGenerator;
+import com.amex.assesment.concusers.datastore.ids.BlockIdGenerator;
+import com.amex.assesment.concusers.datastore.ids.IdGenerator;
+import com.amex.assesment.concusers.datastore.ids.IdGeneratorType;
+import com.amex.assesment.concusers.datastore.ids.SnowflakeIdGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Chooses the {@link IdGenerator} of the datastore from
+ * {@code concusers.datastore.ids.generator}.
+ */
+@Configuration
+public class IdGeneratorConfiguration {
+
+    @Bean
+    public IdGenerator idGenerator(ConcUsersProperties properties) {
+        ConcUsersProperties.Datastore datastore = properties.getDatastore();
+        ConcUsersProperties.Ids ids = datastore.getIds();
+        if (ids.getGenerator() == IdGeneratorType.SNOWFLAKE && "compact".equals(datastore.getType())) {
+            // The compact datastore pages by probing every id in turn
+            throw new IllegalStateException("The compact datastore needs dense ids; use the ATOMIC or BLOCK generator");
+        }
+        return switch (ids.getGenerator()) {
+            case ATOMIC -> new AtomicIdGenerator();
+            case BLOCK -> new BlockIdGenerator(ids.getBlockSize());
+            case SNOWFLAKE -> new SnowflakeIdGenerator(ids.getNodeId());
+        };
+    }
+}
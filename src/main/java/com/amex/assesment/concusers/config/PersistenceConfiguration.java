@@ -0,0 +1,42 @@
+package com.amex.assesment.concusers.config;
+
+import com.amex.assesment.concusers.datastore.persistence.CheckpointScheduler;
+import com.amex.assesment.concusers.datastore.persistence.Checkpointable;
+import com.amex.assesment.concusers.datastore.persistence.MutationLog;
+import com.amex.assesment.concusers.datastore.persistence.WriteAheadLog;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Chooses the {@link MutationLog} the datastore records its writes in: a
+ * {@link WriteAheadLog} when {@code concusers.persistence.enabled} is true,
+ * nothing otherwise. With a write-ahead log, the datastore is also checkpointed
+ * every {@code concusers.persistence.snapshot-interval-ms}.
+ */
+@Configuration
+public class PersistenceConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "concusers.persistence", name = "enabled", havingValue = "true")
+    public MutationLog writeAheadLog(ConcUsersProperties properties) {
+        ConcUsersProperties.Persistence persistence = properties.getPersistence();
+        return new WriteAheadLog(Path.of(persistence.getDirectory()), persistence.getDurability(),
+                persistence.getGroupCommitIntervalMs());
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "concusers.persistence", name = "enabled", havingValue = "true")
+    public CheckpointScheduler checkpointScheduler(Checkpointable datastore, ConcUsersProperties properties) {
+        return new CheckpointScheduler(datastore, properties.getPersistence().getSnapshotIntervalMs());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "concusers.persistence", name = "enabled", havingValue = "false",
+            matchIfMissing = true)
+    public MutationLog noMutationLog() {
+        return MutationLog.NONE;
+    }
+}
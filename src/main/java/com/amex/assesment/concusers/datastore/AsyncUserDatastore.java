@@ -0,0 +1,87 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import io.vertx.core.Future;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Non-blocking counterpart of {@link UserDatastore}. Every operation returns a
+ * Vert.x {@link Future} instead of a value, so a backend that talks to a remote
+ * store can complete it from its own I/O callbacks without holding a thread.
+ * The semantics of each operation are those of the {@link UserDatastore} method
+ * of the same name; a failure of the underlying store is reported as a failed
+ * future.
+ * <p>
+ * Futures complete on the Vert.x context of the caller, if there is one.
+ */
+public interface AsyncUserDatastore {
+
+    /**
+     * @see UserDatastore#save(User)
+     */
+    Future<User> save(User user);
+
+    /**
+     * @see UserDatastore#saveIfEmailAbsent(User)
+     */
+    Future<Optional<User>> saveIfEmailAbsent(User user);
+
+    /**
+     * @see UserDatastore#saveAllIfEmailAbsent(List)
+     */
+    Future<List<Optional<User>>> saveAllIfEmailAbsent(List<User> users);
+
+    /**
+     * @see UserDatastore#findById(long)
+     */
+    Future<Optional<User>> findById(long id);
+
+    /**
+     * @see UserDatastore#findAll()
+     */
+    Future<List<User>> findAll();
+
+    /**
+     * @see UserDatastore#findPage(long, int)
+     */
+    Future<UserPage> findPage(long afterId, int limit);
+
+    /**
+     * @see UserDatastore#search(String, String, SearchCursor, int)
+     */
+    Future<UserPage> search(String namePrefix, String emailDomain, SearchCursor after, int limit);
+
+    /**
+     * @see UserDatastore#existsByEmail(String)
+     */
+    Future<Boolean> existsByEmail(String email);
+
+    /**
+     * @see UserDatastore#existsByEmailAndIdNot(String, long)
+     */
+    Future<Boolean> existsByEmailAndIdNot(String email, long userIdToExclude);
+
+    /**
+     * @see UserDatastore#deleteById(long)
+     */
+    Future<Void> deleteById(long id);
+
+    /**
+     * @see UserDatastore#deleteAllById(List)
+     */
+    Future<List<Boolean>> deleteAllById(List<Long> ids);
+
+    /**
+     * @see UserDatastore#version()
+     */
+    Future<Long> version();
+
+    /**
+     * @see UserDatastore#clear()
+     */
+    Future<Void> clear();
+}
@@ -0,0 +1,101 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.execution.BlockingCallExecutor;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import io.vertx.core.Future;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Exposes a blocking {@link UserDatastore} as an {@link AsyncUserDatastore} by
+ * running each call through a {@link BlockingCallExecutor}. With the in-memory
+ * stores and the {@code EVENT_LOOP} execution mode the calls run inline and the
+ * returned futures are already complete; the other modes move the calls off
+ * the event loop.
+ */
+@Component
+public class BlockingUserDatastoreAdapter implements AsyncUserDatastore {
+
+    private final UserDatastore datastore;
+    private final BlockingCallExecutor executor;
+
+    public BlockingUserDatastoreAdapter(UserDatastore datastore, BlockingCallExecutor executor) {
+        this.datastore = datastore;
+        this.executor = executor;
+    }
+
+    @Override
+    public Future<User> save(User user) {
+        return executor.execute(() -> datastore.save(user));
+    }
+
+    @Override
+    public Future<Optional<User>> saveIfEmailAbsent(User user) {
+        return executor.execute(() -> datastore.saveIfEmailAbsent(user));
+    }
+
+    @Override
+    public Future<List<Optional<User>>> saveAllIfEmailAbsent(List<User> users) {
+        return executor.execute(() -> datastore.saveAllIfEmailAbsent(users));
+    }
+
+    @Override
+    public Future<Optional<User>> findById(long id) {
+        return executor.execute(() -> datastore.findById(id));
+    }
+
+    @Override
+    public Future<List<User>> findAll() {
+        return executor.execute(datastore::findAll);
+    }
+
+    @Override
+    public Future<UserPage> findPage(long afterId, int limit) {
+        return executor.execute(() -> datastore.findPage(afterId, limit));
+    }
+
+    @Override
+    public Future<UserPage> search(String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        return executor.execute(() -> datastore.search(namePrefix, emailDomain, after, limit));
+    }
+
+    @Override
+    public Future<Boolean> existsByEmail(String email) {
+        return executor.execute(() -> datastore.existsByEmail(email));
+    }
+
+    @Override
+    public Future<Boolean> existsByEmailAndIdNot(String email, long userIdToExclude) {
+        return executor.execute(() -> datastore.existsByEmailAndIdNot(email, userIdToExclude));
+    }
+
+    @Override
+    public Future<Void> deleteById(long id) {
+        return executor.execute(() -> {
+            datastore.deleteById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public Future<List<Boolean>> deleteAllById(List<Long> ids) {
+        return executor.execute(() -> datastore.deleteAllById(ids));
+    }
+
+    @Override
+    public Future<Long> version() {
+        return executor.execute(datastore::version);
+    }
+
+    @Override
+    public Future<Void> clear() {
+        return executor.execute(() -> {
+            datastore.clear();
+            return null;
+        });
+    }
+}
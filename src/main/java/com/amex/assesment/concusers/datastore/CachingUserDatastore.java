@@ -0,0 +1,194 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of users by id in front of another {@link UserDatastore},
+ * for when that datastore is slower than a cache lookup. Enabled with
+ * {@code concusers.datastore.cache.enabled=true}, in which case it is the
+ * datastore every other component sees.
+ * <p>
+ * Entries are held in a Caffeine cache bounded to
+ * {@code concusers.datastore.cache.maximum-size} entries, whose W-TinyLFU
+ * eviction keeps frequently read users over ones read once. Ids that are not
+ * found are cached too, as empty entries, so repeated lookups of unknown ids do
+ * not reach the datastore either.
+ * <p>
+ * Every write goes to the datastore first and then invalidates the ids it
+ * touched. Invalidating an id waits for a load of that id in progress, so a
+ * read racing with a write cannot leave the value from before the write in the
+ * cache. This only holds for writes made through this class: the datastore
+ * must not be modified behind its back. Other reads than by id are passed
+ * through. Mutations replicated from a primary go through
+ * {@link #replicable()}, which is only available when the datastore behind it
+ * is {@link Replicable}.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(prefix = "concusers.datastore.cache", name = "enabled", havingValue = "true")
+public class CachingUserDatastore implements UserDatastore {
+
+    private final UserDatastore delegate;
+    private final Cache<Long, Optional<User>> cache;
+
+    /**
+     * Wraps {@code delegate}, the datastore selected by
+     * {@code concusers.datastore.type}.
+     */
+    @Autowired
+    public CachingUserDatastore(UserDatastore delegate, ConcUsersProperties properties) {
+        this(delegate, properties.getDatastore().getCache().getMaximumSize());
+    }
+
+    public CachingUserDatastore(UserDatastore delegate, long maximumSize) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public User save(User user) {
+        User saved = delegate.save(user);
+        cache.invalidate(saved.getId());
+        return saved;
+    }
+
+    @Override
+    public Optional<User> saveIfEmailAbsent(User user) {
+        Optional<User> saved = delegate.saveIfEmailAbsent(user);
+        saved.ifPresent(u -> cache.invalidate(u.getId()));
+        return saved;
+    }
+
+    @Override
+    public List<Optional<User>> saveAllIfEmailAbsent(List<User> users) {
+        List<Optional<User>> saved = delegate.saveAllIfEmailAbsent(users);
+        List<Long> ids = new ArrayList<>(saved.size());
+        for (Optional<User> user : saved) {
+            user.ifPresent(u -> ids.add(u.getId()));
+        }
+        cache.invalidateAll(ids);
+        return saved;
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        return cache.get(id, delegate::findById);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public UserPage findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public UserPage search(String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        return delegate.search(namePrefix, emailDomain, after, limit);
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return delegate.existsByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmailAndIdNot(String email, long userIdToExclude) {
+        return delegate.existsByEmailAndIdNot(email, userIdToExclude);
+    }
+
+    @Override
+    public void deleteById(long id) {
+        delegate.deleteById(id);
+        cache.invalidate(id);
+    }
+
+    @Override
+    public List<Boolean> deleteAllById(List<Long> ids) {
+        List<Boolean> deleted = delegate.deleteAllById(ids);
+        cache.invalidateAll(ids);
+        return deleted;
+    }
+
+    @Override
+    public long version() {
+        return delegate.version();
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns a view of this cache that applies mutations replicated from a
+     * primary to the datastore behind it and invalidates the ids they touch,
+     * or empty if that datastore is not {@link Replicable}.
+     */
+    public Optional<Replicable> replicable() {
+        if (!(delegate instanceof Replicable target)) {
+            return Optional.empty();
+        }
+        return Optional.of(new Replicable() {
+            @Override
+            public void replicateWrite(User user) {
+                target.replicateWrite(user);
+                cache.invalidate(user.getId());
+            }
+
+            @Override
+            public void replicateDelete(long id) {
+                target.replicateDelete(id);
+                cache.invalidate(id);
+            }
+
+            @Override
+            public void replicateClear() {
+                target.replicateClear();
+                cache.invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts since the cache was created.
+     * Lookups of unknown ids answered from the cache count as hits.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Returns the approximate number of cached entries, found or missing.
+     */
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,894 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.datastore.ids.AtomicIdGenerator;
+import com.amex.assesment.concusers.datastore.ids.IdGenerator;
+import com.amex.assesment.concusers.datastore.persistence.Checkpointable;
+import com.amex.assesment.concusers.datastore.persistence.LogRecord;
+import com.amex.assesment.concusers.datastore.persistence.MutationLog;
+import com.amex.assesment.concusers.datastore.persistence.WriteEpochs;
+import com.amex.assesment.concusers.metrics.LatencyHistogram;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * A thread-safe, in-memory {@link UserDatastore} that stores users in packed
+ * form instead of as objects, for large tables.
+ * <p>
+ * Users are spread over lock-striped open-addressing tables keyed by primitive
+ * {@code long} ids. Each user is a single record of UTF-8 bytes appended to a
+ * byte slab owned by its stripe, so a user costs its id, a reference into the
+ * slab, its version and its encoded name and email, with no per-user object,
+ * boxed key or map node. {@link User} objects are only created when users are read.
+ * <p>
+ * Emails are indexed by a 64-bit hash of their normalized (lower-cased) form in
+ * a second set of striped tables. A hash can be shared by several users, so
+ * every match is confirmed against the stored email. Writers lock the email
+ * stripes they touch before the user stripe, which keeps the check for a
+ * duplicate email and the write atomic without a global lock.
+ * <p>
+ * Pages are served by probing ids in order from the cursor, which is
+ * proportional to the page size plus the number of deleted ids skipped; ids are
+ * expected to be dense, as handed out by the {@code ATOMIC} and {@code BLOCK}
+ * id generators. A page stops early after skipping {@value #MAX_SKIPPED_IDS}
+ * ids, with a cursor to carry on from, so a long run of deleted ids never makes
+ * a single request scan up to the highest id.
+ * <p>
+ * Searches go through the same {@link SearchIndex} as in
+ * {@link InMemoryUserDatastore}, updated under the lock of the user stripe, so
+ * a page never scans the table. Unlike the records, its entries are objects,
+ * a few per user.
+ * <p>
+ * Mutations are recorded in a {@link MutationLog} and checkpoints work as in
+ * {@link InMemoryUserDatastore}.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "concusers.datastore", name = "type", havingValue = "compact")
+public class CompactUserDatastore implements UserDatastore, Checkpointable, DatastoreStats {
+
+    private static final int STRIPES = 128;
+    private static final int STRIPE_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(STRIPES);
+    // Ids without a user a page probes before it stops early
+    private static final int MAX_SKIPPED_IDS = 1024;
+
+    private final UserStripe[] userStripes = new UserStripe[STRIPES];
+    private final EmailStripe[] emailStripes = new EmailStripe[STRIPES];
+    private final SearchIndex searchIndex = new SearchIndex();
+    // Hands out the ids of new users
+    private final IdGenerator idGenerator;
+    // Highest id stored, the end of the range scanned by pages and streams
+    private final AtomicLong maxId = new AtomicLong();
+    // Version of the whole table, bumped after every write
+    private final AtomicLong version = new AtomicLong();
+    private final MutationLog log;
+    private final ChangeFeed changes;
+    private final WriteEpochs epochs = new WriteEpochs();
+    private final LatencyHistogram emailChecks = new LatencyHistogram();
+
+    public CompactUserDatastore() {
+        this(MutationLog.NONE);
+    }
+
+    public CompactUserDatastore(MutationLog log) {
+        this(log, ChangeFeed.NONE);
+    }
+
+    /**
+     * Creates a datastore recording its mutations in {@code log}, after
+     * restoring the users already recorded there, and publishing them on
+     * {@code changes} while the stripe of the user is locked.
+     */
+    public CompactUserDatastore(MutationLog log, ChangeFeed changes) {
+        this(log, changes, new AtomicIdGenerator());
+    }
+
+    /**
+     * Creates a datastore as above, taking the ids of new users from
+     * {@code idGenerator}.
+     */
+    @Autowired
+    public CompactUserDatastore(MutationLog log, ChangeFeed changes, IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        for (int i = 0; i < STRIPES; i++) {
+            userStripes[i] = new UserStripe();
+            emailStripes[i] = new EmailStripe(i);
+        }
+        this.log = log;
+        this.changes = changes;
+        log.replay(this::apply);
+        for (UserStripe stripe : userStripes) {
+            stripe.forEachEmail((id, email) -> {
+                long hash = emailHash(normalize(email));
+                emailStripeFor(hash).add(hash, id);
+            });
+        }
+        streamAll().forEach(user -> searchIndex.update(null, user));
+    }
+
+    @Override
+    public User save(User user) {
+        return write(user.getId() == 0 ? user.withId(idGenerator.nextId()) : user, false, true);
+    }
+
+    @Override
+    public Optional<User> saveIfEmailAbsent(User user) {
+        boolean isNew = user.getId() == 0;
+        return Optional.ofNullable(write(isNew ? user.withId(idGenerator.nextId()) : user, true, isNew));
+    }
+
+    @Override
+    public List<Optional<User>> saveAllIfEmailAbsent(List<User> usersToSave) {
+        List<Optional<User>> results = new ArrayList<>(usersToSave.size());
+        for (User user : usersToSave) {
+            results.add(saveIfEmailAbsent(user));
+        }
+        return results;
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        return Optional.ofNullable(id == 0 ? null : userStripeFor(id).get(id));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return streamAll().collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public UserPage findPage(long afterId, int limit) {
+        List<User> page = new ArrayList<>(limit);
+        long last = maxId.get();
+        long id = Math.max(afterId, 0);
+        int skipped = 0;
+        while (page.size() < limit && id < last && skipped < MAX_SKIPPED_IDS) {
+            User user = userStripeFor(++id).get(id);
+            if (user != null) {
+                page.add(user);
+            } else {
+                skipped++;
+            }
+        }
+        // Once out of ids to skip, assume more users follow rather than look further
+        String nextCursor = null;
+        for (long next = id + 1; next <= last; next++) {
+            if (skipped++ >= MAX_SKIPPED_IDS || userStripeFor(next).contains(next)) {
+                nextCursor = Long.toString(id);
+                break;
+            }
+        }
+        return new UserPage(page, nextCursor);
+    }
+
+    @Override
+    public UserPage search(String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        return searchIndex.search(namePrefix, emailDomain, after, limit, id -> userStripeFor(id).get(id));
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        return LongStream.rangeClosed(1, maxId.get())
+                .mapToObj(id -> userStripeFor(id).get(id))
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return existsByEmailAndIdNot(email, 0);
+    }
+
+    @Override
+    public boolean existsByEmailAndIdNot(String email, long userIdToExclude) {
+        if (email == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean exists = ownerOf(normalize(email), userIdToExclude) != 0;
+        emailChecks.record(System.nanoTime() - start);
+        return exists;
+    }
+
+    @Override
+    public void deleteById(long id) {
+        delete(id);
+    }
+
+    @Override
+    public List<Boolean> deleteAllById(List<Long> idsToDelete) {
+        List<Boolean> results = new ArrayList<>(idsToDelete.size());
+        for (long id : idsToDelete) {
+            results.add(delete(id));
+        }
+        return results;
+    }
+
+    @Override
+    public void clear() {
+        CompletableFuture<Void> logged;
+        int writeEpoch = epochs.begin();
+        long[] emailStamps = new long[STRIPES];
+        long[] userStamps = new long[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            emailStamps[i] = emailStripes[i].lock.writeLock();
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            userStamps[i] = userStripes[i].lock.writeLock();
+        }
+        try {
+            logged = log.append(LogRecord.clear());
+            reset();
+            changes.publishClear();
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) {
+                userStripes[i].lock.unlockWrite(userStamps[i]);
+            }
+            for (int i = STRIPES - 1; i >= 0; i--) {
+                emailStripes[i].lock.unlockWrite(emailStamps[i]);
+            }
+            epochs.end(writeEpoch);
+        }
+        version.incrementAndGet();
+        logged.join();
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (UserStripe stripe : userStripes) {
+            // Read without the lock; a stale count is fine for statistics
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    @Override
+    public long lastId() {
+        return idGenerator.highWaterMark();
+    }
+
+    @Override
+    public LatencyHistogram emailCheckLatency() {
+        return emailChecks;
+    }
+
+    /**
+     * Writes a snapshot of the table to the log, replacing the records logged
+     * so far. Writes are not blocked while the snapshot is written.
+     *
+     * @return false if the log does not support checkpoints.
+     */
+    @Override
+    public synchronized boolean checkpoint() {
+        if (!log.supportsCheckpoints()) {
+            return false;
+        }
+        CompletableFuture<Long> checkpoint = log.beginCheckpoint();
+        epochs.advance();
+        log.writeCheckpoint(checkpoint.join(), idGenerator.highWaterMark(), streamAll().iterator());
+        return true;
+    }
+
+    /**
+     * Stores {@code user}, moving its email index entry if the email changed.
+     *
+     * @param checkEmail Whether to refuse the write if another user owns the
+     *                   email, or if the user has a version and the stored
+     *                   record is not at that version.
+     * @param mayCreate  Whether the write may store a new record, rather than
+     *                   only replace one; a user deleted meanwhile is then not
+     *                   brought back.
+     * @return The user as stored, or null if the write was refused.
+     */
+    private User write(User user, boolean checkEmail, boolean mayCreate) {
+        long id = user.getId();
+        String normalized = user.getEmail() == null ? null : normalize(user.getEmail());
+        long hash = normalized == null ? 0 : emailHash(normalized);
+        UserStripe userStripe = userStripeFor(id);
+        CompletableFuture<Void> logged;
+        User written;
+        int writeEpoch = epochs.begin();
+        try {
+            while (true) {
+                String previous = normalizeOrNull(userStripe.getEmail(id));
+                long previousHash = previous == null ? 0 : emailHash(previous);
+                boolean moved = !Objects.equals(previous, normalized);
+                EmailStripe first = null;
+                EmailStripe second = null;
+                if (moved) {
+                    EmailStripe from = previous == null ? null : emailStripeFor(previousHash);
+                    EmailStripe to = normalized == null ? null : emailStripeFor(hash);
+                    // Lock email stripes in a fixed order to avoid deadlocks
+                    first = from == null || (to != null && to.index < from.index) ? to : from;
+                    second = first == from ? to : from;
+                    if (second == first) {
+                        second = null;
+                    }
+                }
+                long firstStamp = first == null ? 0 : first.lock.writeLock();
+                long secondStamp = second == null ? 0 : second.lock.writeLock();
+                try {
+                    if (checkEmail && moved && normalized != null) {
+                        long start = System.nanoTime();
+                        boolean taken = ownerOf(hash, normalized, id) != 0;
+                        emailChecks.record(System.nanoTime() - start);
+                        if (taken) {
+                            return null;
+                        }
+                    }
+                    long userStamp = userStripe.lock.writeLock();
+                    try {
+                        // The email may have changed since it was read; start over then
+                        if (!Objects.equals(previous, normalizeOrNull(userStripe.getEmailLocked(id)))) {
+                            continue;
+                        }
+                        int current = userStripe.versionLocked(id);
+                        if (checkEmail && user.getVersion() != 0 && current != user.getVersion()) {
+                            return null;
+                        }
+                        if (current == 0 && !mayCreate) {
+                            return null;
+                        }
+                        if (moved) {
+                            if (previous != null) {
+                                emailStripeFor(previousHash).remove(previousHash, id);
+                            }
+                            if (normalized != null) {
+                                emailStripeFor(hash).add(hash, id);
+                            }
+                        }
+                        User existing = current == 0 ? null : userStripe.getLocked(id);
+                        written = new User(id, user.getName(), user.getEmail(), current + 1);
+                        userStripe.put(id, current + 1, written.getName(), written.getEmail());
+                        searchIndex.update(existing, written);
+                        logged = log.append(LogRecord.put(written));
+                        changes.publishWrite(written, current == 0, moved);
+                    } finally {
+                        userStripe.lock.unlockWrite(userStamp);
+                    }
+                } finally {
+                    if (second != null) {
+                        second.lock.unlockWrite(secondStamp);
+                    }
+                    if (first != null) {
+                        first.lock.unlockWrite(firstStamp);
+                    }
+                }
+                break;
+            }
+        } finally {
+            epochs.end(writeEpoch);
+        }
+        maxId.accumulateAndGet(id, Math::max);
+        version.incrementAndGet();
+        logged.join();
+        return written;
+    }
+
+    private boolean delete(long id) {
+        if (id == 0) {
+            return false;
+        }
+        UserStripe userStripe = userStripeFor(id);
+        CompletableFuture<Void> logged;
+        int writeEpoch = epochs.begin();
+        try {
+            while (true) {
+                if (!userStripe.contains(id)) {
+                    return false;
+                }
+                String previous = normalizeOrNull(userStripe.getEmail(id));
+                long previousHash = previous == null ? 0 : emailHash(previous);
+                EmailStripe emailStripe = previous == null ? null : emailStripeFor(previousHash);
+                long emailStamp = emailStripe == null ? 0 : emailStripe.lock.writeLock();
+                try {
+                    long userStamp = userStripe.lock.writeLock();
+                    try {
+                        if (!userStripe.containsLocked(id)) {
+                            return false;
+                        }
+                        if (!Objects.equals(previous, normalizeOrNull(userStripe.getEmailLocked(id)))) {
+                            continue;
+                        }
+                        if (emailStripe != null) {
+                            emailStripe.remove(previousHash, id);
+                        }
+                        searchIndex.remove(userStripe.getLocked(id));
+                        userStripe.remove(id);
+                        logged = log.append(LogRecord.delete(id));
+                        changes.publishDelete(id);
+                    } finally {
+                        userStripe.lock.unlockWrite(userStamp);
+                    }
+                } finally {
+                    if (emailStripe != null) {
+                        emailStripe.lock.unlockWrite(emailStamp);
+                    }
+                }
+                break;
+            }
+        } finally {
+            epochs.end(writeEpoch);
+        }
+        version.incrementAndGet();
+        logged.join();
+        return true;
+    }
+
+    /**
+     * Returns the id of a user other than {@code excludeId} whose email
+     * normalizes to {@code normalized}, or 0 if there is none.
+     */
+    private long ownerOf(String normalized, long excludeId) {
+        long hash = emailHash(normalized);
+        EmailStripe stripe = emailStripeFor(hash);
+        long stamp = stripe.lock.readLock();
+        try {
+            return ownerOf(hash, normalized, excludeId);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Same as {@link #ownerOf(String, long)}, for a caller already holding the
+     * email stripe of {@code hash}. Reads the candidates' stored emails, which
+     * is safe because their index entries cannot move while that stripe is
+     * held.
+     */
+    private long ownerOf(long hash, String normalized, long excludeId) {
+        EmailStripe stripe = emailStripeFor(hash);
+        long[] slots = stripe.slots;
+        int mask = slots.length / 2 - 1;
+        for (int i = (int) hash & mask; slots[2 * i + 1] != 0; i = (i + 1) & mask) {
+            long id = slots[2 * i + 1];
+            if (slots[2 * i] == hash && id != excludeId
+                    && normalized.equals(normalizeOrNull(userStripeFor(id).getEmail(id)))) {
+                return id;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Applies a record read back from the log to the user stripes, without
+     * logging it again; the email index is built once the replay is over.
+     */
+    private void apply(LogRecord record) {
+        switch (record.getType()) {
+            case PUT -> {
+                User user = record.toUser();
+                UserStripe stripe = userStripeFor(user.getId());
+                stripe.put(user.getId(), stripe.versionLocked(user.getId()) + 1, user.getName(), user.getEmail());
+                idGenerator.advancePast(user.getId());
+                maxId.accumulateAndGet(user.getId(), Math::max);
+            }
+            case DELETE -> userStripeFor(record.getId()).remove(record.getId());
+            case CLEAR -> reset();
+            case SEQUENCE -> idGenerator.advancePast(record.getId());
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            userStripes[i].clear();
+            emailStripes[i].clear();
+        }
+        searchIndex.clear();
+        idGenerator.reset();
+        maxId.set(0);
+    }
+
+    private UserStripe userStripeFor(long id) {
+        return userStripes[(int) (mix(id) >>> STRIPE_SHIFT)];
+    }
+
+    private EmailStripe emailStripeFor(long hash) {
+        return emailStripes[(int) (hash >>> STRIPE_SHIFT)];
+    }
+
+    private static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizeOrNull(String email) {
+        return email == null ? null : normalize(email);
+    }
+
+    private static long emailHash(String normalized) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash = (hash ^ normalized.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3 finalizer, spreading keys over both the stripe (high bits)
+     * and the slot within the stripe (low bits).
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    @FunctionalInterface
+    private interface EmailConsumer {
+        void accept(long id, String email);
+    }
+
+    /**
+     * Open-addressing table with linear probing from id to record, plus the
+     * slab holding the records. {@code slots[2 * i]} is the id in slot
+     * {@code i}, 0 when the slot is free, and {@code slots[2 * i + 1]} the
+     * record's offset in the slab (high half) and length (low half). A record is
+     * {@code [int version][int nameLength][name][int emailLength][email]}, with a
+     * length of -1 for null.
+     * <p>
+     * Writes hold the write lock. Reads first try an optimistic read and fall
+     * back to the read lock if a write interfered.
+     */
+    private static final class UserStripe {
+
+        final StampedLock lock = new StampedLock();
+        long[] slots = new long[2 * 16];
+        int size;
+        byte[] slab = new byte[1024];
+        int slabUsed;
+        int slabGarbage;
+
+        User get(long id) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    User user = decode(id);
+                    if (lock.validate(stamp)) {
+                        return user;
+                    }
+                } catch (RuntimeException e) {
+                    // Read a table being resized or compacted; retry under the lock
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return decode(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        User getLocked(long id) {
+            return decode(id);
+        }
+
+        boolean contains(long id) {
+            long stamp = lock.readLock();
+            try {
+                return containsLocked(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean containsLocked(long id) {
+            return find(slots, id) >= 0;
+        }
+
+        String getEmail(long id) {
+            long stamp = lock.readLock();
+            try {
+                return getEmailLocked(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        String getEmailLocked(long id) {
+            long[] table = slots;
+            int slot = find(table, id);
+            if (slot < 0) {
+                return null;
+            }
+            int offset = (int) (table[2 * slot + 1] >>> 32) + Integer.BYTES;
+            int nameLength = readInt(slab, offset);
+            return readString(slab, offset + Integer.BYTES + Math.max(0, nameLength));
+        }
+
+        /**
+         * Returns the version of the record of {@code id}, or 0 if there is none.
+         * The caller must hold the lock.
+         */
+        int versionLocked(long id) {
+            int slot = find(slots, id);
+            return slot < 0 ? 0 : readInt(slab, (int) (slots[2 * slot + 1] >>> 32));
+        }
+
+        private User decode(long id) {
+            long[] table = slots;
+            byte[] bytes = slab;
+            int slot = find(table, id);
+            if (slot < 0) {
+                return null;
+            }
+            int offset = (int) (table[2 * slot + 1] >>> 32);
+            int version = readInt(bytes, offset);
+            offset += Integer.BYTES;
+            String name = readString(bytes, offset);
+            int nameLength = readInt(bytes, offset);
+            String email = readString(bytes, offset + Integer.BYTES + Math.max(0, nameLength));
+            return new User(id, name, email, version);
+        }
+
+        void put(long id, int version, String name, String email) {
+            byte[] nameBytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+            byte[] emailBytes = email == null ? null : email.getBytes(StandardCharsets.UTF_8);
+            int length = 3 * Integer.BYTES + (nameBytes == null ? 0 : nameBytes.length)
+                    + (emailBytes == null ? 0 : emailBytes.length);
+            int slot = find(slots, id);
+            if (slot >= 0) {
+                slabGarbage += (int) slots[2 * slot + 1];
+            } else if (size + 1 > slots.length / 2 * 3 / 4) {
+                resize(slots.length);
+            }
+            int offset = allocate(length);
+            writeInt(slab, offset, version);
+            writeBytes(offset + Integer.BYTES, nameBytes);
+            writeBytes(offset + 2 * Integer.BYTES + (nameBytes == null ? 0 : nameBytes.length), emailBytes);
+            if (slot < 0) {
+                slot = insertionSlot(slots, id);
+                slots[2 * slot] = id;
+                size++;
+            }
+            slots[2 * slot + 1] = (long) offset << 32 | length;
+        }
+
+        void remove(long id) {
+            int slot = find(slots, id);
+            if (slot < 0) {
+                return;
+            }
+            slabGarbage += (int) slots[2 * slot + 1];
+            removeSlot(slots, slot, CompactUserDatastore::mix);
+            size--;
+        }
+
+        void clear() {
+            slots = new long[2 * 16];
+            size = 0;
+            slab = new byte[1024];
+            slabUsed = 0;
+            slabGarbage = 0;
+        }
+
+        void forEachEmail(EmailConsumer consumer) {
+            for (int slot = 0; slot < slots.length / 2; slot++) {
+                long id = slots[2 * slot];
+                if (id != 0) {
+                    int offset = (int) (slots[2 * slot + 1] >>> 32) + Integer.BYTES;
+                    int nameLength = readInt(slab, offset);
+                    String email = readString(slab, offset + Integer.BYTES + Math.max(0, nameLength));
+                    if (email != null) {
+                        consumer.accept(id, email);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reserves {@code length} bytes at the end of the slab. When the slab is
+         * full it is compacted if at least half of it is garbage, and grown
+         * by half otherwise.
+         */
+        private int allocate(int length) {
+            if (slabUsed + length > slab.length) {
+                long live = slabUsed - slabGarbage + (long) length;
+                // Grow by half rather than double: slab slack is paid for every user
+                long capacity = slabGarbage * 2L >= slabUsed ? live * 3 / 2 : Math.max(live, slab.length) * 3 / 2;
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    capacity = Integer.MAX_VALUE - 8;
+                    if (live > capacity) {
+                        throw new IllegalStateException("User stripe is full");
+                    }
+                }
+                compact((int) capacity);
+            }
+            int offset = slabUsed;
+            slabUsed += length;
+            return offset;
+        }
+
+        /**
+         * Copies the live records into a new slab of {@code capacity} bytes.
+         */
+        private void compact(int capacity) {
+            byte[] compacted = new byte[capacity];
+            int used = 0;
+            for (int slot = 0; slot < slots.length / 2; slot++) {
+                if (slots[2 * slot] != 0) {
+                    long ref = slots[2 * slot + 1];
+                    int length = (int) ref;
+                    System.arraycopy(slab, (int) (ref >>> 32), compacted, used, length);
+                    slots[2 * slot + 1] = (long) used << 32 | length;
+                    used += length;
+                }
+            }
+            slab = compacted;
+            slabUsed = used;
+            slabGarbage = 0;
+        }
+
+        private void resize(int length) {
+            long[] table = new long[length * 2];
+            for (int slot = 0; slot < slots.length / 2; slot++) {
+                long id = slots[2 * slot];
+                if (id != 0) {
+                    int target = insertionSlot(table, id);
+                    table[2 * target] = id;
+                    table[2 * target + 1] = slots[2 * slot + 1];
+                }
+            }
+            slots = table;
+        }
+
+        private void writeBytes(int offset, byte[] bytes) {
+            writeInt(slab, offset, bytes == null ? -1 : bytes.length);
+            if (bytes != null) {
+                System.arraycopy(bytes, 0, slab, offset + Integer.BYTES, bytes.length);
+            }
+        }
+
+        private static int find(long[] table, long id) {
+            int mask = table.length / 2 - 1;
+            for (int i = (int) mix(id) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long key = table[2 * i];
+                if (key == id) {
+                    return i;
+                }
+                if (key == 0) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private static int insertionSlot(long[] table, long id) {
+            int mask = table.length / 2 - 1;
+            int i = (int) mix(id) & mask;
+            while (table[2 * i] != 0) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Open-addressing table with linear probing from email hash to user id.
+     * {@code slots[2 * i]} is the hash and {@code slots[2 * i + 1]} the id, 0
+     * when the slot is free. The same hash can appear in several slots.
+     */
+    private static final class EmailStripe {
+
+        final StampedLock lock = new StampedLock();
+        final int index;
+        long[] slots = new long[2 * 16];
+        int size;
+
+        EmailStripe(int index) {
+            this.index = index;
+        }
+
+        void add(long hash, long id) {
+            if (size + 1 > slots.length / 2 * 3 / 4) {
+                long[] table = new long[slots.length * 2];
+                for (int slot = 0; slot < slots.length / 2; slot++) {
+                    if (slots[2 * slot + 1] != 0) {
+                        insert(table, slots[2 * slot], slots[2 * slot + 1]);
+                    }
+                }
+                slots = table;
+            }
+            insert(slots, hash, id);
+            size++;
+        }
+
+        void remove(long hash, long id) {
+            int mask = slots.length / 2 - 1;
+            for (int i = (int) hash & mask; slots[2 * i + 1] != 0; i = (i + 1) & mask) {
+                if (slots[2 * i] == hash && slots[2 * i + 1] == id) {
+                    removeSlot(slots, i, null);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        void clear() {
+            slots = new long[2 * 16];
+            size = 0;
+        }
+
+        private static void insert(long[] table, long hash, long id) {
+            int mask = table.length / 2 - 1;
+            int i = (int) hash & mask;
+            while (table[2 * i + 1] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[2 * i] = hash;
+            table[2 * i + 1] = id;
+        }
+    }
+
+    /**
+     * Empties a slot of a linear-probing table of {@code [key, value]} pairs,
+     * shifting back the entries that follow so that no lookup is cut short.
+     * The home slot of an entry is the low bits of {@code hash(key)}, or of the
+     * key itself when {@code hash} is null. A slot is free when both halves
+     * are 0.
+     */
+    private static void removeSlot(long[] table, int slot, LongUnaryOperator hash) {
+        int mask = table.length / 2 - 1;
+        int free = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            long key = table[2 * i];
+            long value = table[2 * i + 1];
+            if (key == 0 && value == 0) {
+                break;
+            }
+            int home = (int) (hash == null ? key : hash.applyAsLong(key)) & mask;
+            // Move the entry back unless its home lies cyclically in (free, i]
+            boolean between = free <= i ? free < home && home <= i : free < home || home <= i;
+            if (!between) {
+                table[2 * free] = key;
+                table[2 * free + 1] = value;
+                free = i;
+            }
+        }
+        table[2 * free] = 0;
+        table[2 * free + 1] = 0;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static String readString(byte[] bytes, int offset) {
+        int length = readInt(bytes, offset);
+        return length < 0 ? null : new String(bytes, offset + Integer.BYTES, length, StandardCharsets.UTF_8);
+    }
+}
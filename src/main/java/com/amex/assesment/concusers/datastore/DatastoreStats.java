@@ -0,0 +1,28 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.metrics.LatencyHistogram;
+
+/**
+ * Statistics a datastore keeps about itself, exported by the metrics endpoint.
+ * Reading them is cheap and does not block writers, but they are not a
+ * consistent view of the table.
+ */
+public interface DatastoreStats {
+
+    /**
+     * Returns the number of users stored.
+     */
+    long size();
+
+    /**
+     * Returns the high-water mark of the id generator, at least the last id
+     * handed out.
+     */
+    long lastId();
+
+    /**
+     * Returns the time taken to check whether an email belongs to another user,
+     * including reserving it for a write that requires it to be free.
+     */
+    LatencyHistogram emailCheckLatency();
+}
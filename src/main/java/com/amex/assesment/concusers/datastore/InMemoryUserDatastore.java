@@ -1,38 +1,207 @@
 package com.amex.assesment.concusers.datastore;
 
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.datastore.ids.AtomicIdGenerator;
+import com.amex.assesment.concusers.datastore.ids.IdGenerator;
+import com.amex.assesment.concusers.datastore.persistence.Checkpointable;
+import com.amex.assesment.concusers.datastore.persistence.LogRecord;
+import com.amex.assesment.concusers.datastore.persistence.MutationLog;
+import com.amex.assesment.concusers.datastore.persistence.WriteEpochs;
+import com.amex.assesment.concusers.metrics.LatencyHistogram;
+import com.amex.assesment.concusers.model.SearchCursor;
 import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * A thread-safe, in-memory implementation of the {@link UserDatastore}
  * interface.
  * This class uses {@link ConcurrentHashMap} and {@link AtomicLong} to ensure
  * safe
- * concurrent access without explicit locking.
+ * concurrent access without explicit locking. Ids of new users come from a
+ * pluggable {@link IdGenerator}.
+ * <p>
+ * Emails are kept in a secondary index keyed by their normalized (lower-cased)
+ * form so that duplicate checks are constant-time lookups instead of scans
+ * over every stored user. {@link #saveIfEmailAbsent(User)} reserves the email
+ * with {@code putIfAbsent} on that index, so uniqueness is enforced per email
+ * without a global lock.
+ * <p>
+ * User ids are also kept in a {@link ConcurrentSkipListSet} so that pages can be
+ * served in id order with an id cursor, without sorting or copying the table.
+ * A {@link SearchIndex} on lower-cased name and email domain is updated along
+ * with the email index, so searches only walk the page they return.
+ * <p>
+ * Users are immutable, so every write replaces the map entry with a new user,
+ * one version above the one it replaces, and readers get a consistent user
+ * straight from the map without locking. The version of the table is bumped
+ * once the entry is released.
+ * <p>
+ * Every mutation can be recorded in a {@link MutationLog}. The record is
+ * appended while the map entry is held, so the log sees the writes of a user in
+ * the order they were applied, and the table and the id generator are rebuilt
+ * from it on construction.
+ * <p>
+ * Every mutation is also published on a {@link ChangeFeed}, again while the map
+ * entry is held, so the feed has the writes of a user in order too. Records
+ * replayed from the log are not published.
+ * <p>
+ * A replica applies the changes of its primary through {@link Replicable},
+ * with the same locking as its own writes, and republishes them on its own
+ * feed.
+ * <p>
+ * {@link #checkpoint()} writes a snapshot of the table while writes carry on.
+ * Writes are tagged with an epoch; a checkpoint rolls the log, switches the
+ * epoch and only waits for the writes of the previous epoch to finish before
+ * iterating the map, so every write logged before the roll is in the snapshot
+ * and every later one is replayed on top of it.
  */
 @Repository
-public class InMemoryUserDatastore implements UserDatastore {
+@ConditionalOnProperty(prefix = "concusers.datastore", name = "type", havingValue = "in-memory",
+        matchIfMissing = true)
+public class InMemoryUserDatastore implements UserDatastore, Checkpointable, DatastoreStats, Replicable {
 
     // Thread-safe map to store users
     private final ConcurrentMap<Long, User> users = new ConcurrentHashMap<>();
-    // Thread-safe counter to generate unique IDs
-    private final AtomicLong counter = new AtomicLong();
+    // Normalized email -> id of the user owning it
+    private final ConcurrentMap<String, Long> emailIndex = new ConcurrentHashMap<>();
+    // Sorted ids, used to page through users in a stable order
+    private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+    // Users by name prefix and email domain
+    private final SearchIndex searchIndex = new SearchIndex();
+    // Hands out the ids of new users
+    private final IdGenerator idGenerator;
+    // Version of the whole table, bumped after every write
+    private final AtomicLong version = new AtomicLong();
+    // Where mutations are recorded, MutationLog.NONE when not persisted
+    private final MutationLog log;
+    // Where mutations are published, ChangeFeed.NONE when not observed
+    private final ChangeFeed changes;
+    // Writes in progress, waited for by checkpoint()
+    private final WriteEpochs epochs = new WriteEpochs();
+    // Time spent looking up or reserving emails in the index
+    private final LatencyHistogram emailChecks = new LatencyHistogram();
+
+    public InMemoryUserDatastore() {
+        this(MutationLog.NONE);
+    }
+
+    public InMemoryUserDatastore(MutationLog log) {
+        this(log, ChangeFeed.NONE);
+    }
+
+    /**
+     * Creates a datastore recording its mutations in {@code log}, after
+     * restoring the users already recorded there, and publishing them on
+     * {@code changes}.
+     */
+    public InMemoryUserDatastore(MutationLog log, ChangeFeed changes) {
+        this(log, changes, new AtomicIdGenerator());
+    }
+
+    /**
+     * Creates a datastore as above, taking the ids of new users from
+     * {@code idGenerator}.
+     */
+    @Autowired
+    public InMemoryUserDatastore(MutationLog log, ChangeFeed changes, IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        this.log = log;
+        this.changes = changes;
+        log.replay(this::apply);
+        // Records are applied to the table alone: a fuzzy snapshot followed by
+        // the log can hold stale owners of an email until the end of the replay
+        for (User user : users.values()) {
+            reindexEmail(user.getId(), null, user.getEmail());
+        }
+    }
 
     @Override
     public User save(User user) {
-        if (user.getId() == 0) {
-            long id = counter.incrementAndGet();
-            user.setId(id);
+        long id = user.getId() == 0 ? idGenerator.nextId() : user.getId();
+        CompletableFuture<?>[] logged = new CompletableFuture<?>[1];
+        User saved;
+        int writeEpoch = epochs.begin();
+        try {
+            saved = users.compute(id, (key, existing) -> {
+                User written = new User(key, user.getName(), user.getEmail(), nextVersion(existing));
+                String previousEmail = existing == null ? null : existing.getEmail();
+                reindexEmail(key, previousEmail, written.getEmail());
+                ids.add(key);
+                searchIndex.update(existing, written);
+                logged[0] = log.append(LogRecord.put(written));
+                changes.publishWrite(written, existing == null, isEmailChanged(previousEmail, written.getEmail()));
+                return written;
+            });
+        } finally {
+            epochs.end(writeEpoch);
+        }
+        version.incrementAndGet();
+        logged[0].join();
+        return saved;
+    }
+
+    @Override
+    public Optional<User> saveIfEmailAbsent(User user) {
+        boolean isNew = user.getId() == 0;
+        long id = isNew ? idGenerator.nextId() : user.getId();
+        CompletableFuture<?>[] logged = new CompletableFuture<?>[1];
+        User saved;
+        int writeEpoch = epochs.begin();
+        try {
+            saved = users.compute(id, (key, existing) -> {
+                // Only a new user may create a record, so a deleted one is not brought back
+                if (existing == null ? !isNew : user.getVersion() != 0 && existing.getVersion() != user.getVersion()) {
+                    return existing;
+                }
+                String previousEmail = existing == null ? null : existing.getEmail();
+                long start = System.nanoTime();
+                boolean claimed = claimEmail(key, previousEmail, user.getEmail());
+                emailChecks.record(System.nanoTime() - start);
+                if (!claimed) {
+                    return existing;
+                }
+                User written = new User(key, user.getName(), user.getEmail(), nextVersion(existing));
+                ids.add(key);
+                searchIndex.update(existing, written);
+                logged[0] = log.append(LogRecord.put(written));
+                changes.publishWrite(written, existing == null, isEmailChanged(previousEmail, written.getEmail()));
+                return written;
+            });
+        } finally {
+            epochs.end(writeEpoch);
+        }
+        if (logged[0] == null) {
+            return Optional.empty();
         }
-        users.put(user.getId(), user);
-        return user;
+        version.incrementAndGet();
+        logged[0].join();
+        return Optional.of(saved);
+    }
+
+    @Override
+    public List<Optional<User>> saveAllIfEmailAbsent(List<User> usersToSave) {
+        List<Optional<User>> results = new ArrayList<>(usersToSave.size());
+        for (User user : usersToSave) {
+            results.add(saveIfEmailAbsent(user));
+        }
+        return results;
     }
 
     @Override
@@ -45,26 +214,268 @@ public class InMemoryUserDatastore implements UserDatastore {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public UserPage findPage(long afterId, int limit) {
+        List<User> page = new ArrayList<>(limit);
+        Iterator<Long> candidates = ids.tailSet(afterId, false).iterator();
+        long lastId = afterId;
+        while (page.size() < limit && candidates.hasNext()) {
+            long id = candidates.next();
+            // The id can be removed from the map between reading the set and the
+            // lookup; such users are simply skipped
+            User user = users.get(id);
+            if (user != null) {
+                page.add(user);
+                lastId = id;
+            }
+        }
+        String nextCursor = candidates.hasNext() ? Long.toString(lastId) : null;
+        return new UserPage(page, nextCursor);
+    }
+
+    @Override
+    public UserPage search(String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        return searchIndex.search(namePrefix, emailDomain, after, limit, users::get);
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        return users.values().stream();
+    }
+
     @Override
     public boolean existsByEmail(String email) {
-        return users.values().stream().anyMatch(u -> u.getEmail().equalsIgnoreCase(email));
+        if (email == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean exists = emailIndex.containsKey(normalize(email));
+        emailChecks.record(System.nanoTime() - start);
+        return exists;
     }
 
     @Override
     public boolean existsByEmailAndIdNot(String email, long userIdToExclude) {
-        return users.values().stream()
-                .filter(u -> u.getId() != userIdToExclude)
-                .anyMatch(u -> u.getEmail().equalsIgnoreCase(email));
+        if (email == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        Long ownerId = emailIndex.get(normalize(email));
+        emailChecks.record(System.nanoTime() - start);
+        return ownerId != null && ownerId != userIdToExclude;
     }
 
     @Override
     public void deleteById(long id) {
-        users.remove(id);
+        delete(id, log);
+    }
+
+    @Override
+    public List<Boolean> deleteAllById(List<Long> idsToDelete) {
+        List<Boolean> results = new ArrayList<>(idsToDelete.size());
+        for (long id : idsToDelete) {
+            results.add(delete(id, log));
+        }
+        return results;
+    }
+
+    private boolean delete(long id, MutationLog log) {
+        CompletableFuture<?>[] logged = new CompletableFuture<?>[1];
+        int writeEpoch = epochs.begin();
+        try {
+            users.computeIfPresent(id, (key, existing) -> {
+                if (existing.getEmail() != null) {
+                    emailIndex.remove(normalize(existing.getEmail()), key);
+                }
+                ids.remove(key);
+                searchIndex.remove(existing);
+                logged[0] = log.append(LogRecord.delete(key));
+                changes.publishDelete(key);
+                return null;
+            });
+        } finally {
+            epochs.end(writeEpoch);
+        }
+        if (logged[0] == null) {
+            return false;
+        }
+        version.incrementAndGet();
+        logged[0].join();
+        return true;
     }
 
     @Override
     public void clear() {
+        clear(log);
+    }
+
+    private void clear(MutationLog log) {
+        CompletableFuture<Void> logged;
+        int writeEpoch = epochs.begin();
+        try {
+            logged = log.append(LogRecord.clear());
+            reset();
+            changes.publishClear();
+        } finally {
+            epochs.end(writeEpoch);
+        }
+        version.incrementAndGet();
+        logged.join();
+    }
+
+    @Override
+    public void replicateWrite(User user) {
+        boolean[] applied = new boolean[1];
+        int writeEpoch = epochs.begin();
+        try {
+            users.compute(user.getId(), (key, existing) -> {
+                if (existing != null && existing.getVersion() >= user.getVersion()) {
+                    return existing;
+                }
+                String previousEmail = existing == null ? null : existing.getEmail();
+                reindexEmail(key, previousEmail, user.getEmail());
+                ids.add(key);
+                searchIndex.update(existing, user);
+                changes.publishWrite(user, existing == null, isEmailChanged(previousEmail, user.getEmail()));
+                applied[0] = true;
+                return user;
+            });
+        } finally {
+            epochs.end(writeEpoch);
+        }
+        if (applied[0]) {
+            version.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void replicateDelete(long id) {
+        delete(id, MutationLog.NONE);
+    }
+
+    @Override
+    public void replicateClear() {
+        clear(MutationLog.NONE);
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public long size() {
+        return users.size();
+    }
+
+    @Override
+    public long lastId() {
+        return idGenerator.highWaterMark();
+    }
+
+    @Override
+    public LatencyHistogram emailCheckLatency() {
+        return emailChecks;
+    }
+
+    /**
+     * Writes a snapshot of the table to the log, replacing the records logged
+     * so far. Writes are not blocked while the snapshot is written.
+     *
+     * @return false if the log does not support checkpoints.
+     */
+    @Override
+    public synchronized boolean checkpoint() {
+        if (!log.supportsCheckpoints()) {
+            return false;
+        }
+        CompletableFuture<Long> checkpoint = log.beginCheckpoint();
+        // Writes that started before the switch may have logged before the roll;
+        // wait for them so that their effect is visible to the iteration below
+        epochs.advance();
+        log.writeCheckpoint(checkpoint.join(), idGenerator.highWaterMark(), users.values().iterator());
+        return true;
+    }
+
+    /**
+     * Applies a record read back from the log to the table, without logging it
+     * again; the email index is built once the replay is over. The id generator
+     * is advanced past every id written since the last clear, so deleted ids
+     * are not handed out again.
+     */
+    private void apply(LogRecord record) {
+        switch (record.getType()) {
+            case PUT -> {
+                User previous = users.get(record.getId());
+                User user = record.toUser().withVersion(nextVersion(previous));
+                users.put(user.getId(), user);
+                ids.add(user.getId());
+                searchIndex.update(previous, user);
+                idGenerator.advancePast(user.getId());
+            }
+            case DELETE -> {
+                User removed = users.remove(record.getId());
+                ids.remove(record.getId());
+                if (removed != null) {
+                    searchIndex.remove(removed);
+                }
+            }
+            case CLEAR -> reset();
+            case SEQUENCE -> idGenerator.advancePast(record.getId());
+        }
+    }
+
+    private static long nextVersion(User existing) {
+        return existing == null ? 1 : existing.getVersion() + 1;
+    }
+
+    private static boolean isEmailChanged(String previousEmail, String email) {
+        return !Objects.equals(previousEmail == null ? null : normalize(previousEmail),
+                email == null ? null : normalize(email));
+    }
+
+    private void reset() {
         users.clear();
-        counter.set(0);
+        ids.clear();
+        emailIndex.clear();
+        searchIndex.clear();
+        idGenerator.reset();
+    }
+
+    /**
+     * Points the index entry for {@code email} at the given user and drops the
+     * entry for {@code previousEmail}, the email of the user being replaced, if
+     * it changed. Must be called while holding the map entry for {@code id} so
+     * that writes for the same user are serialized.
+     */
+    private void reindexEmail(long id, String previousEmail, String email) {
+        if (previousEmail != null && isEmailChanged(previousEmail, email)) {
+            emailIndex.remove(normalize(previousEmail), id);
+        }
+        if (email != null) {
+            emailIndex.put(normalize(email), id);
+        }
+    }
+
+    /**
+     * Reserves {@code email} for the given user unless another user already owns
+     * it, then releases {@code previousEmail}. Like {@link #reindexEmail}, must
+     * be called while holding the map entry for {@code id}.
+     *
+     * @return false if the email belongs to another user, true otherwise.
+     */
+    private boolean claimEmail(long id, String previousEmail, String email) {
+        if (email != null) {
+            Long owner = emailIndex.putIfAbsent(normalize(email), id);
+            if (owner != null && owner != id) {
+                return false;
+            }
+        }
+        reindexEmail(id, previousEmail, email);
+        return true;
+    }
+
+    private static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.model.User;
+
+/**
+ * A datastore that can mirror another one, by applying the mutations published
+ * on the {@link com.amex.assesment.concusers.datastore.changes.ChangeFeed} of
+ * the source. Users are stored as the source stored them, version included,
+ * and a write carrying a version no newer than the stored user is ignored, so
+ * events already contained in a snapshot can safely be applied again on top
+ * of it. Applied mutations are published on the feed of this datastore, but
+ * not logged: a replica starts over from a snapshot of its source.
+ */
+public interface Replicable {
+
+    /**
+     * Stores {@code user} as written by the source, unless the stored user is
+     * at the same version or a later one.
+     */
+    void replicateWrite(User user);
+
+    void replicateDelete(long id);
+
+    void replicateClear();
+}
@@ -0,0 +1,213 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Indexes users by lower-cased name and by email domain, to find users by name
+ * prefix and domain without scanning the table.
+ * <p>
+ * Both indexes are {@link ConcurrentSkipListSet}s of (term, name, id) keys: the
+ * name index has an empty term, the domain index the domain. A search is one
+ * seek to the first key of the range followed by a walk over at most one page
+ * of keys, so its cost does not grow with the table; a search by name prefix
+ * within a domain is a single range of the domain index.
+ * <p>
+ * The owner must update the index while holding the entry of the user, so
+ * that the updates of a user are serialized. Readers are not: a key may point
+ * at a user that has since been renamed or deleted, so every hit is checked
+ * against the user looked up by id, and a user moved while a search runs may
+ * be missed by it.
+ */
+final class SearchIndex {
+
+    private static final Comparator<Key> ORDER = Comparator.comparing(Key::term)
+            .thenComparing(Key::name)
+            .thenComparingLong(Key::id);
+
+    private final NavigableSet<Key> byName = new ConcurrentSkipListSet<>(ORDER);
+    private final NavigableSet<Key> byDomain = new ConcurrentSkipListSet<>(ORDER);
+
+    /**
+     * Moves {@code written} from the keys of {@code previous}, the user it
+     * replaces or null, to its own keys.
+     */
+    void update(User previous, User written) {
+        String name = normalizeName(written.getName());
+        String domain = domainOf(written.getEmail());
+        if (previous != null) {
+            String previousName = normalizeName(previous.getName());
+            String previousDomain = domainOf(previous.getEmail());
+            if (previousName.equals(name) && Objects.equals(previousDomain, domain)) {
+                return;
+            }
+            remove(previous.getId(), previousName, previousDomain);
+        }
+        byName.add(new Key("", name, written.getId()));
+        if (domain != null) {
+            byDomain.add(new Key(domain, name, written.getId()));
+        }
+    }
+
+    void remove(User user) {
+        remove(user.getId(), normalizeName(user.getName()), domainOf(user.getEmail()));
+    }
+
+    void clear() {
+        byName.clear();
+        byDomain.clear();
+    }
+
+    /**
+     * Returns the users whose lower-cased name starts with {@code namePrefix}
+     * and whose email is at {@code emailDomain}, ordered by lower-cased name
+     * then id, starting after {@code after}.
+     *
+     * @param namePrefix  prefix of the name, any case; null or empty matches
+     *                    every name
+     * @param emailDomain domain of the email, any case; null matches every
+     *                    email
+     * @param after       cursor of the previous page, or null for the first
+     * @param users       looks up the current user of an id, null if deleted
+     */
+    UserPage search(String namePrefix, String emailDomain, SearchCursor after, int limit, LongFunction<User> users) {
+        String prefix = namePrefix == null ? "" : normalizeName(namePrefix);
+        String domain = emailDomain == null ? null : normalizeDomain(emailDomain);
+        String term = domain == null ? "" : domain;
+        NavigableSet<Key> index = domain == null ? byName : byDomain;
+
+        Key from = new Key(term, prefix, Long.MIN_VALUE);
+        boolean inclusive = true;
+        if (after != null && ORDER.compare(new Key(term, after.getName(), after.getId()), from) > 0) {
+            from = new Key(term, after.getName(), after.getId());
+            inclusive = false;
+        }
+
+        List<User> page = new ArrayList<>(Math.min(limit, 64));
+        Key last = null;
+        Iterator<Key> candidates = index.tailSet(from, inclusive).iterator();
+        boolean more = false;
+        while (candidates.hasNext()) {
+            Key key = candidates.next();
+            if (!key.term().equals(term) || !key.name().startsWith(prefix)) {
+                break;
+            }
+            User user = users.apply(key.id());
+            if (user == null || !key.matches(user)) {
+                continue;
+            }
+            if (page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.add(user);
+            last = key;
+        }
+        String nextCursor = more ? new SearchCursor(last.name(), last.id()).encode() : null;
+        return new UserPage(page, nextCursor);
+    }
+
+    /**
+     * Answers a search by scanning {@code users}, for datastores without an
+     * index. Every page costs a pass over the whole table.
+     */
+    static UserPage scan(Stream<User> users, String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        String prefix = namePrefix == null ? "" : normalizeName(namePrefix);
+        String domain = emailDomain == null ? null : normalizeDomain(emailDomain);
+        List<User> matches = users
+                .filter(user -> normalizeName(user.getName()).startsWith(prefix))
+                .filter(user -> domain == null || domain.equals(domainOf(user.getEmail())))
+                .filter(user -> after == null || isAfter(user, after))
+                .sorted(SearchCursor.ORDER)
+                .limit(limit + 1L)
+                .toList();
+        if (matches.size() <= limit) {
+            return new UserPage(matches, null);
+        }
+        List<User> page = matches.subList(0, limit);
+        User last = page.get(limit - 1);
+        return new UserPage(page, SearchCursor.at(last).encode());
+    }
+
+    private static boolean isAfter(User user, SearchCursor after) {
+        int byName = normalizeName(user.getName()).compareTo(after.getName());
+        return byName > 0 || byName == 0 && user.getId() > after.getId();
+    }
+
+    private void remove(long id, String name, String domain) {
+        byName.remove(new Key("", name, id));
+        if (domain != null) {
+            byDomain.remove(new Key(domain, name, id));
+        }
+    }
+
+    static String normalizeName(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the lower-cased part of {@code email} after its last {@code @},
+     * or null if it has none.
+     */
+    static String domainOf(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        return at < 0 ? null : email.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizeDomain(String domain) {
+        return (domain.startsWith("@") ? domain.substring(1) : domain).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Whether the part of {@code value} from {@code offset} lower-cases to
+     * {@code lower}, without allocating for ASCII values, as every hit of a
+     * search is checked this way.
+     */
+    private static boolean equalsLowerCase(String value, int offset, String lower) {
+        String text = value == null ? "" : value;
+        if (text.length() - offset != lower.length()) {
+            return normalizeName(text.substring(offset)).equals(lower);
+        }
+        for (int i = 0; i < lower.length(); i++) {
+            char c = text.charAt(offset + i);
+            if (c >= 0x80) {
+                // Lower-casing outside ASCII can depend on the neighbouring chars
+                return normalizeName(text.substring(offset)).equals(lower);
+            }
+            if ((c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c) != lower.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record Key(String term, String name, long id) {
+
+        /**
+         * Whether {@code user} is still at this key.
+         */
+        boolean matches(User user) {
+            if (!equalsLowerCase(user.getName(), 0, name)) {
+                return false;
+            }
+            if (term.isEmpty()) {
+                return true;
+            }
+            String email = user.getEmail();
+            int at = email == null ? -1 : email.lastIndexOf('@');
+            return at >= 0 && equalsLowerCase(email, at + 1, term);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.amex.assesment.concusers.datastore;
 
+import com.amex.assesment.concusers.model.SearchCursor;
 import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Defines the contract for the data access layer (DAL).
@@ -17,12 +20,45 @@ public interface UserDatastore {
     /**
      * Saves a user. If the user is new, it assigns a unique ID.
      * If the user already exists, it updates the existing record.
+     * Every save stores the user at one more than the version of the record it
+     * replaces, or at 1 for a new record. Users are immutable, so the stored
+     * user is a new instance; {@code user} itself is left as it is.
      *
      * @param user The user to save.
-     * @return The saved user with its ID.
+     * @return The saved user with its ID and version.
      */
     User save(User user);
 
+    /**
+     * Saves a user only if its email is not already used by another user. The
+     * check and the write happen as one atomic step, so concurrent callers
+     * racing for the same email cannot both succeed.
+     * If the user is new, it assigns a unique ID. A user with an ID is only
+     * saved if its record exists, so a user deleted meanwhile is not created
+     * again.
+     * If the version of {@code user} is not 0, the user is only saved if the
+     * stored record exists and is at that version, checked in the same atomic
+     * step; this makes the save a compare-and-set for optimistic concurrency.
+     * Versions are bumped as by {@link #save(User)}.
+     *
+     * @param user The user to save.
+     * @return An Optional containing the saved user, or empty if the email is
+     *         already in use by another user, or the stored record is missing
+     *         or not at the expected version.
+     */
+    Optional<User> saveIfEmailAbsent(User user);
+
+    /**
+     * Saves several users in one pass, with the same per-user guarantee as
+     * {@link #saveIfEmailAbsent(User)}. Users are processed in order, so when
+     * two users of the batch share an email the first one wins.
+     *
+     * @param users The users to save.
+     * @return For each user, in the same order, an Optional containing the saved
+     *         user, or empty if its email is already in use by another user.
+     */
+    List<Optional<User>> saveAllIfEmailAbsent(List<User> users);
+
     /**
      * Finds a user by their ID.
      *
@@ -38,6 +74,51 @@ public interface UserDatastore {
      */
     List<User> findAll();
 
+    /**
+     * Retrieves a page of users ordered by ID.
+     *
+     * @param afterId Only users with an ID greater than this one are returned;
+     *                0 starts from the first user.
+     * @param limit   The maximum number of users to return.
+     * @return The page of users, with the ID of its last user as the cursor for
+     *         the next page, or a null cursor if no users follow. A datastore
+     *         may stop a page short, even empty, after skipping many IDs
+     *         without users; the cursor is then the last ID looked at.
+     */
+    UserPage findPage(long afterId, int limit);
+
+    /**
+     * Retrieves a page of the users whose name starts with a prefix and whose
+     * email is at a domain, both compared case-insensitively, ordered by
+     * lower-cased name then ID. Like {@link #streamAll()}, results are weakly
+     * consistent with concurrent writes.
+     * <p>
+     * The default implementation scans the whole table for every page;
+     * datastores holding many users should index them instead.
+     *
+     * @param namePrefix  The start of the name; null or empty matches any name.
+     * @param emailDomain The part of the email after the {@code @}; null
+     *                    matches any email.
+     * @param after       The cursor of the previous page, or null for the
+     *                    first page.
+     * @param limit       The maximum number of users to return.
+     * @return The page of users, with the encoded cursor of its last user, or a
+     *         null cursor if no users follow.
+     */
+    default UserPage search(String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        return SearchIndex.scan(streamAll(), namePrefix, emailDomain, after, limit);
+    }
+
+    /**
+     * Streams all users without copying them into an intermediate collection.
+     * The stream is weakly consistent: it never fails because of concurrent
+     * modifications, but may or may not reflect changes made while it is being
+     * consumed.
+     *
+     * @return A lazy stream over all users, in no particular order.
+     */
+    Stream<User> streamAll();
+
     /**
      * Checks if a user with the given email already exists.
      *
@@ -64,6 +145,26 @@ public interface UserDatastore {
      */
     void deleteById(long id);
 
+    /**
+     * Deletes several users by their IDs.
+     *
+     * @param ids The IDs of the users to delete.
+     * @return For each ID, in the same order, true if a user was deleted, false
+     *         if no user had that ID.
+     */
+    List<Boolean> deleteAllById(List<Long> ids);
+
+    /**
+     * Returns the version of the whole table, which changes after every write
+     * of any user. It is only bumped once the write is visible to readers, so a
+     * read that starts after reading the version sees at least the writes that
+     * version stands for. Versions are not persisted: they start over when the
+     * datastore is created.
+     *
+     * @return The current version of the table.
+     */
+    long version();
+
     /**
      * Clears all users from the datastore. Used for testing purposes.
      */
@@ -0,0 +1,70 @@
+package com.amex.assesment.concusers.datastore.changes;
+
+import com.amex.assesment.concusers.model.User;
+
+/**
+ * One mutation of the user table as published on the {@link ChangeFeed}.
+ * Events are immutable, and so are the users they carry.
+ */
+public final class ChangeEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        /**
+         * The user was updated and its email, compared case-insensitively, is not
+         * the one stored before.
+         */
+        EMAIL_CHANGED,
+        DELETED,
+        /**
+         * Every user was removed; carries no user id.
+         */
+        CLEARED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final long userId;
+    private final User user;
+
+    ChangeEvent(long sequence, Type type, long userId, User user) {
+        this.sequence = sequence;
+        this.type = type;
+        this.userId = userId;
+        this.user = user;
+    }
+
+    /**
+     * Returns the position of the event in the feed. Sequences start at 1 and
+     * increase by one with every event.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the id of the user written or deleted, or 0 for
+     * {@link Type#CLEARED}.
+     */
+    public long getUserId() {
+        return userId;
+    }
+
+    /**
+     * Returns the user as stored by the write, including its version, or null
+     * for {@link Type#DELETED} and {@link Type#CLEARED}.
+     */
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + ":" + type + "(" + userId + ")";
+    }
+}
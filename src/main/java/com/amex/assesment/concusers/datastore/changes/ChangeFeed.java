@@ -0,0 +1,208 @@
+package com.amex.assesment.concusers.datastore.changes;
+
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import com.amex.assesment.concusers.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-process feed of the mutations of the user table, kept in a bounded ring
+ * buffer so that memory use does not depend on how far behind consumers are.
+ * <p>
+ * Publishing is lock-free: a writer claims the next sequence number from a
+ * counter and stores the event in the slot of that sequence, replacing the
+ * event published {@code capacity} sequences earlier. Datastores publish while
+ * they still hold the entry they change, so the events of one user are in the
+ * order the writes were applied.
+ * <p>
+ * Consumers keep their own position and {@linkplain #read poll} from it. An
+ * event claimed but not stored yet stops the read there, so events are always
+ * returned in sequence order without holes. A consumer that falls more than
+ * {@code capacity} events behind has lost events and must start over from
+ * {@link #oldestSequence()}, after reloading the table.
+ * <p>
+ * Sequences start over at 1 with every feed, that is every time the process
+ * starts, so each feed draws a random {@linkplain #runId() run id}. Positions
+ * handed to clients are qualified with it, {@code run-sequence}, so that one
+ * kept across a restart is recognized as coming from another run instead of
+ * being compared with unrelated sequences.
+ */
+@Component
+public class ChangeFeed {
+
+    /**
+     * A feed that publishes nothing, for datastores that are not observed.
+     */
+    public static final ChangeFeed NONE = new ChangeFeed(0);
+
+    /**
+     * Returned by {@link #read} when the events asked for are not in the buffer
+     * anymore.
+     */
+    public static final long LOST = -1;
+
+    private final AtomicReferenceArray<ChangeEvent> slots;
+    private final int mask;
+    // Sequence of the next event to publish
+    private final AtomicLong next = new AtomicLong(1);
+    private final String runId = Long.toUnsignedString(new SecureRandom().nextLong(), 36);
+
+    @Autowired
+    public ChangeFeed(ConcUsersProperties properties) {
+        this(properties.getChanges().getCapacity());
+    }
+
+    /**
+     * Creates a feed retaining the last {@code capacity} events, rounded up to
+     * a power of two. A capacity of zero publishes nothing.
+     */
+    public ChangeFeed(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        int size = capacity <= 1 ? capacity : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the id of this feed, drawn when it is created. It never contains
+     * {@code -}.
+     */
+    public String runId() {
+        return runId;
+    }
+
+    /**
+     * Returns {@code sequence} of the feed with run id {@code runId} as a
+     * position handed to clients, {@code run-sequence}.
+     */
+    public static String position(String runId, long sequence) {
+        return runId + '-' + sequence;
+    }
+
+    /**
+     * Returns the sequence of {@code position}, as written by
+     * {@link #position}, if it was written for the feed with run id
+     * {@code runId}, or {@link #LOST} if it comes from another feed.
+     *
+     * @throws NumberFormatException if {@code position} is not a run id and a
+     *                               sequence.
+     */
+    public static long sequenceOf(String position, String runId) {
+        int separator = position.lastIndexOf('-');
+        if (separator < 0) {
+            throw new NumberFormatException("Not a position: " + position);
+        }
+        long sequence = Long.parseLong(position, separator + 1, position.length(), 10);
+        if (sequence < 0) {
+            throw new NumberFormatException("Not a position: " + position);
+        }
+        boolean sameRun = separator == runId.length() && position.startsWith(runId);
+        return sameRun ? sequence : LOST;
+    }
+
+    /**
+     * Returns the number of events retained.
+     */
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * Publishes the write of {@code user}, as stored.
+     *
+     * @param created      Whether no user with that id was stored before.
+     * @param emailChanged Whether the stored email was a different one.
+     */
+    public void publishWrite(User user, boolean created, boolean emailChanged) {
+        if (slots.length() == 0) {
+            return;
+        }
+        ChangeEvent.Type type = created ? ChangeEvent.Type.CREATED
+                : emailChanged ? ChangeEvent.Type.EMAIL_CHANGED : ChangeEvent.Type.UPDATED;
+        publish(type, user.getId(), user);
+    }
+
+    public void publishDelete(long id) {
+        if (slots.length() != 0) {
+            publish(ChangeEvent.Type.DELETED, id, null);
+        }
+    }
+
+    public void publishClear() {
+        if (slots.length() != 0) {
+            publish(ChangeEvent.Type.CLEARED, 0, null);
+        }
+    }
+
+    /**
+     * Claims a sequence and stores the event in its slot. Nothing between the
+     * claim and the store may throw, or readers would wait for that sequence
+     * until its slot is reused.
+     */
+    private void publish(ChangeEvent.Type type, long userId, User user) {
+        long sequence = next.getAndIncrement();
+        ChangeEvent event = new ChangeEvent(sequence, type, userId, user);
+        int index = (int) sequence & mask;
+        ChangeEvent current;
+        do {
+            current = slots.get(index);
+            // A writer a whole lap ahead may have got to the slot first
+            if (current != null && current.getSequence() > sequence) {
+                return;
+            }
+        } while (!slots.compareAndSet(index, current, event));
+    }
+
+    /**
+     * Returns the sequence the next event will get.
+     */
+    public long nextSequence() {
+        return next.get();
+    }
+
+    /**
+     * Returns the sequence of the oldest event still retained, or
+     * {@link #nextSequence()} if no event was published yet.
+     */
+    public long oldestSequence() {
+        return Math.max(1, next.get() - slots.length());
+    }
+
+    /**
+     * Adds to {@code into} the events from sequence {@code from} on, up to
+     * {@code max} of them, stopping at the first event not published yet.
+     *
+     * @return The sequence to read from next time, or {@link #LOST} if the
+     *         event at {@code from} has been overwritten or was never published
+     *         by this feed, e.g. a position from before a restart.
+     */
+    public long read(long from, int max, List<ChangeEvent> into) {
+        long end = next.get();
+        if (from > end || from < 1 || from < end - slots.length()) {
+            return LOST;
+        }
+        end = Math.min(end, from + max);
+        long sequence = from;
+        while (sequence < end) {
+            ChangeEvent event = slots.get((int) sequence & mask);
+            if (event == null || event.getSequence() < sequence) {
+                break;
+            }
+            if (event.getSequence() > sequence) {
+                // Overwritten while reading; report it on the next read unless
+                // nothing was read yet
+                return sequence == from ? LOST : sequence;
+            }
+            into.add(event);
+            sequence++;
+        }
+        return sequence;
+    }
+}
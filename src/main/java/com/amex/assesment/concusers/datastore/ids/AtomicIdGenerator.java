@@ -0,0 +1,33 @@
+package com.amex.assesment.concusers.datastore.ids;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out 1, 2, 3... from a single {@link AtomicLong}. Ids are dense and in
+ * creation order, but every id is an atomic increment of the same counter,
+ * which becomes a contention point when many threads create users at once.
+ */
+public final class AtomicIdGenerator implements IdGenerator {
+
+    private final AtomicLong counter = new AtomicLong();
+
+    @Override
+    public long nextId() {
+        return counter.incrementAndGet();
+    }
+
+    @Override
+    public void advancePast(long id) {
+        counter.accumulateAndGet(id, Math::max);
+    }
+
+    @Override
+    public long highWaterMark() {
+        return counter.get();
+    }
+
+    @Override
+    public void reset() {
+        counter.set(0);
+    }
+}
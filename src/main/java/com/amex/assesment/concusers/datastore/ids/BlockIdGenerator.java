@@ -0,0 +1,70 @@
+package com.amex.assesment.concusers.datastore.ids;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leases blocks of {@code blockSize} consecutive ids to each thread, which
+ * then hands them out without touching shared state; the shared counter is
+ * only incremented once per block. Ids are unique but only ordered within a
+ * thread, and the unused rest of the blocks of idle threads leaves gaps of at
+ * most {@code blockSize} ids per thread.
+ * <p>
+ * Virtual threads are typically started per task, so a block leased to one
+ * would mostly be wasted: they take single ids from the shared counter
+ * instead.
+ */
+public final class BlockIdGenerator implements IdGenerator {
+
+    private final int blockSize;
+    // Highest id leased so far
+    private final AtomicLong leased = new AtomicLong();
+    // Bumped when leased blocks must no longer be used
+    private final AtomicInteger generation = new AtomicInteger();
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    public BlockIdGenerator(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long nextId() {
+        if (Thread.currentThread().isVirtual()) {
+            return leased.incrementAndGet();
+        }
+        Block block = blocks.get();
+        int current = generation.get();
+        if (block.next > block.last || block.generation != current) {
+            block.last = leased.addAndGet(blockSize);
+            block.next = block.last - blockSize + 1;
+            block.generation = current;
+        }
+        return block.next++;
+    }
+
+    @Override
+    public void advancePast(long id) {
+        leased.accumulateAndGet(id, Math::max);
+        generation.incrementAndGet();
+    }
+
+    @Override
+    public long highWaterMark() {
+        return leased.get();
+    }
+
+    @Override
+    public void reset() {
+        leased.set(0);
+        generation.incrementAndGet();
+    }
+
+    private static final class Block {
+        long next = 1;
+        long last = 0;
+        int generation = -1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.amex.assesment.concusers.datastore.ids;
+
+/**
+ * Hands out the ids of new users. Implementations are thread-safe and every
+ * id they return is greater than zero and returned only once, also across
+ * restarts of a datastore that is persisted: the datastore reports the ids it
+ * restores through {@link #advancePast(long)} and records
+ * {@link #highWaterMark()} in its snapshots.
+ */
+public interface IdGenerator {
+
+    /**
+     * Returns a new id.
+     */
+    long nextId();
+
+    /**
+     * Makes sure that neither {@code id} nor any lower id of this generator is
+     * handed out from now on. Called with the ids restored from the log, before
+     * any new id is requested.
+     */
+    void advancePast(long id);
+
+    /**
+     * Returns an id at least as high as every id handed out so far. Passing it
+     * to {@link #advancePast(long)} after a restart keeps ids unique.
+     */
+    long highWaterMark();
+
+    /**
+     * Starts over, after the datastore has been cleared. Generators whose ids
+     * carry a time keep going instead.
+     */
+    void reset();
+}
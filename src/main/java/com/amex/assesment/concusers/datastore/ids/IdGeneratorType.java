@@ -0,0 +1,25 @@
+package com.amex.assesment.concusers.datastore.ids;
+
+/**
+ * The {@link IdGenerator} used by the datastore.
+ */
+public enum IdGeneratorType {
+
+    /**
+     * {@link AtomicIdGenerator}: dense ids in creation order from one shared
+     * counter.
+     */
+    ATOMIC,
+
+    /**
+     * {@link BlockIdGenerator}: blocks of ids leased per thread, for many
+     * threads creating users at once.
+     */
+    BLOCK,
+
+    /**
+     * {@link SnowflakeIdGenerator}: time-ordered ids, unique across nodes with
+     * different node ids.
+     */
+    SNOWFLAKE
+}
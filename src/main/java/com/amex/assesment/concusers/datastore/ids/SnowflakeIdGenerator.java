@@ -0,0 +1,81 @@
+package com.amex.assesment.concusers.datastore.ids;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered ids made of 41 bits of milliseconds since 2024-01-01, 10 bits
+ * of node id and 12 bits of sequence within the millisecond, as in Twitter's
+ * Snowflake. Nodes with different node ids never hand out the same id, so
+ * users created on several nodes can be merged.
+ * <p>
+ * The time and sequence of the last id are kept in one {@link AtomicLong}.
+ * When more than 4096 ids are requested within a millisecond, or the clock
+ * goes back, ids carry on from the last one instead of waiting, so they keep
+ * increasing and never repeat even across a restart that restores the last id.
+ * Ids are sparse: they suit {@code InMemoryUserDatastore} but not
+ * {@code CompactUserDatastore}, which pages through ids one by one.
+ */
+public final class SnowflakeIdGenerator implements IdGenerator {
+
+    static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+    // Milliseconds since the epoch shifted left by SEQUENCE_BITS, plus sequence
+    private final AtomicLong last = new AtomicLong();
+
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            long previous = last.get();
+            long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            // A full sequence carries into the millisecond
+            long next = Math.max(now, previous + 1);
+            if (last.compareAndSet(previous, next)) {
+                return toId(next);
+            }
+        }
+    }
+
+    @Override
+    public void advancePast(long id) {
+        long state = (id >>> (NODE_BITS + SEQUENCE_BITS) << SEQUENCE_BITS) | (id & SEQUENCE_MASK);
+        last.accumulateAndGet(state, Math::max);
+    }
+
+    @Override
+    public long highWaterMark() {
+        return toId(last.get());
+    }
+
+    /**
+     * Does nothing: ids are ordered by time and do not start over.
+     */
+    @Override
+    public void reset() {
+    }
+
+    private long toId(long state) {
+        return (state >>> SEQUENCE_BITS << (NODE_BITS + SEQUENCE_BITS))
+                | (nodeId << SEQUENCE_BITS)
+                | (state & SEQUENCE_MASK);
+    }
+}
@@ -0,0 +1,99 @@
+package com.amex.assesment.concusers.datastore.partition;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Consistent hash ring mapping user ids and emails to shards. Every shard gets
+ * {@code virtualNodes} points on a ring of 64-bit hashes, and a key belongs to
+ * the shard of the first point at or after its own hash, wrapping around.
+ * Changing the number of shards only moves the keys falling between the points
+ * that come or go, about one in {@code shards} of them, instead of nearly all
+ * keys as with a hash modulo the number of shards.
+ * <p>
+ * Points only depend on the shard number and the hash functions are fixed, so
+ * every node computes the same ring from the same settings. The ring is
+ * immutable; lookups are a binary search over a sorted array.
+ */
+public final class HashRing {
+
+    private final int shards;
+    // Hashes of the points, sorted, and the shard owning each of them
+    private final long[] points;
+    private final int[] owners;
+
+    public HashRing(int shards, int virtualNodes) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive: " + shards);
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        this.shards = shards;
+        int size = shards * virtualNodes;
+        long[][] ring = new long[size][];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                // Hashed as strings, so that points never coincide with the hashes
+                // of small ids
+                ring[shard * virtualNodes + point] = new long[] {hash("shard-" + shard + '#' + point), shard};
+            }
+        }
+        Arrays.sort(ring, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = ring[i][0];
+            owners[i] = (int) ring[i][1];
+        }
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    /**
+     * Returns the shard holding the user with the given id.
+     */
+    public int shardOf(long id) {
+        return ownerOf(mix(id));
+    }
+
+    /**
+     * Returns the shard holding the entry of {@code email} in the email index,
+     * compared case-insensitively.
+     */
+    public int shardOfEmail(String email) {
+        return ownerOf(hash(email.toLowerCase(Locale.ROOT)));
+    }
+
+    private int ownerOf(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters of {@code value}, mixed so that
+     * strings differing in their last characters land far apart.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of MurmurHash3: spreads consecutive values, such as ids,
+     * evenly over the whole range of longs.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
@@ -0,0 +1,405 @@
+package com.amex.assesment.concusers.datastore.partition;
+
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import com.amex.assesment.concusers.datastore.AsyncUserDatastore;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.datastore.ids.IdGenerator;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * {@link AsyncUserDatastore} spreading users over the shards of a
+ * {@link HashRing}, each one a {@link UserShard} reached through the Vert.x
+ * event bus. {@link #start(Vertx)} deploys every shard in this process, but
+ * they are only reached through messages and their JSON encoding, as they
+ * would be in other processes.
+ * <p>
+ * A user lives on the shard its id hashes to, so reads, updates and deletes by
+ * id are routed to a single shard. Listing, paging and searching ask every
+ * shard for a page and merge the answers, so they cost a round trip to each
+ * shard. The version of the table is the sum of the versions of the shards.
+ * <p>
+ * Emails are kept unique through an index partitioned by the hash of the
+ * email: a write first claims the email on the shard it hashes to, then stores
+ * the user, then releases the previous email of the user. When the email and
+ * the user hash to the same shard, that shard does all of it in one request.
+ * New users get their id here, and an id is drawn until it hashes to the shard
+ * of their email, so most creates are a single request; the ids skipped are
+ * never used. A create refused because its id is taken, e.g. by a user saved
+ * with an explicit id, moves the generator past it and draws another.
+ * <p>
+ * Writes are compare-and-set on the version of the stored user, like with
+ * {@code saveIfEmailAbsent}. A write the shard refuses drops the email it
+ * claimed, unless the user holds it anyway. A write that fails, for instance
+ * because a shard did not answer in time, may or may not have been applied, so
+ * its claim is kept: at worst the email stays reserved, never shared.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(prefix = "concusers.partition", name = "enabled", havingValue = "true")
+public class PartitionedUserDatastore implements AsyncUserDatastore {
+
+    // Same bound as the update loop of the services
+    private static final int MAX_WRITE_ATTEMPTS = 16;
+    private static final Future<Optional<User>> NOT_SAVED = Future.succeededFuture(Optional.empty());
+
+    private final HashRing ring;
+    private final IdGenerator idGenerator;
+    private final ChangeFeed changes;
+    private final long requestTimeoutMs;
+    // Set once the shards are started
+    private volatile EventBus eventBus;
+
+    @Autowired
+    public PartitionedUserDatastore(ConcUsersProperties properties, IdGenerator idGenerator, ChangeFeed changes) {
+        this(new HashRing(properties.getPartition().getShards(), properties.getPartition().getVirtualNodes()),
+                idGenerator, changes, properties.getPartition().getRequestTimeoutMs());
+    }
+
+    /**
+     * Creates a datastore routing over the shards of {@code ring} and taking
+     * the ids of new users from {@code idGenerator}.
+     */
+    public PartitionedUserDatastore(HashRing ring, IdGenerator idGenerator, ChangeFeed changes,
+            long requestTimeoutMs) {
+        this.ring = ring;
+        this.idGenerator = idGenerator;
+        this.changes = changes;
+        this.requestTimeoutMs = requestTimeoutMs;
+    }
+
+    /**
+     * Deploys the shards on {@code vertx} and starts routing requests over its
+     * event bus. Must complete before the first request.
+     */
+    public Future<Void> start(Vertx vertx) {
+        eventBus = vertx.eventBus();
+        List<Future<String>> deployments = new ArrayList<>(ring.shards());
+        for (int shard = 0; shard < ring.shards(); shard++) {
+            deployments.add(vertx.deployVerticle(new UserShard(shard, ring, changes)));
+        }
+        return Future.all(deployments).mapEmpty();
+    }
+
+    public HashRing ring() {
+        return ring;
+    }
+
+    @Override
+    public Future<User> save(User user) {
+        return write(user, true).map(Optional::get);
+    }
+
+    @Override
+    public Future<Optional<User>> saveIfEmailAbsent(User user) {
+        return write(user, false);
+    }
+
+    @Override
+    public Future<List<Optional<User>>> saveAllIfEmailAbsent(List<User> users) {
+        // One after the other, so that the first of two users sharing an email wins
+        List<Optional<User>> results = new ArrayList<>(users.size());
+        Future<Void> chain = Future.succeededFuture();
+        for (User user : users) {
+            chain = chain.compose(v -> saveIfEmailAbsent(user)).map(saved -> {
+                results.add(saved);
+                return null;
+            });
+        }
+        return chain.map(results);
+    }
+
+    @Override
+    public Future<Optional<User>> findById(long id) {
+        return request(ring.shardOf(id), UserShard.GET, new JsonObject().put("id", id))
+                .map(reply -> Optional.ofNullable(UserShard.decode(reply.getJsonObject("user"))));
+    }
+
+    @Override
+    public Future<List<User>> findAll() {
+        return scatter(UserShard.ALL, new JsonObject()).map(replies -> {
+            List<User> users = new ArrayList<>();
+            for (JsonObject reply : replies) {
+                addUsers(users, reply);
+            }
+            users.sort(Comparator.comparingLong(User::getId));
+            return users;
+        });
+    }
+
+    @Override
+    public Future<UserPage> findPage(long afterId, int limit) {
+        JsonObject request = new JsonObject().put("after", afterId).put("limit", limit);
+        return scatter(UserShard.PAGE, request).map(replies -> merge(replies, Comparator.comparingLong(User::getId),
+                limit, last -> Long.toString(last.getId())));
+    }
+
+    @Override
+    public Future<UserPage> search(String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        JsonObject request = new JsonObject()
+                .put("prefix", namePrefix)
+                .put("domain", emailDomain)
+                .put("cursorName", after == null ? null : after.getName())
+                .put("cursorId", after == null ? null : after.getId())
+                .put("limit", limit);
+        return scatter(UserShard.SEARCH, request).map(replies -> merge(replies, SearchCursor.ORDER, limit,
+                last -> SearchCursor.at(last).encode()));
+    }
+
+    @Override
+    public Future<Boolean> existsByEmail(String email) {
+        return owner(email).map(owner -> owner != null);
+    }
+
+    @Override
+    public Future<Boolean> existsByEmailAndIdNot(String email, long userIdToExclude) {
+        return owner(email).map(owner -> owner != null && owner != userIdToExclude);
+    }
+
+    @Override
+    public Future<Void> deleteById(long id) {
+        return delete(id).mapEmpty();
+    }
+
+    @Override
+    public Future<List<Boolean>> deleteAllById(List<Long> ids) {
+        List<Future<Boolean>> deletes = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            deletes.add(delete(id));
+        }
+        return Future.all(deletes).map(all -> {
+            List<Boolean> results = new ArrayList<>(ids.size());
+            for (Future<Boolean> deleted : deletes) {
+                results.add(deleted.result());
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public Future<Long> version() {
+        return scatter(UserShard.VERSION, new JsonObject()).map(replies -> {
+            long version = 0;
+            for (JsonObject reply : replies) {
+                version += reply.getLong("version");
+            }
+            return version;
+        });
+    }
+
+    @Override
+    public Future<Void> clear() {
+        return scatter(UserShard.CLEAR, new JsonObject()).mapEmpty();
+    }
+
+    /**
+     * Writes {@code user}, giving it an id if it has none. Without a version,
+     * an existing user is overwritten through a compare-and-set on the version
+     * read just before, retried when another write gets in between.
+     */
+    private Future<Optional<User>> write(User user, boolean force) {
+        if (user.getId() == 0) {
+            return create(user, force, MAX_WRITE_ATTEMPTS);
+        }
+        if (force || user.getVersion() != 0) {
+            return write(user, user.getVersion(), force);
+        }
+        return overwrite(user, MAX_WRITE_ATTEMPTS);
+    }
+
+    private Future<Optional<User>> create(User user, boolean force, int attemptsLeft) {
+        long id = newId(user.getEmail());
+        return write(user.withId(id), 0, force).compose(saved -> saved.isPresent() || attemptsLeft <= 1
+                ? Future.succeededFuture(saved)
+                : findById(id).compose(taken -> {
+                    if (taken.isEmpty()) {
+                        return NOT_SAVED;
+                    }
+                    idGenerator.advancePast(id);
+                    return create(user, force, attemptsLeft - 1);
+                }));
+    }
+
+    private Future<Optional<User>> overwrite(User user, int attemptsLeft) {
+        return findById(user.getId()).compose(current -> {
+            if (current.isEmpty()) {
+                return NOT_SAVED;
+            }
+            long expected = current.get().getVersion();
+            return write(user, expected, false).compose(saved -> saved.isPresent() || attemptsLeft <= 1
+                    ? Future.succeededFuture(saved)
+                    : findById(user.getId()).compose(latest -> latest.map(User::getVersion).orElse(0L) == expected
+                            ? NOT_SAVED
+                            : overwrite(user, attemptsLeft - 1)));
+        });
+    }
+
+    /**
+     * Writes {@code user} if the stored user is at version {@code expected},
+     * 0 meaning that none is stored, or unconditionally with {@code force}.
+     */
+    private Future<Optional<User>> write(User user, long expected, boolean force) {
+        long id = user.getId();
+        int shard = ring.shardOf(id);
+        String email = user.getEmail();
+        JsonObject write = new JsonObject()
+                .put("user", UserShard.encode(user))
+                .put("expected", expected)
+                .put("force", force);
+        if (email == null || ring.shardOfEmail(email) == shard) {
+            return request(shard, UserShard.WRITE, write.put("claim", true)).compose(this::written);
+        }
+        int emailShard = ring.shardOfEmail(email);
+        if (force) {
+            // Nothing to check: store the user, then point the email at it
+            return request(shard, UserShard.WRITE, write).compose(reply -> {
+                User saved = UserShard.decode(reply.getJsonObject("user"));
+                return request(emailShard, UserShard.CLAIM, claim(email, id, saved.getVersion(), true))
+                        .compose(claimed -> written(reply));
+            });
+        }
+        return request(emailShard, UserShard.CLAIM, claim(email, id, expected + 1, false)).compose(claimed -> {
+            if (!claimed.getBoolean("claimed")) {
+                return NOT_SAVED;
+            }
+            return request(shard, UserShard.WRITE, write).compose(reply -> {
+                if (reply.getJsonObject("user") != null) {
+                    return written(reply);
+                }
+                // Writes of this user claiming the email from now on expect
+                // at least the stored version, so they claim above it
+                User stored = UserShard.decode(reply.getJsonObject("stored"));
+                if (stored != null && stored.getEmail() != null
+                        && UserShard.normalize(email).equals(UserShard.normalize(stored.getEmail()))) {
+                    return NOT_SAVED;
+                }
+                long version = stored == null ? Long.MAX_VALUE : stored.getVersion() + 1;
+                return request(emailShard, UserShard.RELEASE, release(email, id, version)).compose(v -> NOT_SAVED);
+            });
+        });
+    }
+
+    /**
+     * Releases the previous email of a user just written, unless its shard
+     * did it already.
+     */
+    private Future<Optional<User>> written(JsonObject reply) {
+        User saved = UserShard.decode(reply.getJsonObject("user"));
+        if (saved == null) {
+            return NOT_SAVED;
+        }
+        String previousEmail = reply.getString("previousEmail");
+        if (previousEmail == null || reply.getBoolean("released")) {
+            return Future.succeededFuture(Optional.of(saved));
+        }
+        return request(ring.shardOfEmail(previousEmail), UserShard.RELEASE,
+                release(previousEmail, saved.getId(), saved.getVersion())).map(Optional.of(saved));
+    }
+
+    private Future<Boolean> delete(long id) {
+        return request(ring.shardOf(id), UserShard.DELETE, new JsonObject().put("id", id)).compose(reply -> {
+            String email = reply.getString("email");
+            if (!reply.getBoolean("deleted") || email == null || reply.getBoolean("released")) {
+                return Future.succeededFuture(reply.getBoolean("deleted"));
+            }
+            return request(ring.shardOfEmail(email), UserShard.RELEASE,
+                    release(email, id, reply.getLong("version") + 1)).map(true);
+        });
+    }
+
+    private Future<Long> owner(String email) {
+        if (email == null) {
+            return Future.succeededFuture(null);
+        }
+        return request(ring.shardOfEmail(email), UserShard.OWNER, new JsonObject().put("email", email))
+                .map(reply -> reply.getLong("owner"));
+    }
+
+    /**
+     * Draws ids until one hashes to the shard of {@code email}, giving up after
+     * a few rounds of the ring; the creation then takes an extra request.
+     */
+    private long newId(String email) {
+        long id = idGenerator.nextId();
+        if (email == null) {
+            return id;
+        }
+        int emailShard = ring.shardOfEmail(email);
+        for (int attempt = 1; attempt < 4 * ring.shards() && ring.shardOf(id) != emailShard; attempt++) {
+            id = idGenerator.nextId();
+        }
+        return id;
+    }
+
+    /**
+     * Merges the pages answered by the shards, each in {@code order}, into the
+     * first {@code limit} users overall.
+     */
+    private static UserPage merge(List<JsonObject> replies, Comparator<User> order, int limit,
+            Function<User, String> cursor) {
+        List<User> users = new ArrayList<>();
+        boolean more = false;
+        for (JsonObject reply : replies) {
+            addUsers(users, reply);
+            more |= reply.getBoolean("more");
+        }
+        users.sort(order);
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            more = true;
+        }
+        return new UserPage(users, more && !users.isEmpty() ? cursor.apply(users.get(users.size() - 1)) : null);
+    }
+
+    private static void addUsers(List<User> users, JsonObject reply) {
+        JsonArray array = reply.getJsonArray("users");
+        for (int i = 0; i < array.size(); i++) {
+            users.add(UserShard.decode(array.getJsonObject(i)));
+        }
+    }
+
+    private static JsonObject claim(String email, long id, long version, boolean force) {
+        return new JsonObject().put("email", email).put("id", id).put("version", version).put("force", force);
+    }
+
+    private static JsonObject release(String email, long id, long version) {
+        return new JsonObject().put("email", email).put("id", id).put("version", version);
+    }
+
+    private Future<List<JsonObject>> scatter(String action, JsonObject request) {
+        List<Future<JsonObject>> replies = new ArrayList<>(ring.shards());
+        for (int shard = 0; shard < ring.shards(); shard++) {
+            replies.add(request(shard, action, request));
+        }
+        return Future.all(replies).map(all -> all.<JsonObject>list());
+    }
+
+    private Future<JsonObject> request(int shard, String action, JsonObject request) {
+        EventBus bus = eventBus;
+        if (bus == null) {
+            return Future.failedFuture(new IllegalStateException("The shards have not been started"));
+        }
+        DeliveryOptions options = new DeliveryOptions()
+                .setSendTimeout(requestTimeoutMs)
+                .addHeader(UserShard.ACTION, action);
+        return bus.<JsonObject>request(UserShard.address(shard), request, options).map(Message::body);
+    }
+}
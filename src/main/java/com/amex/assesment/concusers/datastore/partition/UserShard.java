@@ -0,0 +1,261 @@
+package com.amex.assesment.concusers.datastore.partition;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.datastore.ids.AtomicIdGenerator;
+import com.amex.assesment.concusers.datastore.persistence.MutationLog;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * One shard of a {@link PartitionedUserDatastore}. It holds the users whose ids
+ * hash to it, in an {@link InMemoryUserDatastore}, and the entries of the email
+ * index whose emails hash to it, and serves the requests sent to
+ * {@link #address(int)}. Requests and replies are {@link JsonObject}s with the
+ * operation in the {@value #ACTION} header, so a shard can just as well run in
+ * another process of a clustered Vert.x.
+ * <p>
+ * The verticle handles one request at a time on its own context, so every
+ * request is applied atomically without any lock: a write checks the expected
+ * version, claims the email when its index entry is here too, and stores the
+ * user in one step.
+ * <p>
+ * An index entry records the user owning the email and the version of the
+ * write that claimed it. A release only removes the entry if it was claimed by
+ * an earlier write of that user, so a release delayed past a later claim of
+ * the same email, by the same user, leaves the entry in place.
+ */
+public class UserShard extends AbstractVerticle {
+
+    static final String ACTION = "action";
+
+    static final String GET = "get";
+    static final String ALL = "all";
+    static final String PAGE = "page";
+    static final String SEARCH = "search";
+    static final String VERSION = "version";
+    static final String OWNER = "owner";
+    static final String CLAIM = "claim";
+    static final String RELEASE = "release";
+    static final String WRITE = "write";
+    static final String DELETE = "delete";
+    static final String CLEAR = "clear";
+
+    private static final String ADDRESS_PREFIX = "concusers.shard.";
+
+    private final int shard;
+    private final HashRing ring;
+    private final InMemoryUserDatastore users;
+    // Normalized email -> claim, for the emails hashing to this shard. Only
+    // touched from the context of the verticle.
+    private final Map<String, Claim> emails = new HashMap<>();
+
+    /**
+     * Creates shard number {@code shard} of {@code ring}, publishing the writes
+     * of its users on {@code changes}.
+     */
+    public UserShard(int shard, HashRing ring, ChangeFeed changes) {
+        if (shard < 0 || shard >= ring.shards()) {
+            throw new IllegalArgumentException("No shard " + shard + " in a ring of " + ring.shards());
+        }
+        this.shard = shard;
+        this.ring = ring;
+        // Ids are assigned by the routers, never by the shard
+        this.users = new InMemoryUserDatastore(MutationLog.NONE, changes, new AtomicIdGenerator());
+    }
+
+    /**
+     * Returns the event bus address of shard number {@code shard}.
+     */
+    public static String address(int shard) {
+        return ADDRESS_PREFIX + shard;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        vertx.eventBus().<JsonObject>consumer(address(shard), this::handle).completionHandler(startPromise);
+    }
+
+    private void handle(Message<JsonObject> message) {
+        JsonObject request = message.body();
+        String action = message.headers().get(ACTION);
+        try {
+            message.reply(switch (action == null ? "" : action) {
+                case GET -> new JsonObject().put("user", encode(users.findById(request.getLong("id")).orElse(null)));
+                case ALL -> new JsonObject().put("users", encode(users.findAll()));
+                case PAGE -> page(users.findPage(request.getLong("after"), request.getInteger("limit")));
+                case SEARCH -> search(request);
+                case VERSION -> new JsonObject().put("version", users.version());
+                case OWNER -> owner(request.getString("email"));
+                case CLAIM -> claim(request);
+                case RELEASE -> {
+                    release(request.getString("email"), request.getLong("id"), request.getLong("version"));
+                    yield new JsonObject();
+                }
+                case WRITE -> write(request);
+                case DELETE -> delete(request.getLong("id"));
+                case CLEAR -> {
+                    users.clear();
+                    emails.clear();
+                    yield new JsonObject();
+                }
+                default -> throw new IllegalArgumentException("Unknown action: " + action);
+            });
+        } catch (RuntimeException e) {
+            message.fail(500, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private JsonObject search(JsonObject request) {
+        SearchCursor after = request.getLong("cursorId") == null
+                ? null
+                : new SearchCursor(request.getString("cursorName"), request.getLong("cursorId"));
+        return page(users.search(request.getString("prefix"), request.getString("domain"), after,
+                request.getInteger("limit")));
+    }
+
+    private JsonObject owner(String email) {
+        Claim claim = emails.get(normalize(email));
+        return new JsonObject().put("owner", claim == null ? null : claim.id());
+    }
+
+    private JsonObject claim(JsonObject request) {
+        return new JsonObject().put("claimed", claim(normalize(request.getString("email")), request.getLong("id"),
+                request.getLong("version"), request.getBoolean("force", false)));
+    }
+
+    /**
+     * Stores {@code user} if the stored user is at version {@code expected}, 0
+     * meaning that none is stored, or unconditionally with {@code force}. With
+     * {@code claim}, the email is claimed here first; otherwise the router has
+     * claimed it on its own shard. The previous email of the user is released
+     * here if its entry is here too, and handed back to the router otherwise.
+     */
+    private JsonObject write(JsonObject request) {
+        User user = decode(request.getJsonObject("user"));
+        long expected = request.getLong("expected", 0L);
+        boolean claim = request.getBoolean("claim", false);
+        boolean force = request.getBoolean("force", false);
+        User stored = users.findById(user.getId()).orElse(null);
+        long storedVersion = stored == null ? 0 : stored.getVersion();
+        if (!force && storedVersion != expected) {
+            return refused(stored);
+        }
+        // The write below stores the user at this version
+        long version = storedVersion + 1;
+        if (claim && user.getEmail() != null && !claim(normalize(user.getEmail()), user.getId(), version, force)) {
+            return refused(stored);
+        }
+        User saved = users.save(user);
+        String previousEmail = isEmailChanged(stored, user) ? stored.getEmail() : null;
+        boolean released = previousEmail != null && ring.shardOfEmail(previousEmail) == shard;
+        if (released) {
+            release(previousEmail, user.getId(), version);
+        }
+        return new JsonObject()
+                .put("user", encode(saved))
+                .put("previousEmail", previousEmail)
+                .put("released", released);
+    }
+
+    private JsonObject delete(long id) {
+        Optional<User> stored = users.findById(id);
+        if (stored.isEmpty()) {
+            return new JsonObject().put("deleted", false);
+        }
+        users.deleteById(id);
+        String email = stored.get().getEmail();
+        boolean released = email != null && ring.shardOfEmail(email) == shard;
+        if (released) {
+            release(email, id, stored.get().getVersion() + 1);
+        }
+        return new JsonObject()
+                .put("deleted", true)
+                .put("email", email)
+                .put("version", stored.get().getVersion())
+                .put("released", released);
+    }
+
+    /**
+     * Claims the normalized email {@code key} for the user with the given id,
+     * for the write that stores it at {@code version}. Fails if another user
+     * owns it, unless {@code force} takes it over.
+     */
+    private boolean claim(String key, long id, long version, boolean force) {
+        Claim current = emails.get(key);
+        if (current != null && current.id() != id && !force) {
+            return false;
+        }
+        if (current == null || current.id() != id || current.version() < version) {
+            emails.put(key, new Claim(id, version));
+        }
+        return true;
+    }
+
+    /**
+     * Releases {@code email} if the user with the given id claimed it before
+     * the write at {@code version}.
+     */
+    private void release(String email, long id, long version) {
+        String key = normalize(email);
+        Claim current = emails.get(key);
+        if (current != null && current.id() == id && current.version() < version) {
+            emails.remove(key);
+        }
+    }
+
+    private static boolean isEmailChanged(User stored, User user) {
+        return stored != null && stored.getEmail() != null
+                && (user.getEmail() == null || !normalize(stored.getEmail()).equals(normalize(user.getEmail())));
+    }
+
+    private static JsonObject refused(User stored) {
+        return new JsonObject().put("user", null).put("stored", encode(stored));
+    }
+
+    private static JsonObject page(UserPage page) {
+        return new JsonObject()
+                .put("users", encode(page.getUsers()))
+                .put("more", page.getNextCursor() != null);
+    }
+
+    static JsonObject encode(User user) {
+        return user == null ? null : new JsonObject()
+                .put("id", user.getId())
+                .put("name", user.getName())
+                .put("email", user.getEmail())
+                .put("version", user.getVersion());
+    }
+
+    static JsonArray encode(List<User> users) {
+        JsonArray array = new JsonArray();
+        for (User user : users) {
+            array.add(encode(user));
+        }
+        return array;
+    }
+
+    static User decode(JsonObject json) {
+        return json == null ? null : new User(json.getLong("id"), json.getString("name"), json.getString("email"),
+                json.getLong("version"));
+    }
+
+    static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private record Claim(long id, long version) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkpoints a datastore at a fixed interval on a background thread, so that
+ * restarts only replay the log written since the last snapshot.
+ */
+public class CheckpointScheduler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckpointScheduler.class);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> Thread.ofPlatform().name("checkpoint").daemon().unstarted(runnable));
+
+    /**
+     * @param datastore The datastore to checkpoint.
+     * @param interval  Time between the end of a checkpoint and the start of the
+     *                  next one, in milliseconds.
+     */
+    public CheckpointScheduler(Checkpointable datastore, long interval) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                datastore.checkpoint();
+            } catch (RuntimeException e) {
+                // Keep the schedule going; the log still holds every write
+                log.error("Checkpoint failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops scheduling checkpoints and waits for a running one to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
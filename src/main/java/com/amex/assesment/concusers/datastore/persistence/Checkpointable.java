@@ -0,0 +1,14 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+/**
+ * A datastore that can write a snapshot of its table to its {@link MutationLog}.
+ */
+public interface Checkpointable {
+
+    /**
+     * Writes a snapshot and discards the log records it replaces.
+     *
+     * @return false if the log of this datastore does not support checkpoints.
+     */
+    boolean checkpoint();
+}
@@ -0,0 +1,26 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+/**
+ * How durable a write must be before the datastore call returns.
+ */
+public enum Durability {
+
+    /**
+     * The record is handed to the log writer and reaches the operating system
+     * in the background; it is never explicitly synced to disk. Survives a
+     * process crash once written, but not a power loss.
+     */
+    NONE,
+
+    /**
+     * Like {@link #NONE}, but the log writer also syncs to disk at least once per
+     * group-commit interval, bounding what a power loss can take away.
+     */
+    BATCHED,
+
+    /**
+     * The call waits until the record has been synced to disk. Concurrent
+     * synchronous writes are committed as a group and share a single fsync.
+     */
+    SYNC
+}
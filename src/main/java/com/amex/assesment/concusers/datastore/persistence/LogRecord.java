@@ -0,0 +1,147 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+import com.amex.assesment.concusers.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * One mutation of the user table as stored in the write-ahead log.
+ * <p>
+ * On disk a record is framed as {@code [int length][int crc32c][body]}, where
+ * the body is {@code [byte type][long id][int nameLength][name][int emailLength][email]}
+ * for {@link Type#PUT}, {@code [byte type][long id]} for {@link Type#DELETE} and
+ * {@link Type#SEQUENCE}, and {@code [byte type]} for {@link Type#CLEAR}. Strings are UTF-8 and a length of
+ * -1 stands for null. Every record carries the full state it writes, so replaying
+ * a record more than once is harmless.
+ */
+public final class LogRecord {
+
+    static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    public enum Type {
+        PUT,
+        DELETE,
+        CLEAR,
+        /**
+         * The id counter has reached at least {@link #getId()}. Emitted when a
+         * snapshot is loaded, so ids of users deleted before the snapshot are
+         * not handed out again.
+         */
+        SEQUENCE
+    }
+
+    private static final Type[] TYPES = Type.values();
+    private static final LogRecord CLEAR = new LogRecord(Type.CLEAR, 0, null, null);
+
+    private final Type type;
+    private final long id;
+    private final String name;
+    private final String email;
+
+    private LogRecord(Type type, long id, String name, String email) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.email = email;
+    }
+
+    public static LogRecord put(User user) {
+        return new LogRecord(Type.PUT, user.getId(), user.getName(), user.getEmail());
+    }
+
+    static LogRecord put(long id, String name, String email) {
+        return new LogRecord(Type.PUT, id, name, email);
+    }
+
+    public static LogRecord delete(long id) {
+        return new LogRecord(Type.DELETE, id, null, null);
+    }
+
+    public static LogRecord clear() {
+        return CLEAR;
+    }
+
+    public static LogRecord sequence(long id) {
+        return new LogRecord(Type.SEQUENCE, id, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the user written by a {@link Type#PUT} record.
+     */
+    public User toUser() {
+        return new User(id, name, email);
+    }
+
+    /**
+     * Encodes the record with its frame header, ready to be appended to the log.
+     */
+    byte[] encode() {
+        byte[] nameBytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+        byte[] emailBytes = email == null ? null : email.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = switch (type) {
+            case PUT -> 1 + Long.BYTES + stringLength(nameBytes) + stringLength(emailBytes);
+            case DELETE, SEQUENCE -> 1 + Long.BYTES;
+            case CLEAR -> 1;
+        };
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        buffer.putInt(bodyLength).putInt(0).put((byte) type.ordinal());
+        if (type != Type.CLEAR) {
+            buffer.putLong(id);
+        }
+        if (type == Type.PUT) {
+            putString(buffer, nameBytes);
+            putString(buffer, emailBytes);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER_BYTES, bodyLength);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a record body whose frame has already been checked.
+     */
+    static LogRecord decode(ByteBuffer body) {
+        Type type = TYPES[body.get()];
+        return switch (type) {
+            case PUT -> new LogRecord(Type.PUT, body.getLong(), getString(body), getString(body));
+            case DELETE -> delete(body.getLong());
+            case CLEAR -> CLEAR;
+            case SEQUENCE -> sequence(body.getLong());
+        };
+    }
+
+    private static int stringLength(byte[] bytes) {
+        return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
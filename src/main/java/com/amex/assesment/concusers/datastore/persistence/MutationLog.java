@@ -0,0 +1,113 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+import com.amex.assesment.concusers.model.User;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Records every mutation of the user table so that it can be rebuilt after a
+ * restart. The datastore appends a record while it still holds the entry it
+ * changes, so records of the same user are logged in the order they were
+ * applied.
+ */
+public interface MutationLog extends AutoCloseable {
+
+    /**
+     * A log that records nothing, for a purely in-memory datastore.
+     */
+    MutationLog NONE = new MutationLog() {
+        @Override
+        public void replay(Consumer<LogRecord> consumer) {
+        }
+
+        @Override
+        public CompletableFuture<Void> append(LogRecord record, Durability durability) {
+            return DURABLE;
+        }
+
+        @Override
+        public Durability defaultDurability() {
+            return Durability.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * An already completed future, returned for writes that need no waiting.
+     */
+    CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+    /**
+     * Feeds every record already in the log to {@code consumer}, oldest first.
+     * Must be called once, before the first append.
+     */
+    void replay(Consumer<LogRecord> consumer);
+
+    /**
+     * Appends a record. Never blocks on I/O; the returned future completes once
+     * the record is as durable as requested.
+     *
+     * @param record     The record to append.
+     * @param durability How durable the record must be for the future to
+     *                   complete.
+     * @return A future completing when the record is durable, or failing if it
+     *         could not be written.
+     */
+    CompletableFuture<Void> append(LogRecord record, Durability durability);
+
+    /**
+     * Returns the durability applied to writes that do not ask for one.
+     */
+    Durability defaultDurability();
+
+    /**
+     * Appends a record with the {@linkplain #defaultDurability() default
+     * durability}.
+     */
+    default CompletableFuture<Void> append(LogRecord record) {
+        return append(record, defaultDurability());
+    }
+
+    /**
+     * Whether this log can replace the records it holds with a snapshot, see
+     * {@link #beginCheckpoint()}.
+     */
+    default boolean supportsCheckpoints() {
+        return false;
+    }
+
+    /**
+     * Starts a checkpoint: records appended from now on are kept apart from the
+     * ones before, which the checkpoint will replace. The caller must then wait
+     * until every mutation that appended before this call is visible in its
+     * table, and pass the table to {@link #writeCheckpoint}.
+     *
+     * @return A future completing with the checkpoint number once the records
+     *         before the checkpoint have been set apart.
+     */
+    default CompletableFuture<Long> beginCheckpoint() {
+        throw new UnsupportedOperationException("Checkpoints are not supported by this log");
+    }
+
+    /**
+     * Writes a snapshot of the table for a checkpoint begun with
+     * {@link #beginCheckpoint()} and discards the records it replaces. The
+     * iteration does not have to be a consistent view: every record appended
+     * after the checkpoint began is replayed on top of the snapshot.
+     *
+     * @param checkpoint The number returned by {@link #beginCheckpoint()}.
+     * @param sequence   The current value of the id counter.
+     * @param users      The users of the table.
+     */
+    default void writeCheckpoint(long checkpoint, long sequence, Iterator<User> users) {
+        throw new UnsupportedOperationException("Checkpoints are not supported by this log");
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,142 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+import com.amex.assesment.concusers.model.User;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Binary snapshot of the user table, written and read through memory-mapped
+ * windows of the file.
+ * <p>
+ * The file starts with {@code [long magic][long sequence][long count]}, followed
+ * by {@code count} records framed as
+ * {@code [int length][long id][int nameLength][name][int emailLength][email]},
+ * with the same string encoding as {@link LogRecord}. A snapshot is written to a
+ * temporary file and renamed into place once synced, so a snapshot file with
+ * its final name is always complete.
+ */
+final class SnapshotFile {
+
+    private static final long MAGIC = 0x434F4E4355534E31L; // "CONCUSN1"
+    private static final int HEADER_BYTES = Long.BYTES * 3;
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes {@code users} and the id counter value {@code sequence} to
+     * {@code path}, replacing any existing file.
+     *
+     * @return The number of users written.
+     */
+    static long write(Path path, long sequence, Iterator<User> users) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long windowStart = HEADER_BYTES;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, WINDOW_BYTES);
+            long count = 0;
+            while (users.hasNext()) {
+                User user = users.next();
+                byte[] name = bytes(user.getName());
+                byte[] email = bytes(user.getEmail());
+                int length = Long.BYTES + stringLength(name) + stringLength(email);
+                if (window.remaining() < Integer.BYTES + length) {
+                    window.force();
+                    windowStart += window.position();
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart,
+                            Math.max(WINDOW_BYTES, Integer.BYTES + length));
+                }
+                window.putInt(length).putLong(user.getId());
+                putString(window, name);
+                putString(window, email);
+                count++;
+            }
+            window.force();
+            long end = windowStart + window.position();
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.putLong(MAGIC).putLong(sequence).putLong(count);
+            header.force();
+            channel.truncate(end);
+            channel.force(true);
+            return count;
+        }
+    }
+
+    /**
+     * Reads a snapshot, feeding a {@link LogRecord.Type#SEQUENCE} record with the
+     * id counter value first, then one {@link LogRecord.Type#PUT} record per
+     * user.
+     */
+    static void read(Path path, Consumer<LogRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Truncated snapshot " + path);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getLong() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            consumer.accept(LogRecord.sequence(header.getLong()));
+            long count = header.getLong();
+
+            long windowStart = HEADER_BYTES;
+            MappedByteBuffer window = map(channel, windowStart, size);
+            for (long i = 0; i < count; i++) {
+                if (window.remaining() < Integer.BYTES
+                        || window.remaining() < Integer.BYTES + window.getInt(window.position())) {
+                    windowStart += window.position();
+                    if (windowStart >= size) {
+                        throw new IOException("Truncated snapshot " + path);
+                    }
+                    window = map(channel, windowStart, size);
+                }
+                window.getInt();
+                long id = window.getLong();
+                String name = getString(window);
+                String email = getString(window);
+                consumer.accept(LogRecord.put(id, name, email));
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(size - position, Integer.MAX_VALUE));
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringLength(byte[] bytes) {
+        return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(MappedByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,486 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+import com.amex.assesment.concusers.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, file-based {@link MutationLog}.
+ * <p>
+ * Callers encode their record and put it on a lock-free queue; a single writer
+ * thread drains the queue, writes everything it finds through one
+ * {@link FileChannel} and then issues at most one {@code fsync} for the whole
+ * group (group commit). {@link Durability#SYNC} callers wait for the fsync that
+ * covers their record, {@link Durability#BATCHED} records are synced at least
+ * once per sync interval, and {@link Durability#NONE} records are never
+ * explicitly synced.
+ * <p>
+ * The log is stored as numbered segment files ({@code wal-<n>.log}) in one
+ * directory. On {@link #replay} every segment is read in order; a torn record at
+ * the end of the last segment, left by a crash in the middle of a write, is cut
+ * off before appending resumes.
+ * <p>
+ * A checkpoint rolls the log over to a new segment and writes a snapshot
+ * ({@code snapshot-<n>.snap}) of the table, memory-mapped, that replaces every
+ * segment before segment {@code n}. Replay then loads the latest snapshot and
+ * only the segments written since it began.
+ */
+public class WriteAheadLog implements MutationLog {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{20})\\.log");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{20})\\.snap");
+    private static final Pattern TEMPORARY_NAME = Pattern.compile("snapshot-\\d{20}\\.tmp");
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+
+    private final Path directory;
+    private final Durability defaultDurability;
+    private final long syncIntervalNanos;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+
+    private FileChannel channel;
+    private long segment;
+    private final AtomicLong lastSegment = new AtomicLong();
+    private Thread writer;
+    private volatile boolean replayed;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    /**
+     * Opens the log stored in {@code directory}, creating the directory if
+     * needed. Nothing is read or written until {@link #replay} is called.
+     *
+     * @param directory         Directory holding the segment files.
+     * @param defaultDurability Durability of appends that do not ask for one.
+     * @param syncInterval      Longest time between two syncs while
+     *                          {@link Durability#BATCHED} records are pending, in
+     *                          milliseconds.
+     */
+    public WriteAheadLog(Path directory, Durability defaultDurability, long syncInterval) {
+        this.directory = directory;
+        this.defaultDurability = defaultDurability;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, syncInterval));
+    }
+
+    @Override
+    public synchronized void replay(Consumer<LogRecord> consumer) {
+        if (replayed) {
+            throw new IllegalStateException("The log has already been replayed");
+        }
+        try {
+            Files.createDirectories(directory);
+            deleteMatching(TEMPORARY_NAME, Long.MAX_VALUE);
+            List<Long> snapshots = listNumbered(SNAPSHOT_NAME);
+            long snapshot = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+            if (snapshot > 0) {
+                SnapshotFile.read(snapshotPath(snapshot), consumer);
+            }
+            List<Long> segments = listNumbered(SEGMENT_NAME).stream().filter(n -> n >= snapshot).toList();
+            for (int i = 0; i < segments.size(); i++) {
+                boolean last = i == segments.size() - 1;
+                replaySegment(segmentPath(segments.get(i)), consumer, last);
+            }
+            segment = segments.isEmpty() ? Math.max(1, snapshot) : segments.get(segments.size() - 1);
+            lastSegment.set(segment);
+            channel = FileChannel.open(segmentPath(segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover the write-ahead log in " + directory, e);
+        }
+        writer = Thread.ofPlatform().name("wal-writer").daemon().start(this::writeLoop);
+        replayed = true;
+    }
+
+    @Override
+    public CompletableFuture<Void> append(LogRecord record, Durability durability) {
+        if (!replayed) {
+            throw new IllegalStateException("The log must be replayed before appending");
+        }
+        checkUsable();
+        Entry entry = new Entry(record.encode(), durability);
+        enqueue(entry);
+        if (durability == Durability.SYNC) {
+            LockSupport.unpark(writer);
+            return entry.synced;
+        }
+        return DURABLE;
+    }
+
+    @Override
+    public Durability defaultDurability() {
+        return defaultDurability;
+    }
+
+    @Override
+    public boolean supportsCheckpoints() {
+        return true;
+    }
+
+    /**
+     * Queues a roll-over to a new segment behind every record appended so far.
+     * The returned future completes with the new segment number once the
+     * writer has switched to it.
+     */
+    @Override
+    public CompletableFuture<Long> beginCheckpoint() {
+        if (!replayed) {
+            throw new IllegalStateException("The log must be replayed before a checkpoint");
+        }
+        checkUsable();
+        Entry entry = new Entry(lastSegment.incrementAndGet());
+        enqueue(entry);
+        LockSupport.unpark(writer);
+        return entry.rolled;
+    }
+
+    @Override
+    public void writeCheckpoint(long checkpoint, long sequence, Iterator<User> users) {
+        Path temporary = directory.resolve(String.format("snapshot-%020d.tmp", checkpoint));
+        try {
+            SnapshotFile.write(temporary, sequence, users);
+            Files.move(temporary, snapshotPath(checkpoint), StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+            deleteMatching(SEGMENT_NAME, checkpoint);
+            deleteMatching(SNAPSHOT_NAME, checkpoint);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + checkpoint + " in " + directory, e);
+        }
+    }
+
+    /**
+     * Stops accepting records, writes and syncs everything still queued and
+     * closes the current segment.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkUsable() {
+        if (closed) {
+            throw new IllegalStateException("The write-ahead log is closed");
+        }
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new IllegalStateException("The write-ahead log failed and no longer accepts writes", cause);
+        }
+    }
+
+    /**
+     * Queues an entry for the writer. The writer may have failed or stopped
+     * since {@link #checkUsable} passed, after its last look at the queue, in
+     * which case nobody would ever complete the entry: it is taken back and
+     * rejected instead. If it cannot be taken back, the writer already has it
+     * and completes it.
+     */
+    private void enqueue(Entry entry) {
+        queue.offer(entry);
+        if ((closed || failure != null) && queue.remove(entry)) {
+            checkUsable();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> waiting = new ArrayList<>();
+        boolean unsynced = false;
+        long lastSync = System.nanoTime();
+        Entry entry = null;
+        while (true) {
+            boolean stopping = closed;
+            try {
+                boolean wrote = false;
+                while ((entry = queue.poll()) != null) {
+                    if (entry.bytes == null) {
+                        roll(entry, waiting);
+                        unsynced = false;
+                        lastSync = System.nanoTime();
+                        continue;
+                    }
+                    write(entry.bytes);
+                    wrote = true;
+                    if (entry.durability == Durability.SYNC) {
+                        waiting.add(entry);
+                    } else if (entry.durability == Durability.BATCHED) {
+                        unsynced = true;
+                    }
+                }
+                if (wrote) {
+                    flush();
+                }
+                long now = System.nanoTime();
+                if (!waiting.isEmpty() || stopping || (unsynced && now - lastSync >= syncIntervalNanos)) {
+                    channel.force(false);
+                    lastSync = now;
+                    unsynced = false;
+                    for (Entry synced : waiting) {
+                        synced.synced.complete(null);
+                    }
+                    waiting.clear();
+                }
+                if (stopping) {
+                    return;
+                }
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(this, syncIntervalNanos);
+                }
+            } catch (IOException | RuntimeException e) {
+                // The entry being written or rolled to is neither queued nor waiting
+                if (entry != null) {
+                    completeExceptionally(entry, e);
+                }
+                fail(e, waiting);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Syncs and closes the current segment, then continues in the segment
+     * requested by a checkpoint.
+     */
+    private void roll(Entry entry, List<Entry> waiting) throws IOException {
+        flush();
+        channel.force(false);
+        for (Entry synced : waiting) {
+            synced.synced.complete(null);
+        }
+        waiting.clear();
+        channel.close();
+        channel = FileChannel.open(segmentPath(entry.segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segment = entry.segment;
+        entry.rolled.complete(entry.segment);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (bytes.length > writeBuffer.remaining()) {
+            flush();
+        }
+        if (bytes.length > writeBuffer.capacity()) {
+            ByteBuffer large = ByteBuffer.wrap(bytes);
+            while (large.hasRemaining()) {
+                channel.write(large);
+            }
+            return;
+        }
+        writeBuffer.put(bytes);
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void fail(Throwable cause, List<Entry> waiting) {
+        failure = cause;
+        for (Entry entry : waiting) {
+            entry.synced.completeExceptionally(cause);
+        }
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            completeExceptionally(entry, cause);
+        }
+    }
+
+    private static void completeExceptionally(Entry entry, Throwable cause) {
+        if (entry.synced != null) {
+            entry.synced.completeExceptionally(cause);
+        }
+        if (entry.rolled != null) {
+            entry.rolled.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Reads every complete record of a segment. Anything after the last
+     * complete record of the last segment is a write torn by a crash and is
+     * truncated; in an older segment it means the log is damaged.
+     */
+    private void replaySegment(Path path, Consumer<LogRecord> consumer, boolean last) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES).flip();
+            CRC32C crc = new CRC32C();
+            long validEnd = 0;
+            boolean eof = false;
+            while (true) {
+                if (buffer.remaining() < LogRecord.HEADER_BYTES && !eof) {
+                    eof = !fill(in, buffer);
+                }
+                if (buffer.remaining() < LogRecord.HEADER_BYTES) {
+                    break;
+                }
+                int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                if (buffer.remaining() < LogRecord.HEADER_BYTES + length) {
+                    if (LogRecord.HEADER_BYTES + length > buffer.capacity()) {
+                        buffer = grow(buffer, LogRecord.HEADER_BYTES + length);
+                    }
+                    if (eof || !fill(in, buffer)) {
+                        eof = true;
+                        if (buffer.remaining() < LogRecord.HEADER_BYTES + length) {
+                            break;
+                        }
+                    }
+                    continue;
+                }
+                int expectedCrc = buffer.getInt(buffer.position() + Integer.BYTES);
+                int bodyStart = buffer.position() + LogRecord.HEADER_BYTES;
+                crc.reset();
+                crc.update(buffer.array(), buffer.arrayOffset() + bodyStart, length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                ByteBuffer body = buffer.slice(bodyStart, length);
+                consumer.accept(LogRecord.decode(body));
+                buffer.position(bodyStart + length);
+                validEnd += LogRecord.HEADER_BYTES + length;
+            }
+            if (validEnd < in.size()) {
+                if (!last) {
+                    throw new IOException("Corrupted record in " + path + " at offset " + validEnd);
+                }
+                in.truncate(validEnd);
+                in.force(true);
+            }
+        }
+    }
+
+    /**
+     * Compacts the unread bytes to the start of the buffer and reads more.
+     *
+     * @return false if the end of the file was reached without reading anything.
+     */
+    private static boolean fill(FileChannel in, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        int read;
+        try {
+            read = in.read(buffer);
+        } finally {
+            buffer.flip();
+        }
+        return read > 0;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+        larger.put(buffer);
+        larger.flip();
+        return larger;
+    }
+
+    private List<Long> listNumbered(Pattern name) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> name.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Deletes the files matching {@code name} numbered below {@code before};
+     * files without a number are always deleted.
+     */
+    private void deleteMatching(Pattern name, long before) throws IOException {
+        List<Path> obsolete;
+        try (Stream<Path> files = Files.list(directory)) {
+            obsolete = files.filter(path -> {
+                Matcher matcher = name.matcher(path.getFileName().toString());
+                return matcher.matches() && (matcher.groupCount() == 0 || Long.parseLong(matcher.group(1)) < before);
+            }).toList();
+        }
+        for (Path path : obsolete) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not every platform can sync a directory; the rename is still atomic
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("wal-%020d.log", number));
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("snapshot-%020d.snap", number));
+    }
+
+    /**
+     * A queued record, or a roll-over to a new segment when {@code bytes} is
+     * null.
+     */
+    private static final class Entry {
+        final byte[] bytes;
+        final Durability durability;
+        final CompletableFuture<Void> synced;
+        final long segment;
+        final CompletableFuture<Long> rolled;
+
+        Entry(byte[] bytes, Durability durability) {
+            this.bytes = bytes;
+            this.durability = durability;
+            this.synced = durability == Durability.SYNC ? new CompletableFuture<>() : null;
+            this.segment = 0;
+            this.rolled = null;
+        }
+
+        Entry(long segment) {
+            this.bytes = null;
+            this.durability = Durability.NONE;
+            this.synced = null;
+            this.segment = segment;
+            this.rolled = new CompletableFuture<>();
+        }
+    }
+}
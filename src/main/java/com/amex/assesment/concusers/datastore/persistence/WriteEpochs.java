@@ -0,0 +1,52 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets a checkpoint wait for the writes that started before it without
+ * blocking the writes that start after it. Writes register with the current
+ * epoch; {@link #advance()} switches to a new epoch and waits until no write of
+ * the previous one is left.
+ */
+public final class WriteEpochs {
+
+    // Writes in progress, per epoch parity
+    private final LongAdder[] inProgress = {new LongAdder(), new LongAdder()};
+    private volatile int epoch;
+
+    /**
+     * Registers a write with the current epoch.
+     *
+     * @return The epoch to pass to {@link #end(int)} once the write is done.
+     */
+    public int begin() {
+        while (true) {
+            int current = epoch;
+            LongAdder writes = inProgress[current & 1];
+            writes.increment();
+            // advance() may have switched the epoch in between; it would not
+            // wait for this write then
+            if (epoch == current) {
+                return current;
+            }
+            writes.decrement();
+        }
+    }
+
+    public void end(int writeEpoch) {
+        inProgress[writeEpoch & 1].decrement();
+    }
+
+    /**
+     * Switches to a new epoch and waits for every write registered with the
+     * previous one to end. Must not be called concurrently with itself.
+     */
+    public void advance() {
+        int previous = epoch;
+        epoch = previous + 1;
+        LongAdder previousWrites = inProgress[previous & 1];
+        while (previousWrites.sum() != 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.amex.assesment.concusers.exception;
+
+public class ConcurrentUpdateException extends RuntimeException {
+
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
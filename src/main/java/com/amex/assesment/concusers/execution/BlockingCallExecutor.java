@@ -0,0 +1,78 @@
+package com.amex.assesment.concusers.execution;
+
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs blocking calls according to the configured {@link ExecutionMode} and
+ * exposes their outcome as a Vert.x {@link Future}. The returned future always
+ * completes on the Vert.x context of the caller, so callers can keep composing
+ * on the event loop. Outside a Vert.x context calls always run inline.
+ */
+@Component
+public class BlockingCallExecutor implements AutoCloseable {
+
+    private final ExecutionMode mode;
+    private final ExecutorService virtualThreads;
+
+    @Autowired
+    public BlockingCallExecutor(ConcUsersProperties properties) {
+        this(properties.getHttp().getExecutionMode());
+    }
+
+    public BlockingCallExecutor(ExecutionMode mode) {
+        this.mode = mode;
+        this.virtualThreads = mode == ExecutionMode.VIRTUAL_THREAD
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("blocking-call-", 0).factory())
+                : null;
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Runs {@code call} and returns its result, or its exception as a failed
+     * future.
+     */
+    public <T> Future<T> execute(Callable<T> call) {
+        Context context = Vertx.currentContext();
+        if (mode == ExecutionMode.EVENT_LOOP || context == null) {
+            try {
+                return Future.succeededFuture(call.call());
+            } catch (Exception e) {
+                return Future.failedFuture(e);
+            }
+        }
+        if (mode == ExecutionMode.WORKER) {
+            // Unordered: calls of the same context may run in parallel
+            return context.executeBlocking(call, false);
+        }
+        Promise<T> promise = Promise.promise();
+        virtualThreads.execute(() -> {
+            try {
+                T result = call.call();
+                context.runOnContext(v -> promise.complete(result));
+            } catch (Exception e) {
+                context.runOnContext(v -> promise.fail(e));
+            }
+        });
+        return promise.future();
+    }
+
+    @Override
+    public void close() {
+        if (virtualThreads != null) {
+            virtualThreads.close();
+        }
+    }
+}
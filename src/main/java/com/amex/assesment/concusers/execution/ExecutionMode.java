@@ -0,0 +1,25 @@
+package com.amex.assesment.concusers.execution;
+
+/**
+ * Where {@link BlockingCallExecutor} runs blocking datastore calls.
+ */
+public enum ExecutionMode {
+
+    /**
+     * Inline on the event loop that received the request. Cheapest, but a slow
+     * call stalls every connection served by that loop.
+     */
+    EVENT_LOOP,
+
+    /**
+     * On the Vert.x worker pool, through {@code executeBlocking}. The number of
+     * calls in flight is bounded by the worker pool size.
+     */
+    WORKER,
+
+    /**
+     * On a new virtual thread per call, so blocked calls cost no platform
+     * thread.
+     */
+    VIRTUAL_THREAD
+}
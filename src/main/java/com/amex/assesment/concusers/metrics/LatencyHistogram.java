@@ -0,0 +1,39 @@
+package com.amex.assesment.concusers.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of latencies recorded from any number of threads. Recording
+ * goes to an HdrHistogram {@link Recorder}, which is wait-free and allocation
+ * free for writers; a reader swaps out what was recorded since the previous
+ * read and adds it to a running total, so readers never stall writers.
+ * <p>
+ * Values are kept with two significant digits, which bounds the error of every
+ * percentile to 1% and keeps a histogram at a few tens of kilobytes.
+ */
+public final class LatencyHistogram {
+
+    // Longest latency told apart; longer ones are recorded as this
+    private static final long MAX_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(MAX_NANOS, SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(MAX_NANOS, SIGNIFICANT_DIGITS);
+    private final Histogram interval = new Histogram(MAX_NANOS, SIGNIFICANT_DIGITS);
+
+    public void record(long nanos) {
+        recorder.recordValue(Math.max(0, Math.min(nanos, MAX_NANOS)));
+    }
+
+    /**
+     * Returns a copy of every latency recorded so far, in nanoseconds.
+     */
+    public synchronized Histogram snapshot() {
+        recorder.getIntervalHistogramInto(interval);
+        total.add(interval);
+        return total.copy();
+    }
+}
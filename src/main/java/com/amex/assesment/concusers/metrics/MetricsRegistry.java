@@ -0,0 +1,178 @@
+package com.amex.assesment.concusers.metrics;
+
+import com.amex.assesment.concusers.datastore.CachingUserDatastore;
+import com.amex.assesment.concusers.datastore.DatastoreStats;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.replication.Replicator;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.vertx.core.http.HttpMethod;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Holds the metrics of every instrumented route and renders them, together
+ * with the statistics of the datastore, its cache, the change feed and the
+ * replicator, in the
+ * Prometheus text exposition format.
+ * <p>
+ * Route metrics are looked up once, when the routes are registered, so
+ * requests only touch their own counters and histogram. Latencies are exported
+ * as summaries over the whole life of the process.
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    // Keyed by path then method, so that the output is stable
+    private final Map<String, RouteMetrics> routes = new ConcurrentSkipListMap<>();
+    private final DatastoreStats datastore;
+    private final CachingUserDatastore cache;
+    private final ChangeFeed changes;
+    private final Replicator replicator;
+
+    @Autowired
+    public MetricsRegistry(ObjectProvider<DatastoreStats> datastore, ObjectProvider<CachingUserDatastore> cache,
+            ChangeFeed changes, ObjectProvider<Replicator> replicator) {
+        this(datastore.getIfUnique(), cache.getIfUnique(), changes, replicator.getIfAvailable());
+    }
+
+    /**
+     * Creates a registry exporting route metrics only.
+     */
+    public MetricsRegistry() {
+        this((DatastoreStats) null, null, null, null);
+    }
+
+    /**
+     * Creates a registry exporting the given components; any of them can be
+     * null.
+     */
+    public MetricsRegistry(DatastoreStats datastore, CachingUserDatastore cache, ChangeFeed changes) {
+        this(datastore, cache, changes, null);
+    }
+
+    public MetricsRegistry(DatastoreStats datastore, CachingUserDatastore cache, ChangeFeed changes,
+            Replicator replicator) {
+        this.datastore = datastore;
+        this.cache = cache;
+        this.changes = changes;
+        this.replicator = replicator;
+    }
+
+    /**
+     * Returns the metrics of a route, created on the first call for that
+     * method and path.
+     */
+    public RouteMetrics route(HttpMethod method, String path) {
+        return routes.computeIfAbsent(path + ' ' + method.name(), key -> new RouteMetrics(method, path));
+    }
+
+    /**
+     * Renders every metric in the Prometheus text format, version 0.0.4.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        List<RouteMetrics> snapshot = new ArrayList<>(routes.values());
+
+        family(out, "concusers_http_requests_total", "counter", "Requests received, by route.");
+        for (RouteMetrics route : snapshot) {
+            sample(out, "concusers_http_requests_total", labels(route), route.requests());
+        }
+
+        family(out, "concusers_http_responses_total", "counter", "Responses sent, by route and status code.");
+        for (RouteMetrics route : snapshot) {
+            for (int status = 100; status < 600; status++) {
+                long count = route.responses(status);
+                if (count > 0) {
+                    sample(out, "concusers_http_responses_total",
+                            labels(route) + ",status=\"" + status + '"', count);
+                }
+            }
+        }
+
+        family(out, "concusers_http_request_duration_seconds", "summary",
+                "Time from receiving a request to sending the response headers, by route.");
+        for (RouteMetrics route : snapshot) {
+            summary(out, "concusers_http_request_duration_seconds", labels(route), route.latency().snapshot());
+        }
+
+        if (datastore != null) {
+            family(out, "concusers_datastore_users", "gauge", "Users stored.");
+            sample(out, "concusers_datastore_users", null, datastore.size());
+            family(out, "concusers_datastore_last_id", "gauge", "High-water mark of the id generator.");
+            sample(out, "concusers_datastore_last_id", null, datastore.lastId());
+            family(out, "concusers_datastore_email_check_duration_seconds", "summary",
+                    "Time to check whether an email belongs to another user, or to reserve it.");
+            summary(out, "concusers_datastore_email_check_duration_seconds", null,
+                    datastore.emailCheckLatency().snapshot());
+        }
+
+        if (cache != null) {
+            CacheStats stats = cache.stats();
+            family(out, "concusers_cache_requests_total", "counter", "Reads by id through the cache, by result.");
+            sample(out, "concusers_cache_requests_total", "result=\"hit\"", stats.hitCount());
+            sample(out, "concusers_cache_requests_total", "result=\"miss\"", stats.missCount());
+            family(out, "concusers_cache_evictions_total", "counter", "Entries evicted from the cache.");
+            sample(out, "concusers_cache_evictions_total", null, stats.evictionCount());
+            family(out, "concusers_cache_entries", "gauge", "Approximate number of ids cached.");
+            sample(out, "concusers_cache_entries", null, cache.estimatedSize());
+        }
+
+        if (changes != null) {
+            family(out, "concusers_changes_last_sequence", "gauge", "Sequence of the last change published.");
+            sample(out, "concusers_changes_last_sequence", null, changes.nextSequence() - 1);
+        }
+
+        if (replicator != null) {
+            family(out, "concusers_replication_applied_sequence", "gauge",
+                    "Sequence of the last change of the primary applied, -1 while loading a snapshot.");
+            sample(out, "concusers_replication_applied_sequence", null, replicator.appliedSequence());
+            family(out, "concusers_replication_snapshots_total", "counter", "Snapshots of the primary loaded.");
+            sample(out, "concusers_replication_snapshots_total", null, replicator.snapshotCount());
+            family(out, "concusers_replication_reconnects_total", "counter",
+                    "Times the stream of changes of the primary was lost.");
+            sample(out, "concusers_replication_reconnects_total", null, replicator.reconnectCount());
+        }
+        return out.toString();
+    }
+
+    private static String labels(RouteMetrics route) {
+        return "method=\"" + route.getMethod().name() + "\",route=\"" + route.getPath() + '"';
+    }
+
+    private static void family(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, Histogram histogram) {
+        String prefix = labels == null ? "" : labels + ',';
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(prefix).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND).append('\n');
+        }
+        // HdrHistogram does not keep the exact sum; the mean times the count is
+        // within the precision of the histogram
+        String suffix = labels == null ? "" : '{' + labels + '}';
+        out.append(name).append("_sum").append(suffix).append(' ')
+                .append(histogram.getMean() * histogram.getTotalCount() / NANOS_PER_SECOND).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(histogram.getTotalCount()).append('\n');
+    }
+}
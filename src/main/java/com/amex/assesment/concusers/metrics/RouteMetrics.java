@@ -0,0 +1,82 @@
+package com.amex.assesment.concusers.metrics;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request count, response count per status code and latency of one route.
+ * Counters are {@link LongAdder}s, so the event loops serving the route do not
+ * contend on a shared counter.
+ */
+public final class RouteMetrics {
+
+    private static final int MAX_STATUS = 600;
+
+    private final HttpMethod method;
+    private final String path;
+    private final LongAdder requests = new LongAdder();
+    // Indexed by status code, created on the first response with that status
+    private final AtomicReferenceArray<LongAdder> responses = new AtomicReferenceArray<>(MAX_STATUS);
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    RouteMetrics(HttpMethod method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    /**
+     * Wraps the handler of the route so that every request is counted, and its
+     * status and latency are recorded when the response headers are sent. For
+     * streamed responses the latency is thus the time to the first byte.
+     */
+    public Handler<RoutingContext> instrument(Handler<RoutingContext> handler) {
+        return context -> {
+            long start = System.nanoTime();
+            requests.increment();
+            context.addHeadersEndHandler(v ->
+                    recordResponse(context.response().getStatusCode(), System.nanoTime() - start));
+            handler.handle(context);
+        };
+    }
+
+    void recordResponse(int status, long nanos) {
+        latency.record(nanos);
+        if (status < 0 || status >= MAX_STATUS) {
+            return;
+        }
+        LongAdder counter = responses.get(status);
+        if (counter == null) {
+            responses.compareAndSet(status, null, new LongAdder());
+            counter = responses.get(status);
+        }
+        counter.increment();
+    }
+
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of responses sent with {@code status}.
+     */
+    public long responses(int status) {
+        LongAdder counter = status < 0 || status >= MAX_STATUS ? null : responses.get(status);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    LatencyHistogram latency() {
+        return latency;
+    }
+}
@@ -0,0 +1,63 @@
+package com.amex.assesment.concusers.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Result of one item of a batch request. Results are returned in the same
+ * order as the items of the request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    private final BatchItemStatus status;
+    private final Long id;
+    private final User user;
+    private final String message;
+
+    private BatchItemResult(BatchItemStatus status, Long id, User user, String message) {
+        this.status = status;
+        this.id = id;
+        this.user = user;
+        this.message = message;
+    }
+
+    public static BatchItemResult created(User user) {
+        return new BatchItemResult(BatchItemStatus.CREATED, user.getId(), user, null);
+    }
+
+    public static BatchItemResult updated(User user) {
+        return new BatchItemResult(BatchItemStatus.UPDATED, user.getId(), user, null);
+    }
+
+    public static BatchItemResult deleted(long id) {
+        return new BatchItemResult(BatchItemStatus.DELETED, id, null, null);
+    }
+
+    public static BatchItemResult conflict(Long id, String message) {
+        return new BatchItemResult(BatchItemStatus.CONFLICT, id, null, message);
+    }
+
+    public static BatchItemResult invalid(String message) {
+        return new BatchItemResult(BatchItemStatus.INVALID, null, null, message);
+    }
+
+    public static BatchItemResult notFound(long id, String message) {
+        return new BatchItemResult(BatchItemStatus.NOT_FOUND, id, null, message);
+    }
+
+    public BatchItemStatus getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,13 @@
+package com.amex.assesment.concusers.model;
+
+/**
+ * Outcome of a single item of a batch request.
+ */
+public enum BatchItemStatus {
+    CREATED,
+    UPDATED,
+    DELETED,
+    CONFLICT,
+    INVALID,
+    NOT_FOUND
+}
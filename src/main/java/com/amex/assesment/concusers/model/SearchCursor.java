@@ -0,0 +1,71 @@
+package com.amex.assesment.concusers.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Position in search results, which are ordered by lower-cased name then id.
+ * Clients get it as an opaque string in {@link UserPage#getNextCursor()} and
+ * pass it back unchanged to fetch the next page.
+ */
+public final class SearchCursor {
+
+    /**
+     * The order of search results.
+     */
+    public static final Comparator<User> ORDER = Comparator
+            .comparing(SearchCursor::lowerCaseName)
+            .thenComparingLong(User::getId);
+
+    private final String name;
+    private final long id;
+
+    public SearchCursor(String name, long id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Returns the position of {@code user} in search results.
+     */
+    public static SearchCursor at(User user) {
+        return new SearchCursor(lowerCaseName(user), user.getId());
+    }
+
+    /**
+     * The lower-cased name of the last user returned.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        byte[] bytes = (id + ":" + name).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Decodes a cursor returned by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if {@code cursor} was not returned by
+     *                                  {@link #encode()}
+     */
+    public static SearchCursor decode(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid search cursor");
+        }
+        return new SearchCursor(decoded.substring(separator + 1), Long.parseLong(decoded, 0, separator, 10));
+    }
+
+    private static String lowerCaseName(User user) {
+        return user.getName() == null ? "" : user.getName().toLowerCase(Locale.ROOT);
+    }
+}
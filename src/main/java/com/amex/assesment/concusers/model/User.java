@@ -1,54 +1,84 @@
 package com.amex.assesment.concusers.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
 import java.util.Objects;
 
-public class User {
+/**
+ * A user as stored by the datastore. Users are immutable: a write stores a new
+ * instance, so a reader always sees the name, email and version of one write,
+ * without taking any lock, and can keep the instance it read for as long as it
+ * needs.
+ */
+public final class User {
 
-    private long id;
+    private final long id;
 
     @NotBlank(message = "Name cannot be blank")
     @Size(min = 2, max = 100, message = "Name must be between 2 and 100 characters")
-    private String name;
+    private final String name;
 
     @NotBlank(message = "Email cannot be blank")
     @Email(message = "Email should be valid")
-    private String email;
+    private final String email;
 
-    public User() {
+    // Set by the datastore on every write of this user; not part of the JSON
+    // representation, clients see it as the entity tag of the user
+    private final long version;
+
+    @JsonCreator
+    public User(@JsonProperty("id") long id, @JsonProperty("name") String name,
+            @JsonProperty("email") String email) {
+        this(id, name, email, 0);
     }
 
-    public User(long id, String name, String email) {
+    public User(long id, String name, String email, long version) {
         this.id = id;
         this.name = name;
         this.email = email;
+        this.version = version;
     }
 
     public long getId() {
         return id;
     }
 
-    public void setId(long id) {
-        this.id = id;
-    }
-
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
     public String getEmail() {
         return email;
     }
 
-    public void setEmail(String email) {
-        this.email = email;
+    /**
+     * Returns the version of the user as last written to the datastore, or 0
+     * for a user that has not been saved. When saving through
+     * {@code saveIfEmailAbsent}, a non-zero version is the version the stored
+     * user is expected to be at.
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a copy of this user with the given id.
+     */
+    public User withId(long id) {
+        return new User(id, name, email, version);
+    }
+
+    /**
+     * Returns a copy of this user at the given version.
+     */
+    public User withVersion(long version) {
+        return new User(id, name, email, version);
     }
 
     @Override
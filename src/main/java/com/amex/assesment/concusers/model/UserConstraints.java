@@ -0,0 +1,166 @@
+package com.amex.assesment.concusers.model;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+import java.lang.annotation.Annotation;
+import java.net.IDN;
+import java.util.regex.Pattern;
+
+/**
+ * The constraints declared on {@link User} and {@link EmailUpdateRequest},
+ * checked by plain code. Going through a Bean Validation {@code Validator}
+ * walks the metadata of the class by reflection, creates a violation per
+ * failure and interpolates its message, on every request; here the messages
+ * and bounds are read from the annotations once, when the class is loaded, so
+ * they stay the single source of truth.
+ * <p>
+ * Each check gives the same result as the Hibernate Validator implementation
+ * of its annotation: {@code @NotBlank} rejects null and strings that are empty
+ * once trimmed, {@code @Size} counts chars and accepts null, and {@code @Email}
+ * accepts null and empty strings and otherwise applies the same local part and
+ * domain rules. Messages are joined with ", " in the order the constraints are
+ * declared.
+ */
+public final class UserConstraints {
+
+    private static final String NAME_BLANK = annotation(User.class, "name", NotBlank.class).message();
+    private static final int NAME_MIN = annotation(User.class, "name", Size.class).min();
+    private static final int NAME_MAX = annotation(User.class, "name", Size.class).max();
+    private static final String NAME_SIZE = annotation(User.class, "name", Size.class).message();
+    private static final String EMAIL_BLANK = annotation(User.class, "email", NotBlank.class).message();
+    private static final String EMAIL_INVALID = annotation(User.class, "email", Email.class).message();
+    private static final String UPDATE_EMAIL_BLANK =
+            annotation(EmailUpdateRequest.class, "email", NotBlank.class).message();
+    private static final String UPDATE_EMAIL_INVALID =
+            annotation(EmailUpdateRequest.class, "email", Email.class).message();
+
+    // The patterns of Hibernate Validator's AbstractEmailValidator and DomainNameUtil
+    private static final int MAX_LOCAL_PART_LENGTH = 64;
+    private static final int MAX_DOMAIN_LENGTH = 255;
+    private static final String LOCAL_PART_ATOM = "[a-z0-9!#$%&'*+/=?^_`{|}~\u0080-\uFFFF-]";
+    private static final String LOCAL_PART_INSIDE_QUOTES_ATOM =
+            "(?:[a-z0-9!#$%&'*.(),<>\\[\\]:;  @+/=?^_`{|}~\u0080-\uFFFF-]|\\\\\\\\|\\\\\\\")";
+    private static final String LOCAL_PART_WORD =
+            "(?:" + LOCAL_PART_ATOM + "+|\"" + LOCAL_PART_INSIDE_QUOTES_ATOM + "+\")";
+    private static final Pattern LOCAL_PART = Pattern.compile(
+            LOCAL_PART_WORD + "(?:\\." + LOCAL_PART_WORD + ")*", Pattern.CASE_INSENSITIVE);
+    private static final String DOMAIN_CHARS = "[a-z\u0080-\uFFFF0-9!#$%&'*+/=?^_`{|}~]";
+    private static final String DOMAIN_LABEL = "(?:" + DOMAIN_CHARS + "-*)*" + DOMAIN_CHARS + "++";
+    private static final String DOMAIN = DOMAIN_LABEL + "(?:\\." + DOMAIN_LABEL + ")*";
+    private static final String IP_DOMAIN = "[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}";
+    private static final String IP_V4_IN_V6 = "(?:(?:25[0-5]|(?:2[0-4]|1{0,1}[0-9]){0,1}[0-9])\\.){3,3}"
+            + "(?:25[0-5]|(?:2[0-4]|1{0,1}[0-9]){0,1}[0-9])";
+    private static final String IP_V6_DOMAIN = "(?:(?:[0-9a-fA-F]{1,4}:){7,7}[0-9a-fA-F]{1,4}"
+            + "|(?:[0-9a-fA-F]{1,4}:){1,7}:"
+            + "|(?:[0-9a-fA-F]{1,4}:){1,6}:[0-9a-fA-F]{1,4}"
+            + "|(?:[0-9a-fA-F]{1,4}:){1,5}(?::[0-9a-fA-F]{1,4}){1,2}"
+            + "|(?:[0-9a-fA-F]{1,4}:){1,4}(?::[0-9a-fA-F]{1,4}){1,3}"
+            + "|(?:[0-9a-fA-F]{1,4}:){1,3}(?::[0-9a-fA-F]{1,4}){1,4}"
+            + "|(?:[0-9a-fA-F]{1,4}:){1,2}(?::[0-9a-fA-F]{1,4}){1,5}"
+            + "|[0-9a-fA-F]{1,4}:(?:(?::[0-9a-fA-F]{1,4}){1,6})"
+            + "|:(?:(?::[0-9a-fA-F]{1,4}){1,7}|:)"
+            + "|fe80:(?::[0-9a-fA-F]{0,4}){0,4}%[0-9a-zA-Z]{1,}"
+            + "|::(?:ffff(:0{1,4}){0,1}:){0,1}" + IP_V4_IN_V6
+            + "|(?:[0-9a-fA-F]{1,4}:){1,4}:" + IP_V4_IN_V6 + ")";
+    private static final Pattern EMAIL_DOMAIN = Pattern.compile(
+            DOMAIN + "|\\[" + IP_DOMAIN + "\\]|\\[IPv6:" + IP_V6_DOMAIN + "\\]", Pattern.CASE_INSENSITIVE);
+
+    private UserConstraints() {
+    }
+
+    /**
+     * Returns the messages of the constraints {@code user} violates, or null
+     * if it is valid.
+     */
+    public static String validate(User user) {
+        String errors = null;
+        String name = user.getName();
+        if (isBlank(name)) {
+            errors = NAME_BLANK;
+        }
+        if (name != null && (name.length() < NAME_MIN || name.length() > NAME_MAX)) {
+            errors = append(errors, NAME_SIZE);
+        }
+        return validateEmail(errors, user.getEmail(), EMAIL_BLANK, EMAIL_INVALID);
+    }
+
+    /**
+     * Returns the messages of the constraints {@code request} violates, or
+     * null if it is valid.
+     */
+    public static String validate(EmailUpdateRequest request) {
+        return validateEmail(null, request.getEmail(), UPDATE_EMAIL_BLANK, UPDATE_EMAIL_INVALID);
+    }
+
+    private static String validateEmail(String errors, String email, String blankMessage, String invalidMessage) {
+        if (isBlank(email)) {
+            errors = append(errors, blankMessage);
+        }
+        if (!isEmail(email)) {
+            errors = append(errors, invalidMessage);
+        }
+        return errors;
+    }
+
+    private static boolean isBlank(String value) {
+        // NotBlank trims, which only removes chars up to the space
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether {@code value} passes {@code @Email}: the part after the
+     * last {@code @} must be a domain name or an IP address literal, and the
+     * part before it a dot-separated list of words of at most 64 chars.
+     */
+    static boolean isEmail(String value) {
+        if (value == null || value.isEmpty()) {
+            return true;
+        }
+        int at = value.lastIndexOf('@');
+        if (at < 0 || at > MAX_LOCAL_PART_LENGTH) {
+            return false;
+        }
+        if (!LOCAL_PART.matcher(value).region(0, at).matches()) {
+            return false;
+        }
+        String domain = value.substring(at + 1);
+        if (domain.endsWith(".")) {
+            return false;
+        }
+        try {
+            if (IDN.toASCII(domain).length() > MAX_DOMAIN_LENGTH) {
+                return false;
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return EMAIL_DOMAIN.matcher(domain).matches();
+    }
+
+    private static String append(String errors, String message) {
+        return errors == null ? message : errors + ", " + message;
+    }
+
+    private static <A extends Annotation> A annotation(Class<?> type, String field, Class<A> annotationType) {
+        try {
+            A annotation = type.getDeclaredField(field).getAnnotation(annotationType);
+            if (annotation == null) {
+                throw new IllegalStateException(type.getSimpleName() + "." + field + " has no @"
+                        + annotationType.getSimpleName());
+            }
+            return annotation;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
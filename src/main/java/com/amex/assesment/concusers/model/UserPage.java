@@ -0,0 +1,26 @@
+package com.amex.assesment.concusers.model;
+
+import java.util.List;
+
+/**
+ * One page of users together with the cursor to pass back to fetch the next
+ * page. {@code nextCursor} is null once the last page has been returned.
+ */
+public class UserPage {
+
+    private final List<User> users;
+    private final String nextCursor;
+
+    public UserPage(List<User> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,219 @@
+package com.amex.assesment.concusers.replication;
+
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.ext.web.RoutingContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides where a request is served when the process is part of a replicated
+ * deployment, with {@code concusers.replication.role}:
+ * <ul>
+ * <li>A primary serves every request and stamps each response with the
+ * {@value #TOKEN_HEADER} header, the position of the last event on its change
+ * feed, {@code run-sequence}. It is the token of every write acknowledged so
+ * far.</li>
+ * <li>A replica forwards writes to the primary and relays its response, token
+ * included. It serves reads from its own datastore, with the position of the
+ * last event of the primary it has applied as token, unless the request
+ * carries a token it has not reached yet, or one from another run of the
+ * primary, or it is still loading a snapshot: those reads are forwarded too,
+ * so a client passing the token of its last write always reads that write.</li>
+ * </ul>
+ * Streams of changes and metrics are about the node answering them and are not
+ * routed through here.
+ */
+@Component
+public class ReplicationControl {
+
+    /**
+     * Header carrying the read-your-writes token, in responses and requests.
+     */
+    public static final String TOKEN_HEADER = "X-Replication-Token";
+
+    private static final String PRIMARY_UNAVAILABLE = "Primary unavailable";
+    // Headers that only apply to one connection, and the ones recomputed when
+    // the forwarded body is written
+    private static final Set<String> NOT_FORWARDED = Set.of("connection", "keep-alive", "proxy-connection",
+            "transfer-encoding", "te", "trailer", "upgrade", "host", "content-length");
+
+    private final ReplicationRole role;
+    private final ChangeFeed changes;
+    private final Replicator replicator;
+    private final URI primary;
+    private final long forwardTimeoutMs;
+    private volatile HttpClient client;
+
+    @Autowired
+    public ReplicationControl(ConcUsersProperties properties, ChangeFeed changes,
+            ObjectProvider<Replicator> replicator) {
+        this(properties.getReplication().getRole(), changes, replicator.getIfAvailable(),
+                properties.getReplication().getPrimaryUrl(), properties.getReplication().getForwardTimeoutMs());
+    }
+
+    /**
+     * Creates a control for a process that is not replicated.
+     */
+    public ReplicationControl() {
+        this(ReplicationRole.NONE, ChangeFeed.NONE, null, null, 0);
+    }
+
+    /**
+     * Creates a control for the given role. A primary needs its change feed,
+     * a replica its replicator and the URL of the primary.
+     */
+    public ReplicationControl(ReplicationRole role, ChangeFeed changes, Replicator replicator, String primaryUrl,
+            long forwardTimeoutMs) {
+        if (role == ReplicationRole.REPLICA && replicator == null) {
+            throw new IllegalArgumentException("A replica needs a replicator");
+        }
+        this.role = role;
+        this.changes = changes;
+        this.replicator = replicator;
+        this.primary = primaryUrl == null ? null : URI.create(primaryUrl);
+        this.forwardTimeoutMs = forwardTimeoutMs;
+    }
+
+    public ReplicationRole role() {
+        return role;
+    }
+
+    /**
+     * Returns the run id of the change feed the users served here come from:
+     * the feed of this process, or on a replica the feed of the primary once
+     * a snapshot of it is loaded. Versions of users only compare within a run,
+     * so entity tags carry it; a replica handing out the run of the primary
+     * makes its tags valid for the writes it forwards.
+     */
+    public String runId() {
+        Replicator.Position applied = replicator == null ? null : replicator.applied();
+        return applied == null ? changes.runId() : applied.runId();
+    }
+
+    /**
+     * Returns the run id of the change feed of this process, whatever its
+     * role. Counters kept by this process alone, like the version of the
+     * table, only compare within it.
+     */
+    public String localRunId() {
+        return changes.runId();
+    }
+
+    /**
+     * Returns the handler routing requests to a route, which passes requests
+     * served here to the next handler, or null if nothing needs to be done
+     * for that route. It reads the body of forwarded requests, so it must come
+     * after the body handler.
+     */
+    public Handler<RoutingContext> forRoute(HttpMethod method, String path) {
+        return switch (role) {
+            case NONE -> null;
+            case PRIMARY -> this::stampToken;
+            case REPLICA -> method == HttpMethod.GET || method == HttpMethod.HEAD ? this::read : this::forward;
+        };
+    }
+
+    private void stampToken(RoutingContext context) {
+        HttpServerResponse response = context.response();
+        // Read once the response is complete, so that it covers the write it
+        // acknowledges
+        context.addHeadersEndHandler(v ->
+                response.putHeader(TOKEN_HEADER, ChangeFeed.position(changes.runId(), changes.nextSequence() - 1)));
+        context.next();
+    }
+
+    private void read(RoutingContext context) {
+        Replicator.Position applied = replicator.applied();
+        String token = context.request().getHeader(TOKEN_HEADER);
+        long required = 0;
+        if (token != null) {
+            try {
+                // A token from another run of the primary cannot be compared
+                // with the position here, only the primary can serve it
+                required = ChangeFeed.sequenceOf(token.trim(), applied == null ? "" : applied.runId());
+            } catch (NumberFormatException e) {
+                context.response().setStatusCode(400).end(TOKEN_HEADER + " must be a token of the primary");
+                return;
+            }
+        }
+        if (applied == null || required == ChangeFeed.LOST || required > applied.sequence()) {
+            forward(context);
+            return;
+        }
+        context.response().putHeader(TOKEN_HEADER, applied.toString());
+        context.next();
+    }
+
+    /**
+     * Sends the request to the primary and relays its response.
+     */
+    private void forward(RoutingContext context) {
+        HttpServerRequest request = context.request();
+        RequestOptions options = new RequestOptions()
+                .setMethod(request.method())
+                .setHost(primary.getHost())
+                .setPort(Replicator.primaryPort(primary))
+                .setSsl("https".equals(primary.getScheme()))
+                .setURI(request.uri())
+                .setTimeout(forwardTimeoutMs)
+                .setHeaders(MultiMap.caseInsensitiveMultiMap());
+        copyHeaders(request.headers(), options.getHeaders());
+        Buffer body = context.body().buffer();
+        client(context.vertx()).request(options)
+                .compose(forwarded -> body == null ? forwarded.send() : forwarded.send(body))
+                .compose(response -> response.body().map(responseBody -> {
+                    HttpServerResponse relayed = context.response().setStatusCode(response.statusCode());
+                    copyHeaders(response.headers(), relayed.headers());
+                    relayed.end(responseBody);
+                    return responseBody;
+                }))
+                .onFailure(cause -> {
+                    if (!context.response().ended()) {
+                        context.response().setStatusCode(502).end(PRIMARY_UNAVAILABLE);
+                    }
+                });
+    }
+
+    private static void copyHeaders(MultiMap from, MultiMap to) {
+        for (Map.Entry<String, String> header : from) {
+            if (!NOT_FORWARDED.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                to.add(header.getKey(), header.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the client forwarding to the primary, created on first use. It
+     * is shared by every verticle instance and pools its connections.
+     */
+    private HttpClient client(Vertx vertx) {
+        HttpClient current = client;
+        if (current == null) {
+            synchronized (this) {
+                current = client;
+                if (current == null) {
+                    current = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true));
+                    client = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,24 @@
+package com.amex.assesment.concusers.replication;
+
+/**
+ * Part a process plays in replication, see {@link ReplicationControl}.
+ */
+public enum ReplicationRole {
+
+    /**
+     * Not replicated: every request is served from the local datastore.
+     */
+    NONE,
+
+    /**
+     * Takes every write and tells clients, in each response, how far its
+     * change feed has got, so that they can read their writes from a replica.
+     */
+    PRIMARY,
+
+    /**
+     * Follows the change feed of the primary into its local datastore, serves
+     * reads from it and forwards writes to the primary.
+     */
+    REPLICA
+}
@@ -0,0 +1,386 @@
+package com.amex.assesment.concusers.replication;
+
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import com.amex.assesment.concusers.datastore.CachingUserDatastore;
+import com.amex.assesment.concusers.datastore.Replicable;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.model.User;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.RecordParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the datastore of a replica in step with the primary, by shipping the
+ * change feed of the primary over HTTP. Enabled with
+ * {@code concusers.replication.role=REPLICA}.
+ * <p>
+ * The replicator starts by loading a snapshot of the primary, a page at a time
+ * from {@code /users/changes/snapshot}, then follows {@code /users/changes}
+ * from the oldest event the primary retained when the snapshot started. Events
+ * already contained in the snapshot are skipped by their version, so the
+ * replica has caught up with the snapshot once it has applied the last event
+ * published before it. From then on, {@link #applied()} is the position of the
+ * last event of the primary applied here: a client that wrote at that sequence
+ * or earlier, in the same run of the primary, reads its write from this
+ * replica.
+ * <p>
+ * When the stream ends or fails, the replicator reconnects after
+ * {@code concusers.replication.reconnect-delay-ms} and resumes after the last
+ * event applied, in the run of the primary it was loaded from. If the primary
+ * no longer has that event, because it restarted or the replica fell too far
+ * behind, it tells so with a {@code reset} event and the replicator starts
+ * over from a new snapshot.
+ * <p>
+ * Everything runs on one Vert.x context, so events are applied one at a time,
+ * in order. Callbacks of a stream that was given up are recognized by its
+ * generation and ignored.
+ */
+@Component
+@ConditionalOnProperty(prefix = "concusers.replication", name = "role", havingValue = "REPLICA")
+public class Replicator {
+
+    private static final Logger log = LoggerFactory.getLogger(Replicator.class);
+
+    private final Replicable target;
+    private final URI primary;
+    private final int snapshotPageSize;
+    private final long reconnectDelayMs;
+
+    // Position of the last event of the primary applied, null until the
+    // replica has caught up with its snapshot
+    private volatile Position applied;
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    // Only touched from the context
+    private Context context;
+    private HttpClient client;
+    private Promise<Void> ready;
+    private int generation;
+    private HttpClientResponse stream;
+    // Sequence of the last event applied, including the events replayed
+    // before catching up with the snapshot
+    private long position;
+    // Last event published by the primary before the snapshot was read
+    private long snapshotSequence;
+    // Run id of the change feed of the primary the snapshot was read from
+    private String run;
+
+    /**
+     * Replicates into {@code datastore}, the datastore every other component
+     * sees, which must be {@link Replicable}: a replica is refused at startup
+     * rather than failing on the first event it applies.
+     */
+    @Autowired
+    public Replicator(UserDatastore datastore, ConcUsersProperties properties) {
+        this(replicable(datastore, properties.getDatastore().getType()), properties.getReplication().getPrimaryUrl(),
+                properties.getReplication().getSnapshotPageSize(),
+                properties.getReplication().getReconnectDelayMs());
+    }
+
+    public Replicator(Replicable target, String primaryUrl, int snapshotPageSize, long reconnectDelayMs) {
+        if (snapshotPageSize < 1) {
+            throw new IllegalArgumentException("snapshotPageSize must be positive: " + snapshotPageSize);
+        }
+        this.target = target;
+        this.primary = URI.create(primaryUrl);
+        this.snapshotPageSize = snapshotPageSize;
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    private static Replicable replicable(UserDatastore datastore, String type) {
+        Optional<Replicable> target = datastore instanceof CachingUserDatastore caching ? caching.replicable()
+                : datastore instanceof Replicable replicable ? Optional.of(replicable) : Optional.empty();
+        return target.orElseThrow(() -> new IllegalStateException(
+                "The " + type + " datastore cannot be replicated; use the in-memory datastore on replicas"));
+    }
+
+    /**
+     * Starts replicating on a new context of {@code vertx}.
+     *
+     * @return A future completed once the replica has caught up with its
+     *         first snapshot. It is not failed when the primary cannot be
+     *         reached; the replicator keeps trying.
+     */
+    public Future<Void> start(Vertx vertx) {
+        context = vertx.getOrCreateContext();
+        ready = Promise.promise();
+        context.runOnContext(v -> {
+            client = vertx.createHttpClient(new HttpClientOptions()
+                    .setDefaultHost(primary.getHost())
+                    .setDefaultPort(primaryPort(primary))
+                    .setSsl("https".equals(primary.getScheme())));
+            bootstrap(generation);
+        });
+        return ready.future();
+    }
+
+    /**
+     * Stops replicating; the datastore keeps the users replicated so far.
+     */
+    public Future<Void> stop() {
+        Promise<Void> stopped = Promise.promise();
+        context.runOnContext(v -> {
+            generation++;
+            client.close().onComplete(stopped);
+        });
+        return stopped.future();
+    }
+
+    /**
+     * Returns the position of the last event of the primary applied to this
+     * replica, or null while the replica is loading a snapshot.
+     */
+    public Position applied() {
+        return applied;
+    }
+
+    /**
+     * Returns the sequence of the last event of the primary applied to this
+     * replica, or -1 while the replica is loading a snapshot.
+     */
+    public long appliedSequence() {
+        Position position = applied;
+        return position == null ? -1 : position.sequence();
+    }
+
+    /**
+     * Returns the number of snapshots loaded, the first one included.
+     */
+    public long snapshotCount() {
+        return snapshots.sum();
+    }
+
+    /**
+     * Returns the number of times the stream of events was lost and
+     * reconnected.
+     */
+    public long reconnectCount() {
+        return reconnects.sum();
+    }
+
+    static int primaryPort(URI primary) {
+        if (primary.getPort() != -1) {
+            return primary.getPort();
+        }
+        return "https".equals(primary.getScheme()) ? 443 : 80;
+    }
+
+    private void bootstrap(int streamGeneration) {
+        applied = null;
+        target.replicateClear();
+        loadPage(streamGeneration, 0, null, -1, -1);
+    }
+
+    /**
+     * Loads the page of the snapshot after id {@code after}, then the next
+     * ones. {@code pageRun}, {@code sequence} and {@code oldest} come from the
+     * first page, null or -1 when loading it.
+     */
+    private void loadPage(int streamGeneration, long after, String pageRun, long sequence, long oldest) {
+        String uri = "/users/changes/snapshot?after=" + after + "&limit=" + snapshotPageSize;
+        client.request(HttpMethod.GET, uri)
+                .compose(request -> request.send())
+                .compose(response -> response.statusCode() == 200
+                        ? response.body()
+                        : Future.failedFuture("Snapshot answered with status " + response.statusCode()))
+                .onComplete(result -> {
+                    if (streamGeneration != generation) {
+                        return;
+                    }
+                    if (result.failed()) {
+                        retry(streamGeneration, result.cause());
+                        return;
+                    }
+                    JsonObject page = result.result().toJsonObject();
+                    String firstRun = pageRun == null ? page.getString("run") : pageRun;
+                    if (!firstRun.equals(page.getString("run"))) {
+                        log.warn("Primary restarted while its snapshot was loaded, reloading it");
+                        restart(streamGeneration, true);
+                        return;
+                    }
+                    long pageSequence = sequence < 0 ? page.getLong("sequence") : sequence;
+                    long pageOldest = oldest < 0 ? page.getLong("oldest") : oldest;
+                    for (Object item : page.getJsonArray("users")) {
+                        JsonObject entry = (JsonObject) item;
+                        target.replicateWrite(decode(entry.getJsonObject("user"), entry.getLong("version")));
+                    }
+                    String nextCursor = page.getString("nextCursor");
+                    if (nextCursor != null) {
+                        loadPage(streamGeneration, Long.parseLong(nextCursor), firstRun, pageSequence, pageOldest);
+                        return;
+                    }
+                    snapshots.increment();
+                    run = firstRun;
+                    snapshotSequence = pageSequence;
+                    // Events from the oldest retained on are replayed, to catch
+                    // the writes that were in progress while the pages were read
+                    position = pageOldest - 1;
+                    catchUp();
+                    follow(streamGeneration);
+                });
+    }
+
+    private void follow(int streamGeneration) {
+        RequestOptions options = new RequestOptions()
+                .setMethod(HttpMethod.GET)
+                .setURI("/users/changes?from=" + (position + 1) + "&run=" + run);
+        client.request(options)
+                .compose(request -> request.send())
+                .onComplete(result -> {
+                    if (streamGeneration != generation) {
+                        if (result.succeeded()) {
+                            result.result().request().reset();
+                        }
+                        return;
+                    }
+                    if (result.failed()) {
+                        retry(streamGeneration, result.cause());
+                        return;
+                    }
+                    HttpClientResponse response = result.result();
+                    if (response.statusCode() != 200) {
+                        response.request().reset();
+                        retry(streamGeneration, new IllegalStateException(
+                                "Change stream answered with status " + response.statusCode()));
+                        return;
+                    }
+                    stream = response;
+                    RecordParser events = RecordParser.newDelimited("\n\n", response);
+                    events.handler(block -> {
+                        if (streamGeneration == generation) {
+                            apply(streamGeneration, block);
+                        }
+                    });
+                    events.exceptionHandler(cause -> retry(streamGeneration, cause));
+                    events.endHandler(v -> retry(streamGeneration, new IllegalStateException("Change stream ended")));
+                });
+    }
+
+    /**
+     * Applies one Server-Sent Event, made of {@code field: value} lines.
+     * Comments, such as heartbeats, are ignored.
+     */
+    private void apply(int streamGeneration, Buffer block) {
+        String event = null;
+        String data = null;
+        for (String line : block.toString().split("\n")) {
+            if (line.startsWith("event: ")) {
+                event = line.substring(7);
+            } else if (line.startsWith("data: ")) {
+                data = line.substring(6);
+            }
+        }
+        if ("reset".equals(event)) {
+            log.warn("Replica lost events of the primary after sequence {}, reloading a snapshot", position);
+            restart(streamGeneration, true);
+            return;
+        }
+        if (data == null) {
+            return;
+        }
+        JsonObject change = new JsonObject(data);
+        long sequence = change.getLong("sequence");
+        if (sequence <= position) {
+            return;
+        }
+        long id = change.getLong("id");
+        switch (change.getString("type")) {
+            case "CREATED", "UPDATED", "EMAIL_CHANGED" ->
+                    target.replicateWrite(decode(change.getJsonObject("user"), change.getLong("version")));
+            case "DELETED" -> target.replicateDelete(id);
+            case "CLEARED" -> target.replicateClear();
+            default -> {
+                return;
+            }
+        }
+        position = sequence;
+        catchUp();
+    }
+
+    /**
+     * Publishes the position once the events up to the snapshot are applied.
+     */
+    private void catchUp() {
+        if (position < snapshotSequence) {
+            return;
+        }
+        applied = new Position(run, position);
+        ready.tryComplete();
+    }
+
+    private void retry(int streamGeneration, Throwable cause) {
+        if (streamGeneration != generation) {
+            return;
+        }
+        log.warn("Lost the primary at {}: {}; retrying in {} ms", primary, cause.getMessage(), reconnectDelayMs);
+        restart(streamGeneration, false);
+    }
+
+    /**
+     * Gives up the current stream and, after the reconnect delay, resumes it,
+     * or starts over from a new snapshot with {@code reload} or if no snapshot
+     * was loaded.
+     */
+    private void restart(int streamGeneration, boolean reload) {
+        int next = streamGeneration + 1;
+        generation = next;
+        reconnects.increment();
+        if (stream != null) {
+            stream.request().reset();
+            stream = null;
+        }
+        boolean bootstrap = reload || applied == null;
+        if (bootstrap) {
+            applied = null;
+        }
+        context.owner().setTimer(reconnectDelayMs, id -> {
+            if (next != generation) {
+                return;
+            }
+            if (bootstrap) {
+                bootstrap(next);
+            } else {
+                follow(next);
+            }
+        });
+    }
+
+    /**
+     * A position in the change feed of the primary: the run id of the feed and
+     * the sequence of an event.
+     */
+    public record Position(String runId, long sequence) {
+
+        /**
+         * Returns the position as handed to clients.
+         */
+        @Override
+        public String toString() {
+            return ChangeFeed.position(runId, sequence);
+        }
+    }
+
+    private static User decode(JsonObject user, long version) {
+        return new User(user.getLong("id"), user.getString("name"), user.getString("email"), version);
+    }
+}
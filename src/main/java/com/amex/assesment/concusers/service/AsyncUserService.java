@@ -0,0 +1,64 @@
+package com.amex.assesment.concusers.service;
+
+import com.amex.assesment.concusers.model.BatchItemResult;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import io.vertx.core.Future;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link UserService}, returning Vert.x
+ * {@link Future}s. Where the blocking service throws for an unknown user or a
+ * duplicate email, the returned future succeeds with a
+ * {@link ServiceResult.Status#NOT_FOUND} or {@link ServiceResult.Status#CONFLICT}
+ * result instead; a failed future means an unexpected error.
+ * <p>
+ * Updates can be made conditional on the version of the user, as returned in
+ * {@link User#getVersion()}: with a non-zero {@code expectedVersion} the update
+ * is only applied if the stored user is still at that version, and answers
+ * {@link ServiceResult.Status#PRECONDITION_FAILED} otherwise.
+ */
+public interface AsyncUserService {
+
+    Future<ServiceResult<User>> createUser(User user);
+
+    Future<ServiceResult<User>> getUserById(long id);
+
+    Future<List<User>> getAllUsers();
+
+    Future<UserPage> getUsersPage(long afterId, int limit);
+
+    /**
+     * Searches users by name prefix and email domain, see
+     * {@link com.amex.assesment.concusers.datastore.UserDatastore#search}.
+     */
+    Future<UserPage> searchUsers(String namePrefix, String emailDomain, SearchCursor after, int limit);
+
+    /**
+     * Returns the version of the whole user table, see
+     * {@link com.amex.assesment.concusers.datastore.UserDatastore#version()}.
+     */
+    Future<Long> getUsersVersion();
+
+    default Future<ServiceResult<User>> updateUser(long id, User userDetails) {
+        return updateUser(id, userDetails, 0);
+    }
+
+    Future<ServiceResult<User>> updateUser(long id, User userDetails, long expectedVersion);
+
+    default Future<ServiceResult<User>> updateUserEmail(long id, String email) {
+        return updateUserEmail(id, email, 0);
+    }
+
+    Future<ServiceResult<User>> updateUserEmail(long id, String email, long expectedVersion);
+
+    Future<ServiceResult<Void>> deleteUser(long id);
+
+    Future<List<BatchItemResult>> createUsers(List<User> users);
+
+    Future<List<BatchItemResult>> updateUsers(List<User> users);
+
+    Future<List<BatchItemResult>> deleteUsers(List<Long> ids);
+}
@@ -0,0 +1,199 @@
+package com.amex.assesment.concusers.service;
+
+import com.amex.assesment.concusers.datastore.AsyncUserDatastore;
+import com.amex.assesment.concusers.model.BatchItemResult;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import io.vertx.core.Future;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link AsyncUserService} composing the futures of an
+ * {@link AsyncUserDatastore}, with the same rules as
+ * {@link InMemoryUserService}. Updates are compare-and-set cycles retried at
+ * most {@value InMemoryUserService#MAX_UPDATE_ATTEMPTS} times too; giving up is
+ * reported as {@link ServiceResult.Status#PRECONDITION_FAILED}.
+ */
+@Service
+public class DefaultAsyncUserService implements AsyncUserService {
+
+    // Completed futures are immutable, so a single one serves every miss
+    private static final Future<?> NOT_FOUND = Future.succeededFuture(ServiceResult.notFound());
+    private static final Future<?> PRECONDITION_FAILED = Future.succeededFuture(ServiceResult.preconditionFailed());
+
+    private final AsyncUserDatastore userDatastore;
+
+    public DefaultAsyncUserService(AsyncUserDatastore userDatastore) {
+        this.userDatastore = userDatastore;
+    }
+
+    @Override
+    public Future<ServiceResult<User>> createUser(User user) {
+        // Ids are always assigned by the datastore; an id sent by the client must
+        // not turn a create into an update of an existing user.
+        return saveIfEmailAbsent(new User(0, user.getName(), user.getEmail()));
+    }
+
+    @Override
+    public Future<ServiceResult<User>> getUserById(long id) {
+        return userDatastore.findById(id).map(DefaultAsyncUserService::found);
+    }
+
+    @Override
+    public Future<List<User>> getAllUsers() {
+        return userDatastore.findAll();
+    }
+
+    @Override
+    public Future<UserPage> getUsersPage(long afterId, int limit) {
+        return userDatastore.findPage(afterId, limit);
+    }
+
+    @Override
+    public Future<UserPage> searchUsers(String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        return userDatastore.search(namePrefix, emailDomain, after, limit);
+    }
+
+    @Override
+    public Future<Long> getUsersVersion() {
+        return userDatastore.version();
+    }
+
+    @Override
+    public Future<ServiceResult<User>> updateUser(long id, User userDetails, long expectedVersion) {
+        return userDatastore.findById(id).compose(user -> update(user, expectedVersion,
+                current -> new User(id, userDetails.getName(), userDetails.getEmail()),
+                InMemoryUserService.MAX_UPDATE_ATTEMPTS));
+    }
+
+    @Override
+    public Future<ServiceResult<User>> updateUserEmail(long id, String email, long expectedVersion) {
+        return userDatastore.findById(id).compose(user -> update(user, expectedVersion,
+                current -> new User(id, current.getName(), email),
+                InMemoryUserService.MAX_UPDATE_ATTEMPTS));
+    }
+
+    @Override
+    public Future<ServiceResult<Void>> deleteUser(long id) {
+        return userDatastore.findById(id).compose(user -> user.isEmpty()
+                ? DefaultAsyncUserService.<Void>notFound()
+                : userDatastore.deleteById(id).map(ServiceResult.ok(null)));
+    }
+
+    @Override
+    public Future<List<BatchItemResult>> createUsers(List<User> users) {
+        List<User> newUsers = new ArrayList<>(users.size());
+        for (User user : users) {
+            newUsers.add(new User(0, user.getName(), user.getEmail()));
+        }
+        return userDatastore.saveAllIfEmailAbsent(newUsers).map(saved -> {
+            List<BatchItemResult> results = new ArrayList<>(users.size());
+            for (int i = 0; i < users.size(); i++) {
+                String email = users.get(i).getEmail();
+                results.add(saved.get(i)
+                        .map(BatchItemResult::created)
+                        .orElseGet(() -> BatchItemResult.conflict(null,
+                                "User with email " + email + " already exists.")));
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public Future<List<BatchItemResult>> updateUsers(List<User> users) {
+        // Each item goes through the compare-and-set cycle of a single update,
+        // one after the other so that of two items claiming an email the first
+        // wins, as for the other batch operations.
+        BatchItemResult[] results = new BatchItemResult[users.size()];
+        Future<Void> chain = Future.succeededFuture();
+        for (int i = 0; i < users.size(); i++) {
+            int position = i;
+            User userDetails = users.get(i);
+            long id = userDetails.getId();
+            chain = chain.compose(v -> updateUser(id, userDetails, 0)).map(result -> {
+                results[position] = switch (result.getStatus()) {
+                    case OK -> BatchItemResult.updated(result.getValue());
+                    case NOT_FOUND -> BatchItemResult.notFound(id, "User not found with id: " + id);
+                    case CONFLICT -> BatchItemResult.conflict(id,
+                            "Email " + userDetails.getEmail() + " is already in use by another user.");
+                    case PRECONDITION_FAILED -> BatchItemResult.conflict(id,
+                            "User " + id + " was modified concurrently, giving up.");
+                };
+                return null;
+            });
+        }
+        return chain.map(v -> Arrays.asList(results));
+    }
+
+    @Override
+    public Future<List<BatchItemResult>> deleteUsers(List<Long> ids) {
+        return userDatastore.deleteAllById(ids).map(deleted -> {
+            List<BatchItemResult> results = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                long id = ids.get(i);
+                results.add(deleted.get(i)
+                        ? BatchItemResult.deleted(id)
+                        : BatchItemResult.notFound(id, "User not found with id: " + id));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Applies {@code change} to {@code current}, the user as just read, and
+     * writes the result with a compare-and-set on the version read. When the
+     * write is refused the user is read again: at the same version, the email
+     * belongs to another user; at another version, the update starts over from
+     * the new user, unless the client expected a specific version.
+     */
+    private Future<ServiceResult<User>> update(Optional<User> current, long expectedVersion,
+            UnaryOperator<User> change, int attemptsLeft) {
+        if (current.isEmpty()) {
+            return notFound();
+        }
+        User read = current.get();
+        if (expectedVersion != 0 && read.getVersion() != expectedVersion) {
+            return preconditionFailed();
+        }
+        User updated = change.apply(read).withVersion(read.getVersion());
+        return saveIfEmailAbsent(updated).compose(result -> result.getStatus() != ServiceResult.Status.CONFLICT
+                ? Future.succeededFuture(result)
+                : userDatastore.findById(read.getId()).compose(latest -> {
+                    if (latest.isPresent() && latest.get().getVersion() == read.getVersion()) {
+                        return Future.succeededFuture(result);
+                    }
+                    return attemptsLeft > 1
+                            ? update(latest, expectedVersion, change, attemptsLeft - 1)
+                            : preconditionFailed();
+                }));
+    }
+
+    // Updates write a fresh copy so a rejected email change leaves the stored
+    // user untouched.
+    private Future<ServiceResult<User>> saveIfEmailAbsent(User user) {
+        return userDatastore.saveIfEmailAbsent(user).map(saved -> saved.isPresent()
+                ? ServiceResult.ok(saved.get())
+                : ServiceResult.conflict());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Future<ServiceResult<T>> notFound() {
+        return (Future<ServiceResult<T>>) NOT_FOUND;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Future<ServiceResult<T>> preconditionFailed() {
+        return (Future<ServiceResult<T>>) PRECONDITION_FAILED;
+    }
+
+    private static ServiceResult<User> found(Optional<User> user) {
+        return user.isPresent() ? ServiceResult.ok(user.get()) : ServiceResult.notFound();
+    }
+}
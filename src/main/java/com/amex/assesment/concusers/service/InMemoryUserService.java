@@ -1,16 +1,36 @@
 package com.amex.assesment.concusers.service;
 
 import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.exception.ConcurrentUpdateException;
 import com.amex.assesment.concusers.exception.DuplicateUserException;
 import com.amex.assesment.concusers.exception.UserNotFoundException;
+import com.amex.assesment.concusers.model.BatchItemResult;
+import com.amex.assesment.concusers.model.SearchCursor;
 import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
+/**
+ * {@link UserService} over a {@link UserDatastore}.
+ * <p>
+ * Updates are read-modify-write cycles: the user is read, the new user is
+ * derived from it and written back with a compare-and-set on the version read,
+ * so a write that got in between is never overwritten unseen. When the
+ * compare-and-set fails the cycle starts over, at most
+ * {@value #MAX_UPDATE_ATTEMPTS} times.
+ */
 @Service
 public class InMemoryUserService implements UserService {
 
+    // Attempts of an update before giving up on a user written too often
+    static final int MAX_UPDATE_ATTEMPTS = 16;
+
     private final UserDatastore userDatastore;
 
     public InMemoryUserService(UserDatastore userDatastore) {
@@ -19,10 +39,12 @@ public class InMemoryUserService implements UserService {
 
     @Override
     public User createUser(User user) {
-        if (userDatastore.existsByEmail(user.getEmail())) {
-            throw new DuplicateUserException("User with email " + user.getEmail() + " already exists.");
-        }
-        return userDatastore.save(user);
+        // Ids are always assigned by the datastore; an id sent by the client must
+        // not turn a create into an update of an existing user.
+        User newUser = new User(0, user.getName(), user.getEmail());
+        return userDatastore.saveIfEmailAbsent(newUser)
+                .orElseThrow(() -> new DuplicateUserException(
+                        "User with email " + user.getEmail() + " already exists."));
     }
 
     @Override
@@ -36,22 +58,29 @@ public class InMemoryUserService implements UserService {
         return userDatastore.findAll();
     }
 
+    @Override
+    public UserPage getUsersPage(long afterId, int limit) {
+        return userDatastore.findPage(afterId, limit);
+    }
+
+    @Override
+    public UserPage searchUsers(String namePrefix, String emailDomain, SearchCursor after, int limit) {
+        return userDatastore.search(namePrefix, emailDomain, after, limit);
+    }
+
+    @Override
+    public Stream<User> streamAllUsers() {
+        return userDatastore.streamAll();
+    }
+
     @Override
     public User updateUser(long id, User userDetails) {
-        User user = getUserById(id);
-        user.setName(userDetails.getName());
-        user.setEmail(userDetails.getEmail());
-        return userDatastore.save(user);
+        return update(id, user -> new User(id, userDetails.getName(), userDetails.getEmail()));
     }
 
     @Override
     public User updateUserEmail(long id, String email) {
-        if (userDatastore.existsByEmailAndIdNot(email, id)) {
-            throw new DuplicateUserException("Email " + email + " is already in use by another user.");
-        }
-        User user = getUserById(id);
-        user.setEmail(email);
-        return userDatastore.save(user);
+        return update(id, user -> new User(id, user.getName(), email));
     }
 
     @Override
@@ -61,4 +90,81 @@ public class InMemoryUserService implements UserService {
         }
         userDatastore.deleteById(id);
     }
+
+    @Override
+    public List<BatchItemResult> createUsers(List<User> users) {
+        List<User> newUsers = new ArrayList<>(users.size());
+        for (User user : users) {
+            newUsers.add(new User(0, user.getName(), user.getEmail()));
+        }
+        List<Optional<User>> saved = userDatastore.saveAllIfEmailAbsent(newUsers);
+        List<BatchItemResult> results = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            String email = users.get(i).getEmail();
+            results.add(saved.get(i)
+                    .map(BatchItemResult::created)
+                    .orElseGet(() -> BatchItemResult.conflict(null,
+                            "User with email " + email + " already exists.")));
+        }
+        return results;
+    }
+
+    @Override
+    public List<BatchItemResult> updateUsers(List<User> users) {
+        // Each item goes through the compare-and-set cycle of a single update,
+        // so a user deleted or written in the meantime is neither re-created
+        // nor overwritten unseen.
+        List<BatchItemResult> results = new ArrayList<>(users.size());
+        for (User userDetails : users) {
+            long id = userDetails.getId();
+            try {
+                results.add(BatchItemResult.updated(updateUser(id, userDetails)));
+            } catch (UserNotFoundException e) {
+                results.add(BatchItemResult.notFound(id, e.getMessage()));
+            } catch (DuplicateUserException | ConcurrentUpdateException e) {
+                results.add(BatchItemResult.conflict(id, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<BatchItemResult> deleteUsers(List<Long> ids) {
+        List<Boolean> deleted = userDatastore.deleteAllById(ids);
+        List<BatchItemResult> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            results.add(deleted.get(i)
+                    ? BatchItemResult.deleted(id)
+                    : BatchItemResult.notFound(id, "User not found with id: " + id));
+        }
+        return results;
+    }
+
+    /**
+     * Applies {@code change} to the stored user and writes the result if the
+     * user has not been written since it was read, starting over otherwise. A
+     * refused write of a user still at the version read means the email
+     * belongs to another user.
+     */
+    private User update(long id, UnaryOperator<User> change) {
+        User current = getUserById(id);
+        for (int attempt = 1; ; attempt++) {
+            User updated = change.apply(current).withVersion(current.getVersion());
+            Optional<User> saved = userDatastore.saveIfEmailAbsent(updated);
+            if (saved.isPresent()) {
+                return saved.get();
+            }
+            User latest = getUserById(id);
+            if (latest.getVersion() == current.getVersion()) {
+                throw new DuplicateUserException(
+                        "Email " + updated.getEmail() + " is already in use by another user.");
+            }
+            if (attempt == MAX_UPDATE_ATTEMPTS) {
+                throw new ConcurrentUpdateException(
+                        "User " + id + " was modified concurrently " + attempt + " times, giving up.");
+            }
+            current = latest;
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.amex.assesment.concusers.service;
+
+/**
+ * Outcome of an {@link AsyncUserService} operation on a single user. Expected
+ * failures, an unknown user, an email already in use or a user no longer at the
+ * version the client expects, are reported as values rather than exceptions, so
+ * that paths where many requests miss do not pay for capturing stack traces.
+ * The failure results carry no details and are shared singletons; only a
+ * successful result is allocated.
+ *
+ * @param <T> The type of the value of a successful result.
+ */
+public final class ServiceResult<T> {
+
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        CONFLICT,
+        PRECONDITION_FAILED
+    }
+
+    private static final ServiceResult<?> NOT_FOUND = new ServiceResult<>(Status.NOT_FOUND, null);
+    private static final ServiceResult<?> CONFLICT = new ServiceResult<>(Status.CONFLICT, null);
+    private static final ServiceResult<?> PRECONDITION_FAILED = new ServiceResult<>(Status.PRECONDITION_FAILED, null);
+    private static final ServiceResult<?> EMPTY = new ServiceResult<>(Status.OK, null);
+
+    private final Status status;
+    private final T value;
+
+    private ServiceResult(Status status, T value) {
+        this.status = status;
+        this.value = value;
+    }
+
+    /**
+     * Returns a successful result holding {@code value}; a null value, e.g. for
+     * operations that return nothing, is a shared instance.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ServiceResult<T> ok(T value) {
+        return value == null ? (ServiceResult<T>) EMPTY : new ServiceResult<>(Status.OK, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ServiceResult<T> notFound() {
+        return (ServiceResult<T>) NOT_FOUND;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ServiceResult<T> conflict() {
+        return (ServiceResult<T>) CONFLICT;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ServiceResult<T> preconditionFailed() {
+        return (ServiceResult<T>) PRECONDITION_FAILED;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    /**
+     * Returns the value of a successful result, or null for a failed one.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return status == Status.OK ? "OK(" + value + ")" : status.name();
+    }
+}
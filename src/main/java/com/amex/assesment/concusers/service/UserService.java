@@ -1,21 +1,45 @@
 package com.amex.assesment.concusers.service;
 
+import com.amex.assesment.concusers.exception.ConcurrentUpdateException;
+import com.amex.assesment.concusers.exception.DuplicateUserException;
 import com.amex.assesment.concusers.exception.UserNotFoundException;
+import com.amex.assesment.concusers.model.BatchItemResult;
+import com.amex.assesment.concusers.model.SearchCursor;
 import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface UserService {
 
-    User createUser(User user);
+    User createUser(User user) throws DuplicateUserException;
 
     User getUserById(long id) throws UserNotFoundException;
 
     List<User> getAllUsers();
 
-    User updateUser(long id, User userDetails) throws UserNotFoundException;
+    UserPage getUsersPage(long afterId, int limit);
 
-    User updateUserEmail(long id, String email) throws UserNotFoundException;
+    /**
+     * Searches users by name prefix and email domain, see
+     * {@link com.amex.assesment.concusers.datastore.UserDatastore#search}.
+     */
+    UserPage searchUsers(String namePrefix, String emailDomain, SearchCursor after, int limit);
+
+    Stream<User> streamAllUsers();
+
+    User updateUser(long id, User userDetails)
+            throws UserNotFoundException, DuplicateUserException, ConcurrentUpdateException;
+
+    User updateUserEmail(long id, String email)
+            throws UserNotFoundException, DuplicateUserException, ConcurrentUpdateException;
 
     void deleteUser(long id) throws UserNotFoundException;
+
+    List<BatchItemResult> createUsers(List<User> users);
+
+    List<BatchItemResult> updateUsers(List<User> users);
+
+    List<BatchItemResult> deleteUsers(List<Long> ids);
 }
@@ -1,27 +1,94 @@
 package com.amex.assesment.concusers.verticles;
 
+import com.amex.assesment.concusers.admission.AdmissionControl;
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import com.amex.assesment.concusers.metrics.MetricsRegistry;
+import com.amex.assesment.concusers.replication.ReplicationControl;
+import com.amex.assesment.concusers.verticles.handlers.ChangeFeedHandler;
+import com.amex.assesment.concusers.verticles.handlers.MetricsHandler;
 import com.amex.assesment.concusers.verticles.handlers.UserHandler;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Handler;
 import io.vertx.core.Promise;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Route;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
+import io.vertx.ext.web.handler.PlatformHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+/**
+ * Sets up the HTTP server and routes. A verticle instance can only be deployed
+ * once, so this is a prototype bean: every lookup returns a new instance, which
+ * lets several instances be deployed on separate event loops. The handler and
+ * everything behind it are shared singletons and must stay thread-safe.
+ * <p>
+ * Every route is instrumented through the {@link MetricsRegistry}, which the
+ * instances share, so {@code /metrics} reports each route once. Requests then
+ * go through {@link AdmissionControl} before their body is read, so rejected
+ * requests cost no more than the rejection. Admitted requests are routed by
+ * {@link ReplicationControl}, which forwards the ones a replica does not serve
+ * to the primary, except for the change stream and metrics, which are about
+ * this node.
+ * <p>
+ * The server listens with the {@link HttpServerOptions} built from
+ * {@code concusers.http}; see {@code HttpServerConfiguration}.
+ */
 @Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class MainVerticle extends AbstractVerticle {
 
+    private static final Logger log = LoggerFactory.getLogger(MainVerticle.class);
+
     private final UserHandler userHandler;
+    private final ChangeFeedHandler changeFeedHandler;
+    private final MetricsHandler metricsHandler;
+    private final MetricsRegistry metrics;
+    private final AdmissionControl admission;
+    private final ReplicationControl replication;
+    private final HttpServerOptions serverOptions;
+    private final int compressionMinSize;
+    private final BodyHandler bodyHandler = BodyHandler.create();
+
+    @Autowired
+    public MainVerticle(UserHandler userHandler, ChangeFeedHandler changeFeedHandler, MetricsHandler metricsHandler,
+            MetricsRegistry metrics, AdmissionControl admission, ReplicationControl replication,
+            HttpServerOptions serverOptions, ConcUsersProperties properties) {
+        this(userHandler, changeFeedHandler, metricsHandler, metrics, admission, replication, serverOptions,
+                properties.getHttp().getCompression().getMinSize());
+    }
 
-    public MainVerticle(UserHandler userHandler) {
+    /**
+     * Creates a verticle listening with {@code serverOptions}. When they
+     * enable compression, responses of a known length below
+     * {@code compressionMinSize} bytes are sent uncompressed.
+     */
+    public MainVerticle(UserHandler userHandler, ChangeFeedHandler changeFeedHandler, MetricsHandler metricsHandler,
+            MetricsRegistry metrics, AdmissionControl admission, ReplicationControl replication,
+            HttpServerOptions serverOptions, int compressionMinSize) {
         this.userHandler = userHandler;
+        this.changeFeedHandler = changeFeedHandler;
+        this.metricsHandler = metricsHandler;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.replication = replication;
+        this.serverOptions = serverOptions;
+        this.compressionMinSize = compressionMinSize;
     }
 
     @Override
     public void start(Promise<Void> startPromise) throws Exception {
         Router router = Router.router(vertx);
 
-        router.route().handler(BodyHandler.create());
-
         // Failure handler for decoding errors
         router.route().failureHandler(ctx -> {
             if (ctx.failure() instanceof io.vertx.core.json.DecodeException) {
@@ -31,22 +98,86 @@ public class MainVerticle extends AbstractVerticle {
             }
         });
 
-        router.get("/users").handler(userHandler::getAllUsers);
-        router.post("/users").handler(userHandler::createUser);
-        router.get("/users/:id").handler(userHandler::getUserById);
-        router.put("/users/:id").handler(userHandler::updateUser);
-        router.put("/users/:id/email").handler(userHandler::updateUserEmail);
-        router.delete("/users/:id").handler(userHandler::deleteUser);
+        if (serverOptions.isCompressionSupported() && compressionMinSize > 0) {
+            PlatformHandler skipSmallResponses = this::skipCompressionBelowMinSize;
+            router.route().handler(skipSmallResponses);
+        }
+
+        // Batch and change routes must be registered before /users/:id, which
+        // would otherwise match "batch" or "changes" as an id
+        handle(router, HttpMethod.POST, "/users/batch", userHandler::createUsers, true);
+        handle(router, HttpMethod.PUT, "/users/batch", userHandler::updateUsers, true);
+        handle(router, HttpMethod.DELETE, "/users/batch", userHandler::deleteUsers, true);
+        // Streams stay open, so they would hold a place in flight as long as they last
+        handleLocal(router, HttpMethod.GET, "/users/changes", changeFeedHandler::streamChanges);
+        handleLocal(router, HttpMethod.GET, "/users/changes/snapshot", changeFeedHandler::snapshot);
 
-        vertx.createHttpServer()
+        handle(router, HttpMethod.GET, "/users", userHandler::getAllUsers, true);
+        handle(router, HttpMethod.POST, "/users", userHandler::createUser, true);
+        handle(router, HttpMethod.GET, "/users/:id", userHandler::getUserById, true);
+        handle(router, HttpMethod.PUT, "/users/:id", userHandler::updateUser, true);
+        handle(router, HttpMethod.PUT, "/users/:id/email", userHandler::updateUserEmail, true);
+        handle(router, HttpMethod.DELETE, "/users/:id", userHandler::deleteUser, true);
+
+        // Metrics must stay readable while the server sheds load
+        handleLocal(router, HttpMethod.GET, "/metrics", metricsHandler::getMetrics);
+
+        vertx.createHttpServer(serverOptions)
                 .requestHandler(router)
-                .listen(8080, http -> {
+                .listen(http -> {
                     if (http.succeeded()) {
                         startPromise.complete();
-                        System.out.println("HTTP server started on port 8080");
+                        log.info("HTTP server started on port {}", serverOptions.getPort());
                     } else {
                         startPromise.fail(http.cause());
                     }
                 });
     }
+
+    /**
+     * Marks responses shorter than the minimum size as not to be compressed.
+     * Their length is known once they are ended in one write; streamed
+     * responses are left to the compressor.
+     */
+    private void skipCompressionBelowMinSize(RoutingContext context) {
+        HttpServerResponse response = context.response();
+        context.addHeadersEndHandler(v -> {
+            if (response.headers().contains(HttpHeaders.CONTENT_ENCODING) || response.isChunked()) {
+                return;
+            }
+            String contentLength = response.headers().get(HttpHeaders.CONTENT_LENGTH);
+            long length = contentLength == null ? response.bytesWritten() : Long.parseLong(contentLength);
+            if (length < compressionMinSize) {
+                response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+            }
+        });
+        context.next();
+    }
+
+    private void handle(Router router, HttpMethod method, String path, Handler<RoutingContext> handler,
+            boolean shed) {
+        route(router, method, path, handler, shed, replication.forRoute(method, path));
+    }
+
+    /**
+     * Registers a route answered by this node whatever its role, and never
+     * shed.
+     */
+    private void handleLocal(Router router, HttpMethod method, String path, Handler<RoutingContext> handler) {
+        route(router, method, path, handler, false, null);
+    }
+
+    private void route(Router router, HttpMethod method, String path, Handler<RoutingContext> handler,
+            boolean shed, Handler<RoutingContext> replicate) {
+        Handler<RoutingContext> admit = metrics.route(method, path).instrument(admission.forRoute(method, path, shed));
+        // Vert.x only lets platform handlers run before the body handler
+        PlatformHandler platformAdmit = admit::handle;
+        Route route = router.route(method, path)
+                .handler(platformAdmit)
+                .handler(bodyHandler);
+        if (replicate != null) {
+            route.handler(replicate);
+        }
+        route.handler(handler);
+    }
 }
@@ -0,0 +1,260 @@
+package com.amex.assesment.concusers.verticles.handlers;
+
+import com.amex.assesment.concusers.codec.UserJsonEncoder;
+import com.amex.assesment.concusers.config.ConcUsersProperties;
+import com.amex.assesment.concusers.datastore.changes.ChangeEvent;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import com.amex.assesment.concusers.service.AsyncUserService;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the {@link ChangeFeed} to clients as Server-Sent Events, one event
+ * per mutation with its position, the run id of the feed and its sequence
+ * number, as event id:
+ * <pre>
+ * id: k3x9q0-42
+ * data: {"sequence":42,"type":"UPDATED","id":7,"version":3,"user":{...}}
+ * </pre>
+ * A stream starts after the position given by the {@code Last-Event-ID} header,
+ * which browsers send when they reconnect, or at the sequence given by the
+ * {@code from} query parameter, or else with the next mutation. A position from
+ * another run of the feed, in the header or as the {@code run} query parameter
+ * next to {@code from}, starts the stream with a {@code reset} event.
+ * <p>
+ * Each stream is a cursor into the shared ring buffer: events are encoded when
+ * they are written, only while the response write queue has room, and a caught
+ * up stream checks for new events on a timer. A stream that falls behind by more
+ * than the capacity of the feed gets a {@code reset} event naming the oldest
+ * sequence still available and carries on from there; the client should reload
+ * the users before applying the events that follow.
+ * <p>
+ * Reloading is done a page at a time with {@link #snapshot}, whose pages carry
+ * the versions of the users and the sequence of the last event published
+ * before the page was read. Together with the stream, this is the log a replica
+ * follows to mirror this node.
+ */
+@Component
+public class ChangeFeedHandler {
+
+    // Largest number of events encoded into one chunk
+    private static final int CHUNK_SIZE = 256;
+    // Initial capacity of a chunk, enough for typical events
+    private static final int CHUNK_BYTES = CHUNK_SIZE * 160;
+    // Idle time after which a comment is written to keep proxies from closing the stream
+    private static final long HEARTBEAT_MILLIS = 15_000;
+    private static final Buffer HEARTBEAT = Buffer.buffer(":\n\n");
+    private static final int DEFAULT_SNAPSHOT_LIMIT = 1000;
+    private static final int MAX_SNAPSHOT_LIMIT = 10_000;
+
+    private final ChangeFeed feed;
+    private final AsyncUserService userService;
+    private final long pollIntervalMs;
+
+    @Autowired
+    public ChangeFeedHandler(ChangeFeed feed, AsyncUserService userService, ConcUsersProperties properties) {
+        this(feed, userService, properties.getChanges().getPollIntervalMs());
+    }
+
+    public ChangeFeedHandler(ChangeFeed feed, AsyncUserService userService, long pollIntervalMs) {
+        this.feed = feed;
+        this.userService = userService;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public void streamChanges(RoutingContext context) {
+        long from;
+        try {
+            String lastEventId = context.request().getHeader("last-event-id");
+            String fromParam = context.request().getParam("from");
+            String runParam = context.request().getParam("run");
+            if (lastEventId != null) {
+                // Plain sequences are accepted from clients that predate run ids
+                String position = lastEventId.trim();
+                long sequence = position.indexOf('-') < 0
+                        ? Long.parseLong(position)
+                        : ChangeFeed.sequenceOf(position, feed.runId());
+                from = sequence == ChangeFeed.LOST ? ChangeFeed.LOST : sequence + 1;
+            } else if (fromParam != null) {
+                from = runParam == null || runParam.equals(feed.runId()) ? Long.parseLong(fromParam) : ChangeFeed.LOST;
+            } else {
+                from = feed.nextSequence();
+            }
+        } catch (NumberFormatException e) {
+            context.response().setStatusCode(400).end("Last-Event-ID and from must be positions of the feed");
+            return;
+        }
+
+        HttpServerResponse response = context.response()
+                .setStatusCode(200)
+                .setChunked(true)
+                .putHeader("content-type", "text/event-stream; charset=utf-8")
+                .putHeader("cache-control", "no-cache");
+        // Sends the headers right away, so the client knows the stream is open
+        response.write(HEARTBEAT);
+        new Stream(context.vertx(), response, from).pump();
+    }
+
+    /**
+     * Returns the page of users after the id given by the {@code after} query
+     * parameter, at most {@code limit} of them, as
+     * <pre>
+     * {"run":"k3x9q0","sequence":41,"oldest":1,"users":[{"version":3,"user":{...}},...],"nextCursor":"7"}
+     * </pre>
+     * {@code run} is the run id of the feed, {@code sequence} the last event
+     * published and {@code oldest} the oldest one retained, both read before
+     * the page; pages of different runs do not belong to the same snapshot. A
+     * write publishes its event just before it becomes visible, so the page may
+     * miss writes whose events come before {@code sequence}; a client
+     * reloading the users must then apply the events from {@code oldest} of
+     * the first page on, skipping writes of versions it already has, to end up
+     * with the users of this node.
+     */
+    public void snapshot(RoutingContext context) {
+        long after;
+        int limit;
+        try {
+            String afterParam = context.request().getParam("after");
+            String limitParam = context.request().getParam("limit");
+            after = afterParam == null ? 0 : Long.parseLong(afterParam);
+            limit = limitParam == null ? DEFAULT_SNAPSHOT_LIMIT : Integer.parseInt(limitParam);
+        } catch (NumberFormatException e) {
+            context.response().setStatusCode(400).end("after and limit must be numbers");
+            return;
+        }
+        if (limit < 1 || limit > MAX_SNAPSHOT_LIMIT) {
+            context.response().setStatusCode(400).end("limit must be between 1 and " + MAX_SNAPSHOT_LIMIT);
+            return;
+        }
+
+        long sequence = feed.nextSequence() - 1;
+        long oldest = feed.oldestSequence();
+        userService.getUsersPage(after, limit).onComplete(result -> {
+            if (result.failed()) {
+                context.fail(result.cause());
+                return;
+            }
+            context.response()
+                    .putHeader("content-type", "application/json")
+                    .end(encodeSnapshot(feed.runId(), sequence, oldest, result.result()));
+        });
+    }
+
+    /**
+     * The position of one client in the feed.
+     */
+    private final class Stream {
+
+        private final Vertx vertx;
+        private final HttpServerResponse response;
+        private final List<ChangeEvent> events = new ArrayList<>(CHUNK_SIZE);
+        private long position;
+        private long lastWrite = System.currentTimeMillis();
+        private long timerId = -1;
+        private boolean closed;
+
+        Stream(Vertx vertx, HttpServerResponse response, long position) {
+            this.vertx = vertx;
+            this.response = response;
+            this.position = position;
+            response.closeHandler(v -> {
+                closed = true;
+                if (timerId != -1) {
+                    vertx.cancelTimer(timerId);
+                }
+            });
+        }
+
+        /**
+         * Writes the available events until the stream is caught up, then
+         * waits for the next poll, or until the write queue is full, then waits
+         * for it to drain.
+         */
+        void pump() {
+            timerId = -1;
+            while (!closed) {
+                events.clear();
+                long next = feed.read(position, CHUNK_SIZE, events);
+                if (next == ChangeFeed.LOST) {
+                    position = feed.oldestSequence();
+                    response.write(encodeReset(feed.runId(), position));
+                } else if (events.isEmpty()) {
+                    long now = System.currentTimeMillis();
+                    if (now - lastWrite >= HEARTBEAT_MILLIS) {
+                        response.write(HEARTBEAT);
+                        lastWrite = now;
+                    }
+                    timerId = vertx.setTimer(pollIntervalMs, id -> pump());
+                    return;
+                } else {
+                    response.write(encodeChunk(feed.runId(), events));
+                    position = next;
+                }
+                lastWrite = System.currentTimeMillis();
+                if (response.writeQueueFull()) {
+                    response.drainHandler(v -> pump());
+                    return;
+                }
+            }
+        }
+    }
+
+    static Buffer encodeChunk(String runId, List<ChangeEvent> events) {
+        Buffer buffer = Buffer.buffer(CHUNK_BYTES);
+        for (ChangeEvent event : events) {
+            String sequence = Long.toString(event.getSequence());
+            buffer.appendString("id: ").appendString(runId).appendByte((byte) '-').appendString(sequence)
+                    .appendString("\ndata: {\"sequence\":").appendString(sequence)
+                    .appendString(",\"type\":\"").appendString(event.getType().name())
+                    .appendString("\",\"id\":").appendString(Long.toString(event.getUserId()));
+            if (event.getUser() != null) {
+                buffer.appendString(",\"version\":").appendString(Long.toString(event.getUser().getVersion()))
+                        .appendString(",\"user\":");
+                UserJsonEncoder.appendTo(buffer, event.getUser());
+            }
+            buffer.appendString("}\n\n");
+        }
+        return buffer;
+    }
+
+    static Buffer encodeSnapshot(String runId, long sequence, long oldest, UserPage page) {
+        Buffer buffer = Buffer.buffer(96 + page.getUsers().size() * 96);
+        buffer.appendString("{\"run\":\"").appendString(runId)
+                .appendString("\",\"sequence\":").appendString(Long.toString(sequence))
+                .appendString(",\"oldest\":").appendString(Long.toString(oldest))
+                .appendString(",\"users\":[");
+        List<User> users = page.getUsers();
+        for (int i = 0; i < users.size(); i++) {
+            if (i > 0) {
+                buffer.appendByte((byte) ',');
+            }
+            buffer.appendString("{\"version\":").appendString(Long.toString(users.get(i).getVersion()))
+                    .appendString(",\"user\":");
+            UserJsonEncoder.appendTo(buffer, users.get(i));
+            buffer.appendByte((byte) '}');
+        }
+        buffer.appendString("],\"nextCursor\":")
+                .appendString(page.getNextCursor() == null ? "null" : '"' + page.getNextCursor() + '"')
+                .appendByte((byte) '}');
+        return buffer;
+    }
+
+    /**
+     * Encodes the event telling a client that it missed events. Its id is the
+     * position before {@code oldest}, so that a client reconnecting with it
+     * resumes where this stream does.
+     */
+    private static Buffer encodeReset(String runId, long oldest) {
+        return Buffer.buffer("id: " + ChangeFeed.position(runId, oldest - 1) + "\nevent: reset\ndata: {\"run\":\""
+                + runId + "\",\"oldest\":" + oldest + "}\n\n");
+    }
+}
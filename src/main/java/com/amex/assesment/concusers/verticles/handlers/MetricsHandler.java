@@ -0,0 +1,26 @@
+package com.amex.assesment.concusers.verticles.handlers;
+
+import com.amex.assesment.concusers.metrics.MetricsRegistry;
+import io.vertx.ext.web.RoutingContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves the metrics of the {@link MetricsRegistry} in the Prometheus text
+ * format, for a Prometheus server to scrape.
+ */
+@Component
+public class MetricsHandler {
+
+    private final MetricsRegistry metrics;
+
+    public MetricsHandler(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    public void getMetrics(RoutingContext context) {
+        context.response()
+                .setStatusCode(200)
+                .putHeader("content-type", "text/plain; version=0.0.4; charset=utf-8")
+                .end(metrics.scrape());
+    }
+}
@@ -1,131 +1,681 @@
 package com.amex.assesment.concusers.verticles.handlers;
 
-import com.amex.assesment.concusers.exception.DuplicateUserException;
-import com.amex.assesment.concusers.exception.UserNotFoundException;
+import com.amex.assesment.concusers.codec.UserJsonDecoder;
+import com.amex.assesment.concusers.codec.UserJsonEncoder;
+import com.amex.assesment.concusers.model.BatchItemResult;
+import com.amex.assesment.concusers.model.EmailUpdateRequest;
+import com.amex.assesment.concusers.model.SearchCursor;
 import com.amex.assesment.concusers.model.User;
-import com.amex.assesment.concusers.service.UserService;
+import com.amex.assesment.concusers.model.UserConstraints;
+import com.amex.assesment.concusers.model.UserPage;
+import com.amex.assesment.concusers.replication.ReplicationControl;
+import com.amex.assesment.concusers.service.AsyncUserService;
+import com.amex.assesment.concusers.service.ServiceResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.ext.web.RoutingContext;
-import jakarta.validation.ConstraintViolation;
-import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * Handles the user routes. Requests are parsed and validated on the event loop,
+ * then handed to the {@link AsyncUserService}; the response is written when the
+ * returned future completes, so a slow store never holds the event loop. Write
+ * bodies are decoded in one pass by {@link UserJsonDecoder} and checked against
+ * {@link UserConstraints}; a body that cannot be decoded or breaks a constraint
+ * is answered with a 400.
+ */
 @Component
 public class UserHandler {
 
-    private final UserService userService;
-    private final Validator validator;
+    // Largest page a client may request from GET /users?limit=
+    static final int MAX_PAGE_SIZE = 1000;
+    // Page size of a search without a limit parameter
+    static final int DEFAULT_SEARCH_LIMIT = 100;
+    // Number of users encoded into each chunk when streaming the full list
+    private static final int STREAM_CHUNK_SIZE = 256;
+    // Initial capacity of a streamed chunk, enough for typical users
+    private static final int STREAM_CHUNK_BYTES = STREAM_CHUNK_SIZE * 96;
+    // Largest number of items accepted in one batch request
+    static final int MAX_BATCH_SIZE = 10_000;
+    // Bodies of the expected failures, encoded once; Vert.x writes a slice of
+    // the buffer, so the same instance can be sent any number of times
+    private static final Buffer NOT_FOUND_BODY = Buffer.buffer("User not found");
+    private static final Buffer CONFLICT_BODY = Buffer.buffer("Email is already in use by another user");
+    private static final Buffer PRECONDITION_FAILED_BODY = Buffer.buffer("User has been modified");
 
-    public UserHandler(UserService userService, Validator validator) {
+    private final AsyncUserService userService;
+    private final ReplicationControl replication;
+    // Prefixes of the entity tags handed out for users and for the table,
+    // built from the run id of the feed the versions come from. Versions start
+    // over when the datastore is created, so tags from before a restart must
+    // not match
+    private volatile TagPrefix etagPrefix = new TagPrefix(null, null);
+    private volatile TagPrefix tableEtagPrefix = new TagPrefix(null, null);
+
+    public UserHandler(AsyncUserService userService) {
+        this(userService, new ReplicationControl());
+    }
+
+    @Autowired
+    public UserHandler(AsyncUserService userService, ReplicationControl replication) {
         this.userService = userService;
-        this.validator = validator;
+        this.replication = replication;
     }
 
     public void createUser(RoutingContext context) {
-        try {
-            final User user = context.body().asPojo(User.class);
+        User user = decodeUser(context);
+        if (user == null) {
+            return;
+        }
 
-            Set<ConstraintViolation<User>> violations = validator.validate(user);
-            if (!violations.isEmpty()) {
-                String errors = violations.stream().map(ConstraintViolation::getMessage)
-                        .collect(Collectors.joining(", "));
-                context.response().setStatusCode(400).end(errors);
-                return;
+        respond(context, () -> userService.createUser(user),
+                createdUser -> respondWithUser(context, 201, createdUser));
+    }
+
+    /**
+     * Returns a user, or 304 without encoding it when its entity tag is listed
+     * in {@code If-None-Match}.
+     */
+    public void getUserById(RoutingContext context) {
+        respond(context, () -> userService.getUserById(Long.parseLong(context.pathParam("id"))), user -> {
+            if (!respondIfNotModified(context, etag(user.getVersion()))) {
+                respondWithUser(context, 200, user);
             }
+        });
+    }
 
-            User createdUser = userService.createUser(user);
-            context.response()
-                    .setStatusCode(201)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(createdUser));
-        } catch (DuplicateUserException e) {
-            context.response().setStatusCode(409).end(e.getMessage());
+    /**
+     * Lists users. With a {@code limit} query parameter a single page is
+     * returned, starting after the user id given by the optional {@code after}
+     * cursor. Without it, the whole table is streamed as a JSON array in chunks
+     * so that memory use per request stays bounded. With a {@code name} or
+     * {@code emailDomain} parameter the users are searched instead, see
+     * {@link #searchUsers}. All of them carry the version of the table as
+     * entity tag and answer 304 to a matching {@code If-None-Match} before
+     * reading any user.
+     */
+    public void getAllUsers(RoutingContext context) {
+        String namePrefix = context.request().getParam("name");
+        String emailDomain = context.request().getParam("emailDomain");
+        if (namePrefix != null || emailDomain != null) {
+            searchUsers(context, namePrefix, emailDomain);
+            return;
+        }
+        String limitParam = context.request().getParam("limit");
+        if (limitParam == null) {
+            streamAllUsers(context);
+            return;
+        }
+        try {
+            int limit;
+            long afterId;
+            try {
+                limit = Integer.parseInt(limitParam);
+                String afterParam = context.request().getParam("after");
+                afterId = afterParam == null ? 0 : Long.parseLong(afterParam);
+            } catch (NumberFormatException e) {
+                context.response().setStatusCode(400).end("limit and after must be numbers");
+                return;
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE || afterId < 0) {
+                context.response().setStatusCode(400)
+                        .end("limit must be between 1 and " + MAX_PAGE_SIZE + " and after must not be negative");
+                return;
+            }
+            long after = afterId;
+            call(context, userService::getUsersVersion, version -> {
+                String etag = tableEtag(version);
+                if (respondIfNotModified(context, etag)) {
+                    return;
+                }
+                call(context, () -> userService.getUsersPage(after, limit),
+                        page -> respondWithPage(context, etag, page));
+            });
         } catch (Exception e) {
             context.response().setStatusCode(500).end(e.getMessage());
         }
     }
 
-    public void getUserById(RoutingContext context) {
+    /**
+     * Returns one page of the users whose name starts with {@code namePrefix}
+     * and whose email is at {@code emailDomain}, either of which can be null,
+     * ordered by lower-cased name then id. Pages hold {@code limit} users, 100
+     * by default, and the {@code after} parameter takes the opaque
+     * {@code nextCursor} of the previous page.
+     */
+    private void searchUsers(RoutingContext context, String namePrefix, String emailDomain) {
+        if (emailDomain != null && emailDomain.isBlank()) {
+            context.response().setStatusCode(400).end("emailDomain must not be empty");
+            return;
+        }
+        String limitParam = context.request().getParam("limit");
+        String afterParam = context.request().getParam("after");
+        int limit;
+        SearchCursor after;
         try {
-            long id = Long.parseLong(context.pathParam("id"));
-            User user = userService.getUserById(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(user));
-        } catch (UserNotFoundException e) {
-            context.response().setStatusCode(404).end(e.getMessage());
+            limit = limitParam == null ? DEFAULT_SEARCH_LIMIT : Integer.parseInt(limitParam);
+            after = afterParam == null ? null : SearchCursor.decode(afterParam);
+        } catch (IllegalArgumentException e) {
+            context.response().setStatusCode(400).end("limit must be a number and after a cursor returned by a search");
+            return;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            context.response().setStatusCode(400).end("limit must be between 1 and " + MAX_PAGE_SIZE);
+            return;
+        }
+        call(context, userService::getUsersVersion, version -> {
+            String etag = tableEtag(version);
+            if (respondIfNotModified(context, etag)) {
+                return;
+            }
+            call(context, () -> userService.searchUsers(namePrefix, emailDomain, after, limit),
+                    page -> respondWithPage(context, etag, page));
+        });
+    }
+
+    private void respondWithPage(RoutingContext context, String etag, UserPage page) {
+        HttpServerResponse response = context.response()
+                .setStatusCode(200)
+                .putHeader("content-type", "application/json; charset=utf-8")
+                .putHeader("etag", etag);
+        if (isPrettyRequested(context)) {
+            response.end(Json.encodePrettily(page));
+        } else {
+            response.end(UserJsonEncoder.encode(page));
+        }
+    }
+
+    private void streamAllUsers(RoutingContext context) {
+        HttpServerResponse response = context.response();
+        call(context, userService::getUsersVersion, version -> {
+            String etag = tableEtag(version);
+            if (respondIfNotModified(context, etag)) {
+                return;
+            }
+            // The first page is fetched before the status line is sent, so that a
+            // failing store can still be answered with an error status
+            call(context, () -> userService.getUsersPage(0, STREAM_CHUNK_SIZE), page -> {
+                response.setStatusCode(200)
+                        .setChunked(true)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .putHeader("etag", etag)
+                        .write("[");
+                writeUserChunks(response, page, false);
+            });
+        });
+    }
+
+    /**
+     * Writes {@code page} as one chunk, then keeps fetching and writing the
+     * following pages until the last one, or until the response write queue is
+     * full, in which case writing resumes from the drain handler once the
+     * client has caught up. Pages that are already available are written in a
+     * loop; otherwise writing continues when the next page completes.
+     */
+    private void writeUserChunks(HttpServerResponse response, UserPage page, boolean needsSeparator) {
+        while (true) {
+            if (response.closed()) {
+                return;
+            }
+            List<User> users = page.getUsers();
+            Buffer chunk = encodeChunk(users, needsSeparator);
+            if (page.getNextCursor() == null) {
+                response.end(chunk.appendByte((byte) ']'));
+                return;
+            }
+            response.write(chunk);
+            needsSeparator |= !users.isEmpty();
+
+            long after = Long.parseLong(page.getNextCursor());
+            boolean separator = needsSeparator;
+            if (response.writeQueueFull()) {
+                response.drainHandler(v -> fetchUserChunk(response, after, separator));
+                return;
+            }
+            Future<UserPage> next = userService.getUsersPage(after, STREAM_CHUNK_SIZE);
+            if (!next.isComplete()) {
+                next.onComplete(result -> {
+                    if (result.succeeded()) {
+                        writeUserChunks(response, result.result(), separator);
+                    } else {
+                        abort(response);
+                    }
+                });
+                return;
+            }
+            if (next.failed()) {
+                abort(response);
+                return;
+            }
+            page = next.result();
+        }
+    }
+
+    private void fetchUserChunk(HttpServerResponse response, long after, boolean needsSeparator) {
+        userService.getUsersPage(after, STREAM_CHUNK_SIZE).onComplete(result -> {
+            if (result.succeeded()) {
+                writeUserChunks(response, result.result(), needsSeparator);
+            } else {
+                abort(response);
+            }
+        });
+    }
+
+    private static void abort(HttpServerResponse response) {
+        // The status line has already been sent, so the only way to signal a
+        // failure is to abort the response
+        response.reset();
+    }
+
+    private static Buffer encodeChunk(List<User> users, boolean needsSeparator) {
+        Buffer buffer = Buffer.buffer(STREAM_CHUNK_BYTES);
+        for (User user : users) {
+            if (needsSeparator) {
+                buffer.appendByte((byte) ',');
+            }
+            UserJsonEncoder.appendTo(buffer, user);
+            needsSeparator = true;
+        }
+        return buffer;
+    }
+
+    public void updateUser(RoutingContext context) {
+        final long id;
+        try {
+            id = Long.parseLong(context.pathParam("id"));
         } catch (Exception e) {
-            context.response().setStatusCode(500).end(e.getMessage());
+            respondWithError(context, e);
+            return;
+        }
+        User userDetails = decodeUser(context);
+        if (userDetails == null) {
+            return;
         }
+
+        long expectedVersion = expectedVersion(context);
+        if (expectedVersion < 0) {
+            context.response().setStatusCode(412).end(PRECONDITION_FAILED_BODY);
+            return;
+        }
+        respond(context, () -> userService.updateUser(id, userDetails, expectedVersion),
+                updatedUser -> respondWithUser(context, 200, updatedUser));
     }
 
-    public void getAllUsers(RoutingContext context) {
+    public void updateUserEmail(RoutingContext context) {
+        final long id;
+        final EmailUpdateRequest request;
         try {
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(userService.getAllUsers()));
+            id = Long.parseLong(context.pathParam("id"));
+            request = UserJsonDecoder.decodeEmailUpdate(context.body().buffer());
+        } catch (DecodeException e) {
+            context.response().setStatusCode(400).end(e.getMessage());
+            return;
         } catch (Exception e) {
-            context.response().setStatusCode(500).end(e.getMessage());
+            respondWithError(context, e);
+            return;
+        }
+        String errors = UserConstraints.validate(request);
+        if (errors != null) {
+            context.response().setStatusCode(400).end(errors);
+            return;
         }
+        String email = request.getEmail();
+
+        long expectedVersion = expectedVersion(context);
+        if (expectedVersion < 0) {
+            context.response().setStatusCode(412).end(PRECONDITION_FAILED_BODY);
+            return;
+        }
+        respond(context, () -> userService.updateUserEmail(id, email, expectedVersion),
+                updatedUser -> respondWithUser(context, 200, updatedUser));
     }
 
-    public void updateUser(RoutingContext context) {
+    public void deleteUser(RoutingContext context) {
+        respond(context, () -> userService.deleteUser(Long.parseLong(context.pathParam("id"))),
+                v -> context.response().setStatusCode(204).end());
+    }
+
+    /**
+     * Creates every user of a JSON array body. Responds with one result per item,
+     * in request order: CREATED, CONFLICT or INVALID.
+     */
+    public void createUsers(RoutingContext context) {
+        handleBatch(context, body -> decodeUsers(body, false), userService::createUsers);
+    }
+
+    /**
+     * Updates the name and email of every user of a JSON array body; each item
+     * must carry the id of the user to update. Responds with one result per
+     * item, in request order: UPDATED, CONFLICT, NOT_FOUND or INVALID.
+     */
+    public void updateUsers(RoutingContext context) {
+        handleBatch(context, body -> decodeUsers(body, true), userService::updateUsers);
+    }
+
+    /**
+     * Deletes every user whose id is listed in a JSON array body. Responds with
+     * one result per item, in request order: DELETED, NOT_FOUND or INVALID.
+     */
+    public void deleteUsers(RoutingContext context) {
+        handleBatch(context, UserHandler::decodeIds, userService::deleteUsers);
+    }
+
+    /**
+     * Decodes and validates every item of a batch body, hands the valid ones to
+     * the service in a single call and merges its results with the INVALID
+     * results, keeping the order of the request. {@code decoder} throws a
+     * {@link DecodeException} if the body is not a JSON array, and may stop
+     * after {@link #MAX_BATCH_SIZE} + 1 items.
+     */
+    private <T> void handleBatch(RoutingContext context, Function<Buffer, List<BatchItem<T>>> decoder,
+            Function<List<T>, Future<List<BatchItemResult>>> operation) {
         try {
-            long id = Long.parseLong(context.pathParam("id"));
-            final User userDetails = context.body().asPojo(User.class);
-
-            Set<ConstraintViolation<User>> violations = validator.validate(userDetails);
-            if (!violations.isEmpty()) {
-                String errors = violations.stream().map(ConstraintViolation::getMessage)
-                        .collect(Collectors.joining(", "));
-                context.response().setStatusCode(400).end(errors);
+            List<BatchItem<T>> items;
+            try {
+                items = decoder.apply(context.body().buffer());
+            } catch (DecodeException e) {
+                context.response().setStatusCode(400).end("Request body must be a JSON array");
                 return;
             }
+            if (items.size() > MAX_BATCH_SIZE) {
+                context.response().setStatusCode(400)
+                        .end("A batch may contain at most " + MAX_BATCH_SIZE + " items");
+                return;
+            }
+
+            BatchItemResult[] results = new BatchItemResult[items.size()];
+            List<T> validItems = new ArrayList<>(items.size());
+            List<Integer> positions = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                BatchItem<T> item = items.get(i);
+                if (item.error() != null) {
+                    results[i] = BatchItemResult.invalid(item.error());
+                } else {
+                    validItems.add(item.value());
+                    positions.add(i);
+                }
+            }
+
+            call(context, () -> operation.apply(validItems), processed -> {
+                for (int i = 0; i < processed.size(); i++) {
+                    results[positions.get(i)] = processed.get(i);
+                }
 
-            User updatedUser = userService.updateUser(id, userDetails);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(updatedUser));
-        } catch (UserNotFoundException e) {
-            context.response().setStatusCode(404).end(e.getMessage());
+                HttpServerResponse response = context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8");
+                List<BatchItemResult> body = Arrays.asList(results);
+                response.end(isPrettyRequested(context) ? Json.encodePrettily(body) : Json.encode(body));
+            });
         } catch (Exception e) {
             context.response().setStatusCode(500).end(e.getMessage());
         }
     }
 
-    public void updateUserEmail(RoutingContext context) {
+    /**
+     * Decodes and validates the body of a single-user write. Answers a body
+     * that cannot be decoded or breaks a constraint with a 400.
+     *
+     * @return the user, or null if the response was sent.
+     */
+    private static User decodeUser(RoutingContext context) {
+        User user;
         try {
-            long id = Long.parseLong(context.pathParam("id"));
-            String email = context.body().asJsonObject().getString("email");
-            User updatedUser = userService.updateUserEmail(id, email);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(updatedUser));
-        } catch (UserNotFoundException e) {
-            context.response().setStatusCode(404).end(e.getMessage());
-        } catch (DuplicateUserException e) {
-            context.response().setStatusCode(409).end(e.getMessage());
-        } catch (Exception e) {
-            context.response().setStatusCode(500).end(e.getMessage());
+            user = UserJsonDecoder.decodeUser(context.body().buffer());
+        } catch (DecodeException e) {
+            context.response().setStatusCode(400).end(e.getMessage());
+            return null;
         }
+        String errors = UserConstraints.validate(user);
+        if (errors != null) {
+            context.response().setStatusCode(400).end(errors);
+            return null;
+        }
+        return user;
     }
 
-    public void deleteUser(RoutingContext context) {
+    private static List<BatchItem<User>> decodeUsers(Buffer body, boolean requireId) {
+        List<UserJsonDecoder.Item> decoded = UserJsonDecoder.decodeUsers(body, MAX_BATCH_SIZE);
+        List<BatchItem<User>> items = new ArrayList<>(decoded.size());
+        for (UserJsonDecoder.Item item : decoded) {
+            items.add(validate(item, requireId));
+        }
+        return items;
+    }
+
+    private static BatchItem<User> validate(UserJsonDecoder.Item item, boolean requireId) {
+        User user = item.user();
+        if (user == null) {
+            return BatchItem.invalid(item.error());
+        }
+        if (requireId && user.getId() <= 0) {
+            return BatchItem.invalid("Item must have a positive id");
+        }
+        String errors = UserConstraints.validate(user);
+        return errors != null ? BatchItem.invalid(errors) : BatchItem.valid(user);
+    }
+
+    private static List<BatchItem<Long>> decodeIds(Buffer body) {
+        if (body == null) {
+            throw new DecodeException("Request body must be a JSON array");
+        }
+        JsonArray ids = body.toJsonArray();
+        List<BatchItem<Long>> items = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            items.add(parseId(ids.getValue(i)));
+        }
+        return items;
+    }
+
+    private static BatchItem<Long> parseId(Object item) {
+        if (item instanceof Number number && number.longValue() > 0
+                && number.doubleValue() == number.longValue()) {
+            return BatchItem.valid(number.longValue());
+        }
+        return BatchItem.invalid("Item must be a positive user id");
+    }
+
+    /**
+     * One parsed batch item: either a value to process or the reason it is
+     * invalid.
+     */
+    private record BatchItem<T>(T value, String error) {
+
+        static <T> BatchItem<T> valid(T value) {
+            return new BatchItem<>(value, null);
+        }
+
+        static <T> BatchItem<T> invalid(String error) {
+            return new BatchItem<>(null, error);
+        }
+    }
+
+    /**
+     * Starts a single-user service call and hands the value of a successful
+     * result to {@code onOk}. Not-found, conflict and precondition-failed
+     * results are answered with 404, 409 and 412 and a pre-encoded body,
+     * without allocating anything.
+     */
+    private <T> void respond(RoutingContext context, Supplier<Future<ServiceResult<T>>> serviceCall,
+            Handler<T> onOk) {
+        call(context, serviceCall, result -> {
+            switch (result.getStatus()) {
+                case OK -> onOk.handle(result.getValue());
+                case NOT_FOUND -> context.response().setStatusCode(404).end(NOT_FOUND_BODY);
+                case CONFLICT -> context.response().setStatusCode(409).end(CONFLICT_BODY);
+                case PRECONDITION_FAILED -> context.response().setStatusCode(412).end(PRECONDITION_FAILED_BODY);
+            }
+        });
+    }
+
+    /**
+     * Starts a service call and hands its result to {@code onSuccess} once the
+     * returned future completes. A call that throws or fails, or a failure while
+     * responding, is answered with a 500.
+     */
+    private <T> void call(RoutingContext context, Supplier<Future<T>> serviceCall, Handler<T> onSuccess) {
+        Future<T> future;
         try {
-            long id = Long.parseLong(context.pathParam("id"));
-            userService.deleteUser(id);
-            context.response().setStatusCode(204).end();
-        } catch (UserNotFoundException e) {
-            context.response().setStatusCode(404).end(e.getMessage());
+            future = serviceCall.get();
         } catch (Exception e) {
-            context.response().setStatusCode(500).end(e.getMessage());
+            respondWithError(context, e);
+            return;
+        }
+        future.onComplete(result -> {
+            if (result.failed()) {
+                respondWithError(context, result.cause());
+                return;
+            }
+            try {
+                onSuccess.handle(result.result());
+            } catch (Exception e) {
+                respondWithError(context, e);
+            }
+        });
+    }
+
+    /**
+     * Answers an unexpected failure with a 500 and the exception message as
+     * body. Unknown users and duplicate emails are reported as
+     * {@link ServiceResult}s instead, see {@link #respond}.
+     */
+    private static void respondWithError(RoutingContext context, Throwable error) {
+        context.response().setStatusCode(500).end(error.getMessage());
+    }
+
+    /**
+     * Sends a single user as compact JSON encoded straight into a buffer, with
+     * its version as entity tag. Clients that want human-readable output can opt
+     * in with {@code ?pretty=true}.
+     */
+    private void respondWithUser(RoutingContext context, int statusCode, User user) {
+        HttpServerResponse response = context.response()
+                .setStatusCode(statusCode)
+                .putHeader("content-type", "application/json; charset=utf-8")
+                .putHeader("etag", etag(user.getVersion()));
+        if (isPrettyRequested(context)) {
+            response.end(Json.encodePrettily(user));
+        } else {
+            response.end(UserJsonEncoder.encode(user));
+        }
+    }
+
+    /**
+     * Returns the entity tag of a version of a user. The same tag serves the
+     * compact and the pretty representation, which live at different URLs.
+     */
+    private String etag(long version) {
+        return etagPrefix() + version + '"';
+    }
+
+    /**
+     * Returns the entity tag of a version of the table. Unlike the versions of
+     * users, the version of the table counts the changes made to the datastore
+     * of this process, snapshot loads included on a replica, so its tags carry
+     * the run id of this process even where user tags carry the one of the
+     * primary.
+     */
+    private String tableEtag(long version) {
+        String runId = replication.localRunId();
+        TagPrefix current = tableEtagPrefix;
+        if (!runId.equals(current.runId())) {
+            current = TagPrefix.of(runId);
+            tableEtagPrefix = current;
+        }
+        return current.prefix() + version + '"';
+    }
+
+    /**
+     * Returns the prefix of the entity tags of users for the current run id,
+     * rebuilt only when the run id changes, e.g. when a replica reloads from a
+     * restarted primary.
+     */
+    private String etagPrefix() {
+        String runId = replication.runId();
+        TagPrefix current = etagPrefix;
+        if (!runId.equals(current.runId())) {
+            current = TagPrefix.of(runId);
+            etagPrefix = current;
         }
+        return current.prefix();
+    }
+
+    private record TagPrefix(String runId, String prefix) {
+
+        static TagPrefix of(String runId) {
+            return new TagPrefix(runId, "\"" + runId + "-");
+        }
+    }
+
+    /**
+     * Answers 304 if the {@code If-None-Match} header is {@code *} or lists
+     * {@code etag}, compared weakly as that header requires.
+     *
+     * @return true if the response was sent.
+     */
+    private static boolean respondIfNotModified(RoutingContext context, String etag) {
+        String header = context.request().getHeader("if-none-match");
+        if (header == null) {
+            return false;
+        }
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                context.response().setStatusCode(304).putHeader("etag", etag).end();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the user version required by the {@code If-Match} header: 0 when
+     * there is no header or it is {@code *}, or -1 when it lists no entity tag
+     * of the current run, which can never match. If several tags of the run
+     * are listed, the first one is used.
+     */
+    private long expectedVersion(RoutingContext context) {
+        String header = context.request().getHeader("if-match");
+        if (header == null) {
+            return 0;
+        }
+        String etagPrefix = etagPrefix();
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return 0;
+            }
+            // If-Match uses the strong comparison, so weak tags never match
+            if (tag.startsWith(etagPrefix) && tag.endsWith("\"") && tag.length() > etagPrefix.length() + 1) {
+                try {
+                    long version = Long.parseLong(tag, etagPrefix.length(), tag.length() - 1, 10);
+                    if (version > 0) {
+                        return version;
+                    }
+                } catch (NumberFormatException e) {
+                    // Not one of our tags after all
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isPrettyRequested(RoutingContext context) {
+        return "true".equals(context.request().getParam("pretty"));
     }
 }
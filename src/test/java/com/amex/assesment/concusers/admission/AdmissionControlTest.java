@@ -0,0 +1,28 @@
+package com.amex.assesment.concusers.admission;
+
+import io.vertx.core.net.SocketAddress;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdmissionControlTest {
+
+    private static final SocketAddress ADDRESS = SocketAddress.inetSocketAddress(40_000, "10.0.0.7");
+
+    private final AdmissionControl admission = new AdmissionControl("X-API-Key", Set.of("known"), null, Map.of(),
+            null);
+
+    @Test
+    void client_withAKnownKey_isTheKey() {
+        assertEquals("key:known", admission.client("known", ADDRESS));
+    }
+
+    @Test
+    void client_withAnUnknownKey_isTheRemoteAddress() {
+        assertEquals("10.0.0.7", admission.client("made-up", ADDRESS));
+        assertEquals("10.0.0.7", admission.client(null, ADDRESS));
+    }
+}
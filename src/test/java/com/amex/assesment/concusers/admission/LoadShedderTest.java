@@ -0,0 +1,47 @@
+package com.amex.assesment.concusers.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadShedderTest {
+
+    @Test
+    void tryAcquire_rejectsBeyondMaxInFlight() {
+        LoadShedder shedder = new LoadShedder(2, 0);
+
+        assertTrue(shedder.tryAcquire());
+        assertTrue(shedder.tryAcquire());
+        assertFalse(shedder.tryAcquire());
+        assertEquals(2, shedder.inFlight());
+
+        shedder.release(1_000);
+        assertTrue(shedder.tryAcquire());
+    }
+
+    @Test
+    void tryAcquire_whenSlow_admitsAQuarterOfMaxInFlight() {
+        LoadShedder shedder = new LoadShedder(8, 100);
+        long slow = TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(shedder.tryAcquire());
+            shedder.release(slow);
+        }
+
+        assertTrue(shedder.tryAcquire());
+        assertTrue(shedder.tryAcquire());
+        assertFalse(shedder.tryAcquire());
+
+        // Fast responses bring the average back under the target
+        for (int i = 0; i < 64; i++) {
+            shedder.release(1_000);
+            assertTrue(shedder.tryAcquire());
+        }
+        assertTrue(shedder.tryAcquire());
+        assertTrue(shedder.tryAcquire());
+    }
+}
@@ -0,0 +1,73 @@
+package com.amex.assesment.concusers.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_allowsTheBurstThenTheRate() {
+        RateLimiter limiter = new RateLimiter(10, 3, 100);
+        long now = 1_000 * SECOND;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("client", now));
+        }
+        long wait = limiter.tryAcquire("client", now);
+        assertEquals(SECOND / 10, wait);
+
+        assertEquals(0, limiter.tryAcquire("client", now + wait));
+        assertTrue(limiter.tryAcquire("client", now + wait) > 0);
+    }
+
+    @Test
+    void tryAcquire_keepsOneBucketPerClient() {
+        RateLimiter limiter = new RateLimiter(1, 1, 100);
+        long now = 1_000 * SECOND;
+
+        assertEquals(0, limiter.tryAcquire("first", now));
+        assertTrue(limiter.tryAcquire("first", now) > 0);
+        assertEquals(0, limiter.tryAcquire("second", now));
+    }
+
+    @Test
+    void tryAcquire_fromManyThreads_allowsExactlyTheBurst() throws InterruptedException {
+        int burst = 1_000;
+        // One token per hour, so none is added while the test runs
+        RateLimiter limiter = new RateLimiter(1.0 / 3600, burst, 100);
+        int threads = 8;
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < burst; i++) {
+                    if (limiter.tryAcquire("client", System.nanoTime()) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(burst, allowed.get());
+    }
+}
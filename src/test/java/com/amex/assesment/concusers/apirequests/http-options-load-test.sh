@@ -0,0 +1,129 @@
+#!/bin/bash
+
+# This script shows the effect of each HTTP server option (concusers.http.*)
+# on throughput and on the size of large GET /users responses. For every
+# scenario it starts the application jar with the options of that scenario,
+# seeds users, then prints:
+#   - requests per second for GET /users/:id and for GET /users?limit=1000
+#     (sent with Accept-Encoding: gzip, deflate), measured with wrk
+#   - bytes on the wire for GET /users?limit=1000 and the streamed GET /users
+# h2c is measured with h2load (from nghttp2) when it is installed, and
+# pipelining with a wrk script sending PIPELINE requests per write.
+# It requires wrk and curl to be installed and the jar to be built first
+# (./mvnw package -DskipTests, or ./mvnw -Pepoll package -DskipTests for the
+# native scenario).
+
+JAR=${JAR:-$(ls target/concusers-*.jar 2>/dev/null | grep -v original | head -n 1)}
+HOST="http://localhost:8080"
+DURATION=${DURATION:-20s}
+CONNECTIONS=${CONNECTIONS:-64}
+THREADS=${THREADS:-$(nproc)}
+USERS=${USERS:-10000}
+PIPELINE=${PIPELINE:-16}
+ENCODING="Accept-Encoding: gzip, deflate"
+
+if [ -z "$JAR" ]; then
+  echo "Application jar not found, run ./mvnw package -DskipTests first"
+  exit 1
+fi
+
+# name|options
+SCENARIOS=(
+  "baseline|"
+  "compression|--concusers.http.compression.enabled=true"
+  "compression-level-1|--concusers.http.compression.enabled=true --concusers.http.compression.level=1"
+  "compression-gzip-only|--concusers.http.compression.enabled=true --concusers.http.compression.deflate=false"
+  "no-tcp-nodelay|--concusers.http.tcp-no-delay=false"
+  "idle-timeout-5s|--concusers.http.idle-timeout-seconds=5"
+  "native-fast-open|--concusers.http.native-transport=true --concusers.http.tcp-fast-open=true"
+  "no-h2c|--concusers.http.http2-clear-text=false"
+)
+
+PIPELINE_SCRIPT=$(mktemp)
+trap 'rm -f "$PIPELINE_SCRIPT"' EXIT
+cat > "$PIPELINE_SCRIPT" <<EOF
+init = function(args)
+  local r = {}
+  for i = 1, $PIPELINE do
+    r[i] = wrk.format(nil, "/users/" .. math.random(1, $USERS))
+  end
+  req = table.concat(r)
+end
+request = function()
+  return req
+end
+EOF
+
+start_app() {
+  # shellcheck disable=SC2086
+  java -jar "$JAR" $1 > /dev/null 2>&1 &
+  APP_PID=$!
+  for _ in $(seq 1 60); do
+    curl -s -o /dev/null "$HOST/users?limit=1" && break
+    sleep 0.5
+  done
+}
+
+stop_app() {
+  kill "$APP_PID"
+  wait "$APP_PID" 2>/dev/null
+}
+
+seed_users() {
+  local batch=1000
+  for start in $(seq 0 $batch $((USERS - 1))); do
+    local body="["
+    for i in $(seq "$start" $((start + batch - 1))); do
+      [ "$i" -ge "$USERS" ] && break
+      [ "$i" -gt "$start" ] && body+=","
+      body+="{\"name\":\"Load User $i\",\"email\":\"load.user.$i@example.com\"}"
+    done
+    body+="]"
+    curl -s -o /dev/null -X POST -H "Content-Type: application/json" -d "$body" "$HOST/users/batch"
+  done
+}
+
+rps() {
+  wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" "$@" | awk '/Requests\/sec/ {print $2}'
+}
+
+bytes() {
+  curl -s -H "$ENCODING" -o /dev/null -w '%{size_download}' "$1"
+}
+
+echo "--- HTTP server options ($DURATION, $CONNECTIONS connections, $USERS users) ---"
+printf "%-22s %-14s %-14s %-12s %-12s\n" "scenario" "GET /:id rps" "page rps" "page bytes" "all bytes"
+
+for SCENARIO in "${SCENARIOS[@]}"; do
+  NAME=${SCENARIO%%|*}
+  OPTIONS=${SCENARIO#*|}
+  start_app "$OPTIONS"
+  seed_users
+
+  BY_ID=$(rps "$HOST/users/$((USERS / 2))")
+  PAGE=$(rps -H "$ENCODING" "$HOST/users?limit=1000")
+  PAGE_BYTES=$(bytes "$HOST/users?limit=1000")
+  ALL_BYTES=$(bytes "$HOST/users")
+  printf "%-22s %-14s %-14s %-12s %-12s\n" "$NAME" "$BY_ID" "$PAGE" "$PAGE_BYTES" "$ALL_BYTES"
+
+  stop_app
+done
+
+echo
+echo "--- Pipelining and HTTP/2 over cleartext, default options ---"
+start_app ""
+seed_users
+printf "%-22s %-14s\n" "client" "GET /:id rps"
+printf "%-22s %-14s\n" "http/1.1" "$(rps "$HOST/users/$((USERS / 2))")"
+printf "%-22s %-14s\n" "http/1.1 pipeline=$PIPELINE" "$(rps -s "$PIPELINE_SCRIPT" "$HOST")"
+if command -v h2load > /dev/null; then
+  # One stream per connection compares with HTTP/1.1; 16 shows multiplexing
+  for STREAMS in 1 16; do
+    H2=$(h2load -t"$THREADS" -c"$CONNECTIONS" -m"$STREAMS" -D"${DURATION%s}" "$HOST/users/$((USERS / 2))" \
+      | awk '/finished in/ {print $4}')
+    printf "%-22s %-14s\n" "h2c streams=$STREAMS" "$H2"
+  done
+else
+  echo "h2load not found, skipping h2c"
+fi
+stop_app
@@ -0,0 +1,48 @@
+#!/bin/bash
+
+# This script measures how throughput scales with the number of MainVerticle
+# instances (concusers.http.instances). For every instance count it starts the
+# application jar, seeds a few users, drives GET /users/:id with wrk and prints
+# one line of the scaling curve.
+# It requires wrk and curl to be installed and the jar to be built first
+# (./mvnw package -DskipTests).
+
+JAR=${JAR:-$(ls target/concusers-*.jar 2>/dev/null | grep -v original | head -n 1)}
+HOST="http://localhost:8080"
+DURATION=${DURATION:-20s}
+CONNECTIONS=${CONNECTIONS:-256}
+THREADS=${THREADS:-$(nproc)}
+INSTANCE_COUNTS=${INSTANCE_COUNTS:-"1 2 4 8 16"}
+
+if [ -z "$JAR" ]; then
+  echo "Application jar not found, run ./mvnw package -DskipTests first"
+  exit 1
+fi
+
+echo "--- Scaling curve for GET /users/:id ($DURATION, $CONNECTIONS connections) ---"
+printf "%-10s %-15s %-12s\n" "instances" "requests/sec" "p99 latency"
+
+for INSTANCES in $INSTANCE_COUNTS; do
+  java -jar "$JAR" --concusers.http.instances="$INSTANCES" > /dev/null 2>&1 &
+  APP_PID=$!
+
+  # Wait for the server to accept requests
+  for _ in $(seq 1 60); do
+    curl -s -o /dev/null "$HOST/users?limit=1" && break
+    sleep 0.5
+  done
+
+  for i in $(seq 1 100); do
+    curl -s -o /dev/null -X POST -H "Content-Type: application/json" \
+      -d "{\"name\":\"Load User $i\",\"email\":\"load.user.$i@example.com\"}" \
+      $HOST/users
+  done
+
+  RESULT=$(wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" --latency "$HOST/users/50")
+  RPS=$(echo "$RESULT" | awk '/Requests\/sec/ {print $2}')
+  P99=$(echo "$RESULT" | awk '$1 == "99%" {print $2}')
+  printf "%-10s %-15s %-12s\n" "$INSTANCES" "$RPS" "$P99"
+
+  kill "$APP_PID"
+  wait "$APP_PID" 2>/dev/null
+done
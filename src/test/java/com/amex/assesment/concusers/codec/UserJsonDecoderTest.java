@@ -0,0 +1,117 @@
+package com.amex.assesment.concusers.codec;
+
+import com.amex.assesment.concusers.model.User;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserJsonDecoderTest {
+
+    @Test
+    void decodeUser_acceptsWhatJacksonMaps() {
+        for (String body : List.of(
+                "{\"id\":1,\"name\":\"Jane Doe\",\"email\":\"jane@example.com\"}",
+                "{\"name\":\"Zoë \\\"Q\\\" \\u0041 日本 😀\",\"email\":\"zoe@exämple.com\"}",
+                " { \"email\" : null , \"name\" : \"a\" } ",
+                "{}",
+                "{\"id\":null}",
+                "{\"id\":7.9}",
+                "{\"id\":\"42\"}",
+                "{\"id\":-3}",
+                "{\"name\":12,\"email\":true}",
+                "{\"name\":\"first\",\"name\":\"second\"}")) {
+            assertEquals(Json.decodeValue(body, User.class), UserJsonDecoder.decodeUser(Buffer.buffer(body)), body);
+        }
+    }
+
+    @Test
+    void decodeUser_rejectsWhatJacksonRejects() {
+        for (String body : List.of(
+                "{\"id\":1,\"name\":\"a\",\"unknown\":1}",
+                "{\"name\":{}}",
+                "{\"email\":[\"a@example.com\"]}",
+                "{\"id\":true}",
+                "{\"id\":\"one\"}",
+                "{\"id\":99999999999999999999}",
+                "[{\"name\":\"a\"}]",
+                "\"a\"")) {
+            assertThrows(DecodeException.class, () -> Json.decodeValue(body, User.class), body);
+            DecodeException e = assertThrows(DecodeException.class,
+                    () -> UserJsonDecoder.decodeUser(Buffer.buffer(body)), body);
+            assertEquals(UserJsonDecoder.INVALID_USER, e.getMessage());
+        }
+    }
+
+    @Test
+    void decodeUser_rejectsMalformedJson() {
+        for (String body : List.of("{\"name\":", "{\"name\" \"a\"}", "{\"name\":\"a\"} x")) {
+            DecodeException e = assertThrows(DecodeException.class,
+                    () -> UserJsonDecoder.decodeUser(Buffer.buffer(body)), body);
+            assertEquals(UserJsonDecoder.INVALID_JSON, e.getMessage());
+        }
+    }
+
+    @Test
+    void decodeUser_rejectsEmptyBody() {
+        assertThrows(DecodeException.class, () -> UserJsonDecoder.decodeUser(Buffer.buffer()));
+        assertThrows(DecodeException.class, () -> UserJsonDecoder.decodeUser(null));
+        assertThrows(DecodeException.class, () -> UserJsonDecoder.decodeUser(Buffer.buffer("null")));
+    }
+
+    @Test
+    void decodeUser_readsASliceOfALargerBuffer() {
+        String json = "{\"name\":\"Jane\",\"email\":\"jane@example.com\"}";
+        Buffer body = Buffer.buffer("xx" + json + "yy").slice(2, 2 + json.length());
+
+        assertEquals(new User(0, "Jane", "jane@example.com"), UserJsonDecoder.decodeUser(body));
+    }
+
+    @Test
+    void decodeEmailUpdate_readsTheEmail() {
+        assertEquals("jane@example.com",
+                UserJsonDecoder.decodeEmailUpdate(Buffer.buffer("{\"email\":\"jane@example.com\"}")).getEmail());
+        assertNull(UserJsonDecoder.decodeEmailUpdate(Buffer.buffer("{}")).getEmail());
+        for (String body : List.of("{\"email\":\"a@example.com\",\"name\":\"a\"}", "{\"email\":{}}", "[]")) {
+            DecodeException e = assertThrows(DecodeException.class,
+                    () -> UserJsonDecoder.decodeEmailUpdate(Buffer.buffer(body)), body);
+            assertEquals(UserJsonDecoder.INVALID_EMAIL_UPDATE, e.getMessage());
+        }
+        assertThrows(DecodeException.class, () -> UserJsonDecoder.decodeEmailUpdate(Buffer.buffer("{\"email\"")));
+    }
+
+    @Test
+    void decodeUsers_reportsInvalidItemsAndGoesOn() {
+        List<UserJsonDecoder.Item> items = UserJsonDecoder.decodeUsers(Buffer.buffer(
+                "[{\"name\":\"A\",\"email\":\"a@example.com\"}, 1, {\"name\":{\"nested\":[1]}}, [2],"
+                        + " {\"id\":2,\"name\":\"B\",\"email\":\"b@example.com\"}]"), 10);
+
+        assertEquals(5, items.size());
+        assertEquals(new User(0, "A", "a@example.com"), items.get(0).user());
+        assertEquals(UserJsonDecoder.ITEM_NOT_AN_OBJECT, items.get(1).error());
+        assertEquals(UserJsonDecoder.ITEM_NOT_A_USER, items.get(2).error());
+        assertEquals(UserJsonDecoder.ITEM_NOT_AN_OBJECT, items.get(3).error());
+        assertEquals(new User(2, "B", "b@example.com"), items.get(4).user());
+        assertNull(items.get(4).error());
+    }
+
+    @Test
+    void decodeUsers_stopsAfterOneItemOverTheLimit() {
+        List<UserJsonDecoder.Item> items = UserJsonDecoder.decodeUsers(Buffer.buffer("[{},{},{},{},{}]"), 2);
+
+        assertEquals(3, items.size());
+    }
+
+    @Test
+    void decodeUsers_rejectsBodiesThatAreNotArrays() {
+        for (String body : List.of("{}", "1", "", "[{}", "[{}] x")) {
+            DecodeException e = assertThrows(DecodeException.class,
+                    () -> UserJsonDecoder.decodeUsers(Buffer.buffer(body), 10), body);
+            assertEquals(UserJsonDecoder.NOT_AN_ARRAY, e.getMessage());
+        }
+    }
+}
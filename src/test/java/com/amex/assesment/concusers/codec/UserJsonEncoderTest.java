@@ -0,0 +1,45 @@
+package com.amex.assesment.concusers.codec;
+
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserJsonEncoderTest {
+
+    @Test
+    void encode_matchesJackson() {
+        User user = new User(42, "Jane Doe", "jane.doe@example.com");
+        assertEncodesLikeJackson(user);
+    }
+
+    @Test
+    void encode_escapesSpecialAndNonAsciiCharacters() {
+        User user = new User(7, "Zoë \"Q\" \\ O'Brien\n\t\u0001 日本 😀", "zoe@exämple.com");
+        assertEncodesLikeJackson(user);
+    }
+
+    @Test
+    void encode_handlesNullFields() {
+        assertEncodesLikeJackson(new User(0, null, null));
+    }
+
+    @Test
+    void encode_page() {
+        UserPage page = new UserPage(List.of(
+                new User(1, "User 1", "user1@example.com"),
+                new User(2, "User 2", "user2@example.com")), "2");
+        assertEquals(Json.encode(page), UserJsonEncoder.encode(page).toString());
+    }
+
+    private static void assertEncodesLikeJackson(User user) {
+        Buffer encoded = UserJsonEncoder.encode(user);
+        assertEquals(Json.encode(user), encoded.toString());
+        assertEquals(UserJsonEncoder.encodedLength(user), encoded.length());
+    }
+}
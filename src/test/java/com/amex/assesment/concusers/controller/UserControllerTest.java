@@ -2,8 +2,12 @@ package com.amex.assesment.concusers.controller;
 
 import com.amex.assesment.concusers.ConcUsersApplication;
 import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
 import com.amex.assesment.concusers.model.User;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.codec.BodyCodec;
@@ -18,6 +22,10 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.context.ConfigurableApplicationContext;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(VertxExtension.class)
 public class UserControllerTest {
@@ -199,6 +207,190 @@ public class UserControllerTest {
                 }));
     }
 
+    @Test
+    void testUpdateUserEmailWithInvalidEmail(VertxTestContext testContext) {
+        User createdUser = userDatastore.save(new User(0, "Test User", "test@example.com"));
+
+        JsonObject emailUpdate = new JsonObject().put("email", "not-an-email");
+
+        webClient.put(8080, "localhost", "/users/" + createdUser.getId() + "/email")
+                .as(BodyCodec.string())
+                .sendJsonObject(emailUpdate, testContext.succeeding(response -> {
+                    testContext.verify(() -> {
+                        assertEquals(400, response.statusCode());
+                        assertEquals("Email should be valid", response.body());
+                        assertEquals("test@example.com",
+                                userDatastore.findById(createdUser.getId()).orElseThrow().getEmail());
+                        testContext.completeNow();
+                    });
+                }));
+    }
+
+    @Test
+    void testCreateUserWithMalformedBody(VertxTestContext testContext) {
+        Buffer truncated = Buffer.buffer("{\"name\":\"Test User\",\"email\":");
+
+        webClient.post(8080, "localhost", "/users")
+                .putHeader("content-type", "application/json")
+                .as(BodyCodec.string())
+                .sendBuffer(truncated, testContext.succeeding(response -> {
+                    testContext.verify(() -> {
+                        assertEquals(400, response.statusCode());
+                        assertEquals("Invalid JSON format", response.body());
+                        webClient.post(8080, "localhost", "/users")
+                                .as(BodyCodec.string())
+                                .sendJsonObject(new JsonObject().put("name", "Test User").put("email", "a@b.com")
+                                        .put("role", "admin"), testContext.succeeding(unknownField -> {
+                                    testContext.verify(() -> {
+                                        assertEquals(400, unknownField.statusCode());
+                                        assertEquals(0, userDatastore.findAll().size());
+                                        testContext.completeNow();
+                                    });
+                                }));
+                    });
+                }));
+    }
+
+    @Test
+    void testGetUserByIdWithMatchingEtagIsNotModified(VertxTestContext testContext) {
+        User createdUser = userDatastore.save(new User(0, "Test User", "test@example.com"));
+
+        webClient.get(8080, "localhost", "/users/" + createdUser.getId())
+                .send(testContext.succeeding(response -> {
+                    testContext.verify(() -> {
+                        assertEquals(200, response.statusCode());
+                        String etag = response.getHeader("etag");
+                        assertNotNull(etag);
+
+                        webClient.get(8080, "localhost", "/users/" + createdUser.getId())
+                                .putHeader("if-none-match", etag)
+                                .send(testContext.succeeding(cachedResponse -> {
+                                    testContext.verify(() -> {
+                                        assertEquals(304, cachedResponse.statusCode());
+                                        assertNull(cachedResponse.body());
+                                        assertEquals(etag, cachedResponse.getHeader("etag"));
+                                        testContext.completeNow();
+                                    });
+                                }));
+                    });
+                }));
+    }
+
+    @Test
+    void testUpdateUserWithIfMatch(VertxTestContext testContext) {
+        User createdUser = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        User userDetails = new User(0, "Updated Name", "test@example.com");
+
+        webClient.get(8080, "localhost", "/users/" + createdUser.getId())
+                .send(testContext.succeeding(response -> {
+                    String etag = response.getHeader("etag");
+                    webClient.put(8080, "localhost", "/users/" + createdUser.getId())
+                            .putHeader("if-match", etag)
+                            .as(BodyCodec.json(User.class))
+                            .sendJson(userDetails, testContext.succeeding(updateResponse -> {
+                                testContext.verify(() -> {
+                                    assertEquals(200, updateResponse.statusCode());
+                                    assertNotEquals(etag, updateResponse.getHeader("etag"));
+
+                                    // The tag now stands for the previous version
+                                    webClient.put(8080, "localhost", "/users/" + createdUser.getId())
+                                            .putHeader("if-match", etag)
+                                            .sendJson(userDetails, testContext.succeeding(staleResponse -> {
+                                                testContext.verify(() -> {
+                                                    assertEquals(412, staleResponse.statusCode());
+                                                    testContext.completeNow();
+                                                });
+                                            }));
+                                });
+                            }));
+                }));
+    }
+
+    @Test
+    void testGetAllUsersIsNotModifiedUntilTableChanges(VertxTestContext testContext) {
+        userDatastore.save(new User(0, "Test User", "test@example.com"));
+
+        webClient.get(8080, "localhost", "/users")
+                .send(testContext.succeeding(response -> {
+                    String etag = response.getHeader("etag");
+                    webClient.get(8080, "localhost", "/users?limit=10")
+                            .putHeader("if-none-match", etag)
+                            .send(testContext.succeeding(pageResponse -> {
+                                testContext.verify(() -> {
+                                    assertEquals(304, pageResponse.statusCode());
+                                    userDatastore.save(new User(0, "Other User", "other@example.com"));
+
+                                    webClient.get(8080, "localhost", "/users")
+                                            .putHeader("if-none-match", etag)
+                                            .as(BodyCodec.jsonArray())
+                                            .send(testContext.succeeding(changedResponse -> {
+                                                testContext.verify(() -> {
+                                                    assertEquals(200, changedResponse.statusCode());
+                                                    assertEquals(2, changedResponse.body().size());
+                                                    testContext.completeNow();
+                                                });
+                                            }));
+                                });
+                            }));
+                }));
+    }
+
+    @Test
+    void testChangesStreamResumesAndFollowsMutations(Vertx vertx, VertxTestContext testContext) {
+        User existing = userDatastore.save(new User(0, "Existing User", "existing@example.com"));
+        ChangeFeed feed = context.getBean(ChangeFeed.class);
+        long existingSequence = feed.nextSequence() - 1;
+        StringBuilder received = new StringBuilder();
+
+        vertx.createHttpClient().request(HttpMethod.GET, 8080, "localhost", "/users/changes")
+                .compose(request -> request.putHeader("last-event-id", Long.toString(existingSequence - 1)).send())
+                .onComplete(testContext.succeeding(response -> {
+                    testContext.verify(() -> {
+                        assertEquals(200, response.statusCode());
+                        assertEquals("text/event-stream; charset=utf-8", response.getHeader("content-type"));
+                    });
+                    userDatastore.deleteById(existing.getId());
+                    response.handler(chunk -> {
+                        received.append(chunk.toString());
+                        if (received.indexOf("\"DELETED\"") >= 0) {
+                            testContext.verify(() -> {
+                                String events = received.toString();
+                                assertTrue(events.contains(
+                                        "id: " + ChangeFeed.position(feed.runId(), existingSequence) + "\n"));
+                                assertTrue(events.contains("\"type\":\"CREATED\",\"id\":" + existing.getId()));
+                                assertTrue(events.contains("\"email\":\"existing@example.com\""));
+                                assertTrue(events.indexOf("CREATED") < events.indexOf("DELETED"));
+                                response.request().connection().close();
+                                testContext.completeNow();
+                            });
+                        }
+                    });
+                }));
+    }
+
+    @Test
+    void testChangesStreamFromAnotherRunStartsWithReset(Vertx vertx, VertxTestContext testContext) {
+        userDatastore.save(new User(0, "Existing User", "existing@example.com"));
+        ChangeFeed feed = context.getBean(ChangeFeed.class);
+        StringBuilder received = new StringBuilder();
+
+        // A position of an earlier run, still below the sequence of this one
+        vertx.createHttpClient().request(HttpMethod.GET, 8080, "localhost", "/users/changes")
+                .compose(request -> request.putHeader("last-event-id", ChangeFeed.position("earlier", 0)).send())
+                .onComplete(testContext.succeeding(response -> response.handler(chunk -> {
+                    received.append(chunk.toString());
+                    if (received.indexOf("event: reset") >= 0 && received.indexOf("\"CREATED\"") >= 0) {
+                        testContext.verify(() -> {
+                            String events = received.toString();
+                            assertTrue(events.contains("\"run\":\"" + feed.runId() + "\""));
+                            assertTrue(events.indexOf("event: reset") < events.indexOf("\"type\":"));
+                            response.request().connection().close();
+                            testContext.completeNow();
+                        });
+                    }
+                })));
+    }
+
     @Test
     void testDeleteUserWhenUserExists(VertxTestContext testContext) {
         User user = new User(0, "To Be Deleted", "delete@example.com");
@@ -271,6 +463,23 @@ public class UserControllerTest {
                 }));
     }
 
+    @Test
+    void testGetAllUsersStreamsSeveralChunks(VertxTestContext testContext) {
+        for (int i = 0; i < 1000; i++) {
+            userDatastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        webClient.get(8080, "localhost", "/users")
+                .as(BodyCodec.jsonArray())
+                .send(testContext.succeeding(response -> {
+                    testContext.verify(() -> {
+                        assertEquals(200, response.statusCode());
+                        assertEquals(1000, response.body().size());
+                        assertEquals("user999@example.com", response.body().getJsonObject(999).getString("email"));
+                        testContext.completeNow();
+                    });
+                }));
+    }
+
     @Test
     void testGetAllUsersWhenNoUsersExist(VertxTestContext testContext) {
         webClient.get(8080, "localhost", "/users")
@@ -283,4 +492,175 @@ public class UserControllerTest {
                     });
                 }));
     }
+
+    @Test
+    void testGetUsersPage(VertxTestContext testContext) {
+        User user1 = userDatastore.save(new User(0, "User 1", "user1@example.com"));
+        User user2 = userDatastore.save(new User(0, "User 2", "user2@example.com"));
+        User user3 = userDatastore.save(new User(0, "User 3", "user3@example.com"));
+
+        webClient.get(8080, "localhost", "/users?limit=2")
+                .as(BodyCodec.jsonObject())
+                .send(testContext.succeeding(response -> {
+                    testContext.verify(() -> {
+                        assertEquals(200, response.statusCode());
+                        JsonArray users = response.body().getJsonArray("users");
+                        assertEquals(2, users.size());
+                        assertEquals(user1.getId(), users.getJsonObject(0).getLong("id"));
+                        assertEquals(user2.getId(), users.getJsonObject(1).getLong("id"));
+                        String cursor = response.body().getString("nextCursor");
+
+                        webClient.get(8080, "localhost", "/users?limit=2&after=" + cursor)
+                                .as(BodyCodec.jsonObject())
+                                .send(testContext.succeeding(nextResponse -> {
+                                    testContext.verify(() -> {
+                                        assertEquals(200, nextResponse.statusCode());
+                                        JsonArray nextUsers = nextResponse.body().getJsonArray("users");
+                                        assertEquals(1, nextUsers.size());
+                                        assertEquals(user3.getId(), nextUsers.getJsonObject(0).getLong("id"));
+                                        assertNull(nextResponse.body().getString("nextCursor"));
+                                        testContext.completeNow();
+                                    });
+                                }));
+                    });
+                }));
+    }
+
+    @Test
+    void testGetUsersPageWithInvalidLimit(VertxTestContext testContext) {
+        webClient.get(8080, "localhost", "/users?limit=0")
+                .as(BodyCodec.string())
+                .send(testContext.succeeding(response -> {
+                    testContext.verify(() -> {
+                        assertEquals(400, response.statusCode());
+                        testContext.completeNow();
+                    });
+                }));
+    }
+
+    @Test
+    void testCreateUsersBatch(VertxTestContext testContext) {
+        userDatastore.save(new User(0, "Existing User", "existing@example.com"));
+        JsonArray batch = new JsonArray()
+                .add(new JsonObject().put("name", "User 1").put("email", "user1@example.com"))
+                .add(new JsonObject().put("name", "User 1 Again").put("email", "USER1@example.com"))
+                .add(new JsonObject().put("name", "Existing Again").put("email", "existing@example.com"))
+                .add(new JsonObject().put("name", "").put("email", "invalid-email"));
+
+        webClient.post(8080, "localhost", "/users/batch")
+                .as(BodyCodec.jsonArray())
+                .sendJson(batch, testContext.succeeding(response -> {
+                    testContext.verify(() -> {
+                        assertEquals(200, response.statusCode());
+                        JsonArray results = response.body();
+                        assertEquals(4, results.size());
+                        assertEquals("CREATED", results.getJsonObject(0).getString("status"));
+                        assertEquals("CONFLICT", results.getJsonObject(1).getString("status"));
+                        assertEquals("CONFLICT", results.getJsonObject(2).getString("status"));
+                        assertEquals("INVALID", results.getJsonObject(3).getString("status"));
+                        assertEquals(2, userDatastore.findAll().size());
+                        testContext.completeNow();
+                    });
+                }));
+    }
+
+    @Test
+    void testUpdateAndDeleteUsersBatch(VertxTestContext testContext) {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        JsonArray updates = new JsonArray()
+                .add(new JsonObject().put("id", user.getId()).put("name", "Renamed").put("email", "renamed@example.com"))
+                .add(new JsonObject().put("id", 999).put("name", "Nobody").put("email", "nobody@example.com"));
+
+        webClient.put(8080, "localhost", "/users/batch")
+                .as(BodyCodec.jsonArray())
+                .sendJson(updates, testContext.succeeding(updateResponse -> {
+                    testContext.verify(() -> {
+                        assertEquals(200, updateResponse.statusCode());
+                        assertEquals("UPDATED", updateResponse.body().getJsonObject(0).getString("status"));
+                        assertEquals("NOT_FOUND", updateResponse.body().getJsonObject(1).getString("status"));
+                        assertEquals("Renamed", userDatastore.findById(user.getId()).orElseThrow().getName());
+
+                        webClient.delete(8080, "localhost", "/users/batch")
+                                .as(BodyCodec.jsonArray())
+                                .sendJson(new JsonArray().add(user.getId()).add(999).add("abc"),
+                                        testContext.succeeding(deleteResponse -> {
+                                            testContext.verify(() -> {
+                                                JsonArray results = deleteResponse.body();
+                                                assertEquals(200, deleteResponse.statusCode());
+                                                assertEquals("DELETED", results.getJsonObject(0).getString("status"));
+                                                assertEquals("NOT_FOUND", results.getJsonObject(1).getString("status"));
+                                                assertEquals("INVALID", results.getJsonObject(2).getString("status"));
+                                                assertEquals(0, userDatastore.findAll().size());
+                                                testContext.completeNow();
+                                            });
+                                        }));
+                    });
+                }));
+    }
+
+    @Test
+    void testMetricsCountRequestsByRoute(VertxTestContext testContext) {
+        userDatastore.save(new User(0, "Test User", "test@example.com"));
+
+        webClient.get(8080, "localhost", "/users/999")
+                .send(testContext.succeeding(missing -> {
+                    webClient.get(8080, "localhost", "/metrics")
+                            .as(BodyCodec.string())
+                            .send(testContext.succeeding(response -> {
+                                testContext.verify(() -> {
+                                    assertEquals(200, response.statusCode());
+                                    assertTrue(response.getHeader("content-type").startsWith("text/plain"));
+                                    String body = response.body();
+                                    assertTrue(body.contains(
+                                            "concusers_http_requests_total{method=\"GET\",route=\"/users/:id\"}"));
+                                    assertTrue(body.contains(
+                                            "concusers_http_responses_total{method=\"GET\",route=\"/users/:id\",status=\"404\"}"));
+                                    assertTrue(body.contains(
+                                            "concusers_http_request_duration_seconds_count{method=\"GET\",route=\"/users/:id\"}"));
+                                    assertTrue(body.contains("concusers_datastore_users 1\n"));
+                                    testContext.completeNow();
+                                });
+                            }));
+                }));
+    }
+
+    @Test
+    void testSearchUsersByNamePrefixAndDomain(VertxTestContext testContext) {
+        userDatastore.save(new User(0, "Alice", "alice@example.com"));
+        userDatastore.save(new User(0, "Alan", "alan@example.com"));
+        userDatastore.save(new User(0, "Albert", "albert@other.org"));
+
+        webClient.get(8080, "localhost", "/users?name=al&emailDomain=example.com&limit=1")
+                .as(BodyCodec.jsonObject())
+                .send(testContext.succeeding(first -> {
+                    testContext.verify(() -> {
+                        assertEquals(200, first.statusCode());
+                        JsonArray users = first.body().getJsonArray("users");
+                        assertEquals(1, users.size());
+                        assertEquals("Alan", users.getJsonObject(0).getString("name"));
+                        String cursor = first.body().getString("nextCursor");
+                        assertNotNull(cursor);
+
+                        webClient.get(8080, "localhost", "/users?name=al&emailDomain=example.com&limit=1")
+                                .addQueryParam("after", cursor)
+                                .as(BodyCodec.jsonObject())
+                                .send(testContext.succeeding(second -> {
+                                    testContext.verify(() -> {
+                                        assertEquals(200, second.statusCode());
+                                        assertEquals("Alice", second.body().getJsonArray("users")
+                                                .getJsonObject(0).getString("name"));
+                                        assertNull(second.body().getString("nextCursor"));
+
+                                        webClient.get(8080, "localhost", "/users?name=al&after=not-a-cursor")
+                                                .send(testContext.succeeding(invalid -> {
+                                                    testContext.verify(() -> {
+                                                        assertEquals(400, invalid.statusCode());
+                                                        testContext.completeNow();
+                                                    });
+                                                }));
+                                    });
+                                }));
+                    });
+                }));
+    }
 }
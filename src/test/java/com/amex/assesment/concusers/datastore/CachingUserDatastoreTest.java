@@ -0,0 +1,108 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingUserDatastoreTest {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    private CachingUserDatastore userDatastore;
+
+    @BeforeEach
+    void setUp() {
+        UserDatastore delegate = new InMemoryUserDatastore() {
+            @Override
+            public Optional<User> findById(long id) {
+                lookups.incrementAndGet();
+                return super.findById(id);
+            }
+        };
+        userDatastore = new CachingUserDatastore(delegate, 1000);
+    }
+
+    @Test
+    void findById_whenRepeated_thenServedFromCache() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+
+        assertEquals(user.getId(), userDatastore.findById(user.getId()).orElseThrow().getId());
+        assertEquals(user.getId(), userDatastore.findById(user.getId()).orElseThrow().getId());
+
+        assertEquals(1, lookups.get());
+        assertEquals(1, userDatastore.stats().hitCount());
+        assertEquals(1, userDatastore.stats().missCount());
+    }
+
+    @Test
+    void findById_whenMissing_thenMissIsCachedUntilUserIsCreated() {
+        assertTrue(userDatastore.findById(1).isEmpty());
+        assertTrue(userDatastore.findById(1).isEmpty());
+        assertEquals(1, lookups.get());
+
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+
+        assertEquals(1, user.getId());
+        assertTrue(userDatastore.findById(1).isPresent());
+    }
+
+    @Test
+    void saveIfEmailAbsent_invalidatesUpdatedUser() {
+        User user = userDatastore.save(new User(0, "Test User", "old@example.com"));
+        userDatastore.findById(user.getId());
+
+        userDatastore.saveIfEmailAbsent(new User(user.getId(), "Test User", "new@example.com"));
+
+        assertEquals("new@example.com", userDatastore.findById(user.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    void saveAllIfEmailAbsent_invalidatesSavedUsers() {
+        assertTrue(userDatastore.findById(1).isEmpty());
+        assertTrue(userDatastore.findById(2).isEmpty());
+
+        userDatastore.saveAllIfEmailAbsent(List.of(
+                new User(0, "First", "first@example.com"),
+                new User(0, "Second", "second@example.com")));
+
+        assertTrue(userDatastore.findById(1).isPresent());
+        assertTrue(userDatastore.findById(2).isPresent());
+    }
+
+    @Test
+    void deletes_invalidateUsers() {
+        User first = userDatastore.save(new User(0, "First", "first@example.com"));
+        User second = userDatastore.save(new User(0, "Second", "second@example.com"));
+        userDatastore.findById(first.getId());
+        userDatastore.findById(second.getId());
+
+        userDatastore.deleteById(first.getId());
+        userDatastore.deleteAllById(List.of(second.getId()));
+
+        assertTrue(userDatastore.findById(first.getId()).isEmpty());
+        assertTrue(userDatastore.findById(second.getId()).isEmpty());
+    }
+
+    @Test
+    void replicable_invalidatesReplicatedUsers() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        userDatastore.findById(user.getId());
+        Replicable replicable = userDatastore.replicable().orElseThrow();
+
+        replicable.replicateWrite(new User(user.getId(), "Renamed", "test@example.com").withVersion(2));
+        assertEquals("Renamed", userDatastore.findById(user.getId()).orElseThrow().getName());
+
+        replicable.replicateDelete(user.getId());
+        assertTrue(userDatastore.findById(user.getId()).isEmpty());
+    }
+
+    @Test
+    void replicable_whenDatastoreCannotBeReplicated_isEmpty() {
+        assertTrue(new CachingUserDatastore(new CompactUserDatastore(), 1000).replicable().isEmpty());
+    }
+}
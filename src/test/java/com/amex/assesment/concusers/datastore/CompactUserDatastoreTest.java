@@ -0,0 +1,241 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.datastore.persistence.Durability;
+import com.amex.assesment.concusers.datastore.persistence.WriteAheadLog;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactUserDatastoreTest {
+
+    private UserDatastore userDatastore;
+
+    @BeforeEach
+    void setUp() {
+        userDatastore = new CompactUserDatastore();
+    }
+
+    @Test
+    void save_thenFindById_returnsStoredFields() {
+        User saved = userDatastore.save(new User(0, "Jöhn Dœ", "John@Example.com"));
+        User found = userDatastore.findById(saved.getId()).orElseThrow();
+        assertEquals(saved.getId(), found.getId());
+        assertEquals("Jöhn Dœ", found.getName());
+        assertEquals("John@Example.com", found.getEmail());
+        assertTrue(userDatastore.findById(saved.getId() + 1).isEmpty());
+    }
+
+    @Test
+    void saveIfEmailAbsent_rejectsDuplicateEmailCaseInsensitively() {
+        User first = userDatastore.saveIfEmailAbsent(new User(0, "First", "test@example.com")).orElseThrow();
+        User duplicate = new User(0, "Second", "TEST@example.com");
+        assertTrue(userDatastore.saveIfEmailAbsent(duplicate).isEmpty());
+        assertEquals(0, duplicate.getId());
+        // The owner can save its own email again
+        assertTrue(userDatastore.saveIfEmailAbsent(new User(first.getId(), "Renamed", "Test@Example.com")).isPresent());
+        assertFalse(userDatastore.existsByEmailAndIdNot("test@example.com", first.getId()));
+        assertTrue(userDatastore.existsByEmailAndIdNot("test@example.com", first.getId() + 1));
+    }
+
+    @Test
+    void save_whenEmailChanges_thenOldEmailIsReleased() {
+        User user = userDatastore.save(new User(0, "Test User", "old@example.com"));
+        userDatastore.save(new User(user.getId(), "Test User", "new@example.com"));
+
+        assertFalse(userDatastore.existsByEmail("old@example.com"));
+        assertTrue(userDatastore.existsByEmail("new@example.com"));
+    }
+
+    @Test
+    void deleteById_releasesEmail() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        assertEquals(List.of(true, false), userDatastore.deleteAllById(List.of(user.getId(), user.getId())));
+        assertFalse(userDatastore.existsByEmail("test@example.com"));
+        assertTrue(userDatastore.findById(user.getId()).isEmpty());
+    }
+
+    @Test
+    void clear_releasesAllEmailsAndResetsIds() {
+        userDatastore.save(new User(0, "User 1", "user1@example.com"));
+        userDatastore.save(new User(0, "User 2", "user2@example.com"));
+        userDatastore.clear();
+        assertFalse(userDatastore.existsByEmail("user1@example.com"));
+        assertTrue(userDatastore.findAll().isEmpty());
+        assertEquals(1, userDatastore.save(new User(0, "User 3", "user3@example.com")).getId());
+    }
+
+    @Test
+    void manyWritesAndDeletes_keepEveryRemainingUserReadable() {
+        int count = 20_000;
+        for (int i = 0; i < count; i++) {
+            userDatastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        // Rewrite and delete enough records for the slabs to be compacted
+        for (long id = 1; id <= count; id++) {
+            if (id % 2 == 0) {
+                userDatastore.deleteById(id);
+            } else {
+                userDatastore.save(new User(id, "Renamed " + id, "renamed" + id + "@example.com"));
+            }
+        }
+
+        assertEquals(count / 2, userDatastore.findAll().size());
+        for (long id = 1; id <= count; id++) {
+            Optional<User> user = userDatastore.findById(id);
+            assertEquals(id % 2 != 0, user.isPresent());
+            assertEquals(id % 2 != 0, userDatastore.existsByEmail("renamed" + id + "@example.com"));
+            assertFalse(userDatastore.existsByEmail("user" + (id - 1) + "@example.com"));
+            user.ifPresent(found -> assertEquals("Renamed " + found.getId(), found.getName()));
+        }
+    }
+
+    @Test
+    void findPage_skipsDeletedIdsAndReportsCursor() {
+        for (int i = 0; i < 10; i++) {
+            userDatastore.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        userDatastore.deleteById(3);
+        userDatastore.deleteById(10);
+
+        UserPage first = userDatastore.findPage(0, 4);
+        assertEquals(List.of(1L, 2L, 4L, 5L), first.getUsers().stream().map(User::getId).toList());
+        assertEquals("5", first.getNextCursor());
+
+        UserPage last = userDatastore.findPage(5, 4);
+        assertEquals(List.of(6L, 7L, 8L, 9L), last.getUsers().stream().map(User::getId).toList());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void search_byNamePrefixAndDomain_pagesInNameOrder() {
+        userDatastore.save(new User(0, "Alice", "alice@example.com"));
+        userDatastore.save(new User(0, "albert", "albert@other.org"));
+        userDatastore.save(new User(0, "ALAN", "alan@example.com"));
+
+        UserPage first = userDatastore.search("al", "example.com", null, 1);
+        assertEquals("ALAN", first.getUsers().get(0).getName());
+        UserPage last = userDatastore.search("al", "example.com", SearchCursor.decode(first.getNextCursor()), 1);
+        assertEquals("Alice", last.getUsers().get(0).getName());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void search_followsRenamesDeletesAndReplay(@TempDir Path directory) {
+        try (WriteAheadLog log = new WriteAheadLog(directory, Durability.SYNC, 5)) {
+            CompactUserDatastore datastore = new CompactUserDatastore(log);
+            User alice = datastore.save(new User(0, "Alice", "alice@example.com"));
+            User bob = datastore.save(new User(0, "Bob", "bob@example.com"));
+            datastore.save(new User(0, "Dave", "dave@example.com"));
+
+            datastore.save(new User(alice.getId(), "Carol", "carol@other.org"));
+            datastore.deleteById(bob.getId());
+
+            assertEquals(List.of(), names(datastore.search("a", null, null, 10)));
+            assertEquals(List.of("Dave"), names(datastore.search(null, "example.com", null, 10)));
+            assertEquals(List.of("Carol"), names(datastore.search("car", "other.org", null, 10)));
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(directory, Durability.SYNC, 5)) {
+            CompactUserDatastore datastore = new CompactUserDatastore(log);
+            assertEquals(List.of("Carol", "Dave"), names(datastore.search(null, null, null, 10)));
+            assertEquals(List.of("Dave"), names(datastore.search("d", "example.com", null, 10)));
+
+            datastore.clear();
+            assertEquals(List.of(), names(datastore.search(null, null, null, 10)));
+        }
+    }
+
+    private static List<String> names(UserPage page) {
+        return page.getUsers().stream().map(User::getName).toList();
+    }
+
+    @Test
+    void saveIfEmailAbsent_concurrentRaceForSameEmail_onlyOneWins() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                String email = "race" + round + "@example.com";
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return userDatastore.saveIfEmailAbsent(new User(0, "Racer", email)).isPresent();
+                    }));
+                }
+                start.countDown();
+                int winners = 0;
+                for (Future<Boolean> result : results) {
+                    winners += result.get() ? 1 : 0;
+                }
+                assertEquals(1, winners);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void saveIfEmailAbsent_comparesVersionsAndKeepsThemAcrossReads() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        assertEquals(1, userDatastore.findById(user.getId()).orElseThrow().getVersion());
+
+        User stale = new User(user.getId(), "Stale", "test@example.com", 1);
+        userDatastore.save(new User(user.getId(), "Newer", "newer@example.com"));
+        long before = userDatastore.version();
+
+        assertTrue(userDatastore.saveIfEmailAbsent(stale).isEmpty());
+        assertEquals(before, userDatastore.version());
+        User found = userDatastore.findById(user.getId()).orElseThrow();
+        assertEquals(2, found.getVersion());
+        assertEquals("newer@example.com", found.getEmail());
+
+        assertEquals(3, userDatastore.saveIfEmailAbsent(stale.withVersion(2)).orElseThrow().getVersion());
+        assertTrue(userDatastore.version() > before);
+    }
+
+    @Test
+    void saveIfEmailAbsent_withIdOfDeletedUser_doesNotRecreateIt() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        userDatastore.deleteById(user.getId());
+
+        assertTrue(userDatastore.saveIfEmailAbsent(new User(user.getId(), "Renamed", "test@example.com")).isEmpty());
+        assertTrue(userDatastore.findById(user.getId()).isEmpty());
+        assertFalse(userDatastore.existsByEmail("test@example.com"));
+    }
+
+    @Test
+    void findPage_acrossALongRunOfDeletedIds_stopsEarlyWithACursor() {
+        userDatastore.save(new User(1, "First", "first@example.com"));
+        userDatastore.save(new User(5_000, "Last", "last@example.com"));
+
+        UserPage first = userDatastore.findPage(0, 10);
+        assertEquals(List.of(1L), first.getUsers().stream().map(User::getId).toList());
+        assertNotNull(first.getNextCursor());
+        assertTrue(Long.parseLong(first.getNextCursor()) < 5_000);
+
+        List<Long> ids = new ArrayList<>();
+        int pages = 1;
+        for (UserPage page = first; page.getNextCursor() != null; pages++) {
+            page = userDatastore.findPage(Long.parseLong(page.getNextCursor()), 10);
+            page.getUsers().forEach(user -> ids.add(user.getId()));
+        }
+        assertEquals(List.of(5_000L), ids);
+        assertTrue(pages > 2, pages + " pages");
+    }
+}
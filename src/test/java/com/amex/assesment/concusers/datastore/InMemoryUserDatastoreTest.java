@@ -0,0 +1,153 @@
+package com.amex.assesment.concusers.datastore;
+
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryUserDatastoreTest {
+
+    private UserDatastore userDatastore;
+
+    @BeforeEach
+    void setUp() {
+        userDatastore = new InMemoryUserDatastore();
+    }
+
+    @Test
+    void existsByEmail_isCaseInsensitive() {
+        userDatastore.save(new User(0, "Test User", "Test@Example.com"));
+        assertTrue(userDatastore.existsByEmail("test@example.com"));
+        assertTrue(userDatastore.existsByEmail("TEST@EXAMPLE.COM"));
+        assertFalse(userDatastore.existsByEmail("other@example.com"));
+    }
+
+    @Test
+    void existsByEmailAndIdNot_excludesOwner() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        assertFalse(userDatastore.existsByEmailAndIdNot("test@example.com", user.getId()));
+        assertTrue(userDatastore.existsByEmailAndIdNot("test@example.com", user.getId() + 1));
+    }
+
+    @Test
+    void save_whenEmailChanges_thenOldEmailIsReleased() {
+        User user = userDatastore.save(new User(0, "Test User", "old@example.com"));
+        userDatastore.save(new User(user.getId(), user.getName(), "new@example.com"));
+
+        assertFalse(userDatastore.existsByEmail("old@example.com"));
+        assertTrue(userDatastore.existsByEmail("new@example.com"));
+    }
+
+    @Test
+    void deleteById_releasesEmail() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        userDatastore.deleteById(user.getId());
+        assertFalse(userDatastore.existsByEmail("test@example.com"));
+    }
+
+    @Test
+    void clear_releasesAllEmails() {
+        userDatastore.save(new User(0, "User 1", "user1@example.com"));
+        userDatastore.save(new User(0, "User 2", "user2@example.com"));
+        userDatastore.clear();
+        assertFalse(userDatastore.existsByEmail("user1@example.com"));
+        assertFalse(userDatastore.existsByEmail("user2@example.com"));
+    }
+
+    @Test
+    void save_bumpsUserAndTableVersions() {
+        long before = userDatastore.version();
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        assertEquals(1, user.getVersion());
+        assertTrue(userDatastore.version() > before);
+
+        long afterCreate = userDatastore.version();
+        userDatastore.save(user);
+        assertEquals(2, userDatastore.findById(user.getId()).orElseThrow().getVersion());
+        assertTrue(userDatastore.version() > afterCreate);
+    }
+
+    @Test
+    void saveIfEmailAbsent_withStaleVersion_isRefused() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        User stale = new User(user.getId(), "Stale", "test@example.com", user.getVersion());
+        userDatastore.save(new User(user.getId(), "Newer", "test@example.com"));
+
+        long before = userDatastore.version();
+        assertTrue(userDatastore.saveIfEmailAbsent(stale).isEmpty());
+        assertEquals("Newer", userDatastore.findById(user.getId()).orElseThrow().getName());
+        assertEquals(before, userDatastore.version());
+
+        assertEquals(3, userDatastore.saveIfEmailAbsent(stale.withVersion(2)).orElseThrow().getVersion());
+    }
+
+    @Test
+    void search_byNamePrefixAndDomain_pagesInNameOrder() {
+        userDatastore.save(new User(0, "Alice", "alice@example.com"));
+        userDatastore.save(new User(0, "albert", "albert@other.org"));
+        userDatastore.save(new User(0, "ALAN", "alan@Example.com"));
+        userDatastore.save(new User(0, "Bob", "bob@example.com"));
+
+        UserPage first = userDatastore.search("al", null, null, 2);
+        assertEquals(List.of("ALAN", "albert"), names(first));
+        assertNotNull(first.getNextCursor());
+        UserPage second = userDatastore.search("al", null, SearchCursor.decode(first.getNextCursor()), 2);
+        assertEquals(List.of("Alice"), names(second));
+        assertNull(second.getNextCursor());
+
+        assertEquals(List.of("ALAN", "Alice", "Bob"), names(userDatastore.search(null, "EXAMPLE.com", null, 10)));
+        assertEquals(List.of("ALAN", "Alice"), names(userDatastore.search("Al", "@example.com", null, 10)));
+    }
+
+    @Test
+    void search_followsRenamesAndDeletes() {
+        User alice = userDatastore.save(new User(0, "Alice", "alice@example.com"));
+        User bob = userDatastore.save(new User(0, "Bob", "bob@example.com"));
+
+        userDatastore.save(new User(alice.getId(), "Carol", "carol@other.org"));
+        userDatastore.deleteById(bob.getId());
+
+        assertEquals(List.of(), names(userDatastore.search("a", null, null, 10)));
+        assertEquals(List.of(), names(userDatastore.search(null, "example.com", null, 10)));
+        assertEquals(List.of("Carol"), names(userDatastore.search("car", "other.org", null, 10)));
+    }
+
+    @Test
+    void replicateWrite_keepsVersionsAndIgnoresOlderOnes() {
+        InMemoryUserDatastore replica = new InMemoryUserDatastore();
+
+        replica.replicateWrite(new User(7, "Alice", "alice@example.com", 3));
+        replica.replicateWrite(new User(7, "Stale", "stale@example.com", 2));
+        replica.replicateWrite(new User(7, "Alice", "alice@other.org", 4));
+
+        User stored = replica.findById(7).orElseThrow();
+        assertEquals("alice@other.org", stored.getEmail());
+        assertEquals(4, stored.getVersion());
+        assertFalse(replica.existsByEmail("alice@example.com"));
+        assertFalse(replica.existsByEmail("stale@example.com"));
+        assertEquals(List.of("Alice"), names(replica.search(null, "other.org", null, 10)));
+
+        replica.replicateDelete(7);
+        assertTrue(replica.findById(7).isEmpty());
+        assertFalse(replica.existsByEmail("alice@other.org"));
+    }
+
+    private static List<String> names(UserPage page) {
+        return page.getUsers().stream().map(User::getName).toList();
+    }
+
+    @Test
+    void saveIfEmailAbsent_withIdOfDeletedUser_doesNotRecreateIt() {
+        User user = userDatastore.save(new User(0, "Test User", "test@example.com"));
+        userDatastore.deleteById(user.getId());
+
+        assertTrue(userDatastore.saveIfEmailAbsent(new User(user.getId(), "Renamed", "test@example.com")).isEmpty());
+        assertTrue(userDatastore.findById(user.getId()).isEmpty());
+        assertFalse(userDatastore.existsByEmail("test@example.com"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.amex.assesment.concusers.datastore.changes;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.datastore.persistence.MutationLog;
+import com.amex.assesment.concusers.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+
+    @Test
+    void datastoreMutations_arePublishedInOrder() {
+        ChangeFeed feed = new ChangeFeed(16);
+        UserDatastore datastore = new InMemoryUserDatastore(MutationLog.NONE, feed);
+
+        User user = datastore.save(new User(0, "Test User", "test@example.com"));
+        datastore.save(new User(user.getId(), "Renamed", user.getEmail()));
+        datastore.saveIfEmailAbsent(new User(user.getId(), "Renamed", "new@example.com"));
+        datastore.deleteById(user.getId());
+        datastore.deleteById(user.getId());
+        datastore.clear();
+
+        List<ChangeEvent> events = new ArrayList<>();
+        assertEquals(6, feed.read(1, 100, events));
+        assertEquals(List.of(ChangeEvent.Type.CREATED, ChangeEvent.Type.UPDATED, ChangeEvent.Type.EMAIL_CHANGED,
+                ChangeEvent.Type.DELETED, ChangeEvent.Type.CLEARED), events.stream().map(ChangeEvent::getType).toList());
+        assertEquals("Test User", events.get(0).getUser().getName());
+        assertEquals(2, events.get(1).getUser().getVersion());
+        assertEquals("new@example.com", events.get(2).getUser().getEmail());
+        assertNull(events.get(3).getUser());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i + 1, events.get(i).getSequence());
+        }
+    }
+
+    @Test
+    void read_resumesFromPositionAndReportsOverwrittenEvents() {
+        ChangeFeed feed = new ChangeFeed(4);
+        for (int i = 1; i <= 3; i++) {
+            feed.publishDelete(i);
+        }
+
+        List<ChangeEvent> events = new ArrayList<>();
+        assertEquals(3, feed.read(1, 2, events));
+        assertEquals(4, feed.read(3, 10, events));
+        assertEquals(List.of(1L, 2L, 3L), events.stream().map(ChangeEvent::getUserId).toList());
+        assertEquals(4, feed.read(4, 10, events));
+
+        for (int i = 4; i <= 6; i++) {
+            feed.publishDelete(i);
+        }
+        assertEquals(ChangeFeed.LOST, feed.read(2, 10, new ArrayList<>()));
+        assertEquals(3, feed.oldestSequence());
+        assertEquals(ChangeFeed.LOST, feed.read(100, 10, new ArrayList<>()));
+    }
+
+    @Test
+    void concurrentPublishers_loseNoEventWithinCapacity() throws Exception {
+        int threads = 8;
+        int perThread = 1000;
+        ChangeFeed feed = new ChangeFeed(threads * perThread);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long base = (long) t * perThread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 1; i <= perThread; i++) {
+                        feed.publishDelete(base + i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<ChangeEvent> events = new ArrayList<>();
+        assertEquals(threads * perThread + 1, feed.read(1, threads * perThread, events));
+        assertEquals(threads * perThread, events.stream().mapToLong(ChangeEvent::getUserId).distinct().count());
+    }
+
+    @Test
+    void positions_onlyMatchTheRunOfTheirFeed() {
+        ChangeFeed feed = new ChangeFeed(16);
+        ChangeFeed restarted = new ChangeFeed(16);
+        String position = ChangeFeed.position(feed.runId(), 42);
+
+        assertNotEquals(feed.runId(), restarted.runId());
+        assertEquals(42, ChangeFeed.sequenceOf(position, feed.runId()));
+        assertEquals(ChangeFeed.LOST, ChangeFeed.sequenceOf(position, restarted.runId()));
+        assertEquals(ChangeFeed.LOST, ChangeFeed.sequenceOf(position, feed.runId() + "x"));
+        for (String invalid : List.of("42", "", "-", feed.runId() + "-", feed.runId() + "-x")) {
+            assertThrows(NumberFormatException.class, () -> ChangeFeed.sequenceOf(invalid, feed.runId()), invalid);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.amex.assesment.concusers.datastore.ids;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockIdGeneratorTest {
+
+    @Test
+    void nextId_handsOutConsecutiveIdsFromEachBlock() {
+        BlockIdGenerator generator = new BlockIdGenerator(3);
+
+        assertEquals(1, generator.nextId());
+        assertEquals(2, generator.nextId());
+        assertEquals(3, generator.nextId());
+        assertEquals(4, generator.nextId());
+        assertEquals(6, generator.highWaterMark());
+    }
+
+    @Test
+    void nextId_fromManyThreads_neverRepeats() throws InterruptedException {
+        BlockIdGenerator generator = new BlockIdGenerator(64);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int idsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < idsPerThread; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * idsPerThread, ids.size());
+        assertTrue(generator.highWaterMark() >= threads * idsPerThread);
+    }
+
+    @Test
+    void advancePastAndReset_dropLeasedBlocks() {
+        BlockIdGenerator generator = new BlockIdGenerator(100);
+        assertEquals(1, generator.nextId());
+
+        generator.advancePast(500);
+        assertEquals(501, generator.nextId());
+
+        generator.reset();
+        assertEquals(1, generator.nextId());
+    }
+
+    @Test
+    void nextId_onVirtualThreads_takesSingleIds() throws InterruptedException {
+        BlockIdGenerator generator = new BlockIdGenerator(100);
+        long[] ids = new long[2];
+        for (int i = 0; i < ids.length; i++) {
+            int index = i;
+            Thread.ofVirtual().start(() -> ids[index] = generator.nextId()).join();
+        }
+
+        assertEquals(1, ids[0]);
+        assertEquals(2, ids[1]);
+    }
+}
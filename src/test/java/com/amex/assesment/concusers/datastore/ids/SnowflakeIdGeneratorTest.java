@@ -0,0 +1,69 @@
+package com.amex.assesment.concusers.datastore.ids;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final long NOW = SnowflakeIdGenerator.EPOCH_MILLIS + 1_000;
+
+    @Test
+    void nextId_carriesTimeNodeAndSequence() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, () -> NOW);
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertEquals(1_000, first >>> 22);
+        assertEquals(5, (first >>> 12) & SnowflakeIdGenerator.MAX_NODE_ID);
+        assertEquals(0, first & 0xFFF);
+        assertEquals(first + 1, second);
+        assertEquals(second, generator.highWaterMark());
+    }
+
+    @Test
+    void nextId_whenSequenceIsExhaustedOrClockGoesBack_keepsIncreasing() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+
+        long previous = 0;
+        for (int i = 0; i < 5_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertEquals(1_001, previous >>> 22);
+
+        clock.set(NOW - 10_000);
+        assertTrue(generator.nextId() > previous);
+    }
+
+    @Test
+    void differentNodes_neverShareAnId() {
+        long first = new SnowflakeIdGenerator(1, () -> NOW).nextId();
+        long second = new SnowflakeIdGenerator(2, () -> NOW).nextId();
+
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void advancePast_resumesAfterRestoredIds() {
+        long restored = new SnowflakeIdGenerator(3, () -> NOW + 5_000).nextId();
+
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> NOW);
+        generator.advancePast(restored);
+
+        assertTrue(generator.nextId() > restored);
+    }
+
+    @Test
+    void constructor_rejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+    }
+}
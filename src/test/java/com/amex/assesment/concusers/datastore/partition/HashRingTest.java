@@ -0,0 +1,74 @@
+package com.amex.assesment.concusers.datastore.partition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void shardOf_spreadsConsecutiveIdsEvenly() {
+        HashRing ring = new HashRing(8, 256);
+        int[] counts = new int[8];
+        for (long id = 1; id <= KEYS; id++) {
+            counts[ring.shardOf(id)]++;
+        }
+
+        double mean = KEYS / 8.0;
+        for (int count : counts) {
+            assertTrue(Math.abs(count - mean) < mean * 0.2, "unbalanced shard with " + count + " ids");
+        }
+    }
+
+    @Test
+    void shardOf_spreadsSmallIdsToo() {
+        HashRing ring = new HashRing(4, 256);
+        Set<Integer> shards = new HashSet<>();
+        for (long id = 1; id <= 32; id++) {
+            shards.add(ring.shardOf(id));
+        }
+
+        assertEquals(4, shards.size());
+    }
+
+    @Test
+    void shardOf_whenAShardIsAdded_onlyMovesIdsToTheNewShard() {
+        HashRing before = new HashRing(4, 256);
+        HashRing after = new HashRing(5, 256);
+        int moved = 0;
+        for (long id = 1; id <= KEYS; id++) {
+            int from = before.shardOf(id);
+            int to = after.shardOf(id);
+            if (from != to) {
+                assertEquals(4, to);
+                moved++;
+            }
+        }
+
+        // About a fifth of the ids belong to the new shard
+        assertTrue(moved > KEYS * 0.1 && moved < KEYS * 0.3, moved + " ids moved");
+    }
+
+    @Test
+    void shardOfEmail_ignoresCase() {
+        HashRing ring = new HashRing(16, 256);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ring.shardOfEmail("user" + i + "@example.com"),
+                    ring.shardOfEmail("User" + i + "@Example.COM"));
+        }
+    }
+
+    @Test
+    void constructor_rejectsEmptyRings() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(0, 256));
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(4, 0));
+    }
+}
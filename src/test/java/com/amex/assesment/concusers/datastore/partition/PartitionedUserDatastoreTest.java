@@ -0,0 +1,210 @@
+package com.amex.assesment.concusers.datastore.partition;
+
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.datastore.ids.AtomicIdGenerator;
+import com.amex.assesment.concusers.model.BatchItemStatus;
+import com.amex.assesment.concusers.model.SearchCursor;
+import com.amex.assesment.concusers.model.User;
+import com.amex.assesment.concusers.model.UserPage;
+import com.amex.assesment.concusers.service.AsyncUserService;
+import com.amex.assesment.concusers.service.DefaultAsyncUserService;
+import com.amex.assesment.concusers.service.ServiceResult;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedUserDatastoreTest {
+
+    private static final int SHARDS = 4;
+
+    private Vertx vertx;
+    private PartitionedUserDatastore datastore;
+    private AsyncUserService userService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        datastore = new PartitionedUserDatastore(new HashRing(SHARDS, 256), new AtomicIdGenerator(),
+                ChangeFeed.NONE, 5_000);
+        await(datastore.start(vertx));
+        userService = new DefaultAsyncUserService(datastore);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        await(vertx.close());
+    }
+
+    @Test
+    void createUser_spreadsUsersOverShardsAndKeepsMostCreatesOnOneShard() throws Exception {
+        HashRing ring = datastore.ring();
+        Set<Integer> shards = new HashSet<>();
+        int colocated = 0;
+        for (int i = 0; i < 40; i++) {
+            User user = create("User " + i, "user" + i + "@example.com");
+            assertEquals(user, await(userService.getUserById(user.getId())).getValue());
+            shards.add(ring.shardOf(user.getId()));
+            if (ring.shardOf(user.getId()) == ring.shardOfEmail(user.getEmail())) {
+                colocated++;
+            }
+        }
+
+        assertEquals(SHARDS, shards.size());
+        assertTrue(colocated >= 35, colocated + " creates on one shard");
+    }
+
+    @Test
+    void createUser_withEmailTakenOnAnotherShard_returnsConflict() throws Exception {
+        create("First", "taken@example.com");
+
+        ServiceResult<User> duplicate = await(userService.createUser(new User(0, "Second", "TAKEN@example.com")));
+
+        assertEquals(ServiceResult.Status.CONFLICT, duplicate.getStatus());
+        assertTrue(await(datastore.existsByEmail("taken@example.com")));
+    }
+
+    @Test
+    void createUser_whenIdsAreTakenAlready_drawsAnotherId() throws Exception {
+        for (long id = 1; id <= 8; id++) {
+            await(datastore.save(new User(id, "Saved " + id, "saved" + id + "@example.com")));
+        }
+
+        ServiceResult<User> created = await(userService.createUser(new User(0, "New", "new@example.com")));
+
+        assertEquals(ServiceResult.Status.OK, created.getStatus());
+        assertTrue(created.getValue().getId() > 8);
+        for (long id = 1; id <= 8; id++) {
+            assertEquals("Saved " + id, await(datastore.findById(id)).orElseThrow().getName());
+        }
+    }
+
+    @Test
+    void updateUserEmail_releasesThePreviousEmail() throws Exception {
+        User first = create("First", "first@example.com");
+        User second = create("Second", "second@example.com");
+
+        assertEquals(ServiceResult.Status.CONFLICT,
+                await(userService.updateUserEmail(first.getId(), "second@example.com")).getStatus());
+        User moved = await(userService.updateUserEmail(first.getId(), "moved@example.com")).getValue();
+
+        assertEquals("moved@example.com", moved.getEmail());
+        assertEquals(2, moved.getVersion());
+        assertFalse(await(datastore.existsByEmail("first@example.com")));
+        assertFalse(await(datastore.existsByEmailAndIdNot("moved@example.com", first.getId())));
+        assertTrue(await(datastore.existsByEmailAndIdNot("moved@example.com", second.getId())));
+        assertTrue(await(userService.createUser(new User(0, "Third", "first@example.com"))).isOk());
+    }
+
+    @Test
+    void updateUser_withStaleVersion_keepsTheStoredUserAndItsEmail() throws Exception {
+        User user = create("User", "user@example.com");
+        await(userService.updateUser(user.getId(), new User(0, "Renamed", "user@example.com")));
+
+        ServiceResult<User> stale = await(userService.updateUser(user.getId(),
+                new User(0, "Stale", "stale@example.com"), user.getVersion()));
+
+        assertEquals(ServiceResult.Status.PRECONDITION_FAILED, stale.getStatus());
+        assertEquals("Renamed", await(userService.getUserById(user.getId())).getValue().getName());
+        assertFalse(await(datastore.existsByEmail("stale@example.com")));
+        assertTrue(await(datastore.existsByEmail("user@example.com")));
+    }
+
+    @Test
+    void deleteUser_releasesItsEmail() throws Exception {
+        User user = create("User", "user@example.com");
+
+        assertTrue(await(userService.deleteUser(user.getId())).isOk());
+
+        assertEquals(ServiceResult.Status.NOT_FOUND, await(userService.getUserById(user.getId())).getStatus());
+        assertFalse(await(datastore.existsByEmail("user@example.com")));
+        assertEquals(List.of(BatchItemStatus.DELETED, BatchItemStatus.NOT_FOUND),
+                await(userService.deleteUsers(List.of(create("Other", "other@example.com").getId(), user.getId())))
+                        .stream().map(result -> result.getStatus()).toList());
+    }
+
+    @Test
+    void createUsers_inOneBatch_letsTheFirstOfTwoUsersSharingAnEmailWin() throws Exception {
+        List<BatchItemStatus> statuses = await(userService.createUsers(List.of(
+                new User(0, "First", "shared@example.com"),
+                new User(0, "Second", "shared@example.com"),
+                new User(0, "Third", "third@example.com"))))
+                .stream().map(result -> result.getStatus()).toList();
+
+        assertEquals(List.of(BatchItemStatus.CREATED, BatchItemStatus.CONFLICT, BatchItemStatus.CREATED), statuses);
+    }
+
+    @Test
+    void findPage_mergesShardsInIdOrder() throws Exception {
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            created.add(create("User " + i, "user" + i + "@example.com").getId());
+        }
+
+        List<Long> paged = new ArrayList<>();
+        long after = 0;
+        UserPage page;
+        do {
+            page = await(userService.getUsersPage(after, 7));
+            page.getUsers().forEach(user -> paged.add(user.getId()));
+            after = page.getNextCursor() == null ? after : Long.parseLong(page.getNextCursor());
+        } while (page.getNextCursor() != null);
+
+        assertEquals(created.stream().sorted().toList(), paged);
+        assertEquals(created.stream().sorted().toList(),
+                await(userService.getAllUsers()).stream().map(User::getId).toList());
+    }
+
+    @Test
+    void search_mergesShardsInNameOrder() throws Exception {
+        for (String name : List.of("carol", "Alice", "bob", "alan", "Alba", "albert")) {
+            create(name, name.toLowerCase() + "@example.com");
+        }
+        create("Alfred", "alfred@other.org");
+
+        UserPage first = await(userService.searchUsers("al", "example.com", null, 2));
+        UserPage second = await(userService.searchUsers("al", "example.com",
+                SearchCursor.decode(first.getNextCursor()), 2));
+
+        assertEquals(List.of("alan", "Alba"), first.getUsers().stream().map(User::getName).toList());
+        assertEquals(List.of("albert", "Alice"), second.getUsers().stream().map(User::getName).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void version_changesOnEveryWrite() throws Exception {
+        long before = await(userService.getUsersVersion());
+        User user = create("User", "user@example.com");
+        long afterCreate = await(userService.getUsersVersion());
+        await(userService.deleteUser(user.getId()));
+
+        assertTrue(afterCreate > before);
+        assertTrue(await(userService.getUsersVersion()) > afterCreate);
+    }
+
+    private User create(String name, String email) throws Exception {
+        return await(userService.createUser(new User(0, name, email))).getValue();
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void saveIfEmailAbsent_withIdOfDeletedUser_doesNotRecreateIt() throws Exception {
+        User user = create("Test User", "test@example.com");
+        await(datastore.deleteById(user.getId()));
+
+        assertTrue(await(datastore.saveIfEmailAbsent(new User(user.getId(), "Renamed", "test@example.com"))).isEmpty());
+        assertTrue(await(datastore.findById(user.getId())).isEmpty());
+    }
+}
@@ -0,0 +1,285 @@
+package com.amex.assesment.concusers.datastore.persistence;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.datastore.ids.BlockIdGenerator;
+import com.amex.assesment.concusers.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replay_restoresUsersEmailIndexAndIdCounter() {
+        try (WriteAheadLog log = open(Durability.SYNC)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            datastore.save(new User(0, "First", "first@example.com"));
+            User second = datastore.save(new User(0, "Second", "second@example.com"));
+            datastore.save(new User(0, "Third", "third@example.com"));
+            datastore.save(new User(second.getId(), second.getName(), "renamed@example.com"));
+            datastore.deleteById(3);
+        }
+
+        try (WriteAheadLog log = open(Durability.SYNC)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            assertEquals(2, datastore.findAll().size());
+            assertEquals("renamed@example.com", datastore.findById(2).orElseThrow().getEmail());
+            assertTrue(datastore.findById(3).isEmpty());
+            assertTrue(datastore.existsByEmail("renamed@example.com"));
+            assertFalse(datastore.existsByEmail("second@example.com"));
+            // The id of the deleted user is not handed out again
+            assertEquals(4, datastore.save(new User(0, "Fourth", "fourth@example.com")).getId());
+        }
+    }
+
+    @Test
+    void replay_afterClear_startsFromEmptyTable() {
+        try (WriteAheadLog log = open(Durability.BATCHED)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            datastore.save(new User(0, "First", "first@example.com"));
+            datastore.clear();
+            datastore.save(new User(0, "Again", "again@example.com"));
+        }
+
+        try (WriteAheadLog log = open(Durability.BATCHED)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            List<User> users = datastore.findAll();
+            assertEquals(1, users.size());
+            assertEquals("again@example.com", users.get(0).getEmail());
+            assertEquals(1, users.get(0).getId());
+        }
+    }
+
+    @Test
+    void replay_truncatesTornRecordAndKeepsAppending() throws IOException {
+        try (WriteAheadLog log = open(Durability.SYNC)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            datastore.save(new User(0, "First", "first@example.com"));
+            datastore.save(new User(0, "Second", "second@example.com"));
+        }
+        Path segment = onlySegment();
+        long intactSize = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Half of a record, as left by a crash in the middle of a write
+            channel.truncate(intactSize - 5);
+        }
+
+        try (WriteAheadLog log = open(Durability.SYNC)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            assertEquals(1, datastore.findAll().size());
+            datastore.save(new User(0, "Third", "third@example.com"));
+        }
+
+        try (WriteAheadLog log = open(Durability.SYNC)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            assertEquals(2, datastore.findAll().size());
+            assertTrue(datastore.existsByEmail("third@example.com"));
+        }
+    }
+
+    @Test
+    void checkpoint_replacesOlderSegmentsAndRestoresWithLaterWrites() throws IOException {
+        try (WriteAheadLog log = open(Durability.BATCHED)) {
+            InMemoryUserDatastore datastore = new InMemoryUserDatastore(log);
+            datastore.save(new User(0, "First", "first@example.com"));
+            datastore.save(new User(0, "Second", "second@example.com"));
+            datastore.save(new User(0, "Third", "third@example.com"));
+            datastore.deleteById(3);
+            assertTrue(datastore.checkpoint());
+            datastore.save(new User(1, "First", "renamed@example.com"));
+            datastore.deleteById(2);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).sorted().toList();
+            assertEquals(List.of("snapshot-00000000000000000002.snap", "wal-00000000000000000002.log"), names);
+        }
+
+        try (WriteAheadLog log = open(Durability.BATCHED)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            List<User> users = datastore.findAll();
+            assertEquals(1, users.size());
+            assertEquals("renamed@example.com", users.get(0).getEmail());
+            assertFalse(datastore.existsByEmail("first@example.com"));
+            assertEquals(4, datastore.save(new User(0, "Fourth", "fourth@example.com")).getId());
+        }
+    }
+
+    @Test
+    void checkpoint_withLeasedIdBlocks_neverHandsOutAnIdTwiceAfterRestart() {
+        long lastBeforeRestart;
+        try (WriteAheadLog log = open(Durability.BATCHED)) {
+            InMemoryUserDatastore datastore = new InMemoryUserDatastore(log, ChangeFeed.NONE, new BlockIdGenerator(100));
+            datastore.save(new User(0, "First", "first@example.com"));
+            assertTrue(datastore.checkpoint());
+            lastBeforeRestart = datastore.save(new User(0, "Second", "second@example.com")).getId();
+            datastore.deleteById(lastBeforeRestart);
+        }
+
+        try (WriteAheadLog log = open(Durability.BATCHED)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log, ChangeFeed.NONE, new BlockIdGenerator(100));
+            long next = datastore.save(new User(0, "Third", "third@example.com")).getId();
+            // The snapshot records the whole leased block, not only the ids used
+            assertEquals(101, next);
+            assertTrue(next > lastBeforeRestart);
+        }
+    }
+
+    @Test
+    void checkpoint_whileWriting_losesNoWrite() throws Exception {
+        Map<Long, String> expected;
+        try (WriteAheadLog log = open(Durability.NONE)) {
+            InMemoryUserDatastore datastore = new InMemoryUserDatastore(log);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    int thread = t;
+                    writers.add(executor.submit(() -> {
+                        for (int i = 0; i < 5_000; i++) {
+                            String email = "user" + thread + "-" + i + "@example.com";
+                            User user = datastore.save(new User(0, "User", email));
+                            if (i % 3 == 0) {
+                                datastore.deleteById(user.getId());
+                            } else if (i % 3 == 1) {
+                                long id = ThreadLocalRandom.current().nextLong(1, user.getId() + 1);
+                                datastore.save(new User(id, "Updated", "updated" + id + "@example.com"));
+                            }
+                        }
+                    }));
+                }
+                while (!writers.stream().allMatch(Future::isDone)) {
+                    datastore.checkpoint();
+                }
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            expected = emailsById(datastore);
+        }
+
+        try (WriteAheadLog log = open(Durability.NONE)) {
+            UserDatastore datastore = new InMemoryUserDatastore(log);
+            assertEquals(expected, emailsById(datastore));
+            for (String email : expected.values()) {
+                assertTrue(datastore.existsByEmail(email));
+            }
+        }
+    }
+
+    @Test
+    void append_beforeReplay_isRejected() {
+        try (WriteAheadLog log = open(Durability.NONE)) {
+            assertThrows(IllegalStateException.class, () -> log.append(LogRecord.delete(1)));
+        }
+    }
+
+    @Test
+    void append_whileTheWriterFails_neverLeavesASyncWriteWaiting() throws Throwable {
+        WriteAheadLog log = open(Durability.SYNC);
+        log.replay(record -> {
+        });
+        appendWhile(log, () -> {
+            // Rolling over into a directory that no longer exists fails the writer
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+            CompletableFuture<Long> rolled = log.beginCheckpoint();
+            assertThrows(ExecutionException.class, () -> rolled.get(5, TimeUnit.SECONDS));
+        });
+        assertThrows(IllegalStateException.class, () -> log.append(LogRecord.delete(1)));
+        log.close();
+    }
+
+    @Test
+    void append_whileClosing_neverLeavesASyncWriteWaiting() throws Throwable {
+        WriteAheadLog log = open(Durability.SYNC);
+        log.replay(record -> {
+        });
+        appendWhile(log, log::close);
+        assertThrows(IllegalStateException.class, () -> log.append(LogRecord.delete(1)));
+    }
+
+    /**
+     * Runs {@code action} while several threads keep appending SYNC records,
+     * and checks that every append was either rejected or completed.
+     */
+    private static void appendWhile(WriteAheadLog log, Executable action) throws Throwable {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch started = new CountDownLatch(4);
+            List<Future<Integer>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                writers.add(executor.submit(() -> {
+                    started.countDown();
+                    int appended = 0;
+                    while (true) {
+                        CompletableFuture<Void> synced;
+                        try {
+                            synced = log.append(LogRecord.delete(1), Durability.SYNC);
+                        } catch (IllegalStateException e) {
+                            return appended;
+                        }
+                        try {
+                            synced.get(5, TimeUnit.SECONDS);
+                        } catch (ExecutionException e) {
+                            // Failed with the writer, but completed
+                        }
+                        appended++;
+                    }
+                }));
+            }
+            started.await();
+            action.execute();
+            for (Future<Integer> writer : writers) {
+                writer.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<Long, String> emailsById(UserDatastore datastore) {
+        return datastore.findAll().stream().collect(Collectors.toMap(User::getId, User::getEmail));
+    }
+
+    private WriteAheadLog open(Durability durability) {
+        return new WriteAheadLog(directory, durability, 5);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.amex.assesment.concusers.execution;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(VertxExtension.class)
+class BlockingCallExecutorTest {
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    void execute_runsCallPerModeAndCompletesOnCallerContext(ExecutionMode mode, Vertx vertx,
+            VertxTestContext testContext) {
+        BlockingCallExecutor executor = new BlockingCallExecutor(mode);
+        Context context = vertx.getOrCreateContext();
+        context.runOnContext(v -> executor.execute(() -> Thread.currentThread())
+                .onComplete(testContext.succeeding(callThread -> testContext.verify(() -> {
+                    assertSame(context, Vertx.currentContext());
+                    switch (mode) {
+                        case EVENT_LOOP -> assertSame(Thread.currentThread(), callThread);
+                        case WORKER -> assertTrue(callThread.getName().startsWith("vert.x-worker-thread"));
+                        case VIRTUAL_THREAD -> assertTrue(callThread.isVirtual());
+                    }
+                    executor.close();
+                    testContext.completeNow();
+                }))));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    void execute_whenCallThrows_failsFuture(ExecutionMode mode, Vertx vertx, VertxTestContext testContext) {
+        BlockingCallExecutor executor = new BlockingCallExecutor(mode);
+        vertx.runOnContext(v -> executor.<Void>execute(() -> {
+            throw new IllegalStateException("boom");
+        }).onComplete(testContext.failing(error -> testContext.verify(() -> {
+            assertEquals("boom", error.getMessage());
+            executor.close();
+            testContext.completeNow();
+        }))));
+    }
+}
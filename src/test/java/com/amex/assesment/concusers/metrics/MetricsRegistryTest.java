@@ -0,0 +1,61 @@
+package com.amex.assesment.concusers.metrics;
+
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.model.User;
+import io.vertx.core.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsRegistryTest {
+
+    @Test
+    void route_returnsTheSameMetricsForTheSameRoute() {
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        assertSame(metrics.route(HttpMethod.GET, "/users/:id"), metrics.route(HttpMethod.GET, "/users/:id"));
+    }
+
+    @Test
+    void scrape_rendersCountersAndPercentiles() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        RouteMetrics route = metrics.route(HttpMethod.GET, "/users/:id");
+        for (int i = 1; i <= 100; i++) {
+            route.recordResponse(i <= 99 ? 200 : 500, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        String body = metrics.scrape();
+
+        assertTrue(body.contains("# TYPE concusers_http_responses_total counter\n"));
+        assertTrue(body.contains("concusers_http_responses_total{method=\"GET\",route=\"/users/:id\",status=\"200\"} 99\n"));
+        assertTrue(body.contains("concusers_http_responses_total{method=\"GET\",route=\"/users/:id\",status=\"500\"} 1\n"));
+        assertTrue(body.contains("concusers_http_request_duration_seconds_count{method=\"GET\",route=\"/users/:id\"} 100\n"));
+        double median = quantile(body, "concusers_http_request_duration_seconds{method=\"GET\",route=\"/users/:id\",quantile=\"0.5\"}");
+        assertEquals(0.050, median, 0.001);
+    }
+
+    @Test
+    void scrape_includesDatastoreStats() {
+        InMemoryUserDatastore datastore = new InMemoryUserDatastore();
+        datastore.saveIfEmailAbsent(new User(0, "Test User", "test@example.com"));
+        datastore.saveIfEmailAbsent(new User(0, "Other User", "other@example.com"));
+        datastore.deleteById(1);
+
+        String body = new MetricsRegistry(datastore, null, null).scrape();
+
+        assertTrue(body.contains("concusers_datastore_users 1\n"));
+        assertTrue(body.contains("concusers_datastore_last_id 2\n"));
+        assertTrue(body.contains("concusers_datastore_email_check_duration_seconds_count 2\n"));
+    }
+
+    private static double quantile(String body, String sample) {
+        int start = body.indexOf(sample);
+        assertTrue(start >= 0, sample);
+        int end = body.indexOf('\n', start);
+        return Double.parseDouble(body.substring(start + sample.length(), end).trim());
+    }
+}
@@ -0,0 +1,86 @@
+package com.amex.assesment.concusers.model;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserConstraintsTest {
+
+    private static final List<String> NAMES = Arrays.asList(
+            null, "", " ", "\t\n", "a", "ab", " a", "Jane Doe", "  ", "日本", "😀",
+            "x".repeat(100), "x".repeat(101), " ".repeat(101));
+
+    private static final List<String> EMAILS = Arrays.asList(
+            null, "", " ", "jane@example.com", "JANE.DOE@EXAMPLE.COM", "jane", "jane@", "@example.com",
+            "jane@example", "jane@example.com.", "jane@.example.com", "jane@example..com", "jane.@example.com",
+            ".jane@example.com", "ja..ne@example.com", "jane+tag@example.com", "a@b@example.com",
+            "\"jane doe\"@example.com", "\"jane@home\"@example.com", "\"ja\\\"ne\"@example.com",
+            "jane@[192.168.0.1]", "jane@[IPv6:2001:db8::1]", "jane@[IPv6:zz::1]", "jane@192.168.0.1",
+            "jane@exämple.com", "zoë@example.com", "jane@-example.com", "jane@example-.com", "jane@ex--ample.com",
+            "jane doe@example.com", "jane@exam ple.com", "jane@example.com ", " jane@example.com",
+            "x".repeat(64) + "@example.com", "x".repeat(65) + "@example.com",
+            "jane@" + "x".repeat(63) + ".com", "jane@" + "x".repeat(64) + ".com",
+            "jane@" + ("x".repeat(60) + ".").repeat(4) + "com", "jane@" + ("x".repeat(62) + ".").repeat(4) + "com",
+            "jane@exa_mple.com", "jane@exa(mple.com", "jane@xn--exmple-cua.com");
+
+    private static ValidatorFactory validatorFactory;
+    private static Validator validator;
+
+    @BeforeAll
+    static void createValidator() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @AfterAll
+    static void closeValidator() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void validateUser_matchesBeanValidation() {
+        for (String name : NAMES) {
+            for (String email : EMAILS) {
+                User user = new User(0, name, email);
+                assertEquals(messages(validator.validate(user)), split(UserConstraints.validate(user)),
+                        user.toString());
+            }
+        }
+    }
+
+    @Test
+    void validateEmailUpdate_matchesBeanValidation() {
+        for (String email : EMAILS) {
+            EmailUpdateRequest request = new EmailUpdateRequest();
+            request.setEmail(email);
+            assertEquals(messages(validator.validate(request)), split(UserConstraints.validate(request)), email);
+        }
+    }
+
+    @Test
+    void validateUser_listsMessagesInDeclarationOrder() {
+        assertNull(UserConstraints.validate(new User(0, "Jane Doe", "jane@example.com")));
+        assertEquals("Name cannot be blank, Name must be between 2 and 100 characters, "
+                        + "Email cannot be blank, Email should be valid",
+                UserConstraints.validate(new User(0, " ", " ")));
+    }
+
+    private static <T> Set<String> messages(Set<ConstraintViolation<T>> violations) {
+        return violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.toSet());
+    }
+
+    private static Set<String> split(String errors) {
+        return errors == null ? Set.of() : Set.of(errors.split(", "));
+    }
+}
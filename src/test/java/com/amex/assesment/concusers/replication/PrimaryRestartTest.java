@@ -0,0 +1,84 @@
+package com.amex.assesment.concusers.replication;
+
+import com.amex.assesment.concusers.ConcUsersApplication;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.model.User;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimaryRestartTest {
+
+    private static final int PRIMARY_PORT = 8093;
+    private static final int REPLICA_PORT = 8094;
+
+    @Test
+    void replica_afterThePrimaryRestarts_reloadsInsteadOfResumingInTheNewRun() throws Exception {
+        ConfigurableApplicationContext primary = startPrimary();
+        Vertx primaryVertx = await(ConcUsersApplication.start(primary));
+        ConfigurableApplicationContext replica = SpringApplication.run(ConcUsersApplication.class,
+                "--concusers.http.port=" + REPLICA_PORT, "--concusers.http.instances=1",
+                "--concusers.replication.role=REPLICA",
+                "--concusers.replication.primary-url=http://localhost:" + PRIMARY_PORT,
+                "--concusers.replication.reconnect-delay-ms=100");
+        Vertx replicaVertx = await(ConcUsersApplication.start(replica));
+        Replicator replicator = replica.getBean(Replicator.class);
+        UserDatastore replicaUsers = replica.getBean(UserDatastore.class);
+        try {
+            long id = primary.getBean(UserDatastore.class).save(new User(0, "Ada", "ada@example.com")).getId();
+            long sequence = primary.getBean(ChangeFeed.class).nextSequence() - 1;
+            waitFor(() -> replicator.appliedSequence() >= sequence);
+            assertTrue(replicaUsers.findById(id).isPresent());
+            long snapshots = replicator.snapshotCount();
+
+            await(primaryVertx.close());
+            primary.close();
+            primary = startPrimary();
+            // The new run publishes past the position of the replica before it
+            // can reconnect; its first event writes the same id at version 1
+            UserDatastore primaryUsers = primary.getBean(UserDatastore.class);
+            assertEquals(id, primaryUsers.save(new User(0, "Bob", "bob@example.com")).getId());
+            long last = primaryUsers.save(new User(0, "Cleo", "cleo@example.com")).getId();
+            primaryUsers.save(new User(0, "Dan", "dan@example.com"));
+            primaryVertx = await(ConcUsersApplication.start(primary));
+
+            String run = primary.getBean(ChangeFeed.class).runId();
+            waitFor(() -> replicator.applied() != null && replicator.applied().runId().equals(run)
+                    && replicaUsers.findById(last + 1).isPresent());
+            assertEquals("Bob", replicaUsers.findById(id).orElseThrow().getName());
+            assertEquals(primaryUsers.findAll(), replicaUsers.findAll());
+            assertTrue(replicator.snapshotCount() > snapshots);
+        } finally {
+            await(replicaVertx.close());
+            replica.close();
+            await(primaryVertx.close());
+            primary.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext startPrimary() {
+        return SpringApplication.run(ConcUsersApplication.class,
+                "--concusers.http.port=" + PRIMARY_PORT, "--concusers.http.instances=1",
+                "--concusers.replication.role=PRIMARY");
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for the replica");
+            Thread.sleep(10);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+}
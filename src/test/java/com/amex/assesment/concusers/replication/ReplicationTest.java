@@ -0,0 +1,243 @@
+package com.amex.assesment.concusers.replication;
+
+import com.amex.assesment.concusers.ConcUsersApplication;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.datastore.changes.ChangeFeed;
+import com.amex.assesment.concusers.model.User;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+
+    private static final int PRIMARY_PORT = 8090;
+    private static final int REPLICA_PORT = 8091;
+
+    private static ConfigurableApplicationContext primary;
+    private static ConfigurableApplicationContext replica;
+    private static Vertx primaryVertx;
+    private static Vertx replicaVertx;
+    private static Vertx clientVertx;
+    private static WebClient client;
+
+    @BeforeAll
+    static void start() throws Exception {
+        primary = SpringApplication.run(ConcUsersApplication.class,
+                "--concusers.http.port=" + PRIMARY_PORT, "--concusers.http.instances=1",
+                "--concusers.replication.role=PRIMARY");
+        primaryVertx = await(ConcUsersApplication.start(primary));
+        replica = SpringApplication.run(ConcUsersApplication.class,
+                "--concusers.http.port=" + REPLICA_PORT, "--concusers.http.instances=1",
+                "--concusers.replication.role=REPLICA",
+                "--concusers.replication.primary-url=http://localhost:" + PRIMARY_PORT,
+                "--concusers.replication.reconnect-delay-ms=100");
+        replicaVertx = await(ConcUsersApplication.start(replica));
+        clientVertx = Vertx.vertx();
+        client = WebClient.create(clientVertx);
+        waitFor(() -> replicator().appliedSequence() >= 0);
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        await(clientVertx.close());
+        await(replicaVertx.close());
+        replica.close();
+        await(primaryVertx.close());
+        primary.close();
+    }
+
+    @Test
+    void createOnPrimary_isReadFromTheReplicaWithItsToken() throws Exception {
+        HttpResponse<Buffer> created = await(client.post(PRIMARY_PORT, "localhost", "/users")
+                .sendJsonObject(new JsonObject().put("name", "Ada").put("email", "ada@example.com")));
+        long id = created.bodyAsJsonObject().getLong("id");
+        String token = created.getHeader(ReplicationControl.TOKEN_HEADER);
+        long sequence = sequenceOf(token);
+
+        // Whether or not the replica has caught up, the token guarantees the write is seen
+        HttpResponse<Buffer> read = await(client.get(REPLICA_PORT, "localhost", "/users/" + id)
+                .putHeader(ReplicationControl.TOKEN_HEADER, token)
+                .send());
+        assertEquals(200, read.statusCode());
+        assertEquals("Ada", read.bodyAsJsonObject().getString("name"));
+        assertTrue(sequenceOf(read.getHeader(ReplicationControl.TOKEN_HEADER)) >= sequence);
+
+        waitFor(() -> replicator().appliedSequence() >= sequence);
+        assertEquals("ada@example.com", replicaUsers().findById(id).orElseThrow().getEmail());
+        HttpResponse<Buffer> local = await(client.get(REPLICA_PORT, "localhost", "/users/" + id)
+                .putHeader(ReplicationControl.TOKEN_HEADER, token)
+                .send());
+        assertEquals(replicator().applied().toString(), local.getHeader(ReplicationControl.TOKEN_HEADER));
+    }
+
+    @Test
+    void writeOnReplica_isForwardedToThePrimary() throws Exception {
+        HttpResponse<Buffer> created = await(client.post(REPLICA_PORT, "localhost", "/users")
+                .sendJsonObject(new JsonObject().put("name", "Grace").put("email", "grace@example.com")));
+        assertEquals(201, created.statusCode());
+        long id = created.bodyAsJsonObject().getLong("id");
+        long sequence = sequenceOf(created.getHeader(ReplicationControl.TOKEN_HEADER));
+
+        assertTrue(primaryUsers().findById(id).isPresent());
+        waitFor(() -> replicaUsers().findById(id).isPresent());
+        assertTrue(replicator().appliedSequence() >= sequence);
+
+        HttpResponse<Buffer> conflict = await(client.post(REPLICA_PORT, "localhost", "/users")
+                .sendJsonObject(new JsonObject().put("name", "Other").put("email", "grace@example.com")));
+        assertEquals(409, conflict.statusCode());
+    }
+
+    @Test
+    void updateAndDeleteOnPrimary_propagateToTheReplica() throws Exception {
+        User user = primaryUsers().save(new User(0, "Alan", "alan@example.com"));
+        waitFor(() -> replicaUsers().findById(user.getId()).isPresent());
+
+        HttpResponse<Buffer> updated = await(client.put(PRIMARY_PORT, "localhost", "/users/" + user.getId())
+                .sendJsonObject(new JsonObject().put("name", "Alan T").put("email", "turing@example.com")));
+        assertEquals(200, updated.statusCode());
+        waitFor(() -> replicaUsers().findById(user.getId()).map(User::getName).orElse("").equals("Alan T"));
+        Optional<User> replicated = replicaUsers().findById(user.getId());
+        assertEquals(primaryUsers().findById(user.getId()), replicated);
+        assertEquals(2, replicated.orElseThrow().getVersion());
+        assertTrue(replicaUsers().existsByEmail("turing@example.com"));
+        assertFalse(replicaUsers().existsByEmail("alan@example.com"));
+
+        HttpResponse<Buffer> deleted = await(client.delete(PRIMARY_PORT, "localhost", "/users/" + user.getId()).send());
+        assertEquals(204, deleted.statusCode());
+        waitFor(() -> replicaUsers().findById(user.getId()).isEmpty());
+        HttpResponse<Buffer> read = await(client.get(REPLICA_PORT, "localhost", "/users/" + user.getId())
+                .putHeader(ReplicationControl.TOKEN_HEADER, deleted.getHeader(ReplicationControl.TOKEN_HEADER))
+                .send());
+        assertEquals(404, read.statusCode());
+    }
+
+    @Test
+    void updateOnReplica_withTheTagOfAReplicaRead_isApplied() throws Exception {
+        User user = primaryUsers().save(new User(0, "Edsger", "edsger@example.com"));
+        waitFor(() -> replicaUsers().findById(user.getId()).isPresent());
+
+        HttpResponse<Buffer> read = await(client.get(REPLICA_PORT, "localhost", "/users/" + user.getId()).send());
+        assertEquals(replicator().applied().toString(), read.getHeader(ReplicationControl.TOKEN_HEADER));
+        String etag = read.getHeader("etag");
+        HttpResponse<Buffer> updated = await(client.put(REPLICA_PORT, "localhost", "/users/" + user.getId())
+                .putHeader("if-match", etag)
+                .sendJsonObject(new JsonObject().put("name", "Edsger D").put("email", "edsger@example.com")));
+
+        assertEquals(200, updated.statusCode());
+        assertNotEquals(etag, updated.getHeader("etag"));
+        HttpResponse<Buffer> stale = await(client.put(REPLICA_PORT, "localhost", "/users/" + user.getId())
+                .putHeader("if-match", etag)
+                .sendJsonObject(new JsonObject().put("name", "Stale").put("email", "edsger@example.com")));
+        assertEquals(412, stale.statusCode());
+    }
+
+    @Test
+    void listTagOfTheReplica_neverMatchesOnThePrimary() throws Exception {
+        User user = primaryUsers().save(new User(0, "Niklaus", "niklaus@example.com"));
+        waitFor(() -> replicaUsers().findById(user.getId()).isPresent());
+
+        HttpResponse<Buffer> replicaList = await(client.get(REPLICA_PORT, "localhost", "/users?limit=5").send());
+        String etag = replicaList.getHeader("etag");
+        // The version of the replica table counts its own changes, not the
+        // writes of the primary, so the tag must not look like one of its tags
+        assertFalse(etag.startsWith("\"" + primaryFeed().runId() + "-"), etag);
+        HttpResponse<Buffer> unchanged = await(client.get(REPLICA_PORT, "localhost", "/users?limit=5")
+                .putHeader("if-none-match", etag)
+                .send());
+        assertEquals(304, unchanged.statusCode());
+
+        primaryUsers().save(new User(0, "Tony", "tony@example.com"));
+        HttpResponse<Buffer> primaryList = await(client.get(PRIMARY_PORT, "localhost", "/users?limit=5")
+                .putHeader("if-none-match", etag)
+                .send());
+        assertEquals(200, primaryList.statusCode());
+        assertNotEquals(etag, primaryList.getHeader("etag"));
+    }
+
+    @Test
+    void readOnReplica_withTokenOfAnotherRun_isForwardedToThePrimary() throws Exception {
+        User user = primaryUsers().save(new User(0, "Barbara", "barbara@example.com"));
+        waitFor(() -> replicaUsers().findById(user.getId()).isPresent());
+        replicaUsers().deleteById(user.getId());
+
+        // The sequence is reached here, but counts in another run of the primary
+        HttpResponse<Buffer> read = await(client.get(REPLICA_PORT, "localhost", "/users/" + user.getId())
+                .putHeader(ReplicationControl.TOKEN_HEADER, ChangeFeed.position("earlier", 0))
+                .send());
+
+        assertEquals(200, read.statusCode());
+        assertEquals(primaryFeed().runId(), read.getHeader(ReplicationControl.TOKEN_HEADER).split("-")[0]);
+    }
+
+    @Test
+    void replicaOfTheCompactDatastore_isRefusedAtStartup() {
+        Exception e = assertThrows(Exception.class, () -> SpringApplication.run(ConcUsersApplication.class,
+                "--concusers.http.port=8092", "--concusers.datastore.type=compact",
+                "--concusers.datastore.cache.enabled=true", "--concusers.replication.role=REPLICA",
+                "--concusers.replication.primary-url=http://localhost:" + PRIMARY_PORT));
+
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        assertInstanceOf(IllegalStateException.class, cause);
+        assertTrue(cause.getMessage().contains("cannot be replicated"), cause.getMessage());
+    }
+
+    @Test
+    void readOnReplica_withInvalidToken_returnsBadRequest() throws Exception {
+        HttpResponse<Buffer> read = await(client.get(REPLICA_PORT, "localhost", "/users/1")
+                .putHeader(ReplicationControl.TOKEN_HEADER, "soon")
+                .send());
+
+        assertEquals(400, read.statusCode());
+    }
+
+    private static Replicator replicator() {
+        return replica.getBean(Replicator.class);
+    }
+
+    private static ChangeFeed primaryFeed() {
+        return primary.getBean(ChangeFeed.class);
+    }
+
+    private static long sequenceOf(String token) {
+        long sequence = ChangeFeed.sequenceOf(token, primaryFeed().runId());
+        assertNotEquals(ChangeFeed.LOST, sequence, token);
+        return sequence;
+    }
+
+    private static UserDatastore primaryUsers() {
+        return primary.getBean(UserDatastore.class);
+    }
+
+    private static UserDatastore replicaUsers() {
+        return replica.getBean(UserDatastore.class);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for the replica");
+            Thread.sleep(10);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+}
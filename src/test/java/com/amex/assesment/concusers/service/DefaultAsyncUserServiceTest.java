@@ -0,0 +1,126 @@
+package com.amex.assesment.concusers.service;
+
+import com.amex.assesment.concusers.datastore.BlockingUserDatastoreAdapter;
+import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
+import com.amex.assesment.concusers.execution.BlockingCallExecutor;
+import com.amex.assesment.concusers.execution.ExecutionMode;
+import com.amex.assesment.concusers.model.BatchItemResult;
+import com.amex.assesment.concusers.model.BatchItemStatus;
+import com.amex.assesment.concusers.model.User;
+import io.vertx.core.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultAsyncUserServiceTest {
+
+    private AsyncUserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userService = new DefaultAsyncUserService(new BlockingUserDatastoreAdapter(
+                new InMemoryUserDatastore(), new BlockingCallExecutor(ExecutionMode.EVENT_LOOP)));
+    }
+
+    @Test
+    void createUser_completesImmediately() {
+        Future<ServiceResult<User>> created = userService.createUser(new User(0, "Test User", "test@example.com"));
+
+        assertTrue(created.succeeded());
+        User user = created.result().getValue();
+        assertTrue(user.getId() > 0);
+        assertEquals(user.getId(), userService.getUserById(user.getId()).result().getValue().getId());
+    }
+
+    @Test
+    void createUser_withDuplicateEmail_returnsConflict() {
+        userService.createUser(new User(0, "Test User", "test@example.com"));
+
+        Future<ServiceResult<User>> duplicate = userService.createUser(new User(0, "Other User", "test@example.com"));
+
+        assertTrue(duplicate.succeeded());
+        assertSame(ServiceResult.conflict(), duplicate.result());
+    }
+
+    @Test
+    void getUpdateAndDeleteUser_whenUserDoesNotExist_returnNotFound() {
+        assertSame(ServiceResult.notFound(), userService.getUserById(999L).result());
+        assertSame(ServiceResult.notFound(),
+                userService.updateUser(999L, new User(0, "Name", "name@example.com")).result());
+        assertSame(ServiceResult.notFound(), userService.updateUserEmail(999L, "name@example.com").result());
+        assertSame(ServiceResult.notFound(), userService.deleteUser(999L).result());
+    }
+
+    @Test
+    void deleteUser_whenUserExists_removesUser() {
+        User user = userService.createUser(new User(0, "Test User", "test@example.com")).result().getValue();
+
+        assertTrue(userService.deleteUser(user.getId()).result().isOk());
+        assertEquals(ServiceResult.Status.NOT_FOUND, userService.getUserById(user.getId()).result().getStatus());
+    }
+
+    @Test
+    void updateUserEmail_toEmailOfAnotherUser_returnsConflictAndKeepsUser() {
+        User first = userService.createUser(new User(0, "First", "first@example.com")).result().getValue();
+        userService.createUser(new User(0, "Second", "second@example.com"));
+
+        Future<ServiceResult<User>> updated = userService.updateUserEmail(first.getId(), "second@example.com");
+
+        assertEquals(ServiceResult.Status.CONFLICT, updated.result().getStatus());
+        assertEquals("first@example.com", userService.getUserById(first.getId()).result().getValue().getEmail());
+    }
+
+    @Test
+    void updateUser_withStaleExpectedVersion_returnsPreconditionFailed() {
+        User user = userService.createUser(new User(0, "Test User", "test@example.com")).result().getValue();
+        long version = user.getVersion();
+        userService.updateUser(user.getId(), new User(0, "Newer", "test@example.com"), version);
+
+        Future<ServiceResult<User>> stale =
+                userService.updateUser(user.getId(), new User(0, "Stale", "test@example.com"), version);
+
+        assertSame(ServiceResult.preconditionFailed(), stale.result());
+        assertEquals("Newer", userService.getUserById(user.getId()).result().getValue().getName());
+    }
+
+    @Test
+    void updateUsers_reportsEachItem() {
+        User first = userService.createUser(new User(0, "First", "first@example.com")).result().getValue();
+        User second = userService.createUser(new User(0, "Second", "second@example.com")).result().getValue();
+
+        List<BatchItemResult> results = userService.updateUsers(List.of(
+                new User(first.getId(), "First Renamed", "first@example.com"),
+                new User(999L, "Missing", "missing@example.com"),
+                new User(second.getId(), "Second", "first@example.com"))).result();
+
+        assertEquals(BatchItemStatus.UPDATED, results.get(0).getStatus());
+        assertEquals(BatchItemStatus.NOT_FOUND, results.get(1).getStatus());
+        assertEquals(BatchItemStatus.CONFLICT, results.get(2).getStatus());
+        assertEquals("First Renamed", userService.getUserById(first.getId()).result().getValue().getName());
+    }
+
+    @Test
+    void updateUsers_whenUserIsDeletedAfterBeingRead_doesNotRecreateIt() {
+        InMemoryUserDatastore userDatastore = new InMemoryUserDatastore() {
+            @Override
+            public Optional<User> findById(long id) {
+                Optional<User> user = super.findById(id);
+                user.ifPresent(found -> deleteById(found.getId()));
+                return user;
+            }
+        };
+        userService = new DefaultAsyncUserService(new BlockingUserDatastoreAdapter(
+                userDatastore, new BlockingCallExecutor(ExecutionMode.EVENT_LOOP)));
+        long id = userService.createUser(new User(0, "Test User", "test@example.com")).result().getValue().getId();
+
+        List<BatchItemResult> results =
+                userService.updateUsers(List.of(new User(id, "Renamed", "test@example.com"))).result();
+
+        assertEquals(BatchItemStatus.NOT_FOUND, results.get(0).getStatus());
+        assertTrue(userDatastore.findAll().isEmpty());
+    }
+}
@@ -2,11 +2,27 @@ package com.amex.assesment.concusers.service;
 
 import com.amex.assesment.concusers.datastore.InMemoryUserDatastore;
 import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.exception.DuplicateUserException;
 import com.amex.assesment.concusers.exception.UserNotFoundException;
+import com.amex.assesment.concusers.model.BatchItemResult;
+import com.amex.assesment.concusers.model.BatchItemStatus;
 import com.amex.assesment.concusers.model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class InMemoryUserServiceTest {
@@ -86,4 +102,159 @@ class InMemoryUserServiceTest {
             userService.deleteUser(999L);
         });
     }
+
+    @Test
+    void updateUser_whenEmailBelongsToAnotherUser_thenThrowException() {
+        userService.createUser(new User(0, "User 1", "user1@example.com"));
+        User user2 = userService.createUser(new User(0, "User 2", "user2@example.com"));
+        User userDetails = new User(0, "User 2", "USER1@example.com");
+
+        assertThrows(DuplicateUserException.class, () -> {
+            userService.updateUser(user2.getId(), userDetails);
+        });
+        assertEquals("user2@example.com", userService.getUserById(user2.getId()).getEmail());
+    }
+
+    @Test
+    void createUser_whenRacingForSameEmails_thenNoDuplicates() throws Exception {
+        int threads = 16;
+        int attemptsPerThread = 1_000;
+        int distinctEmails = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        // Vary the case so racing creates also exercise case-insensitive matching
+                        String email = "user" + (i % distinctEmails) + "@example.com";
+                        if ((i + thread) % 2 == 0) {
+                            email = email.toUpperCase(Locale.ROOT);
+                        }
+                        try {
+                            userService.createUser(new User(0, "User " + i, email));
+                        } catch (DuplicateUserException e) {
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<User> users = userService.getAllUsers();
+        Set<String> emails = users.stream()
+                .map(u -> u.getEmail().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        assertEquals(distinctEmails, users.size());
+        assertEquals(distinctEmails, emails.size());
+        assertEquals(threads * attemptsPerThread - distinctEmails, conflicts.get());
+    }
+
+    @Test
+    void concurrentUpdates_readersNeverSeeTornUsers() throws Exception {
+        long id = userService.createUser(new User(0, "Name 0", "user0@example.com")).getId();
+        int writers = 2;
+        int updates = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        try {
+            CountDownLatch writersDone = new CountDownLatch(writers);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int first = w * updates;
+                tasks.add(executor.submit(() -> {
+                    try {
+                        for (int i = first; i < first + updates; i++) {
+                            userService.updateUser(id, new User(0, "Name " + i, "user" + i + "@example.com"));
+                        }
+                    } finally {
+                        writersDone.countDown();
+                    }
+                    return null;
+                }));
+            }
+            AtomicInteger reads = new AtomicInteger();
+            for (int r = 0; r < 2; r++) {
+                tasks.add(executor.submit(() -> {
+                    while (writersDone.getCount() > 0) {
+                        User user = userService.getUserById(id);
+                        String suffix = user.getName().substring("Name ".length());
+                        assertEquals("user" + suffix + "@example.com", user.getEmail());
+                        reads.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+            assertTrue(reads.get() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentRenameAndEmailChange_loseNoUpdate() throws Exception {
+        long id = userService.createUser(new User(0, "Name 0", "a0@example.com")).getId();
+        int updates = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> renames = executor.submit(() -> {
+                start.await();
+                for (int i = 1; i <= updates; i++) {
+                    userService.updateUser(id, new User(0, "Name " + i, "b" + i + "@example.com"));
+                }
+                return null;
+            });
+            Future<?> emailChanges = executor.submit(() -> {
+                start.await();
+                for (int i = 1; i <= updates; i++) {
+                    userService.updateUserEmail(id, "a" + i + "@example.com");
+                }
+                return null;
+            });
+            start.countDown();
+            renames.get(30, TimeUnit.SECONDS);
+            emailChanges.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // An email change writing back the name it read before a rename would
+        // leave an older name behind
+        User user = userService.getUserById(id);
+        assertEquals("Name " + updates, user.getName());
+        assertEquals(1 + 2 * updates, user.getVersion());
+    }
+
+    @Test
+    void updateUsers_whenUserIsDeletedAfterBeingRead_doesNotRecreateIt() {
+        InMemoryUserDatastore userDatastore = new InMemoryUserDatastore() {
+            @Override
+            public Optional<User> findById(long id) {
+                Optional<User> user = super.findById(id);
+                user.ifPresent(found -> deleteById(found.getId()));
+                return user;
+            }
+        };
+        userService = new InMemoryUserService(userDatastore);
+        long id = userService.createUser(new User(0, "Test User", "test@example.com")).getId();
+
+        List<BatchItemResult> results = userService.updateUsers(List.of(new User(id, "Renamed", "test@example.com")));
+
+        assertEquals(BatchItemStatus.NOT_FOUND, results.get(0).getStatus());
+        assertTrue(userDatastore.findAll().isEmpty());
+    }
 }
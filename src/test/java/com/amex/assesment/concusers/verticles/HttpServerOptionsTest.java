@@ -0,0 +1,117 @@
+package com.amex.assesment.concusers.verticles;
+
+import com.amex.assesment.concusers.ConcUsersApplication;
+import com.amex.assesment.concusers.datastore.UserDatastore;
+import com.amex.assesment.concusers.model.User;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.RequestOptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpServerOptionsTest {
+
+    private static final int PORT = 8092;
+
+    private static ConfigurableApplicationContext context;
+    private static Vertx serverVertx;
+    private static Vertx clientVertx;
+    private static HttpClient client;
+
+    @BeforeAll
+    static void start() throws Exception {
+        context = SpringApplication.run(ConcUsersApplication.class,
+                "--concusers.http.port=" + PORT, "--concusers.http.instances=1",
+                "--concusers.http.compression.enabled=true", "--concusers.http.compression.min-size=1024",
+                "--concusers.http.idle-timeout-seconds=60", "--concusers.http.native-transport=true");
+        serverVertx = await(ConcUsersApplication.start(context));
+        UserDatastore users = context.getBean(UserDatastore.class);
+        for (int i = 0; i < 200; i++) {
+            users.save(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        clientVertx = Vertx.vertx();
+        client = clientVertx.createHttpClient(new HttpClientOptions().setDefaultPort(PORT));
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        await(clientVertx.close());
+        await(serverVertx.close());
+        context.close();
+    }
+
+    @Test
+    void largeResponse_isCompressedForClientsAcceptingIt() throws Exception {
+        Response plain = get("/users?limit=200", null);
+        Response gzip = get("/users?limit=200", "gzip");
+        Response deflate = get("/users?limit=200", "deflate");
+
+        assertNull(plain.encoding());
+        assertEquals("gzip", gzip.encoding());
+        assertEquals("deflate", deflate.encoding());
+        assertTrue(gzip.body().length() * 3 < plain.body().length(),
+                gzip.body().length() + " bytes compressed out of " + plain.body().length());
+    }
+
+    @Test
+    void streamedResponse_isCompressed() throws Exception {
+        assertEquals("gzip", get("/users", "gzip").encoding());
+    }
+
+    @Test
+    void responseBelowMinSize_isNotCompressed() throws Exception {
+        Response response = get("/users/1", "gzip");
+
+        assertEquals(200, response.status());
+        assertNotEquals("gzip", response.encoding());
+        assertTrue(response.body().toString().contains("\"name\":\"User 0\""));
+    }
+
+    @Test
+    void http2WithPriorKnowledge_isServedOverCleartext() throws Exception {
+        HttpClient h2c = clientVertx.createHttpClient(new HttpClientOptions()
+                .setDefaultPort(PORT)
+                .setProtocolVersion(HttpVersion.HTTP_2)
+                .setHttp2ClearTextUpgrade(false));
+        try {
+            HttpClientResponse response = await(h2c.request(HttpMethod.GET, "/users/1")
+                    .compose(request -> request.send()));
+
+            assertEquals(HttpVersion.HTTP_2, response.version());
+            assertEquals(200, response.statusCode());
+        } finally {
+            await(h2c.close());
+        }
+    }
+
+    private static Response get(String uri, String acceptEncoding) throws Exception {
+        RequestOptions options = new RequestOptions().setMethod(HttpMethod.GET).setURI(uri);
+        if (acceptEncoding != null) {
+            options.addHeader("accept-encoding", acceptEncoding);
+        }
+        return await(client.request(options)
+                .compose(request -> request.send())
+                .compose(response -> response.body().map(body ->
+                        new Response(response.statusCode(), response.getHeader("content-encoding"), body))));
+    }
+
+    private record Response(int status, String encoding, Buffer body) {
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+}